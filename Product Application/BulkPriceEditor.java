@@ -0,0 +1,198 @@
+import db.DbExecutor;
+import db.Money;
+import db.ProductManager;
+import db.ProductRepricing;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reprices the products shown by the product list's current filter. Previewing an adjustment
+ * fills the grid with old and new values; New Price and New Rate can then be edited cell by
+ * cell. Nothing is written until Apply, which saves every changed row in one transaction.
+ * A new preview replaces any cells edited by hand.
+ */
+class BulkPriceEditor extends JDialog {
+    private static final Color CHANGED = new Color(255, 243, 200);
+
+    private final ChangeModel model = new ChangeModel();
+    private final DbExecutor.Scope tasks = UiTasks.scopeFor(this);
+    private final JComboBox<String> targetBox = new JComboBox<>(new String[]{"Price", "Rate", "Price and Rate"});
+    private final JComboBox<String> modeBox = new JComboBox<>(new String[]{"%", "Amount"});
+    private final JTextField amountField = new JTextField("0", 6);
+    private final JLabel summaryLabel = new JLabel(" ");
+    private final JButton btnApply = new JButton("Apply Changes");
+    private List<ProductManager.ProductRow> products = List.of();
+    private boolean applied;
+
+    BulkPriceEditor(JDialog parent, ProductManager.ProductFilter filter) {
+        super(parent, "Bulk Edit Prices", true);
+        setSize(800, 500);
+        setLocationRelativeTo(parent);
+
+        FastTable table = new FastTable(model);
+        table.setDefaultRenderer(Object.class, new ChangedRowRenderer());
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.putClientProperty("terminateEditOnFocusLost", true);
+
+        JButton btnPreview = new JButton("Preview");
+        btnPreview.addActionListener(_ -> preview());
+        JPanel adjustPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        adjustPanel.add(new JLabel("Change"));
+        adjustPanel.add(targetBox);
+        adjustPanel.add(new JLabel("by"));
+        adjustPanel.add(amountField);
+        adjustPanel.add(modeBox);
+        adjustPanel.add(btnPreview);
+
+        JButton btnReset = new JButton("Reset");
+        JButton btnCancel = new JButton("Cancel");
+        btnReset.addActionListener(_ -> model.setChanges(ProductRepricing.preview(products, null)));
+        btnApply.addActionListener(_ -> applyChanges());
+        btnCancel.addActionListener(_ -> dispose());
+        btnApply.setEnabled(false);
+
+        JPanel btnPanel = new JPanel();
+        btnPanel.add(btnReset);
+        btnPanel.add(btnApply);
+        btnPanel.add(btnCancel);
+
+        JPanel southPanel = new JPanel(new BorderLayout());
+        summaryLabel.setBorder(BorderFactory.createEmptyBorder(4, 8, 0, 8));
+        southPanel.add(summaryLabel, BorderLayout.NORTH);
+        southPanel.add(btnPanel, BorderLayout.SOUTH);
+
+        add(adjustPanel, BorderLayout.NORTH);
+        add(new JScrollPane(table), BorderLayout.CENTER);
+        add(southPanel, BorderLayout.SOUTH);
+
+        UiTasks.onEdt(tasks.read("BulkPriceEditor.loadProducts",
+                conn -> ProductManager.findProducts(conn, filter, null, Integer.MAX_VALUE)), loaded -> {
+            products = loaded;
+            model.setChanges(ProductRepricing.preview(products, null));
+        });
+    }
+
+    /** Shows the editor; true when changes were saved and the product list should reload. */
+    boolean edit() {
+        setVisible(true);
+        return applied;
+    }
+
+    private void preview() {
+        ProductRepricing.Target target = switch (targetBox.getSelectedIndex()) {
+            case 0 -> ProductRepricing.Target.PRICE;
+            case 1 -> ProductRepricing.Target.RATE;
+            default -> ProductRepricing.Target.BOTH;
+        };
+        try {
+            ProductRepricing.Adjustment adjustment = ProductRepricing.Adjustment.parse(
+                    target, modeBox.getSelectedIndex() == 0, amountField.getText());
+            model.setChanges(ProductRepricing.preview(products, adjustment));
+        } catch (NumberFormatException | ArithmeticException e) {
+            JOptionPane.showMessageDialog(this, "Enter a percentage such as 10 or -5.5, or an amount such as 1.50.");
+        }
+    }
+
+    // Every changed row is written in one batch; if any product was edited elsewhere since it was
+    // loaded, nothing is saved
+    private void applyChanges() {
+        List<ProductRepricing.Change> changes = List.copyOf(model.changes);
+        btnApply.setEnabled(false); // Until the write has come back, so one click commits once
+        UiTasks.onEdt(DbExecutor.write(conn -> ProductRepricing.apply(conn, changes)), count -> {
+            applied = true;
+            JOptionPane.showMessageDialog(this, count + " product(s) updated.");
+            dispose();
+        }, error -> {
+            error.printStackTrace();
+            JOptionPane.showMessageDialog(this, "No prices were changed: " + error.getMessage());
+            updateSummary();
+        });
+    }
+
+    private void updateSummary() {
+        long changed = model.changes.stream().filter(ProductRepricing.Change::isChanged).count();
+        summaryLabel.setText(changed + " of " + model.changes.size() + " product(s) will change");
+        btnApply.setEnabled(changed > 0);
+    }
+
+    // The edit buffer: one row per product, holding its old and new values until Apply
+    private final class ChangeModel extends AbstractTableModel {
+        private static final String[] COLUMNS = {"Product", "Price", "New Price", "Rate", "New Rate"};
+        private List<ProductRepricing.Change> changes = new ArrayList<>();
+
+        void setChanges(List<ProductRepricing.Change> changes) {
+            this.changes = new ArrayList<>(changes);
+            fireTableDataChanged();
+            updateSummary();
+        }
+
+        @Override
+        public int getRowCount() {
+            return changes.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            ProductRepricing.Change change = changes.get(row);
+            return switch (column) {
+                case 0 -> change.name();
+                case 1 -> Money.ofCents(change.oldPrice());
+                case 2 -> Money.ofCents(change.newPrice());
+                case 3 -> Money.ofCents(change.oldRate());
+                default -> Money.ofCents(change.newRate());
+            };
+        }
+
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return column == 2 || column == 4;
+        }
+
+        @Override
+        public void setValueAt(Object value, int row, int column) {
+            long cents;
+            try {
+                cents = Money.parseCents(String.valueOf(value));
+            } catch (NumberFormatException e) {
+                Toolkit.getDefaultToolkit().beep();
+                return;
+            }
+            if (cents < 0) {
+                Toolkit.getDefaultToolkit().beep();
+                return;
+            }
+            ProductRepricing.Change change = changes.get(row);
+            changes.set(row, column == 2 ? change.withNewPrice(cents) : change.withNewRate(cents));
+            fireTableRowsUpdated(row, row); // The whole row's tint may change
+            updateSummary();
+        }
+    }
+
+    // Tints the rows that Apply would write
+    private final class ChangedRowRenderer extends FastTable.CellRenderer {
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                       boolean hasFocus, int row, int column) {
+            super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+            if (!isSelected) {
+                boolean changed = model.changes.get(table.convertRowIndexToModel(row)).isChanged();
+                setBackground(changed ? CHANGED : table.getBackground());
+            }
+            return this;
+        }
+    }
+}
@@ -1,26 +1,51 @@
+import db.ClientManager;
+import db.ClientStats;
+import db.DbExecutor;
+import db.Money;
+import db.ProductManager;
+import db.SearchIndex;
+
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 public class ClientWindow extends JDialog {
+    private static final int SEARCH_LIMIT = 500;
+    private static final int PAGE_SIZE = 200;
+    private static final int TOP_PRODUCTS = 3;
+
+    private record Listed(ClientManager.ClientRow client, ClientStats.Summary stats) {}
 
-    private JTable table;
-    private DefaultTableModel model;
+    private FastTable table;
+    private FastTable.Model model;
+    private PagedRows<Listed> pages;
+    private boolean loadingPreferences;
+    private long loadedVersion = -1;
+    private final DbExecutor.Scope tasks = UiTasks.scopeFor(this);
+    private final JTextField searchField = new JTextField(20);
+    private final JComboBox<String> preferenceBox = new JComboBox<>(new String[]{"All Preferences"});
+    private final JLabel topProductsLabel = new JLabel(" ");
 
     public ClientWindow(JFrame parent) {
         super(parent, "Manage Clients", true);
-        setSize(600, 400);
+        setSize(900, 400);
         setLocationRelativeTo(parent);
 
         // Step 1: Change table model to include "ID" and hide it
-        model = new DefaultTableModel(new String[]{
-            "ID", "Name", "Preferences", "Purchases"
-        }, 0);
-        table = new JTable(model);
-        table.setDefaultEditor(Object.class, null);  // Disable inline editing for all columns
+        model = new FastTable.Model(
+            "ID", "Name", "Preferences", "Purchases", "Orders", "Lifetime Spend", "Last Purchase", "Days Between Orders");
+        table = new FastTable(model);
         table.getColumnModel().removeColumn(table.getColumnModel().getColumn(0)); // Hide ID column
+        table.getSelectionModel().addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) loadTopProducts();
+        });
+        JScrollPane scrollPane = new JScrollPane(table);
+        pages = new PagedRows<>(tasks, "ClientWindow.loadClients", PAGE_SIZE, model, scrollPane, ClientWindow::toRow);
+        loadPreferenceFilter();
         loadClients();
 
         JButton btnAdd = new JButton("Add");
@@ -36,30 +61,107 @@ public class ClientWindow extends JDialog {
         btnPanel.add(btnEdit);
         btnPanel.add(btnDelete);
 
-        add(new JScrollPane(table), BorderLayout.CENTER);
-        add(btnPanel, BorderLayout.SOUTH);
+        JPanel southPanel = new JPanel(new BorderLayout());
+        topProductsLabel.setBorder(BorderFactory.createEmptyBorder(4, 8, 0, 8));
+        southPanel.add(topProductsLabel, BorderLayout.NORTH);
+        southPanel.add(btnPanel, BorderLayout.SOUTH);
+
+        // Searches names and preferences by word prefix as the user types
+        UiTasks.onTextChange(searchField, 150, this::loadClients);
+        JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        searchPanel.add(new JLabel("Search:"));
+        searchPanel.add(searchField);
+        preferenceBox.addActionListener(_ -> {
+            if (!loadingPreferences) loadClients();
+        });
+        searchPanel.add(new JLabel("Preference:"));
+        searchPanel.add(preferenceBox);
+
+        add(searchPanel, BorderLayout.NORTH);
+        add(scrollPane, BorderLayout.CENTER);
+        add(southPanel, BorderLayout.SOUTH);
+    }
 
+    /** Shows the dialog, reloading its data first only if something was committed since the last load. */
+    public void open() {
+        if (db.DatabaseManager.dataVersion() != loadedVersion) {
+            loadPreferenceFilter();
+            loadClients();
+        }
         setVisible(true);
     }
 
-    // Step 2: Update loadClients() to fetch Client_ID
+    // Reads the first page on a virtual thread and fills the table on the EDT when it arrives;
+    // later pages load as the table is scrolled towards its end. With a preference chosen the
+    // search text narrows by name prefix alongside it; otherwise search text loads the best
+    // matches in one go. Purchase figures come from the maintained ClientStats rows, not from
+    // the sales themselves
     private void loadClients() {
-        model.setRowCount(0); // Clear the existing rows
-        try (Connection conn = db.DatabaseManager.connect();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT Client_ID, Name, Preferences, NumberOfPurchases FROM Client ORDER BY Name ASC")) {
+        loadedVersion = db.DatabaseManager.dataVersion();
+        String search = searchField.getText().strip();
+        String preference = preferenceBox.getSelectedIndex() > 0 ? (String) preferenceBox.getSelectedItem() : null;
+        PagedRows.PageQuery<Listed> query;
+        if (preference == null && !search.isEmpty()) {
+            query = (conn, after, _) -> after != null ? List.of()
+                    : withStats(conn, SearchIndex.clients(conn, search, SEARCH_LIMIT));
+        } else {
+            ClientManager.ClientFilter filter = new ClientManager.ClientFilter(search, preference);
+            query = (conn, after, limit) -> withStats(conn,
+                    ClientManager.findClients(conn, filter, after == null ? null : after.client(), limit));
+        }
+        pages.reload(query, _ -> topProductsLabel.setText(" "));
+    }
 
-            while (rs.next()) {
-                model.addRow(new Object[]{
-                    rs.getInt("Client_ID"),
-                    rs.getString("Name"),
-                    rs.getString("Preferences"),
-                    rs.getInt("NumberOfPurchases")
-                });
+    private static List<Listed> withStats(Connection conn, List<ClientManager.ClientRow> clients) throws SQLException {
+        Map<Integer, ClientStats.Summary> stats = ClientStats.forClients(conn,
+                clients.stream().map(ClientManager.ClientRow::clientId).toList());
+        return clients.stream().map(client -> new Listed(client, stats.get(client.clientId()))).toList();
+    }
+
+    private static Object[] toRow(Listed listed) {
+        ClientManager.ClientRow client = listed.client();
+        ClientStats.Summary stats = listed.stats();
+        return new Object[]{
+            client.clientId(),
+            client.name(),
+            client.preferences(),
+            client.numberOfPurchases(),
+            stats == null ? 0 : stats.orders(),
+            Money.ofCents(stats == null ? 0 : stats.spend()),
+            stats == null ? null : stats.lastPurchase(),
+            stats == null ? null : stats.daysBetweenOrders()
+        };
+    }
+
+    // Refills the preference filter, keeping the current selection when that product still exists
+    private void loadPreferenceFilter() {
+        UiTasks.onEdt(tasks.read("ClientWindow.loadPreferenceFilter", ProductManager::findProducts), products -> {
+            Object selected = preferenceBox.getSelectedItem();
+            loadingPreferences = true;
+            preferenceBox.removeAllItems();
+            preferenceBox.addItem("All Preferences");
+            for (ProductManager.ProductRow product : products) {
+                preferenceBox.addItem(product.name());
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
+            if (selected != null) preferenceBox.setSelectedItem(selected);
+            loadingPreferences = false;
+        });
+    }
+
+    // Shows the selected client's most bought products under the table
+    private void loadTopProducts() {
+        int selected = table.selectedModelRow();
+        if (selected == -1) {
+            tasks.cancel("ClientWindow.loadTopProducts");
+            topProductsLabel.setText(" ");
+            return;
         }
+        int clientId = (int) model.getValueAt(selected, 0);
+        UiTasks.onEdt(tasks.read("ClientWindow.loadTopProducts",
+                conn -> ClientStats.topProducts(conn, clientId, TOP_PRODUCTS)), top -> topProductsLabel.setText(
+                top.isEmpty() ? "No purchases yet" : "Top products: " + top.stream()
+                        .map(p -> p.productName() + " (" + p.units() + " units, " + Money.format(p.spend()) + ")")
+                        .collect(Collectors.joining(", "))));
     }
 
     private void addClient() {
@@ -80,7 +182,7 @@ public class ClientWindow extends JDialog {
 
         JPanel panel = new JPanel(new GridLayout(3, 2));
         panel.add(new JLabel("Name:")); panel.add(nameField);
-        panel.add(new JLabel("Preferences:")); panel.add(preferencesBox);
+        panel.add(new JLabel("Preferences (until first purchase):")); panel.add(preferencesBox);
 
         int result = JOptionPane.showConfirmDialog(this, panel, "Add Client", JOptionPane.OK_CANCEL_OPTION);
         if (result == JOptionPane.OK_OPTION) {
@@ -92,57 +194,30 @@ public class ClientWindow extends JDialog {
                 return;
             }
 
-            try (Connection conn = db.DatabaseManager.connect()) {
-                PreparedStatement stmt = conn.prepareStatement(
-                    "INSERT INTO Client (Name, Preferences, NumberOfPurchases) VALUES (?, ?, ?)"
-                );
-                stmt.setString(1, name);
-                stmt.setString(2, selectedPref.toString());
-                stmt.setInt(3, 0);
-
-                int rows = stmt.executeUpdate();
-                if (rows == 0) {
-                    JOptionPane.showMessageDialog(this, "Nothing was added/updated. Possible duplicate or constraint issue.");
-                    conn.rollback();
-                    return;
-                }
-                conn.commit();
-
-                loadClients();
-            } catch (SQLException e) {
-                e.printStackTrace();
-                JOptionPane.showMessageDialog(this, "Error inserting client:\n" + e.getMessage());
-            }
+            String preference = selectedPref.toString();
+            UiTasks.onEdt(DbExecutor.write(conn -> db.ClientManager.addClient(conn, name, preference)),
+                    _ -> loadClients(), error -> {
+                        error.printStackTrace();
+                        JOptionPane.showMessageDialog(this, "Error inserting client:\n" + error.getMessage());
+                    });
         }
     }
 
     // Step 4: Same for deleteSelectedClient()
     private void deleteSelectedClient() {
-        int selected = table.getSelectedRow();
+        int selected = table.selectedModelRow();
         if (selected == -1) return;
 
         int clientId = (int) model.getValueAt(selected, 0); // Use ID as the identifier
-        try (Connection conn = db.DatabaseManager.connect()) {
-            conn.setAutoCommit(false); // Disable auto-commit
-
-            try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM Client WHERE Client_ID = ?")) {
-                stmt.setInt(1, clientId);
-                stmt.executeUpdate();
-
-                conn.commit(); // Commit the transaction
-                loadClients();
-            } catch (SQLException e) {
-                conn.rollback(); // Rollback on error
-                e.printStackTrace();
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        UiTasks.onEdt(DbExecutor.write(conn -> {
+            ClientManager.deleteClient(conn, clientId);
+            return null;
+        }), _ -> loadClients());
     }
 
     // Step 3: In editSelectedClient(), fetch Client_ID from the hidden column and update SQL
     private void editSelectedClient() {
-        int selected = table.getSelectedRow();
+        int selected = table.selectedModelRow();
         if (selected == -1) {
             JOptionPane.showMessageDialog(this, "Please select a client to edit.");
             return;
@@ -152,10 +227,13 @@ public class ClientWindow extends JDialog {
         String currentName = (String) model.getValueAt(selected, 1);
         String currentPref = (String) model.getValueAt(selected, 2);
         int currentPurchases = (int) model.getValueAt(selected, 3);
+        int currentOrders = (int) model.getValueAt(selected, 4);
 
         JTextField nameField = new JTextField(currentName);
         JComboBox<String> prefBox = new JComboBox<>();
-        JTextField purchasesField = new JTextField(String.valueOf(currentPurchases));
+        // Both follow the client's sales once they have any, so they are shown but not edited
+        prefBox.setEnabled(currentOrders == 0);
+        JLabel purchasesLabel = new JLabel(String.valueOf(currentPurchases));
 
         try (Connection conn = db.DatabaseManager.connect();
              Statement stmt = conn.createStatement();
@@ -172,26 +250,26 @@ public class ClientWindow extends JDialog {
         JPanel panel = new JPanel(new GridLayout(3, 2));
         panel.add(new JLabel("Name:")); panel.add(nameField);
         panel.add(new JLabel("Preferences:")); panel.add(prefBox);
-        panel.add(new JLabel("Number of Purchases:")); panel.add(purchasesField);
+        panel.add(new JLabel("Number of Purchases:")); panel.add(purchasesLabel);
 
         int result = JOptionPane.showConfirmDialog(this, panel, "Edit Client", JOptionPane.OK_CANCEL_OPTION);
         if (result == JOptionPane.OK_OPTION) {
-            try (Connection conn = db.DatabaseManager.connect()) {
-                PreparedStatement stmt = conn.prepareStatement("""
-                    UPDATE Client SET Name = ?, Preferences = ?, NumberOfPurchases = ?
-                    WHERE Client_ID = ?
-                """);
-                stmt.setString(1, nameField.getText().trim());
-                stmt.setString(2, (String) prefBox.getSelectedItem());
-                stmt.setInt(3, Integer.parseInt(purchasesField.getText()));
-                stmt.setInt(4, clientId); // Use ID for update
-                stmt.executeUpdate();
-                conn.commit();
-                loadClients();
-            } catch (SQLException | NumberFormatException e) {
-                e.printStackTrace();
+            String newName = nameField.getText().trim();
+            String newPref = prefBox.isEnabled() ? (String) prefBox.getSelectedItem() : currentPref;
+            UiTasks.onEdt(DbExecutor.write(conn -> {
+                try (PreparedStatement stmt = conn.prepareStatement("""
+                        UPDATE Client SET Name = ?, Preferences = ?
+                        WHERE Client_ID = ?
+                    """)) {
+                    stmt.setString(1, newName);
+                    stmt.setString(2, newPref);
+                    stmt.setInt(3, clientId); // Use ID for update
+                    return stmt.executeUpdate();
+                }
+            }), _ -> loadClients(), error -> {
+                error.printStackTrace();
                 JOptionPane.showMessageDialog(this, "Failed to update client.");
-            }
+            });
         }
     }
 }
@@ -0,0 +1,165 @@
+import db.ConsistencyChecker;
+import db.DbExecutor;
+import db.LatencyHistogram;
+import db.Metrics;
+import db.Money;
+import db.SlowQueryLog;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+public class DiagnosticsWindow extends JDialog {
+
+    private final FastTable.Model model;
+
+    public DiagnosticsWindow(JFrame parent) {
+        super(parent, "Diagnostics", true);
+        setSize(1200, 450);
+        setLocationRelativeTo(parent);
+
+        model = new FastTable.Model(
+                "Operation", "Kind", "Count", "Rows", "Errors", "Mean (ms)", "p50 (ms)", "p95 (ms)", "p99 (ms)", "Max (ms)", "SQL");
+        FastTable table = new FastTable(model);
+        table.setDefaultRenderer(Object.class, new FastTable.CellRenderer(2)); // Latencies to the hundredth of a ms
+        table.getColumnModel().getColumn(10).setPreferredWidth(400);
+
+        loadMetrics();
+
+        JButton btnRefresh = new JButton("Refresh");
+        JButton btnReset = new JButton("Reset");
+        JButton btnDump = new JButton("Dump to File");
+
+        btnRefresh.addActionListener(_ -> loadMetrics());
+        btnReset.addActionListener(_ -> {
+            Metrics.reset();
+            loadMetrics();
+        });
+        btnDump.addActionListener(_ -> dumpMetrics());
+
+        // Recomputes stock, purchase, cash and profit counters off the UI thread
+        JButton btnCheck = new JButton("Check Consistency");
+        btnCheck.addActionListener(_ -> checkConsistency(btnCheck));
+
+        // Statements slower than this go to the slow-query log with their query plan
+        JSpinner thresholdSpinner = new JSpinner(
+                new SpinnerNumberModel((int) Math.min(SlowQueryLog.getThresholdMillis(), 60_000), 0, 60_000, 50));
+        thresholdSpinner.addChangeListener(_ -> SlowQueryLog.setThresholdMillis((Integer) thresholdSpinner.getValue()));
+        thresholdSpinner.setToolTipText("0 disables the log; entries go to " + SlowQueryLog.logFile().toAbsolutePath());
+
+        JPanel btnPanel = new JPanel();
+        btnPanel.add(btnRefresh);
+        btnPanel.add(btnReset);
+        btnPanel.add(btnDump);
+        btnPanel.add(btnCheck);
+        btnPanel.add(new JLabel("Slow query threshold (ms):"));
+        btnPanel.add(thresholdSpinner);
+
+        add(new JScrollPane(table), BorderLayout.CENTER);
+        add(btnPanel, BorderLayout.SOUTH);
+
+        setVisible(true);
+    }
+
+    private void loadMetrics() {
+        List<Object[]> rows = new ArrayList<>();
+        for (Metrics.Entry e : Metrics.entries()) {
+            LatencyHistogram h = e.latency();
+            rows.add(new Object[]{
+                    e.key().operation(),
+                    e.key().kind(),
+                    h.count(),
+                    e.rows(),
+                    e.errors(),
+                    millis(h.meanMicros()),
+                    millis(h.percentileMicros(50)),
+                    millis(h.percentileMicros(95)),
+                    millis(h.percentileMicros(99)),
+                    millis(h.maxMicros()),
+                    e.key().sql()
+            });
+        }
+        model.setRows(rows);
+    }
+
+    private void dumpMetrics() {
+        String stamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        Path file = Path.of("metrics-" + stamp + ".tsv");
+        try {
+            Metrics.dump(file);
+            JOptionPane.showMessageDialog(this, "Metrics written to " + file.toAbsolutePath());
+        } catch (IOException e) {
+            e.printStackTrace();
+            JOptionPane.showMessageDialog(this, "Failed to write metrics file.");
+        }
+    }
+
+    private void checkConsistency(JButton button) {
+        button.setEnabled(false);
+        button.setText("Checking...");
+        ConsistencyChecker.checkInBackground().whenComplete((found, error) -> SwingUtilities.invokeLater(() -> {
+            button.setEnabled(true);
+            button.setText("Check Consistency");
+            if (error != null) {
+                error.printStackTrace();
+                JOptionPane.showMessageDialog(this, "Consistency check failed.");
+                return;
+            }
+            showDiscrepancies(found);
+        }));
+    }
+
+    private void showDiscrepancies(List<ConsistencyChecker.Discrepancy> found) {
+        if (found.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "All counters match the records they are derived from.");
+            return;
+        }
+
+        DefaultTableModel findings = new DefaultTableModel(new String[]{
+                "Counter", "ID", "Name", "Stored", "Expected", "Difference"
+        }, 0);
+        for (ConsistencyChecker.Discrepancy d : found) {
+            findings.addRow(new Object[]{
+                    d.counter().label(),
+                    d.id(),
+                    d.name(),
+                    amount(d.counter(), d.stored()),
+                    amount(d.counter(), d.expected()),
+                    amount(d.counter(), d.difference())
+            });
+        }
+        JTable findingsTable = new JTable(findings);
+        findingsTable.setDefaultEditor(Object.class, null);
+        JScrollPane scroll = new JScrollPane(findingsTable);
+        scroll.setPreferredSize(new Dimension(700, 300));
+
+        String[] options = {"Repair All", "Close"};
+        int choice = JOptionPane.showOptionDialog(this, scroll, found.size() + " counter(s) out of step",
+                JOptionPane.DEFAULT_OPTION, JOptionPane.WARNING_MESSAGE, null, options, options[1]);
+        if (choice == 0) repair(found);
+    }
+
+    private void repair(List<ConsistencyChecker.Discrepancy> found) {
+        UiTasks.onEdt(DbExecutor.write(conn -> ConsistencyChecker.repair(conn, found)), repaired -> {
+            if (getParent() instanceof MainAppWindow main) main.updateCashLabels();
+            JOptionPane.showMessageDialog(this, repaired + " counter(s) repaired.");
+        }, error -> {
+            error.printStackTrace();
+            JOptionPane.showMessageDialog(this, "Error repairing counters.");
+        });
+    }
+
+    private static String amount(ConsistencyChecker.Counter counter, long value) {
+        return counter.isMoney() ? Money.format(value) : String.valueOf(value);
+    }
+
+    private static Double millis(double micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,135 @@
+import db.Money;
+
+import javax.swing.*;
+import javax.swing.event.TableModelEvent;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableModel;
+import java.awt.*;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+import java.util.function.IntFunction;
+
+/**
+ * Table for the list windows; with a {@link Model} it is read-only. Rows keep their raw values (IDs, quantities, Money,
+ * LocalDate, Double) so they sort by value through {@link KeyedRowSorter}, and the renderer
+ * turns them into text from caches instead of formatting each cell every time it is painted.
+ * Rows have one fixed height, so scrolling never measures cells. Selections are view rows;
+ * use {@link #selectedModelRow()} and {@link #selectedModelRows()} before reading the model.
+ */
+class FastTable extends JTable {
+
+    /** A table model that is filled in one go and never edited in place by the user. */
+    static class Model extends DefaultTableModel {
+        Model(String... columnNames) {
+            super(columnNames, 0);
+        }
+
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
+        }
+
+        /** Replaces all rows with one change event, so the sorter re-sorts once rather than per row. */
+        void setRows(List<Object[]> rows) {
+            dataVector.clear();
+            for (Object[] row : rows) {
+                Vector<Object> values = new Vector<>(row.length);
+                for (Object value : row) values.add(value);
+                dataVector.add(values);
+            }
+            fireTableDataChanged();
+        }
+
+        /** Appends rows with one insert event. */
+        void addRows(List<Object[]> rows) {
+            if (rows.isEmpty()) return;
+            int first = dataVector.size();
+            for (Object[] row : rows) {
+                Vector<Object> values = new Vector<>(row.length);
+                for (Object value : row) values.add(value);
+                dataVector.add(values);
+            }
+            fireTableRowsInserted(first, dataVector.size() - 1);
+        }
+
+        /** Sets one column on every row with a single change event for that column. */
+        @SuppressWarnings("unchecked")
+        void updateColumn(int column, IntFunction<Object> valueForRow) {
+            if (dataVector.isEmpty()) return;
+            for (int row = 0; row < dataVector.size(); row++) {
+                ((Vector<Object>) dataVector.get(row)).set(column, valueForRow.apply(row));
+            }
+            fireTableChanged(new TableModelEvent(this, 0, dataVector.size() - 1, column));
+        }
+    }
+
+    /** Renders the raw values: money and numbers right-aligned, dates and decimals from a text cache. */
+    static class CellRenderer extends DefaultTableCellRenderer {
+        private static final int CACHE_LIMIT = 4096;
+        private final Map<Object, String> texts = new HashMap<>();
+        private final String decimalFormat;
+
+        CellRenderer() {
+            this(1);
+        }
+
+        /** A renderer that shows decimals with the given number of fraction digits. */
+        CellRenderer(int fractionDigits) {
+            this.decimalFormat = "%." + fractionDigits + "f";
+        }
+
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                       boolean hasFocus, int row, int column) {
+            super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+            setHorizontalAlignment(value instanceof Number || value instanceof Money ? RIGHT : LEFT);
+            return this;
+        }
+
+        @Override
+        protected void setValue(Object value) {
+            setText(switch (value) {
+                case null -> "";
+                case Money money -> money.toString();  // Money caches its own text
+                case String text -> text;
+                case LocalDate _, Double _ -> cachedText(value);
+                default -> value.toString();
+            });
+        }
+
+        // Dates and averages repeat heavily across rows; the cache is dropped once it grows too big
+        private String cachedText(Object value) {
+            String text = texts.get(value);
+            if (text == null) {
+                if (texts.size() >= CACHE_LIMIT) texts.clear();
+                text = value instanceof Double d ? String.format(decimalFormat, d) : value.toString();
+                texts.put(value, text);
+            }
+            return text;
+        }
+    }
+
+    FastTable(TableModel model) {
+        super(model);
+        setRowSorter(new KeyedRowSorter(model));
+        setDefaultRenderer(Object.class, new CellRenderer());
+        setRowHeight(getFontMetrics(getFont()).getHeight() + 4);
+    }
+
+    /** The model row of the lead selection, or -1 when nothing is selected. */
+    int selectedModelRow() {
+        int row = getSelectedRow();
+        return row == -1 ? -1 : convertRowIndexToModel(row);
+    }
+
+    /** The model rows of the selection, in view order. */
+    int[] selectedModelRows() {
+        int[] rows = getSelectedRows();
+        for (int i = 0; i < rows.length; i++) rows[i] = convertRowIndexToModel(rows[i]);
+        return rows;
+    }
+}
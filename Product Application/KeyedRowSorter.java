@@ -0,0 +1,219 @@
+import db.Money;
+
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+import javax.swing.table.TableModel;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Click-to-sort for large tables. Instead of comparing cell objects on every comparison, as
+ * TableRowSorter does, each sorted column is turned once into a {@code long} key per row:
+ * numbers and money by value, dates by epoch day, text by its rank among the column's distinct
+ * values. Sorting is then a stable merge sort of row indexes over those keys, and the keys stay
+ * cached until the column's data changes, so re-sorting or reversing a 100k-row table takes a
+ * few milliseconds. Sorts by one column at a time: ascending, descending, then back to model order.
+ */
+final class KeyedRowSorter extends RowSorter<TableModel> {
+    private static final long NULL_KEY = Long.MIN_VALUE; // Empty cells sort first ascending
+
+    private final TableModel model;
+    private List<SortKey> sortKeys = List.of();
+    private long[][] keys;        // Per model column, null until that column is sorted on
+    private int[] viewToModel;    // Null when unsorted
+    private int[] modelToView;
+
+    KeyedRowSorter(TableModel model) {
+        this.model = model;
+        this.keys = new long[model.getColumnCount()][];
+    }
+
+    @Override
+    public TableModel getModel() {
+        return model;
+    }
+
+    @Override
+    public void toggleSortOrder(int column) {
+        SortOrder next = SortOrder.ASCENDING;
+        if (!sortKeys.isEmpty() && sortKeys.get(0).getColumn() == column) {
+            next = switch (sortKeys.get(0).getSortOrder()) {
+                case ASCENDING -> SortOrder.DESCENDING;
+                case DESCENDING -> SortOrder.UNSORTED;
+                case UNSORTED -> SortOrder.ASCENDING;
+            };
+        }
+        setSortKeys(next == SortOrder.UNSORTED ? List.of() : List.of(new SortKey(column, next)));
+    }
+
+    @Override
+    public void setSortKeys(List<? extends SortKey> keys) {
+        List<SortKey> next = keys == null || keys.isEmpty() ? List.of() : List.of(keys.get(0));
+        if (next.equals(sortKeys)) return;
+        sortKeys = next;
+        fireSortOrderChanged();
+        sort();
+    }
+
+    @Override
+    public List<? extends SortKey> getSortKeys() {
+        return sortKeys;
+    }
+
+    @Override
+    public int convertRowIndexToModel(int index) {
+        if (viewToModel == null) {
+            if (index < 0 || index >= model.getRowCount()) throw new IndexOutOfBoundsException("Invalid view row " + index);
+            return index;
+        }
+        return viewToModel[index];
+    }
+
+    @Override
+    public int convertRowIndexToView(int index) {
+        if (modelToView == null) {
+            if (index < 0 || index >= model.getRowCount()) throw new IndexOutOfBoundsException("Invalid model row " + index);
+            return index;
+        }
+        return modelToView[index];
+    }
+
+    @Override
+    public int getViewRowCount() {
+        return model.getRowCount();
+    }
+
+    @Override
+    public int getModelRowCount() {
+        return model.getRowCount();
+    }
+
+    @Override
+    public void modelStructureChanged() {
+        keys = new long[model.getColumnCount()][];
+        sortKeys = List.of();
+        fireSortOrderChanged();
+        sort();
+    }
+
+    @Override
+    public void allRowsChanged() {
+        Arrays.fill(keys, null);
+        sort();
+    }
+
+    @Override
+    public void rowsInserted(int firstRow, int endRow) {
+        allRowsChanged();
+    }
+
+    @Override
+    public void rowsDeleted(int firstRow, int endRow) {
+        allRowsChanged();
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow) {
+        allRowsChanged();
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow, int column) {
+        if (column < 0 || column >= keys.length) {
+            allRowsChanged();
+            return;
+        }
+        keys[column] = null;
+        // Only the sorted column's order can change; the mapping stays valid for any other
+        if (!sortKeys.isEmpty() && sortKeys.get(0).getColumn() == column) sort();
+    }
+
+    private void sort() {
+        int[] previous = viewToModel;
+        if (sortKeys.isEmpty()) {
+            viewToModel = null;
+            modelToView = null;
+        } else {
+            SortKey key = sortKeys.get(0);
+            long[] columnKeys = keys[key.getColumn()];
+            if (columnKeys == null) columnKeys = keys[key.getColumn()] = keysOf(key.getColumn());
+            viewToModel = mergeSort(columnKeys, key.getSortOrder() == SortOrder.DESCENDING);
+            modelToView = new int[viewToModel.length];
+            for (int view = 0; view < viewToModel.length; view++) modelToView[viewToModel[view]] = view;
+        }
+        fireRowSorterChanged(previous);
+    }
+
+    // One key per row: numeric cells by value, or, if any cell is text, every cell by its text's rank
+    private long[] keysOf(int column) {
+        int rows = model.getRowCount();
+        long[] result = new long[rows];
+        boolean numeric = true;
+        for (int row = 0; row < rows && numeric; row++) {
+            Object value = model.getValueAt(row, column);
+            if (value == null) {
+                result[row] = NULL_KEY;
+            } else if (value instanceof Money money) {
+                result[row] = money.cents();
+            } else if (value instanceof LocalDate date) {
+                result[row] = date.toEpochDay();
+            } else if (value instanceof Double || value instanceof Float) {
+                long bits = Double.doubleToLongBits(((Number) value).doubleValue());
+                result[row] = bits ^ ((bits >> 63) & Long.MAX_VALUE); // Same order as the doubles
+            } else if (value instanceof Number number) {
+                result[row] = number.longValue();
+            } else if (value instanceof Boolean flag) {
+                result[row] = flag ? 1 : 0;
+            } else {
+                numeric = false;
+            }
+        }
+        return numeric ? result : textKeys(column, result);
+    }
+
+    // Ranks the distinct texts once, case-insensitively, so rows compare by a number afterwards
+    private long[] textKeys(int column, long[] result) {
+        int rows = result.length;
+        String[] texts = new String[rows];
+        Map<String, Integer> distinct = new HashMap<>();
+        for (int row = 0; row < rows; row++) {
+            Object value = model.getValueAt(row, column);
+            texts[row] = value == null ? null : value.toString();
+            if (texts[row] != null) distinct.putIfAbsent(texts[row], 0);
+        }
+        String[] sorted = distinct.keySet().toArray(new String[0]);
+        Arrays.sort(sorted, String.CASE_INSENSITIVE_ORDER.thenComparing(s -> s));
+        for (int rank = 0; rank < sorted.length; rank++) distinct.put(sorted[rank], rank);
+        for (int row = 0; row < rows; row++) {
+            result[row] = texts[row] == null ? NULL_KEY : distinct.get(texts[row]);
+        }
+        return result;
+    }
+
+    // Stable bottom-up merge sort of row indexes by key; ties keep model order in both directions
+    private static int[] mergeSort(long[] keys, boolean descending) {
+        int n = keys.length;
+        int[] rows = new int[n];
+        for (int i = 0; i < n; i++) rows[i] = i;
+        int[] buffer = new int[n];
+        for (int width = 1; width < n; width *= 2) {
+            for (int lo = 0; lo < n - width; lo += 2 * width) {
+                int mid = lo + width;
+                int hi = Math.min(lo + 2 * width, n);
+                int i = lo, j = mid, k = lo;
+                while (i < mid && j < hi) {
+                    long a = keys[rows[i]], b = keys[rows[j]];
+                    boolean takeRight = descending ? b > a : b < a;
+                    buffer[k++] = takeRight ? rows[j++] : rows[i++];
+                }
+                while (i < mid) buffer[k++] = rows[i++];
+                while (j < hi) buffer[k++] = rows[j++];
+                System.arraycopy(buffer, lo, rows, lo, hi - lo);
+            }
+        }
+        return rows;
+    }
+}
@@ -1,18 +1,40 @@
+import db.DbExecutor;
+import db.Metrics;
+import db.Money;
+import db.ProductDemand;
+import db.SellerManager;
+
 import javax.swing.*;
 import java.awt.*;
+import java.lang.management.ManagementFactory;
 import java.sql.*;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 public class MainAppWindow extends JFrame {
     private JPanel cashPanel;  // Panel to hold cash-related labels for better layout
     private JPanel buttonPanel;  // Panel for buttons
     private JButton btnResetCash;
 
-    // Maps to hold one JLabel per seller
+    // Rows and maps holding one JLabel per seller
+    private JPanel cashRow;
+    private JPanel paidRow;
     private final Map<String, JLabel> cashOnHandLabels = new LinkedHashMap<>();
     private final Map<String, JLabel> totalPaidLabels = new LinkedHashMap<>();
     private JLabel overallTotalPaidLabel;
+    private JLabel lowStockLabel;
+
+    // Dialogs are built on first use and then reused; each reloads itself only if data changed
+    private ProductWindow productWindow;
+    private ClientWindow clientWindow;
+    private ShipmentWindow shipmentWindow;
+    private SalesWindow salesWindow;
+
+    // Completes when the first dashboard load has been applied to the labels
+    final CompletableFuture<Void> initialLoad;
 
     public MainAppWindow() {
         setTitle("Inventory Manager");
@@ -29,27 +51,15 @@ public class MainAppWindow extends JFrame {
         JPanel labelsContainer = new JPanel();
         labelsContainer.setLayout(new BoxLayout(labelsContainer, BoxLayout.Y_AXIS));
 
-        // Fetch all sellers dynamically from the database
-        java.util.List<String> sellers = getAllSellers();
-
-        // 1) Cash on Hand row
-        JPanel cashRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        // 1) Cash on Hand row; per-seller labels are filled in once sellers are loaded
+        cashRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
         cashRow.add(new JLabel("Cash on Hand:"));
-        for (String seller : sellers) {
-            JLabel lbl = new JLabel(seller + ": $0");
-            cashOnHandLabels.put(seller, lbl);
-            cashRow.add(lbl);
-        }
+        cashRow.add(new JLabel("Loading..."));
         labelsContainer.add(cashRow);
 
         // 2) Total Cash Paid row (per-seller + overall)
-        JPanel paidRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        paidRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
         paidRow.add(new JLabel("Total Cash Paid:"));
-        for (String seller : sellers) {
-            JLabel lbl = new JLabel(seller + ": $0");
-            totalPaidLabels.put(seller, lbl);
-            paidRow.add(lbl);
-        }
         labelsContainer.add(paidRow);
 
         // 3) Overall Total Paid row
@@ -59,6 +69,15 @@ public class MainAppWindow extends JFrame {
         overallRow.add(overallTotalPaidLabel);
         labelsContainer.add(overallRow);
 
+        // 4) Products at or below their reorder point, as of the forecasting job's last run
+        JPanel lowStockRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        lowStockLabel = new JLabel();
+        lowStockLabel.setForeground(new Color(170, 0, 0));
+        lowStockRow.add(lowStockLabel);
+        labelsContainer.add(lowStockRow);
+        applyLowStock(ProductDemand.latest());
+        ProductDemand.addListener(snapshot -> SwingUtilities.invokeLater(() -> applyLowStock(snapshot)));
+
         // Add labels container to the left of the cash panel
         cashPanel.add(labelsContainer, BorderLayout.CENTER);
 
@@ -70,20 +89,32 @@ public class MainAppWindow extends JFrame {
         cashPanel.add(btnResetCash, BorderLayout.EAST);
 
         // 4) Panel for buttons
-        buttonPanel = new JPanel(new GridLayout(5, 1, 10, 10)); // Buttons in a column
+        buttonPanel = new JPanel(new GridLayout(6, 1, 10, 10)); // Buttons in a column
         JButton btnProducts = new JButton("Manage Products");
         JButton btnClients = new JButton("Manage Clients");
         JButton btnShipments = new JButton("Manage Shipments");
         JButton btnSales = new JButton("Manage Sales");
+        JButton btnDiagnostics = new JButton("Diagnostics");
         JButton btnExit = new JButton("Exit");
 
-        btnProducts.addActionListener(_ -> new ProductWindow(this));
-        btnClients.addActionListener(_ -> new ClientWindow(this));
-        btnShipments.addActionListener(_ -> new ShipmentWindow(this));
+        btnProducts.addActionListener(_ -> {
+            if (productWindow == null) productWindow = new ProductWindow(this);
+            productWindow.open();
+        });
+        btnClients.addActionListener(_ -> {
+            if (clientWindow == null) clientWindow = new ClientWindow(this);
+            clientWindow.open();
+        });
+        btnShipments.addActionListener(_ -> {
+            if (shipmentWindow == null) shipmentWindow = new ShipmentWindow(this);
+            shipmentWindow.open();
+        });
         btnSales.addActionListener(_ -> {
-            new SalesWindow(this);
+            if (salesWindow == null) salesWindow = new SalesWindow(this);
+            salesWindow.open();
             updateCashLabels(); // Update cash labels after managing sales
         });
+        btnDiagnostics.addActionListener(_ -> new DiagnosticsWindow(this));
         btnExit.addActionListener(_ -> System.exit(0));
 
         // Add buttons to the button panel
@@ -91,96 +122,90 @@ public class MainAppWindow extends JFrame {
         buttonPanel.add(btnClients);
         buttonPanel.add(btnShipments);
         buttonPanel.add(btnSales);
+        buttonPanel.add(btnDiagnostics);
         buttonPanel.add(btnExit);
 
         // Add panels to the main window
         add(cashPanel, BorderLayout.NORTH);  // Cash info at the top
         add(buttonPanel, BorderLayout.CENTER);  // Buttons in the center, stretched to window width
 
+        // Show the frame right away; seller data arrives asynchronously
         setVisible(true);
+        Metrics.record("MainAppWindow.startup", Metrics.Kind.STARTUP, "frame visible", sinceJvmStart(), 0);
 
-        // Update cash labels on startup
-        updateCashLabels();
+        initialLoad = refreshCashLabels().thenRun(() -> Metrics.record(
+                "MainAppWindow.startup", Metrics.Kind.STARTUP, "dashboard loaded", sinceJvmStart(), 0));
     }
 
     /** Refreshes every seller’s cash labels and the overall total. */
     public void updateCashLabels() {
-        try (Connection conn = db.DatabaseManager.connect()) {
-            double overall = 0;
-            for (var entry : cashOnHandLabels.entrySet()) {
-                String seller = entry.getKey();
-                double cash = getSellerCash(seller);
-                entry.getValue().setText(seller + ": $" + cash);
-            }
-            for (var entry : totalPaidLabels.entrySet()) {
-                String seller = entry.getKey();
-                double paid = getTotalCashPaid(seller);
-                entry.getValue().setText(seller + ": $" + paid);
-                overall += paid;
-            }
-            overallTotalPaidLabel.setText("$" + overall);
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        refreshCashLabels();
     }
 
-    // Get all sellers dynamically from the database
-    private java.util.List<String> getAllSellers() {
-        java.util.List<String> sellers = new java.util.ArrayList<>();
-        try (Connection conn = db.DatabaseManager.connect()) {
-            String sql = "SELECT Name FROM Seller";  // Query to fetch all seller names
-            Statement stmt = conn.createStatement();
-            ResultSet rs = stmt.executeQuery(sql);
-            while (rs.next()) {
-                String sellerName = rs.getString("Name");
-                sellers.add(sellerName);  // Add each seller's name to the list
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
+    // Loads the cash summary on a virtual thread and rebuilds the per-seller labels on the EDT
+    CompletableFuture<Void> refreshCashLabels() {
+        return UiTasks.onEdt(DbExecutor.read("MainAppWindow.updateCashLabels", SellerManager::loadCashSummary),
+                this::applyCashSummary);
+    }
+
+    private void applyCashSummary(List<SellerManager.SellerCash> sellers) {
+        resetSellerRow(cashRow, cashOnHandLabels);
+        resetSellerRow(paidRow, totalPaidLabels);
+
+        long overall = 0;
+        for (SellerManager.SellerCash seller : sellers) {
+            JLabel cashLbl = new JLabel(seller.name() + ": $" + Money.format(seller.cashOnHand()));
+            cashOnHandLabels.put(seller.name(), cashLbl);
+            cashRow.add(cashLbl);
+
+            JLabel paidLbl = new JLabel(seller.name() + ": $" + Money.format(seller.totalPaid()));
+            totalPaidLabels.put(seller.name(), paidLbl);
+            paidRow.add(paidLbl);
+            overall += seller.totalPaid();
         }
-        return sellers;
+        overallTotalPaidLabel.setText("$" + Money.format(overall));
+        cashPanel.revalidate();
+        cashPanel.repaint();
     }
 
-    // Get the cash on hand for a specific seller
-    private double getSellerCash(String sellerName) {
-        double cash = 0;
-        try (Connection conn = db.DatabaseManager.connect()) {
-            String sql = "SELECT CashOnHand FROM Seller WHERE Name = ?";
-            PreparedStatement stmt = conn.prepareStatement(sql);
-            stmt.setString(1, sellerName);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                cash = rs.getDouble("CashOnHand");
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
+    // Names the first few low-stock products, least days of cover first
+    private void applyLowStock(ProductDemand.Snapshot snapshot) {
+        List<ProductDemand.Forecast> low = snapshot.lowStock();
+        if (low.isEmpty()) {
+            lowStockLabel.setText("");
+            return;
+        }
+        StringBuilder text = new StringBuilder("Reorder soon (" + low.size() + "): ");
+        for (int i = 0; i < Math.min(3, low.size()); i++) {
+            if (i > 0) text.append(", ");
+            text.append(low.get(i).productName()).append(" (").append(low.get(i).amountLeft()).append(" left)");
         }
-        return cash;
+        if (low.size() > 3) text.append(", ...");
+        lowStockLabel.setText(text.toString());
     }
 
-    // Get total cash paid for a specific seller
-    private double getTotalCashPaid(String seller) {
-        double cash = 0;
-        try (Connection conn = db.DatabaseManager.connect()) {
-            String sql = """
-                SELECT SUM(Sale.TotalRevenue)
-                FROM Sale
-                JOIN Seller ON Sale.Seller_ID = Seller.Seller_ID
-                WHERE Seller.Name = ? AND (Sale.PaymentStatus = 'Paid' OR Sale.PaymentStatus = 'Unpaid')
-            """;
-            PreparedStatement stmt = conn.prepareStatement(sql);
-            stmt.setString(1, seller);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                cash = rs.getDouble(1);
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
+    // Drops every label after the row's caption
+    private static void resetSellerRow(JPanel row, Map<String, JLabel> labels) {
+        while (row.getComponentCount() > 1) {
+            row.remove(row.getComponentCount() - 1);
         }
-        return cash;
+        labels.clear();
+    }
+
+    private static long sinceJvmStart() {
+        long startMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+        return TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - startMillis);
     }
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+        if (java.util.Arrays.asList(args).contains("--server")) {
+            server.ApiServer.main(args); // Headless HTTP/JSON API instead of the windows
+            return;
+        }
+        db.DatabaseManager.warmUp(); // Driver and connection warm up while Swing initializes
+        db.StockLedger.compactInBackground(); // Month-end stock snapshots so history queries replay a short tail
+        db.ReportingReplica.startSchedule(db.ReportingReplica.DEFAULT_INTERVAL); // Reports read a copy, not app.db
+        db.ProductDemand.startSchedule(db.ProductDemand.DEFAULT_INTERVAL); // Reorder points and low-stock alerts
         SwingUtilities.invokeLater(MainAppWindow::new);
     }
 
@@ -193,27 +218,18 @@ public class MainAppWindow extends JFrame {
         );
         if (choice != JOptionPane.YES_OPTION) return;
 
-        try (Connection conn = db.DatabaseManager.connect();
-             Statement stmt = conn.createStatement()) {
-
-            conn.setAutoCommit(false);
-
-            // reset cash on hand
-            stmt.executeUpdate("UPDATE Seller SET CashOnHand = 0");
-
-            // reset total cash paid
-            stmt.executeUpdate("UPDATE Sale SET TotalRevenue = 0");
-
-            conn.commit();
-
+        // Queued on the writer thread; the labels refresh once it has committed
+        UiTasks.onEdt(DbExecutor.write(conn -> {
+            SellerManager.resetCash(conn);
+            return null;
+        }), _ -> {
             // refresh labels
             updateCashLabels();
 
             JOptionPane.showMessageDialog(this, "Cash counters reset successfully.");
-
-        } catch (SQLException e) {
-            e.printStackTrace();
+        }, error -> {
+            error.printStackTrace();
             JOptionPane.showMessageDialog(this, "Error resetting cash counters.");
-        }
+        });
     }
 }
@@ -0,0 +1,88 @@
+import db.DbExecutor;
+
+import javax.swing.*;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Fills a {@link FastTable} one page at a time. {@link #reload} shows the first page of a new
+ * query as soon as it arrives; the next page is read only when the user scrolls near the end
+ * of what is loaded, and is appended. A reload cancels any page still being read for the old
+ * query, so rows of two different filters never mix.
+ */
+final class PagedRows<T> {
+
+    /** Reads the page after {@code after}, the last row loaded so far (null for the first page). */
+    @FunctionalInterface
+    interface PageQuery<T> {
+        List<T> page(Connection conn, T after, int limit) throws SQLException;
+    }
+
+    private final DbExecutor.Scope tasks;
+    private final String operation;
+    private final int pageSize;
+    private final FastTable.Model model;
+    private final Function<T, Object[]> toRow;
+    private PageQuery<T> query;
+    private T last;
+    private boolean hasMore;
+    private boolean loading;
+
+    PagedRows(DbExecutor.Scope tasks, String operation, int pageSize, FastTable.Model model,
+              JScrollPane scrollPane, Function<T, Object[]> toRow) {
+        this.tasks = tasks;
+        this.operation = operation;
+        this.pageSize = pageSize;
+        this.model = model;
+        this.toRow = toRow;
+        // Ask for the next page while a screenful of loaded rows is still below the visible ones
+        scrollPane.getVerticalScrollBar().addAdjustmentListener(_ -> {
+            BoundedRangeModel bar = scrollPane.getVerticalScrollBar().getModel();
+            if (bar.getValue() + 2 * bar.getExtent() >= bar.getMaximum()) loadMore();
+        });
+    }
+
+    /** Replaces the rows with the first page of {@code query}; {@code onFirstPage} runs after it is shown. */
+    void reload(PageQuery<T> query, Consumer<List<T>> onFirstPage) {
+        this.query = query;
+        tasks.cancel(operation + ".more");
+        last = null;
+        hasMore = false;
+        loading = false;
+        UiTasks.onEdt(tasks.read(operation, conn -> query.page(conn, null, pageSize)), page -> {
+            if (this.query != query) return;
+            model.setRows(rows(page));
+            advance(page);
+            onFirstPage.accept(page);
+        });
+    }
+
+    private void loadMore() {
+        if (!hasMore || loading) return;
+        PageQuery<T> current = query;
+        T after = last;
+        loading = true;
+        UiTasks.onEdt(tasks.read(operation + ".more", conn -> current.page(conn, after, pageSize)), page -> {
+            if (query != current) return;
+            model.addRows(rows(page));
+            advance(page);
+        }).whenComplete((_, _) -> {
+            if (query == current) loading = false;
+        });
+    }
+
+    private void advance(List<T> page) {
+        if (!page.isEmpty()) last = page.get(page.size() - 1);
+        hasMore = page.size() == pageSize;
+    }
+
+    private List<Object[]> rows(List<T> page) {
+        List<Object[]> rows = new ArrayList<>(page.size());
+        for (T item : page) rows.add(toRow.apply(item));
+        return rows;
+    }
+}
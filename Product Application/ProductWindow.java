@@ -1,65 +1,169 @@
+import db.Dates;
+import db.DbExecutor;
+import db.Money;
+import db.ProductDemand;
+import db.ProductManager;
+import db.StockLedger;
+
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
 
 public class ProductWindow extends JDialog {
+    private static final Color LOW_STOCK = new Color(255, 215, 215);
+    private static final int PAGE_SIZE = 200;
 
-    private JTable table;
-    private DefaultTableModel model;
+    private FastTable table;
+    private FastTable.Model model;
+    private PagedRows<ProductManager.ProductRow> pages;
+    private long loadedVersion = -1;
+    private final DbExecutor.Scope tasks = UiTasks.scopeFor(this);
+    private final JTextField nameField = new JTextField(12);
+    private final JTextField minStockField = new JTextField(4);
+    private final JTextField maxStockField = new JTextField(4);
+    private final JTextField minPriceField = new JTextField(5);
+    private final JTextField maxPriceField = new JTextField(5);
 
     public ProductWindow(JFrame parent) {
         super(parent, "Manage Products", true);
-        setSize(800, 400);
+        setSize(900, 450);
         setLocationRelativeTo(parent);
 
-        model = new DefaultTableModel(new String[]{
-                "ID", "Name", "Amount Left", "Price", "Rate"
-        }, 0);
-        table = new JTable(model);
-        table.setDefaultEditor(Object.class, null);  // Disable inline editing for all columns
+        model = new FastTable.Model("ID", "Name", "Amount Left", "Price", "Rate", "Reorder Point");
+        table = new FastTable(model);
+        table.setDefaultRenderer(Object.class, new LowStockRenderer());
+        // Reorder points come from the forecasting job's snapshot, never from a query of this window
+        ProductDemand.addListener(snapshot -> SwingUtilities.invokeLater(() -> applyReorderPoints(snapshot)));
 
         // Hide the "ID" column
         table.getColumnModel().removeColumn(table.getColumnModel().getColumn(0));
 
+        JScrollPane scrollPane = new JScrollPane(table);
+        pages = new PagedRows<>(tasks, "ProductWindow.loadProducts", PAGE_SIZE, model, scrollPane, this::toRow);
         loadProducts();
 
         JButton btnAdd = new JButton("Add Product");
         JButton btnEdit = new JButton("Edit Selected");
         JButton btnDelete = new JButton("Delete Selected");
+        JButton btnStockOnDate = new JButton("Stock on Date");
+        JButton btnBulkEdit = new JButton("Bulk Edit Prices");
 
         btnAdd.addActionListener(_ -> addProduct());
         btnEdit.addActionListener(_ -> editSelectedProduct());
         btnDelete.addActionListener(_ -> deleteSelectedProduct());
+        btnStockOnDate.addActionListener(_ -> showStockOnDate());
+        // Reprices whatever the filters currently select
+        btnBulkEdit.addActionListener(_ -> {
+            if (new BulkPriceEditor(this, currentFilter()).edit()) loadProducts();
+        });
 
         JPanel btnPanel = new JPanel();
         btnPanel.add(btnAdd);
         btnPanel.add(btnEdit);
         btnPanel.add(btnDelete);
+        btnPanel.add(btnStockOnDate);
+        btnPanel.add(btnBulkEdit);
+
+        // Each filter narrows the query itself; the list reloads once typing pauses
+        JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        filterPanel.add(new JLabel("Name starts with:"));
+        filterPanel.add(nameField);
+        filterPanel.add(new JLabel("Stock from:"));
+        filterPanel.add(minStockField);
+        filterPanel.add(new JLabel("to:"));
+        filterPanel.add(maxStockField);
+        filterPanel.add(new JLabel("Price from:"));
+        filterPanel.add(minPriceField);
+        filterPanel.add(new JLabel("to:"));
+        filterPanel.add(maxPriceField);
+        for (JTextField field : new JTextField[]{nameField, minStockField, maxStockField, minPriceField, maxPriceField}) {
+            UiTasks.onTextChange(field, 150, this::loadProducts);
+        }
 
-        add(new JScrollPane(table), BorderLayout.CENTER);
+        add(filterPanel, BorderLayout.NORTH);
+        add(scrollPane, BorderLayout.CENTER);
         add(btnPanel, BorderLayout.SOUTH);
+    }
 
+    /** Shows the dialog, reloading its data first only if something was committed since the last load. */
+    public void open() {
+        if (db.DatabaseManager.dataVersion() != loadedVersion) {
+            loadProducts();
+        }
         setVisible(true);
     }
 
+    // Reads the first page of matching products on a virtual thread; later pages load as the
+    // table is scrolled towards its end. Bounds that are blank or not numbers are ignored
     private void loadProducts() {
-        model.setRowCount(0);
-        try (Connection conn = db.DatabaseManager.connect();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT Product_ID, Name, AmountLeft, Price, Rate FROM Product")) {
-
-            while (rs.next()) {
-                model.addRow(new Object[]{
-                        rs.getInt("Product_ID"),
-                        rs.getString("Name"),
-                        rs.getInt("AmountLeft"),
-                        rs.getDouble("Price"),
-                        rs.getDouble("Rate")
-                });
+        loadedVersion = db.DatabaseManager.dataVersion();
+        ProductManager.ProductFilter filter = currentFilter();
+        pages.reload((conn, after, limit) -> ProductManager.findProducts(conn, filter, after, limit), _ -> {});
+    }
+
+    private ProductManager.ProductFilter currentFilter() {
+        return new ProductManager.ProductFilter(nameField.getText(),
+                intOrNull(minStockField), intOrNull(maxStockField), centsOrNull(minPriceField), centsOrNull(maxPriceField));
+    }
+
+    private Object[] toRow(ProductManager.ProductRow product) {
+        ProductDemand.Forecast forecast = ProductDemand.latest().byProduct().get(product.productId());
+        return new Object[]{
+                product.productId(),
+                product.name(),
+                product.amountLeft(),
+                Money.ofCents(product.price()),
+                Money.ofCents(product.rate()),
+                forecast == null || forecast.reorderPoint() == 0 ? null : forecast.reorderPoint()
+        };
+    }
+
+    private static Integer intOrNull(JTextField field) {
+        try {
+            return field.getText().isBlank() ? null : Integer.valueOf(field.getText().strip());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Long centsOrNull(JTextField field) {
+        try {
+            return field.getText().isBlank() ? null : Money.parseCents(field.getText());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // Fills the column in one change event, and only if some value differs, so a sort stays put
+    private void applyReorderPoints(ProductDemand.Snapshot snapshot) {
+        Integer[] reorderPoints = new Integer[model.getRowCount()];
+        boolean changed = false;
+        for (int row = 0; row < reorderPoints.length; row++) {
+            ProductDemand.Forecast forecast = snapshot.byProduct().get((Integer) model.getValueAt(row, 0));
+            reorderPoints[row] = forecast == null || forecast.reorderPoint() == 0 ? null : forecast.reorderPoint();
+            changed |= !Objects.equals(model.getValueAt(row, 5), reorderPoints[row]);
+        }
+        if (changed) model.updateColumn(5, row -> reorderPoints[row]);
+    }
+
+    // Tints products whose stock, as loaded, is at or below their reorder point
+    private final class LowStockRenderer extends FastTable.CellRenderer {
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                       boolean hasFocus, int row, int column) {
+            super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+            if (!isSelected) {
+                int modelRow = table.convertRowIndexToModel(row);
+                Object reorderPoint = model.getValueAt(modelRow, 5);
+                boolean low = reorderPoint != null && (int) model.getValueAt(modelRow, 2) <= (int) reorderPoint;
+                setBackground(low ? LOW_STOCK : table.getBackground());
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
+            return this;
         }
     }
 
@@ -79,28 +183,25 @@ public class ProductWindow extends JDialog {
         int result = JOptionPane.showConfirmDialog(this, panel, "Add Product", JOptionPane.OK_CANCEL_OPTION);
         if (result == JOptionPane.OK_OPTION) {
             String name = nameField.getText().trim();
-
-            try (Connection conn = db.DatabaseManager.connect()) {
-                conn.setAutoCommit(false);
-
-                PreparedStatement stmt = conn.prepareStatement(
-                        "INSERT INTO Product(Name, AmountLeft, Price, Rate) VALUES (?, 0, ?, ?)");
-                stmt.setString(1, name);
-                stmt.setDouble(2, Double.parseDouble(priceField.getText()));
-                stmt.setDouble(3, Double.parseDouble(rateField.getText()));
-                stmt.executeUpdate();
-
-                conn.commit();
-                loadProducts();
-            } catch (SQLException | NumberFormatException e) {
-                e.printStackTrace();
+            long price, rate;
+            try {
+                price = Money.parseCents(priceField.getText());
+                rate = Money.parseCents(rateField.getText());
+            } catch (NumberFormatException e) {
                 JOptionPane.showMessageDialog(this, "Invalid input or database error.");
+                return;
             }
+
+            UiTasks.onEdt(DbExecutor.write(conn -> db.ProductManager.addProduct(conn, name, price, rate)),
+                    _ -> loadProducts(), error -> {
+                        error.printStackTrace();
+                        JOptionPane.showMessageDialog(this, "Invalid input or database error.");
+                    });
         }
     }
 
     private void editSelectedProduct() {
-        int selected = table.getSelectedRow();
+        int selected = table.selectedModelRow();
         if (selected == -1) {
             JOptionPane.showMessageDialog(this, "Please select a product to edit.");
             return;
@@ -109,8 +210,8 @@ public class ProductWindow extends JDialog {
         int productId = (int) model.getValueAt(selected, 0);
         String currentName = model.getValueAt(selected, 1).toString();
         int currentAmount = (int) model.getValueAt(selected, 2);
-        double currentPrice = (double) model.getValueAt(selected, 3);
-        double currentRate = (double) model.getValueAt(selected, 4);
+        Money currentPrice = (Money) model.getValueAt(selected, 3);
+        Money currentRate = (Money) model.getValueAt(selected, 4);
 
         JTextField nameField = new JTextField(currentName);
         JTextField amountField = new JTextField(String.valueOf(currentAmount));
@@ -130,24 +231,46 @@ public class ProductWindow extends JDialog {
 
         int result = JOptionPane.showConfirmDialog(this, panel, "Edit Product", JOptionPane.OK_CANCEL_OPTION);
         if (result == JOptionPane.OK_OPTION) {
-            try (Connection conn = db.DatabaseManager.connect()) {
-                conn.setAutoCommit(false);
-
-                PreparedStatement stmt = conn.prepareStatement(
-                        "UPDATE Product SET Name = ?, AmountLeft = ?, Price = ?, Rate = ? WHERE Product_ID = ?");
-                stmt.setString(1, nameField.getText().trim());
-                stmt.setInt(2, Integer.parseInt(amountField.getText()));
-                stmt.setDouble(3, Double.parseDouble(priceField.getText()));
-                stmt.setDouble(4, Double.parseDouble(rateField.getText()));
-                stmt.setInt(5, productId);
-                stmt.executeUpdate();
-
-                conn.commit();
-                loadProducts();
-            } catch (SQLException | NumberFormatException e) {
-                e.printStackTrace();
+            String newName = nameField.getText().trim();
+            int newAmount;
+            long newPrice, newRate;
+            try {
+                newAmount = Integer.parseInt(amountField.getText().trim());
+                newPrice = Money.parseCents(priceField.getText());
+                newRate = Money.parseCents(rateField.getText());
+            } catch (NumberFormatException e) {
                 JOptionPane.showMessageDialog(this, "Failed to update product.");
+                return;
             }
+
+            UiTasks.onEdt(DbExecutor.write(conn -> {
+                // Read the stored level in this transaction so the ledger records the exact correction
+                int oldAmount = 0;
+                try (PreparedStatement current = conn.prepareStatement(
+                        "SELECT AmountLeft FROM Product WHERE Product_ID = ?")) {
+                    current.setInt(1, productId);
+                    try (ResultSet rs = current.executeQuery()) {
+                        if (rs.next()) oldAmount = rs.getInt("AmountLeft");
+                    }
+                }
+
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "UPDATE Product SET Name = ?, AmountLeft = ?, Price = ?, Rate = ? WHERE Product_ID = ?")) {
+                    stmt.setString(1, newName);
+                    stmt.setInt(2, newAmount);
+                    stmt.setLong(3, newPrice);
+                    stmt.setLong(4, newRate);
+                    stmt.setInt(5, productId);
+                    stmt.executeUpdate();
+                }
+
+                StockLedger.record(conn, new StockLedger.Movement(productId, LocalDate.now(),
+                        newAmount - oldAmount, StockLedger.Reason.ADJUSTMENT, null));
+                return null;
+            }), _ -> loadProducts(), error -> {
+                error.printStackTrace();
+                JOptionPane.showMessageDialog(this, "Failed to update product.");
+            });
         }
     }
 
@@ -162,25 +285,56 @@ public class ProductWindow extends JDialog {
                 "Are you sure you want to delete the selected product(s)?", "Confirm", JOptionPane.YES_NO_OPTION);
         if (confirm != JOptionPane.YES_OPTION) return;
 
-        try (Connection conn = db.DatabaseManager.connect()) {
-            conn.setAutoCommit(false);
-            PreparedStatement stmt = conn.prepareStatement("DELETE FROM Product WHERE Product_ID = ?");
-
-            // Map from view index to model index since the ID column is hidden
-            for (int viewRow : selectedRows) {
-                int modelRow = table.convertRowIndexToModel(viewRow);
-                int productId = (int) model.getValueAt(modelRow, 0);  // Column 0 in model is the hidden ID
-                stmt.setInt(1, productId);
-                stmt.addBatch();
-            }
+        // Map from view index to model index since the ID column is hidden
+        List<Integer> productIds = new ArrayList<>();
+        for (int viewRow : selectedRows) {
+            int modelRow = table.convertRowIndexToModel(viewRow);
+            productIds.add((int) model.getValueAt(modelRow, 0));  // Column 0 in model is the hidden ID
+        }
 
-            stmt.executeBatch();
-            conn.commit();
+        // The products and their ledger, cost layers and forecasts go together or not at all
+        UiTasks.onEdt(DbExecutor.write(conn -> {
+            ProductManager.deleteProducts(conn, productIds);
+            return null;
+        }), _ -> {
             loadProducts();
             JOptionPane.showMessageDialog(this, "Selected product(s) deleted successfully.");
-        } catch (SQLException e) {
-            e.printStackTrace();
+        }, error -> {
+            error.printStackTrace();
             JOptionPane.showMessageDialog(this, "Failed to delete product(s).");
+        });
+    }
+
+    // Point-in-time stock from the ledger (nearest snapshot plus the movements after it), read
+    // from the reporting replica so a history lookup over every product never locks app.db
+    private void showStockOnDate() {
+        String input = JOptionPane.showInputDialog(this, "Stock at the end of (YYYY-MM-DD):",
+                LocalDate.now().minusMonths(1).toString());
+        if (input == null) return;
+
+        LocalDate date;
+        try {
+            date = Dates.parse(input);
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this, e.getMessage());
+            return;
         }
+
+        UiTasks.onEdt(tasks.report("ProductWindow.showStockOnDate", conn -> StockLedger.stockAsOf(conn, date)), levels -> {
+            DefaultTableModel stockModel = new DefaultTableModel(new String[]{"Product", "Stock on " + date}, 0);
+            for (StockLedger.StockLevel level : levels) {
+                stockModel.addRow(new Object[]{level.productName(), level.quantity()});
+            }
+
+            JTable stockTable = new JTable(stockModel);
+            stockTable.setDefaultEditor(Object.class, null);
+            JScrollPane scroll = new JScrollPane(stockTable);
+            scroll.setPreferredSize(new Dimension(400, 300));
+            JOptionPane.showMessageDialog(this, scroll, "Stock on " + date + " (" + UiTasks.reportingAsOf() + ")",
+                    JOptionPane.PLAIN_MESSAGE);
+        }, error -> {
+            error.printStackTrace();
+            JOptionPane.showMessageDialog(this, "Failed to load stock history.");
+        });
     }
 }
@@ -1,10 +1,12 @@
+import java.time.LocalDate;
+
 public class SaleData {
     private final int quantity;
-    private final String saleDate;
+    private final LocalDate saleDate;
     private final String sellerName;
     private final String productName;
 
-    public SaleData(int quantity, String saleDate, String sellerName, String productName) {
+    public SaleData(int quantity, LocalDate saleDate, String sellerName, String productName) {
         this.quantity = quantity;
         this.saleDate = saleDate;
         this.sellerName = sellerName;
@@ -15,7 +17,7 @@ public class SaleData {
         return quantity;
     }
 
-    public String getSaleDate() {
+    public LocalDate getSaleDate() {
         return saleDate;
     }
 
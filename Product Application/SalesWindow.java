@@ -1,29 +1,62 @@
+import db.Dates;
+import db.DbExecutor;
+import db.Money;
+import db.SaleManager;
+import db.SalesReport;
+import db.SearchIndex;
+import db.SellerManager;
+
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.*;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 public class SalesWindow extends JDialog {
 
-    private JTable table;
-    private DefaultTableModel model;
+    private FastTable table;
+    private FastTable.Model model;
+    private FastTable lineTable;
+    private FastTable.Model lineModel;
+    private long loadedVersion = -1;
+    private JComboBox<String> periodBox;
+    private final DbExecutor.Scope tasks = UiTasks.scopeFor(this);
 
     public SalesWindow(JFrame parent) {
         super(parent, "Manage Sales", true);
-        setSize(900, 400);
+        setSize(1000, 500);
         setLocationRelativeTo(parent);
 
-        // Include a Revenue column in the table model
-        model = new DefaultTableModel(new String[]{
-                "ID", "Client", "Product", "Qty", "Date", "Payment Status", "Seller"
-        }, 0);
-        table = new JTable(model);
-        table.setDefaultEditor(Object.class, null); // Disable inline editing for all columns
+        // One row per order; its lines are fetched only when the order is selected
+        model = new FastTable.Model("ID", "Client", "Seller", "Date", "Items", "Qty", "Total", "Payment Status");
+        table = new FastTable(model);
+        table.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION); // Several sales can be deleted at once
+        table.getSelectionModel().addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) loadLines();
+        });
 
         // Hide the "ID" column
         table.getColumnModel().removeColumn(table.getColumnModel().getColumn(0));
 
+        lineModel = new FastTable.Model("Line ID", "Product", "Qty", "Unit Price", "Revenue", "Cost", "Margin");
+        lineTable = new FastTable(lineModel);
+        lineTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        lineTable.getColumnModel().removeColumn(lineTable.getColumnModel().getColumn(0));
+
+        periodBox = new JComboBox<>(new String[]{"All Dates", "This Month", "Last 90 Days"});
+        periodBox.addActionListener(_ -> loadSales());
+
         loadSales();
 
         JButton btnAdd = new JButton("Add Sale");
@@ -38,406 +71,402 @@ public class SalesWindow extends JDialog {
         JButton btnChangePaymentStatus = new JButton("Change Payment Status");
         btnChangePaymentStatus.addActionListener(_ -> changePaymentStatus());
 
+        JButton btnSettle = new JButton("Settle Client");
+        btnSettle.addActionListener(_ -> settleClient());
+
+        JButton btnExport = new JButton("Export CSV");
+        btnExport.addActionListener(_ -> exportSales());
+
         JPanel btnPanel = new JPanel();
         btnPanel.add(btnAdd);
         btnPanel.add(btnDelete);
         btnPanel.add(btnViewAmend);
         btnPanel.add(btnChangePaymentStatus);
+        btnPanel.add(btnSettle);
+        btnPanel.add(btnExport);
+        btnPanel.add(new JLabel("Period:"));
+        btnPanel.add(periodBox);
 
-        add(new JScrollPane(table), BorderLayout.CENTER);
+        JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT,
+                new JScrollPane(table), new JScrollPane(lineTable));
+        split.setResizeWeight(0.7);
+
+        add(split, BorderLayout.CENTER);
         add(btnPanel, BorderLayout.SOUTH);
+    }
 
+    /** Shows the dialog, reloading its data first only if something was committed since the last load. */
+    public void open() {
+        if (db.DatabaseManager.dataVersion() != loadedVersion) {
+            loadSales();
+        }
         setVisible(true);
     }
 
+    // A newer load (e.g. the period changed again) cancels one still running, so results never arrive out of order
     private void loadSales() {
-        model.setRowCount(0);
-        String sql = """
-            SELECT s.Sale_ID,
-                   c.Name AS ClientName,
-                   p.Name AS ProductName,
-                   s.Quantity,
-                   s.SaleDate,
-                   s.PaymentStatus,
-                   se.Name AS SellerName
-            FROM Sale s
-            JOIN Client c ON s.Client_ID = c.Client_ID
-            JOIN Product p ON s.Product_ID = p.Product_ID
-            JOIN Seller se ON s.Seller_ID = se.Seller_ID
-        """;
-
-        try (Connection conn = db.DatabaseManager.connect();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-
-            while (rs.next()) {
-                model.addRow(new Object[]{
-                        rs.getInt("Sale_ID"),
-                        rs.getString("ClientName"),
-                        rs.getString("ProductName"),
-                        rs.getInt("Quantity"),
-                        rs.getString("SaleDate"),
-                        rs.getString("PaymentStatus"),
-                        rs.getString("SellerName")
+        loadedVersion = db.DatabaseManager.dataVersion();
+        Dates.Range period = selectedPeriod();
+        UiTasks.onEdt(tasks.read("SalesWindow.loadSales", conn -> SaleManager.findOrders(conn, period)), orders -> {
+            lineModel.setRowCount(0);
+            List<Object[]> rows = new ArrayList<>(orders.size());
+            for (SaleManager.OrderRow order : orders) {
+                rows.add(new Object[]{
+                        order.orderId(),
+                        order.clientName(),
+                        order.sellerName(),
+                        order.saleDate(),
+                        order.lineCount(),
+                        order.quantity(),
+                        Money.ofCents(order.total()),
+                        order.paymentStatus()
                 });
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
+            model.setRows(rows);
+        });
+    }
+
+    // Lines of the selected order, fetched on demand instead of with the order list
+    private void loadLines() {
+        lineModel.setRowCount(0);
+        if (table.getSelectedRowCount() != 1) {
+            tasks.cancel("SalesWindow.loadLines"); // Lines of a previously selected order must not show up now
+            return;
         }
+        int selectedRow = table.selectedModelRow();
+
+        int orderId = (int) model.getValueAt(selectedRow, 0);
+        UiTasks.onEdt(tasks.read("SalesWindow.loadLines", conn -> SaleManager.findLines(conn, orderId)), lines -> {
+            List<Object[]> rows = new ArrayList<>(lines.size());
+            for (SaleManager.LineRow line : lines) {
+                rows.add(new Object[]{
+                        line.lineId(),
+                        line.productName(),
+                        line.quantity(),
+                        Money.ofCents(line.unitPrice()),
+                        Money.ofCents(line.totalRevenue()),
+                        Money.ofCents(line.cost()),
+                        Money.ofCents(line.margin())
+                });
+            }
+            lineModel.setRows(rows);
+        });
+    }
+
+    // Maps the period box to an epoch-day range served by the SaleDate index
+    private Dates.Range selectedPeriod() {
+        String period = (String) periodBox.getSelectedItem();
+        if ("This Month".equals(period)) return Dates.Range.thisMonth();
+        if ("Last 90 Days".equals(period)) return Dates.Range.lastDays(90);
+        return Dates.Range.ALL;
     }
 
     private void changePaymentStatus() {
-        int selectedRow = table.getSelectedRow();
-        if (selectedRow == -1) {
+        int[] selectedRows = table.selectedModelRows();
+        if (selectedRows.length == 0) {
             JOptionPane.showMessageDialog(this, "Please select a sale to update.");
             return;
         }
 
-        int saleId = (int) model.getValueAt(selectedRow, 0);
-        String currentStatus = model.getValueAt(selectedRow, 5).toString();
-        String newStatus = currentStatus.equals("Paid") ? "Unpaid" : "Paid";
+        String newStatus;
+        if (selectedRows.length == 1) {
+            String currentStatus = String.valueOf(model.getValueAt(selectedRows[0], 7));
+            newStatus = currentStatus.equals("Paid") ? "Unpaid" : "Paid";
+        } else {
+            String[] options = {"Mark Paid", "Mark Unpaid", "Cancel"};
+            int choice = JOptionPane.showOptionDialog(this,
+                    "Change the payment status of " + selectedRows.length + " sales?", "Change Payment Status",
+                    JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE, null, options, options[0]);
+            if (choice != 0 && choice != 1) return;
+            newStatus = choice == 0 ? "Paid" : "Unpaid";
+        }
+
+        List<Integer> orderIds = new ArrayList<>();
+        for (int row : selectedRows) {
+            orderIds.add((int) model.getValueAt(row, 0));
+        }
 
-        updateSalePaymentStatus(saleId, newStatus);
-        model.setValueAt(newStatus, selectedRow, 5);
+        // One set-based UPDATE over the headers plus one cash delta per seller, on the writer thread
+        UiTasks.onEdt(DbExecutor.write(conn -> SaleManager.setPaymentStatus(conn, orderIds, newStatus)), _ -> {
+            // One column update, so a table sorted by status re-sorts once rather than per row.
+            // Matched by order ID, as the table may have reloaded while the write was queued
+            Set<Integer> updated = new HashSet<>(orderIds);
+            model.updateColumn(7, row -> updated.contains((Integer) model.getValueAt(row, 0))
+                    ? newStatus : model.getValueAt(row, 7));
+            MainAppWindow main = (MainAppWindow) SwingUtilities.getWindowAncestor(this);
+            if (main != null) main.updateCashLabels();
+        }, error -> {
+            error.printStackTrace();
+            JOptionPane.showMessageDialog(this, "Error updating payment status.");
+        });
     }
 
-    private void updateSalePaymentStatus(int saleId, String newPaymentStatus) {
-        try (Connection conn = db.DatabaseManager.connect()) {
-            conn.setAutoCommit(false);
-
-            // Fetch the sale's old status, revenue, and seller ID
-            String oldStatus;
-            double revenue;
-            int sellerId;
-            try (PreparedStatement sel = conn.prepareStatement(
-                    "SELECT PaymentStatus, TotalRevenue, Seller_ID FROM Sale WHERE Sale_ID = ?")) {
-                sel.setInt(1, saleId);
-                try (ResultSet rs = sel.executeQuery()) {
-                    if (rs.next()) {
-                        oldStatus = rs.getString("PaymentStatus");
-                        revenue = rs.getDouble("TotalRevenue");
-                        sellerId = rs.getInt("Seller_ID");
-                    } else {
-                        JOptionPane.showMessageDialog(this, "Sale not found.");
-                        return;
-                    }
+    // Marks every unpaid sale of one client within the selected period as paid, in one transaction
+    private void settleClient() {
+        UiTasks.onEdt(tasks.read("SalesWindow.loadUnpaidClients", conn -> {
+            List<String> clients = new ArrayList<>();
+            try (PreparedStatement stmt = conn.prepareStatement("""
+                     SELECT DISTINCT c.Client_ID, c.Name
+                     FROM SaleOrder o
+                     JOIN Client c ON o.Client_ID = c.Client_ID
+                     WHERE o.PaymentStatus = 'Unpaid'
+                     ORDER BY c.Name
+                 """);
+                 ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    clients.add(rs.getInt("Client_ID") + " - " + rs.getString("Name"));
                 }
             }
+            return clients;
+        }), this::showSettleForm, error -> {
+            error.printStackTrace();
+            JOptionPane.showMessageDialog(this, "Error loading clients.");
+        });
+    }
 
-            // Update the payment status
-            try (PreparedStatement upd = conn.prepareStatement(
-                    "UPDATE Sale SET PaymentStatus = ? WHERE Sale_ID = ?")) {
-                upd.setString(1, newPaymentStatus);
-                upd.setInt(2, saleId);
-                upd.executeUpdate();
-            }
+    private void showSettleForm(List<String> clients) {
+        JComboBox<String> clientBox = new JComboBox<>(clients.toArray(new String[0]));
+        if (clientBox.getItemCount() == 0) {
+            JOptionPane.showMessageDialog(this, "There are no unpaid sales.");
+            return;
+        }
 
-            // Adjust the seller's cash only if the status actually changed
-            if (!oldStatus.equals(newPaymentStatus)) {
-                String op = newPaymentStatus.equals("Paid") ? "+" : "-";
-                try (PreparedStatement adj = conn.prepareStatement(
-                        "UPDATE Seller SET CashOnHand = CashOnHand " + op + " ? WHERE Seller_ID = ?")) {
-                    adj.setDouble(1, revenue);
-                    adj.setInt(2, sellerId);
-                    adj.executeUpdate();
-                }
-            }
+        JPanel formPanel = new JPanel(new GridLayout(2, 1));
+        formPanel.add(new JLabel("Mark all unpaid sales (" + periodBox.getSelectedItem() + ") as paid for:"));
+        formPanel.add(clientBox);
+        int result = JOptionPane.showConfirmDialog(this, formPanel, "Settle Client", JOptionPane.OK_CANCEL_OPTION);
+        if (result != JOptionPane.OK_OPTION || clientBox.getSelectedItem() == null) return;
+
+        int clientId = Integer.parseInt(clientBox.getSelectedItem().toString().split(" - ")[0]);
+        Dates.Range period = selectedPeriod();
+        UiTasks.onEdt(DbExecutor.write(conn -> SaleManager.settleClient(conn, clientId, period, "Unpaid", "Paid")), settled -> {
+            loadSales();
 
-            conn.commit();
             MainAppWindow main = (MainAppWindow) SwingUtilities.getWindowAncestor(this);
             if (main != null) main.updateCashLabels();
-
-        } catch (SQLException ex) {
-            ex.printStackTrace();
+            JOptionPane.showMessageDialog(this, settled + " sale(s) marked as paid.");
+        }, error -> {
+            error.printStackTrace();
             JOptionPane.showMessageDialog(this, "Error updating payment status.");
-        }
+        });
     }
 
-    private void addSale() {
-        try (Connection conn = db.DatabaseManager.connect()) {
-            conn.setAutoCommit(false); // Start a transaction
-
-            // Prepare client selection
-            ResultSet clients = conn.createStatement().executeQuery("SELECT * FROM Client");
-            JComboBox<String> clientBox = new JComboBox<>();
-            while (clients.next()) {
-                clientBox.addItem(clients.getInt("Client_ID") + " - " + clients.getString("Name"));
-            }
-
-            // Create a panel for adding multiple products to the sale
-            DefaultTableModel itemModel = new DefaultTableModel(new String[]{"Product", "Quantity"}, 0);
-            JTable itemTable = new JTable(itemModel);
-
-            // Dropdown for selecting products
-            JComboBox<ProductItem> productBox = new JComboBox<>();
-            ResultSet products = conn.createStatement().executeQuery("SELECT * FROM Product");
-            while (products.next()) {
-                productBox.addItem(new ProductItem(products.getInt("Product_ID"), products.getString("Name")));
+    // Writes the selected period's orders to CSV from the reporting replica, so the scan never locks app.db
+    private void exportSales() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File("sales-" + LocalDate.now() + ".csv"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+
+        Path file = chooser.getSelectedFile().toPath();
+        Dates.Range period = selectedPeriod();
+        UiTasks.onEdt(tasks.report("SalesWindow.exportSales", conn -> {
+            try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                return SalesReport.writeOrdersCsv(conn, period, out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
+        }), count -> JOptionPane.showMessageDialog(this,
+                count + " sale(s) exported to " + file.getFileName() + " (" + UiTasks.reportingAsOf() + ")."),
+                error -> {
+                    error.printStackTrace();
+                    JOptionPane.showMessageDialog(this, "Error exporting sales.");
+                });
+    }
 
-            // Dropdown for selecting sellers
+    private void addSale() {
+        // Phase 1: Only the short seller list is loaded up front; clients and products are searched as the user types
+        UiTasks.onEdt(tasks.read("SalesWindow.loadSellers", SellerManager::findSellers), sellers -> {
             JComboBox<String> sellerBox = new JComboBox<>();
-            ResultSet sellers = conn.createStatement().executeQuery("SELECT Seller_ID, Name FROM Seller");
-            while (sellers.next()) {
-                sellerBox.addItem(sellers.getInt("Seller_ID") + " - " + sellers.getString("Name"));
+            for (SellerManager.SellerRow seller : sellers) {
+                sellerBox.addItem(seller.sellerId() + " - " + seller.name());
             }
+            showSaleForm(sellerBox);
+        }, error -> {
+            error.printStackTrace();
+            JOptionPane.showMessageDialog(this, "Error adding sale.");
+        });
+    }
 
-            // Add product button
-            JButton btnAddProduct = new JButton("Add Product");
-            JButton btnRemoveProduct = new JButton("Remove Selected"); // Renamed
-            btnAddProduct.addActionListener(_ -> {
-                JPanel inputPanel = new JPanel(new GridLayout(2, 2));
-                JComboBox<ProductItem> prodSelect = new JComboBox<>(productBox.getModel());
-                JTextField qtyField = new JTextField();
-
-                inputPanel.add(new JLabel("Product:"));
-                inputPanel.add(prodSelect);
-                inputPanel.add(new JLabel("Quantity:"));
-                inputPanel.add(qtyField);
-
-                int result = JOptionPane.showConfirmDialog(this, inputPanel, "Add Product Item", JOptionPane.OK_CANCEL_OPTION);
-                if (result == JOptionPane.OK_OPTION) {
-                    String qtyText = qtyField.getText().trim();
-                    if (!qtyText.matches("\\d+")) {
-                        JOptionPane.showMessageDialog(this, "Quantity must be a whole number (positive integer).");
-                        return;
-                    }
-                    int qty = Integer.parseInt(qtyText);
-                    // Validation
-                    if (qty <= 0) {
-                        JOptionPane.showMessageDialog(this, "Quantity must be >0.");
-                        return;
-                    }
-
-                    ProductItem selectedProduct = (ProductItem) prodSelect.getSelectedItem();
-                    if (selectedProduct == null) return;
-                    itemModel.addRow(new Object[]{selectedProduct, qty});
-                }
-            });
-
-            // Remove product button
-            btnRemoveProduct.addActionListener(_ -> {
-                int selectedRow = itemTable.getSelectedRow();
-                if (selectedRow != -1) {
-                    itemModel.removeRow(selectedRow);
-                } else {
-                    JOptionPane.showMessageDialog(this, "Please select a product to remove.");
-                }
-            });
-
-            // Form to gather client, sale date, payment status, and seller
-            JComboBox<String> paymentStatusBox = new JComboBox<>(new String[]{"Paid", "Unpaid"});
-            JPanel formPanel = new JPanel();
-            formPanel.setLayout(new BoxLayout(formPanel, BoxLayout.Y_AXIS));
-            formPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
-            formPanel.add(createLabeledField("Client:", clientBox));
-            formPanel.add(createLabeledField("Products in Sale:", itemTable));
-            formPanel.add(createLabeledField("Sale Date:", new JTextField(LocalDate.now().toString())));
-            formPanel.add(createLabeledField("Payment Status:", paymentStatusBox));
-            formPanel.add(createLabeledField("Seller:", sellerBox));
-
-            JPanel productButtonRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
-            productButtonRow.add(btnAddProduct);
-            productButtonRow.add(btnRemoveProduct);
-
-            formPanel.add(productButtonRow);
-
-            int result = JOptionPane.showConfirmDialog(this, formPanel, "Add Sale", JOptionPane.OK_CANCEL_OPTION);
+    private TypeAheadComboBox<ProductItem> productSearchBox() {
+        return new TypeAheadComboBox<>(tasks, "SalesWindow.searchProducts", (conn, text, limit) ->
+                SearchIndex.products(conn, text, limit).stream()
+                        .map(p -> new ProductItem(p.productId(), p.name()))
+                        .toList());
+    }
+
+    private void showSaleForm(JComboBox<String> sellerBox) {
+        TypeAheadComboBox<ClientItem> clientBox = new TypeAheadComboBox<>(tasks, "SalesWindow.searchClients",
+                (conn, text, limit) -> SearchIndex.clients(conn, text, limit).stream()
+                        .map(c -> new ClientItem(c.clientId(), c.name()))
+                        .toList());
+
+        // Phase 2: Let the user build the order
+        // Create a panel for adding multiple products to the sale
+        DefaultTableModel itemModel = new DefaultTableModel(new String[]{"Product", "Quantity"}, 0);
+        JTable itemTable = new JTable(itemModel);
+
+        // Add product button
+        JButton btnAddProduct = new JButton("Add Product");
+        JButton btnRemoveProduct = new JButton("Remove Selected"); // Renamed
+        btnAddProduct.addActionListener(_ -> {
+            JPanel inputPanel = new JPanel(new GridLayout(2, 2));
+            TypeAheadComboBox<ProductItem> prodSelect = productSearchBox();
+            JTextField qtyField = new JTextField();
+
+            inputPanel.add(new JLabel("Product:"));
+            inputPanel.add(prodSelect);
+            inputPanel.add(new JLabel("Quantity:"));
+            inputPanel.add(qtyField);
+
+            int result = JOptionPane.showConfirmDialog(this, inputPanel, "Add Product Item", JOptionPane.OK_CANCEL_OPTION);
             if (result == JOptionPane.OK_OPTION) {
-                // Validate: at least one product
-                if (itemModel.getRowCount() == 0) {
-                    JOptionPane.showMessageDialog(this, "Please add at least one product.");
+                String qtyText = qtyField.getText().trim();
+                if (!qtyText.matches("\\d+")) {
+                    JOptionPane.showMessageDialog(this, "Quantity must be a whole number (positive integer).");
                     return;
                 }
-
-                // Validate: client selected
-                if (clientBox.getSelectedItem() == null) {
-                    JOptionPane.showMessageDialog(this, "Please select a client.");
+                int qty = Integer.parseInt(qtyText);
+                // Validation
+                if (qty <= 0) {
+                    JOptionPane.showMessageDialog(this, "Quantity must be >0.");
                     return;
                 }
 
-                // Validate: seller selected
-                if (sellerBox.getSelectedItem() == null) {
-                    JOptionPane.showMessageDialog(this, "Please select a seller.");
+                ProductItem selectedProduct = prodSelect.getSelectedValue();
+                if (selectedProduct == null) {
+                    JOptionPane.showMessageDialog(this, "Please pick a product from the list.");
                     return;
                 }
-
-                int clientId = Integer.parseInt(clientBox.getSelectedItem().toString().split(" - ")[0]);
-                String saleDate = LocalDate.now().toString();
-                String paymentStatus = (String) paymentStatusBox.getSelectedItem();
-                int sellerId = Integer.parseInt(sellerBox.getSelectedItem().toString().split(" - ")[0]);
-
-                // Insert one Sale per item
-                for (int i = 0; i < itemModel.getRowCount(); i++) {
-                    ProductItem product = (ProductItem) itemModel.getValueAt(i, 0);
-                    int productId = product.id;
-                    int qty = (Integer) itemModel.getValueAt(i, 1);
-
-                    // Fetch Price
-                    double salePrice = 0;
-                    try (PreparedStatement pst = conn.prepareStatement(
-                            "SELECT Price FROM Product WHERE Product_ID = ?")) {
-                        pst.setInt(1, productId);
-                        try (ResultSet rs = pst.executeQuery()) {
-                            if (rs.next()) salePrice = rs.getDouble(1);
-                        }
-                    }
-
-                    double itemRevenue = salePrice * qty;
-
-                    // Stock check & update
-                    try (PreparedStatement chk = conn.prepareStatement(
-                            "SELECT AmountLeft FROM Product WHERE Product_ID = ?")) {
-                        chk.setInt(1, productId);
-                        try (ResultSet rs = chk.executeQuery()) {
-                            if (rs.next() && rs.getInt(1) < qty) {
-                                JOptionPane.showMessageDialog(this, "Not enough stock for " + product.name);
-                                conn.rollback();
-                                return;
-                            }
-                        }
-                    }
-                    try (PreparedStatement up = conn.prepareStatement(
-                            "UPDATE Product SET AmountLeft = AmountLeft - ? WHERE Product_ID = ?")) {
-                        up.setInt(1, qty);
-                        up.setInt(2, productId);
-                        up.executeUpdate();
-                    }
-
-                    // Insert sale record
-                    try (PreparedStatement ins = conn.prepareStatement(
-                            "INSERT INTO Sale(Client_ID, Product_ID, Seller_ID, Quantity, SaleDate, PaymentStatus, TotalRevenue) " +
-                            "VALUES (?, ?, ?, ?, ?, ?, ?)")) {
-                        ins.setInt(1, clientId);
-                        ins.setInt(2, productId);
-                        ins.setInt(3, sellerId);
-                        ins.setInt(4, qty);
-                        ins.setString(5, saleDate);
-                        ins.setString(6, paymentStatus);
-                        ins.setDouble(7, itemRevenue);
-                        ins.executeUpdate();
-                    }
-
-                    // Update client's number of purchases
-                    try (PreparedStatement updateClient = conn.prepareStatement(
-                            "UPDATE Client SET NumberOfPurchases = NumberOfPurchases + ? WHERE Client_ID = ?")) {
-                        updateClient.setInt(1, qty);
-                        updateClient.setInt(2, clientId);
-                        updateClient.executeUpdate();
-                    }
-
-                    // Update cash if paid
-                    if ("Paid".equals(paymentStatus)) {
-                        try (PreparedStatement upc = conn.prepareStatement(
-                                "UPDATE Seller SET CashOnHand = CashOnHand + ? WHERE Seller_ID = ?")) {
-                            upc.setDouble(1, itemRevenue);
-                            upc.setInt(2, sellerId);
-                            upc.executeUpdate();
-                        }
-                    }
-                }
-
-                conn.commit();
-                loadSales();
-                JOptionPane.showMessageDialog(this, "Sale added successfully.");
+                itemModel.addRow(new Object[]{selectedProduct, qty});
+            }
+        });
+
+        // Remove product button
+        btnRemoveProduct.addActionListener(_ -> {
+            int selectedRow = itemTable.getSelectedRow();
+            if (selectedRow != -1) {
+                itemModel.removeRow(selectedRow);
+            } else {
+                JOptionPane.showMessageDialog(this, "Please select a product to remove.");
+            }
+        });
+
+        // Form to gather client, sale date, payment status, and seller
+        JComboBox<String> paymentStatusBox = new JComboBox<>(new String[]{"Paid", "Unpaid"});
+        JTextField saleDateField = new JTextField(LocalDate.now().toString());
+        JPanel formPanel = new JPanel();
+        formPanel.setLayout(new BoxLayout(formPanel, BoxLayout.Y_AXIS));
+        formPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        formPanel.add(createLabeledField("Client:", clientBox));
+        formPanel.add(createLabeledField("Products in Sale:", itemTable));
+        formPanel.add(createLabeledField("Sale Date:", saleDateField));
+        formPanel.add(createLabeledField("Payment Status:", paymentStatusBox));
+        formPanel.add(createLabeledField("Seller:", sellerBox));
+
+        JPanel productButtonRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        productButtonRow.add(btnAddProduct);
+        productButtonRow.add(btnRemoveProduct);
+
+        formPanel.add(productButtonRow);
+
+        int result = JOptionPane.showConfirmDialog(this, formPanel, "Add Sale", JOptionPane.OK_CANCEL_OPTION);
+        if (result == JOptionPane.OK_OPTION) {
+            // Validate: at least one product
+            if (itemModel.getRowCount() == 0) {
+                JOptionPane.showMessageDialog(this, "Please add at least one product.");
+                return;
             }
-        } catch (SQLException | NumberFormatException e) {
-            e.printStackTrace();
-            JOptionPane.showMessageDialog(this, "Error adding sale.");
-        }
-    }
-        
-    private void deleteSale() {
-        int selectedRow = table.getSelectedRow();
-        if (selectedRow == -1) {
-            JOptionPane.showMessageDialog(this, "Please select a sale to delete.");
-            return;
-        }
 
-        int saleId = (int) model.getValueAt(selectedRow, 0);
-        int confirm = JOptionPane.showConfirmDialog(this, "Are you sure you want to delete this sale?", "Confirm", JOptionPane.YES_NO_OPTION);
-        if (confirm != JOptionPane.YES_OPTION) return;
+            // Validate: client selected
+            ClientItem client = clientBox.getSelectedValue();
+            if (client == null) {
+                JOptionPane.showMessageDialog(this, "Please select a client.");
+                return;
+            }
 
-        try (Connection conn = db.DatabaseManager.connect()) {
-            conn.setAutoCommit(false);
-
-            // Step 1: Fetch sale info (including Product_ID, Quantity, Client_ID)
-            String paymentStatus = "";
-            double revenue = 0;
-            int sellerId = -1;
-            int clientId = -1;
-
-            try (PreparedStatement fetch = conn.prepareStatement(
-                    "SELECT TotalRevenue, Seller_ID, PaymentStatus, Client_ID FROM Sale WHERE Sale_ID = ?")) {
-                fetch.setInt(1, saleId);
-                try (ResultSet rs = fetch.executeQuery()) {
-                    if (rs.next()) {
-                        revenue = rs.getDouble("TotalRevenue");
-                        sellerId = rs.getInt("Seller_ID");
-                        paymentStatus = rs.getString("PaymentStatus");
-                        clientId = rs.getInt("Client_ID");
-                    }
-                }
+            // Validate: seller selected
+            if (sellerBox.getSelectedItem() == null) {
+                JOptionPane.showMessageDialog(this, "Please select a seller.");
+                return;
             }
 
-            // Restore product stock before deleting the sale
-            int productId = -1;
-            int quantity = 0;
-            try (PreparedStatement info = conn.prepareStatement(
-                    "SELECT Product_ID, Quantity, Client_ID FROM Sale WHERE Sale_ID = ?")) {
-                info.setInt(1, saleId);
-                ResultSet rs = info.executeQuery();
-                if (rs.next()) {
-                    productId = rs.getInt("Product_ID");
-                    quantity = rs.getInt("Quantity");
-                    clientId = rs.getInt("Client_ID");
-                }
+            // Validate: sale date is a real calendar date
+            LocalDate saleDate;
+            try {
+                saleDate = Dates.parse(saleDateField.getText());
+            } catch (IllegalArgumentException ex) {
+                JOptionPane.showMessageDialog(this, ex.getMessage());
+                return;
             }
-            if (productId != -1 && quantity > 0) {
-                try (PreparedStatement restore = conn.prepareStatement(
-                        "UPDATE Product SET AmountLeft = AmountLeft + ? WHERE Product_ID = ?")) {
-                    restore.setInt(1, quantity);
-                    restore.setInt(2, productId);
-                    restore.executeUpdate();
-                }
+
+            int clientId = client.id;
+            String paymentStatus = (String) paymentStatusBox.getSelectedItem();
+            int sellerId = Integer.parseInt(sellerBox.getSelectedItem().toString().split(" - ")[0]);
+
+            List<SaleManager.NewLine> lines = new ArrayList<>();
+            for (int i = 0; i < itemModel.getRowCount(); i++) {
+                ProductItem product = (ProductItem) itemModel.getValueAt(i, 0);
+                lines.add(new SaleManager.NewLine(product.id, product.name, (Integer) itemModel.getValueAt(i, 1)));
             }
 
-            // Step 2: Adjust cash on hand if status was 'Paid'
+            // Phase 3: One header insert plus a batched line insert in a single transaction
+            postSale(clientId, sellerId, saleDate, paymentStatus, lines);
+        }
+    }
+
+    private void postSale(int clientId, int sellerId, LocalDate saleDate, String paymentStatus,
+                          List<SaleManager.NewLine> lines) {
+        UiTasks.onEdt(DbExecutor.write(conn -> SaleManager.postSale(conn, clientId, sellerId, saleDate, paymentStatus, lines)), _ -> {
+            loadSales();
             if ("Paid".equals(paymentStatus)) {
-                try (PreparedStatement updateCash = conn.prepareStatement(
-                        "UPDATE Seller SET CashOnHand = CashOnHand - ? WHERE Seller_ID = ?")) {
-                    updateCash.setDouble(1, revenue);
-                    updateCash.setInt(2, sellerId);
-                    updateCash.executeUpdate();
-                }
+                MainAppWindow main = (MainAppWindow) SwingUtilities.getWindowAncestor(this);
+                if (main != null) main.updateCashLabels();
             }
-
-            // Step 3: Decrease NumberOfPurchases for client (minimum 0)
-            try (PreparedStatement updateClient = conn.prepareStatement(
-                    "UPDATE Client SET NumberOfPurchases = MAX(NumberOfPurchases - ?, 0) WHERE Client_ID = ?")) {
-                updateClient.setInt(1, quantity);
-                updateClient.setInt(2, clientId);
-                updateClient.executeUpdate();
+            JOptionPane.showMessageDialog(this, "Sale added successfully.");
+        }, error -> {
+            if (error instanceof SaleManager.InsufficientStockException e) {
+                JOptionPane.showMessageDialog(this, "Not enough stock for " + e.getProductName());
+                return;
             }
+            error.printStackTrace();
+            JOptionPane.showMessageDialog(this, "Error adding sale.");
+        });
+    }
+        
+    private void deleteSale() {
+        int[] selectedRows = table.selectedModelRows();
+        if (selectedRows.length == 0) {
+            JOptionPane.showMessageDialog(this, "Please select a sale to delete.");
+            return;
+        }
 
-            // Step 4: Delete sale
-            try (PreparedStatement deleteStmt = conn.prepareStatement("DELETE FROM Sale WHERE Sale_ID = ?")) {
-                deleteStmt.setInt(1, saleId);
-                deleteStmt.executeUpdate();
-            }
+        List<Integer> orderIds = new ArrayList<>();
+        for (int row : selectedRows) {
+            orderIds.add((int) model.getValueAt(row, 0));
+        }
+        String question = orderIds.size() == 1
+                ? "Are you sure you want to delete this sale?"
+                : "Are you sure you want to delete these " + orderIds.size() + " sales?";
+        int confirm = JOptionPane.showConfirmDialog(this, question, "Confirm", JOptionPane.YES_NO_OPTION);
+        if (confirm != JOptionPane.YES_OPTION) return;
 
-            conn.commit();
+        // Stock, seller cash, client purchases and the rows themselves change together or not at all
+        UiTasks.onEdt(DbExecutor.write(conn -> SaleManager.reverseOrders(conn, orderIds)), reversal -> {
             loadSales();
 
             // Refresh cash info
-            MainAppWindow main = (MainAppWindow) SwingUtilities.getWindowAncestor(this);
-            if (main != null) main.updateCashLabels();
+            if (reversal.refunded() != 0) {
+                MainAppWindow main = (MainAppWindow) SwingUtilities.getWindowAncestor(this);
+                if (main != null) main.updateCashLabels();
+            }
 
-            JOptionPane.showMessageDialog(this, "Sale deleted and cash adjusted.");
-        } catch (SQLException e) {
-            e.printStackTrace();
+            JOptionPane.showMessageDialog(this, reversal.orders() == 1
+                    ? "Sale deleted and cash adjusted."
+                    : reversal.orders() + " sales deleted and cash adjusted.");
+        }, error -> {
+            error.printStackTrace();
             JOptionPane.showMessageDialog(this, "Error deleting sale.");
-        }
+        });
     }
     
 
@@ -448,94 +477,126 @@ public class SalesWindow extends JDialog {
             return;
         }
 
-        int saleId = (int) model.getValueAt(selectedRow, 0);
-
-        // Phase 1: Fetch data and close the connection
-        SaleData saleData;
-        try (Connection conn = db.DatabaseManager.connect()) {
-            PreparedStatement stmt = conn.prepareStatement("""
-                SELECT s.Quantity, s.SaleDate, se.Name AS SellerName, p.Name AS ProductName
-                FROM Sale s
-                JOIN Seller se ON s.Seller_ID = se.Seller_ID
-                JOIN Product p ON s.Product_ID = p.Product_ID
-                WHERE s.Sale_ID = ?
-            """);
-            stmt.setInt(1, saleId);
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (!rs.next()) {
-                    JOptionPane.showMessageDialog(this, "Sale not found.");
-                    return;
-                }
-                saleData = new SaleData(
-                    rs.getInt("Quantity"),
-                    rs.getString("SaleDate"),
-                    rs.getString("SellerName"),
-                    rs.getString("ProductName")
-                );
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-            JOptionPane.showMessageDialog(this, "Error fetching sale details.");
+        // An order with a single line needs no line selection
+        int lineRow = lineTable.selectedModelRow();
+        if (lineRow == -1 && lineModel.getRowCount() == 1) lineRow = 0;
+        if (lineRow == -1) {
+            JOptionPane.showMessageDialog(this, "Please select the sale line to view or amend.");
             return;
         }
 
-        // Phase 2: Show UI and call amendSale
-        showEditDialogAndThenCallAmendSale(saleId, saleData);
+        int lineId = (int) lineModel.getValueAt(lineRow, 0);
+
+        // Phase 1: Fetch the sellers and the line off the EDT; saleData is null when the line is gone
+        UiTasks.onEdt(tasks.read("SalesWindow.loadAmendForm", conn -> {
+            List<SellerManager.SellerRow> sellers = SellerManager.findSellers(conn);
+            try (PreparedStatement stmt = conn.prepareStatement("""
+                    SELECT l.Quantity, o.SaleDate, se.Name AS SellerName, p.Name AS ProductName
+                    FROM SaleLine l
+                    JOIN SaleOrder o ON l.Order_ID = o.Order_ID
+                    JOIN Seller se ON o.Seller_ID = se.Seller_ID
+                    JOIN Product p ON l.Product_ID = p.Product_ID
+                    WHERE l.Line_ID = ?
+                """)) {
+                stmt.setInt(1, lineId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    SaleData saleData = !rs.next() ? null : new SaleData(
+                        rs.getInt("Quantity"),
+                        Dates.read(rs, "SaleDate"),
+                        rs.getString("SellerName"),
+                        rs.getString("ProductName")
+                    );
+                    return new AmendForm(sellers, saleData);
+                }
+            }
+        }), form -> {
+            if (form.saleData() == null) {
+                JOptionPane.showMessageDialog(this, "Sale not found.");
+                return;
+            }
+            JComboBox<String> sellerBox = new JComboBox<>();
+            for (SellerManager.SellerRow seller : form.sellers()) {
+                sellerBox.addItem(seller.sellerId() + " - " + seller.name());
+            }
+            // Phase 2: Show UI and call amendSale
+            showEditDialogAndThenCallAmendSale(lineId, form.saleData(), sellerBox);
+        }, error -> {
+            error.printStackTrace();
+            JOptionPane.showMessageDialog(this, "Error fetching sale details.");
+        });
     }
 
-    private void showEditDialogAndThenCallAmendSale(int saleId, SaleData saleData) {
+    private record AmendForm(List<SellerManager.SellerRow> sellers, SaleData saleData) {}
+
+    private void showEditDialogAndThenCallAmendSale(int lineId, SaleData saleData, JComboBox<String> sellerBox) {
         JTextField qtyField = new JTextField(String.valueOf(saleData.getQuantity()));
-        JTextField dateField = new JTextField(saleData.getSaleDate());
-        JTextField sellerField = new JTextField(saleData.getSellerName());
+        JTextField dateField = new JTextField(String.valueOf(saleData.getSaleDate()));
         JTextField productField = new JTextField(saleData.getProductName());
         productField.setEditable(false); // Product is not editable
 
+        // Select the current seller by name; the update itself goes by Seller_ID
+        for (int i = 0; i < sellerBox.getItemCount(); i++) {
+            if (sellerBox.getItemAt(i).endsWith(" - " + saleData.getSellerName())) {
+                sellerBox.setSelectedIndex(i);
+                break;
+            }
+        }
+
         JPanel formPanel = new JPanel(new GridLayout(4, 2));
         formPanel.add(new JLabel("Quantity:"));
         formPanel.add(qtyField);
         formPanel.add(new JLabel("Sale Date:"));
         formPanel.add(dateField);
         formPanel.add(new JLabel("Seller:"));
-        formPanel.add(sellerField);
+        formPanel.add(sellerBox);
         formPanel.add(new JLabel("Product:"));
         formPanel.add(productField);
 
         int result = JOptionPane.showConfirmDialog(this, formPanel, "Amend Sale", JOptionPane.OK_CANCEL_OPTION);
         if (result == JOptionPane.OK_OPTION) {
-            amendSale(saleId, qtyField, sellerField, dateField);
+            amendSale(lineId, qtyField, sellerBox, dateField);
         }
     }
 
-    private void amendSale(int saleId, JTextField qtyField, JTextField sellerField, JTextField dateField) {
-        try (Connection conn = db.DatabaseManager.connect()) {
-            conn.setAutoCommit(false); // Start a transaction
-
-            PreparedStatement updateStmt = conn.prepareStatement("""
-                UPDATE Sale
-                SET Quantity = ?, SaleDate = ?, Seller_ID = (
-                    SELECT Seller_ID FROM Seller WHERE Name = ?
-                )
-                WHERE Sale_ID = ?
-            """);
-            updateStmt.setInt(1, Integer.parseInt(qtyField.getText()));
-            updateStmt.setString(2, dateField.getText());
-            updateStmt.setString(3, sellerField.getText());
-            updateStmt.setInt(4, saleId);
-            updateStmt.executeUpdate();
-
-            conn.commit(); // Commit the transaction
+    private void amendSale(int lineId, JTextField qtyField, JComboBox<String> sellerBox, JTextField dateField) {
+        String qtyText = qtyField.getText().trim();
+        if (!qtyText.matches("\\d+") || Integer.parseInt(qtyText) <= 0) {
+            JOptionPane.showMessageDialog(this, "Quantity must be a whole number (positive integer).");
+            return;
+        }
+        if (sellerBox.getSelectedItem() == null) {
+            JOptionPane.showMessageDialog(this, "Please select a seller.");
+            return;
+        }
+
+        LocalDate saleDate;
+        try {
+            saleDate = Dates.parse(dateField.getText());
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this, e.getMessage());
+            return;
+        }
+
+        int quantity = Integer.parseInt(qtyText);
+        int sellerId = Integer.parseInt(sellerBox.getSelectedItem().toString().split(" - ")[0]);
+
+        // Stock, line revenue, client purchases and seller cash move by their deltas together
+        UiTasks.onEdt(DbExecutor.write(conn -> {
+            SaleManager.amendLine(conn, lineId, quantity, sellerId, saleDate);
+            return null;
+        }), _ -> {
             loadSales(); // Reload the sales table
+            MainAppWindow main = (MainAppWindow) SwingUtilities.getWindowAncestor(this);
+            if (main != null) main.updateCashLabels();
             JOptionPane.showMessageDialog(this, "Sale updated successfully.");
-        } catch (SQLException e) {
-            e.printStackTrace();
-            JOptionPane.showMessageDialog(this, "Error updating sale.");
-            // Rollback on the same connection
-            try (Connection conn = db.DatabaseManager.connect()) {
-                conn.rollback();
-            } catch (SQLException rollbackEx) {
-                rollbackEx.printStackTrace();
+        }, error -> {
+            if (error instanceof SaleManager.InsufficientStockException e) {
+                JOptionPane.showMessageDialog(this, "Not enough stock for " + e.getProductName());
+                return;
             }
-        }
+            error.printStackTrace();
+            JOptionPane.showMessageDialog(this, "Error updating sale.");
+        });
     }
     
     private JPanel createLabeledField(String labelText, JComponent field) {
@@ -547,6 +608,21 @@ public class SalesWindow extends JDialog {
     }
 
     // Step 1: Add ProductItem inner class at the end of the file
+    private static class ClientItem {
+        int id;
+        String name;
+
+        ClientItem(int id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
     private static class ProductItem {
         int id;
         String name;
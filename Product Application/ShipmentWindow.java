@@ -1,14 +1,27 @@
+import db.CostLayers;
+import db.Dates;
+import db.DbExecutor;
+import db.Money;
+import db.ProductManager;
+import db.ShipmentManager;
+import db.ShipmentProfit;
+
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.sql.*;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 
 public class ShipmentWindow extends JDialog {
 
-    private JTable table;
-    private DefaultTableModel model;
+    private FastTable table;
+    private FastTable.Model model;
+    private long loadedVersion = -1;
+    private final DbExecutor.Scope tasks = UiTasks.scopeFor(this);
     private JComboBox<String> filterOptionBox;
+    private JComboBox<String> filterPeriodBox;
     private JComboBox<String> filterProductBox;
 
     public ShipmentWindow(JFrame parent) {
@@ -16,9 +29,8 @@ public class ShipmentWindow extends JDialog {
         setSize(1100, 550);
         setLocationRelativeTo(parent);
 
-        model = new DefaultTableModel(new String[]{"Shipment ID", "Deliveryman", "Delivery Date", "Gross Profit", "Revenue"}, 0);
-        table = new JTable(model);
-        table.setDefaultEditor(Object.class, null);  // Disable inline editing for all columns
+        model = new FastTable.Model("Shipment ID", "Deliveryman", "Delivery Date", "Gross Profit", "Revenue");
+        table = new FastTable(model);
 
         // Hide the "Shipment ID" column
         table.getColumnModel().removeColumn(table.getColumnModel().getColumn(0));
@@ -32,17 +44,9 @@ public class ShipmentWindow extends JDialog {
         JButton btnFilter = new JButton("Apply Filter");
 
         filterOptionBox = new JComboBox<>(new String[]{"All", "Newest First", "Oldest First"});
+        filterPeriodBox = new JComboBox<>(new String[]{"All Dates", "This Month", "Last 90 Days"});
         filterProductBox = new JComboBox<>();
-        filterProductBox.addItem("All Products");
-        try (Connection conn = db.DatabaseManager.connect();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT Name FROM Product")) {
-            while (rs.next()) {
-                filterProductBox.addItem(rs.getString("Name"));
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        loadProductFilter();
 
         btnAdd.addActionListener(_ -> addShipment());
         btnView.addActionListener(_ -> viewShipmentDetails());
@@ -59,16 +63,38 @@ public class ShipmentWindow extends JDialog {
         btnPanel.add(filterProductBox);
         btnPanel.add(new JLabel("Sort by Date:"));
         btnPanel.add(filterOptionBox);
+        btnPanel.add(new JLabel("Period:"));
+        btnPanel.add(filterPeriodBox);
         btnPanel.add(btnFilter);
 
         add(new JScrollPane(table), BorderLayout.CENTER);
         add(btnPanel, BorderLayout.SOUTH);
+    }
 
+    /** Shows the dialog, reloading its data first only if something was committed since the last load. */
+    public void open() {
+        if (db.DatabaseManager.dataVersion() != loadedVersion) {
+            loadProductFilter();
+            loadShipments();
+        }
         setVisible(true);
     }
 
+    // Refills the product filter, keeping the current selection when that product still exists
+    private void loadProductFilter() {
+        UiTasks.onEdt(tasks.read("ShipmentWindow.loadProductFilter", ProductManager::findProducts), products -> {
+            Object selected = filterProductBox.getSelectedItem();
+            filterProductBox.removeAllItems();
+            filterProductBox.addItem("All Products");
+            for (ProductManager.ProductRow product : products) {
+                filterProductBox.addItem(product.name());
+            }
+            if (selected != null) filterProductBox.setSelectedItem(selected);
+        });
+    }
+
     private void deleteShipment() {
-        int[] selectedRows = table.getSelectedRows();
+        int[] selectedRows = table.selectedModelRows();
         if (selectedRows.length == 0) {
             JOptionPane.showMessageDialog(this, "Please select one or more shipments to delete.");
             return;
@@ -77,12 +103,15 @@ public class ShipmentWindow extends JDialog {
         int confirm = JOptionPane.showConfirmDialog(this, "Delete selected shipments?", "Confirm", JOptionPane.YES_NO_OPTION);
         if (confirm != JOptionPane.YES_OPTION) return;
 
-        try (Connection conn = db.DatabaseManager.connect()) {
-            conn.setAutoCommit(false); // Start transaction
+        List<Integer> shipmentIds = new ArrayList<>();
+        for (int row : selectedRows) {
+            shipmentIds.add((int) model.getValueAt(row, 0)); // Hidden column (Shipment ID)
+        }
 
-            for (int row : selectedRows) {
-                int shipmentId = (int) model.getValueAt(row, 0); // Hidden column (Shipment ID)
+        UiTasks.onEdt(DbExecutor.write(conn -> {
+            CostLayers.discardShipments(conn, shipmentIds);
 
+            for (int shipmentId : shipmentIds) {
                 try (PreparedStatement deleteItems = conn.prepareStatement("DELETE FROM ShipmentItem WHERE Shipment_ID = ?")) {
                     deleteItems.setInt(1, shipmentId);
                     deleteItems.executeUpdate();
@@ -93,116 +122,87 @@ public class ShipmentWindow extends JDialog {
                     deleteShipment.executeUpdate();
                 }
             }
-
-            conn.commit();
+            return null;
+        }), _ -> {
             loadShipments();
             JOptionPane.showMessageDialog(this, "Selected shipments deleted successfully.");
-        } catch (SQLException e) {
-            e.printStackTrace();
+        }, error -> {
+            error.printStackTrace();
             JOptionPane.showMessageDialog(this, "Error deleting shipments.");
-        }
+        });
     }
 
     private void applyFilter() {
-        model.setRowCount(0);
         String selectedProduct = (String) filterProductBox.getSelectedItem();
         String sortOrder = (String) filterOptionBox.getSelectedItem();
         boolean filterByProduct = selectedProduct != null && !selectedProduct.equals("All Products");
 
-        StringBuilder sql = new StringBuilder("""
-            SELECT DISTINCT
-                s.Shipment_ID,
-                s.Deliveryman,
-                s.DeliveryDate,
-                s.GrossProfit,
-                s.Revenue
-            FROM Shipment s
-            LEFT JOIN ShipmentItem si ON s.Shipment_ID = si.Shipment_ID
-            LEFT JOIN Product p ON si.Product_ID = p.Product_ID
-            WHERE 1 = 1
-        """);
-
-        if (filterByProduct) {
-            sql.append(" AND p.Name = ? ");
+        ShipmentManager.DateOrder order = ShipmentManager.DateOrder.NONE;
+        if ("Newest First".equals(sortOrder)) {
+            order = ShipmentManager.DateOrder.NEWEST_FIRST;
+        } else if ("Oldest First".equals(sortOrder)) {
+            order = ShipmentManager.DateOrder.OLDEST_FIRST;
         }
+        table.getRowSorter().setSortKeys(null); // Show the chosen date order rather than a header sort
 
-        if (sortOrder.equals("Newest First")) {
-            sql.append(" ORDER BY s.DeliveryDate DESC");
-        } else if (sortOrder.equals("Oldest First")) {
-            sql.append(" ORDER BY s.DeliveryDate ASC");
-        }
-
-        try (Connection conn = db.DatabaseManager.connect();
-             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
-
-            if (filterByProduct) {
-                stmt.setString(1, selectedProduct);
-            }
-
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                model.addRow(new Object[]{
-                        rs.getInt("Shipment_ID"),
-                        rs.getString("Deliveryman"),
-                        rs.getString("DeliveryDate"),
-                        rs.getDouble("GrossProfit"),
-                        rs.getDouble("Revenue")
-                });
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        showShipments(selectedPeriod(), filterByProduct ? selectedProduct : null, order);
     }
 
     private void loadShipments() {
-        model.setRowCount(0);
-        String sql = "SELECT * FROM Shipment";
-
-        try (Connection conn = db.DatabaseManager.connect();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+        loadedVersion = db.DatabaseManager.dataVersion();
+        showShipments(Dates.Range.ALL, null, ShipmentManager.DateOrder.NONE);
+    }
 
-            while (rs.next()) {
-                model.addRow(new Object[]{
-                        rs.getInt("Shipment_ID"),
-                        rs.getString("Deliveryman"),
-                        rs.getString("DeliveryDate"),
-                        rs.getDouble("GrossProfit"),
-                        rs.getDouble("Revenue")
+    // A newer filter cancels a load still running, so an older result never replaces a newer one
+    private void showShipments(Dates.Range range, String productName, ShipmentManager.DateOrder order) {
+        UiTasks.onEdt(tasks.read("ShipmentWindow.showShipments",
+                conn -> ShipmentManager.findShipments(conn, range, productName, order)), shipments -> {
+            List<Object[]> rows = new ArrayList<>(shipments.size());
+            for (ShipmentManager.ShipmentRow shipment : shipments) {
+                rows.add(new Object[]{
+                        shipment.shipmentId(),
+                        shipment.deliveryman(),
+                        shipment.deliveryDate(),
+                        Money.ofCents(shipment.grossProfit()),
+                        Money.ofCents(shipment.revenue())
                 });
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+            model.setRows(rows);
+        });
+    }
+
+    // Maps the period box to an epoch-day range served by the DeliveryDate index
+    private Dates.Range selectedPeriod() {
+        String period = (String) filterPeriodBox.getSelectedItem();
+        if ("This Month".equals(period)) return Dates.Range.thisMonth();
+        if ("Last 90 Days".equals(period)) return Dates.Range.lastDays(90);
+        return Dates.Range.ALL;
     }
 
     private void viewShipmentDetails() {
-        int row = table.getSelectedRow();
+        int row = table.selectedModelRow();
         if (row == -1) return;
         int shipmentId = (int) model.getValueAt(row, 0);
 
-        DefaultTableModel detailModel = new DefaultTableModel(new String[]{"Product", "Quantity", "Rate", "Cost"}, 0);
+        DefaultTableModel detailModel = new DefaultTableModel(
+                new String[]{"Product", "Quantity", "Rate", "Cost", "Expense Share", "Landed Unit Cost", "Sale Price", "Margin"}, 0);
         JTable detailTable = new JTable(detailModel);
 
-        double deliveryExpense = 0;
-        double equipmentExpense = 0;
-        double employeeExpense = 0;
+        long deliveryExpense = 0;
+        long equipmentExpense = 0;
+        long employeeExpense = 0;
 
-        try (Connection conn = db.DatabaseManager.connect();
-             PreparedStatement stmt = conn.prepareStatement("""
-                     SELECT Product.Name, ShipmentItem.Input, ShipmentItem.Rate, ShipmentItem.Cost
-                     FROM ShipmentItem
-                     JOIN Product ON ShipmentItem.Product_ID = Product.Product_ID
-                     WHERE Shipment_ID = ?
-                 """)) {
-            stmt.setInt(1, shipmentId);
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
+        try (Connection conn = db.DatabaseManager.connect()) {
+            for (ShipmentProfit.ItemCost item : ShipmentProfit.items(conn, shipmentId)) {
                 detailModel.addRow(new Object[]{
-                        rs.getString("Name"),
-                        rs.getInt("Input"),
-                        rs.getDouble("Rate"),
-                        rs.getDouble("Cost")
+                        item.productName(),
+                        item.quantity(),
+                        Money.ofCents(item.rate()),
+                        Money.ofCents(item.cost()),
+                        Money.ofCents(item.allocatedExpense()),
+                        Money.ofCents(item.landedUnitCost()),
+                        Money.ofCents(item.salePrice()),
+                        Money.ofCents(item.margin())
                 });
             }
         } catch (SQLException e) {
@@ -219,9 +219,9 @@ public class ShipmentWindow extends JDialog {
             stmt.setInt(1, shipmentId);
             ResultSet rs = stmt.executeQuery();
             if (rs.next()) {
-                deliveryExpense = rs.getDouble("DeliveryExpense");
-                equipmentExpense = rs.getDouble("EquipmentExpense");
-                employeeExpense = rs.getDouble("EmployeeExpense");
+                deliveryExpense = rs.getLong("DeliveryExpense");
+                equipmentExpense = rs.getLong("EquipmentExpense");
+                employeeExpense = rs.getLong("EmployeeExpense");
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -229,11 +229,11 @@ public class ShipmentWindow extends JDialog {
 
         JPanel expensePanel = new JPanel(new GridLayout(3, 2));
         expensePanel.add(new JLabel("Delivery Expense:"));
-        expensePanel.add(new JLabel(String.valueOf(deliveryExpense)));
+        expensePanel.add(new JLabel(Money.format(deliveryExpense)));
         expensePanel.add(new JLabel("Equipment Expense:"));
-        expensePanel.add(new JLabel(String.valueOf(equipmentExpense)));
+        expensePanel.add(new JLabel(Money.format(equipmentExpense)));
         expensePanel.add(new JLabel("Employee Expense:"));
-        expensePanel.add(new JLabel(String.valueOf(employeeExpense)));
+        expensePanel.add(new JLabel(Money.format(employeeExpense)));
 
         JPanel mainPanel = new JPanel();
         mainPanel.setLayout(new BoxLayout(mainPanel, BoxLayout.Y_AXIS));
@@ -245,12 +245,12 @@ public class ShipmentWindow extends JDialog {
     }
 
     private void editShipment() {
-        int row = table.getSelectedRow();
+        int row = table.selectedModelRow();
         if (row == -1) return;
         int shipmentId = (int) model.getValueAt(row, 0);
 
         JTextField deliverymanField = new JTextField(model.getValueAt(row, 1).toString());
-        JTextField dateField = new JTextField(model.getValueAt(row, 2).toString());
+        JTextField dateField = new JTextField(String.valueOf(model.getValueAt(row, 2)));
 
         JTextField deliveryExpenseField = new JTextField();
         JTextField equipmentExpenseField = new JTextField();
@@ -266,9 +266,9 @@ public class ShipmentWindow extends JDialog {
             stmt.setInt(1, shipmentId);
             ResultSet rs = stmt.executeQuery();
             if (rs.next()) {
-                deliveryExpenseField.setText(String.valueOf(rs.getDouble("DeliveryExpense")));
-                equipmentExpenseField.setText(String.valueOf(rs.getDouble("EquipmentExpense")));
-                employeeExpenseField.setText(String.valueOf(rs.getDouble("EmployeeExpense")));
+                deliveryExpenseField.setText(Money.format(rs.getLong("DeliveryExpense")));
+                equipmentExpenseField.setText(Money.format(rs.getLong("EquipmentExpense")));
+                employeeExpenseField.setText(Money.format(rs.getLong("EmployeeExpense")));
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -296,7 +296,7 @@ public class ShipmentWindow extends JDialog {
             while (rs.next()) {
                 int pid = rs.getInt("Product_ID");
                 int qty = rs.getInt("Input");
-                double rate = rs.getDouble("Rate");
+                Money rate = Money.ofCents(rs.getLong("Rate"));
 
                 try (PreparedStatement nameStmt = conn.prepareStatement("SELECT Name FROM Product WHERE Product_ID = ?")) {
                     nameStmt.setInt(1, pid);
@@ -310,6 +310,7 @@ public class ShipmentWindow extends JDialog {
         } catch (SQLException e) {
             e.printStackTrace();
         }
+        int existingItems = itemModel.getRowCount(); // rows past these are new items
 
         JButton btnAddProduct = new JButton("Add Product");
         btnAddProduct.addActionListener(_ -> {
@@ -342,13 +343,13 @@ public class ShipmentWindow extends JDialog {
                 ProductItem selectedProduct = (ProductItem) prodSelect.getSelectedItem();
                 int productId = selectedProduct.id;
 
-                // Fetch rate from Product table
-                double rate = 0;
+                // Fetch rate (cents) from Product table
+                long rate = 0;
                 try (Connection conn = db.DatabaseManager.connect();
                      PreparedStatement pst = conn.prepareStatement("SELECT Rate FROM Product WHERE Product_ID = ?")) {
                     pst.setInt(1, productId);
                     try (ResultSet rs = pst.executeQuery()) {
-                        if (rs.next()) rate = rs.getDouble("Rate");
+                        if (rs.next()) rate = rs.getLong("Rate");
                     }
                 } catch (SQLException e) {
                     e.printStackTrace();
@@ -362,7 +363,7 @@ public class ShipmentWindow extends JDialog {
                 itemModel.addRow(new Object[]{
                     prodSelect.getSelectedItem(),
                     qty,
-                    rate  // Use the DB-driven rate
+                    Money.ofCents(rate)  // Use the DB-driven rate
                 });
             }
         });
@@ -390,29 +391,44 @@ public class ShipmentWindow extends JDialog {
 
         int result = JOptionPane.showConfirmDialog(this, formPanel, "Edit Shipment", JOptionPane.OK_CANCEL_OPTION);
         if (result == JOptionPane.OK_OPTION) {
-            try (Connection conn = db.DatabaseManager.connect()) {
-                double deliveryExpense = Double.parseDouble(deliveryExpenseField.getText());
-                double equipmentExpense = Double.parseDouble(equipmentExpenseField.getText());
-                double employeeExpense = Double.parseDouble(employeeExpenseField.getText());
-
-                // Update Shipment details
-                PreparedStatement updateShipment = conn.prepareStatement("""
-                        UPDATE Shipment
-                        SET Deliveryman = ?, DeliveryDate = ?, DeliveryExpense = ?, EquipmentExpense = ?, EmployeeExpense = ?
-                        WHERE Shipment_ID = ?
-                    """);
-                updateShipment.setString(1, deliverymanField.getText());
-                updateShipment.setString(2, dateField.getText());
-                updateShipment.setDouble(3, deliveryExpense);
-                updateShipment.setDouble(4, equipmentExpense);
-                updateShipment.setDouble(5, employeeExpense);
-                updateShipment.setInt(6, shipmentId);
-                updateShipment.executeUpdate();
-
-                loadShipments();
-            } catch (SQLException e) {
-                e.printStackTrace();
+            LocalDate deliveryDate;
+            try {
+                deliveryDate = Dates.parse(dateField.getText());
+            } catch (IllegalArgumentException e) {
+                JOptionPane.showMessageDialog(this, e.getMessage());
+                return;
             }
+
+            long deliveryExpense;
+            long equipmentExpense;
+            long employeeExpense;
+            List<ShipmentManager.NewItem> addedItems = new ArrayList<>();
+            try {
+                deliveryExpense = Money.parseCents(deliveryExpenseField.getText());
+                equipmentExpense = Money.parseCents(equipmentExpenseField.getText());
+                employeeExpense = Money.parseCents(employeeExpenseField.getText());
+
+                for (int i = existingItems; i < itemModel.getRowCount(); i++) {
+                    ProductItem product = (ProductItem) itemModel.getValueAt(i, 0);
+                    int qty = Integer.parseInt(itemModel.getValueAt(i, 1).toString());
+                    long rate = ((Money) itemModel.getValueAt(i, 2)).cents();
+                    addedItems.add(new ShipmentManager.NewItem(product.id, qty, rate));
+                }
+            } catch (NumberFormatException e) {
+                JOptionPane.showMessageDialog(this, "Error updating shipment.");
+                return;
+            }
+            String deliveryman = deliverymanField.getText();
+
+            // Header, added items and the recomputed margins commit together
+            UiTasks.onEdt(DbExecutor.write(conn -> {
+                ShipmentManager.updateShipment(conn, shipmentId, deliveryman, deliveryDate,
+                        deliveryExpense, equipmentExpense, employeeExpense, addedItems);
+                return null;
+            }), _ -> loadShipments(), error -> {
+                error.printStackTrace();
+                JOptionPane.showMessageDialog(this, "Error updating shipment.");
+            });
         }
     }
 
@@ -472,13 +488,13 @@ public class ShipmentWindow extends JDialog {
                 ProductItem selectedProduct = (ProductItem) prodSelect.getSelectedItem();
                 int productId = selectedProduct.id;
 
-                // Fetch rate from Product table
-                double rate = 0;
+                // Fetch rate (cents) from Product table
+                long rate = 0;
                 try (Connection conn = db.DatabaseManager.connect();
                      PreparedStatement pst = conn.prepareStatement("SELECT Rate FROM Product WHERE Product_ID = ?")) {
                     pst.setInt(1, productId);
                     try (ResultSet rs = pst.executeQuery()) {
-                        if (rs.next()) rate = rs.getDouble("Rate");
+                        if (rs.next()) rate = rs.getLong("Rate");
                     }
                 } catch (SQLException e) {
                     e.printStackTrace();
@@ -492,7 +508,7 @@ public class ShipmentWindow extends JDialog {
                 itemModel.addRow(new Object[]{
                     prodSelect.getSelectedItem(),
                     qty,
-                    rate  // Use the DB-driven rate
+                    Money.ofCents(rate)  // Use the DB-driven rate
                 });
             }
         });
@@ -531,94 +547,42 @@ public class ShipmentWindow extends JDialog {
                 JOptionPane.showMessageDialog(this, "Please add at least one product to the shipment.");
                 return;
             }
+            // Validation: Check that the delivery date is a real calendar date
+            LocalDate deliveryDate;
+            try {
+                deliveryDate = Dates.parse(dateField.getText());
+            } catch (IllegalArgumentException e) {
+                JOptionPane.showMessageDialog(this, e.getMessage());
+                return;
+            }
 
-            try (Connection conn = db.DatabaseManager.connect()) {
-                conn.setAutoCommit(false); // Ensure auto-commit is disabled
-
-                double revenue = 0;
-                double grossProfit = 0;
-                double deliveryExpense = Double.parseDouble(deliveryExpenseField.getText());
-                double equipmentExpense = Double.parseDouble(equipmentExpenseField.getText());
-                double employeeExpense = Double.parseDouble(employeeExpenseField.getText());
-
-                // Insert shipment record with expenses
-                PreparedStatement insertShipment = conn.prepareStatement(
-                        "INSERT INTO Shipment(Deliveryman, DeliveryDate, DeliveryExpense, EquipmentExpense, EmployeeExpense, GrossProfit, Revenue) VALUES (?, ?, ?, ?, ?, ?, ?)",
-                        Statement.RETURN_GENERATED_KEYS);
-                insertShipment.setString(1, deliverymanField.getText());
-                insertShipment.setString(2, dateField.getText());
-                insertShipment.setDouble(3, deliveryExpense);
-                insertShipment.setDouble(4, equipmentExpense);
-                insertShipment.setDouble(5, employeeExpense);
-                insertShipment.setDouble(6, 0); // Temporary gross profit
-                insertShipment.setDouble(7, 0); // Temporary revenue
-                insertShipment.executeUpdate();
-
-                ResultSet keys = insertShipment.getGeneratedKeys();
-                int shipmentId = -1;
-                if (keys.next()) {
-                    shipmentId = keys.getInt(1);
-                }
+            // All amounts are in cents
+            long deliveryExpense;
+            long equipmentExpense;
+            long employeeExpense;
+            List<ShipmentManager.NewItem> items = new ArrayList<>();
+            try {
+                deliveryExpense = Money.parseCents(deliveryExpenseField.getText());
+                equipmentExpense = Money.parseCents(equipmentExpenseField.getText());
+                employeeExpense = Money.parseCents(employeeExpenseField.getText());
 
-                // Calculate revenue and gross profit
                 for (int i = 0; i < itemModel.getRowCount(); i++) {
                     ProductItem product = (ProductItem) itemModel.getValueAt(i, 0);
-                    int productId = product.id;
                     int qty = Integer.parseInt(itemModel.getValueAt(i, 1).toString());
-                    double rate = Double.parseDouble(itemModel.getValueAt(i, 2).toString());
-                    double cost = qty * rate;
-
-                    // Fetch sale price (Price) from the database
-                    double salePrice = 0;
-                    try (PreparedStatement getPrice = conn.prepareStatement("SELECT Price FROM Product WHERE Product_ID = ?")) {
-                        getPrice.setInt(1, productId);
-                        ResultSet rs = getPrice.executeQuery();
-                        if (rs.next()) {
-                            salePrice = rs.getDouble("Price");
-                        }
-                    }
-
-                    revenue += salePrice * qty; // Revenue is based on sale price
-                    grossProfit += (salePrice - rate) * qty; // Profit is the difference between sale price and rate
-
-                    PreparedStatement insertItem = conn.prepareStatement(
-                            "INSERT INTO ShipmentItem(Shipment_ID, Product_ID, Input, Rate, Cost) VALUES (?, ?, ?, ?, ?)");
-                    insertItem.setInt(1, shipmentId);
-                    insertItem.setInt(2, productId);
-                    insertItem.setInt(3, qty);
-                    insertItem.setDouble(4, rate);
-                    insertItem.setDouble(5, cost);
-                    insertItem.executeUpdate();
-
-                    PreparedStatement updateStock = conn.prepareStatement(
-                            "UPDATE Product SET AmountLeft = AmountLeft + ? WHERE Product_ID = ?");
-                    updateStock.setInt(1, qty);
-                    updateStock.setInt(2, productId);
-                    updateStock.executeUpdate();
-                }
-
-                // Adjust gross profit with expenses
-                grossProfit -= (deliveryExpense + equipmentExpense + employeeExpense);
-
-                // Update the shipment with the final gross profit and revenue
-                PreparedStatement updateShipmentProfit = conn.prepareStatement(
-                        "UPDATE Shipment SET GrossProfit = ?, Revenue = ? WHERE Shipment_ID = ?");
-                updateShipmentProfit.setDouble(1, grossProfit);
-                updateShipmentProfit.setDouble(2, revenue);
-                updateShipmentProfit.setInt(3, shipmentId);
-                updateShipmentProfit.executeUpdate();
-
-                conn.commit(); // Commit the transaction
-                loadShipments();
-            } catch (SQLException | NumberFormatException e) {
-                e.printStackTrace();
-                try (Connection conn = db.DatabaseManager.connect()) {
-                    conn.rollback(); // Rollback the transaction in case of an error
-                } catch (SQLException rollbackEx) {
-                    rollbackEx.printStackTrace();
+                    long rate = ((Money) itemModel.getValueAt(i, 2)).cents();
+                    items.add(new ShipmentManager.NewItem(product.id, qty, rate));
                 }
+            } catch (NumberFormatException e) {
                 JOptionPane.showMessageDialog(this, "Error saving shipment.");
+                return;
             }
+            String deliveryman = deliverymanField.getText();
+
+            UiTasks.onEdt(DbExecutor.write(conn -> ShipmentManager.postShipment(conn, deliveryman, deliveryDate,
+                    deliveryExpense, equipmentExpense, employeeExpense, items)), _ -> loadShipments(), error -> {
+                error.printStackTrace();
+                JOptionPane.showMessageDialog(this, "Error saving shipment.");
+            });
         }
     }
 
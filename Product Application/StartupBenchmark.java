@@ -0,0 +1,52 @@
+import javax.swing.*;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how quickly the main window becomes usable: time until the frame is visible and
+ * until the seller dashboard has been filled in. The first run is the cold start (measured
+ * from JVM launch, driver not yet loaded); the following runs rebuild the window in-process.
+ *
+ * Usage: java StartupBenchmark [iterations]   (run from the directory holding app.db)
+ */
+public class StartupBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+
+        db.DatabaseManager.warmUp();
+        long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+        MainAppWindow[] holder = new MainAppWindow[1];
+        SwingUtilities.invokeAndWait(() -> holder[0] = new MainAppWindow());
+        long coldVisible = System.currentTimeMillis() - jvmStart;
+        holder[0].initialLoad.get(30, TimeUnit.SECONDS);
+        long coldLoaded = System.currentTimeMillis() - jvmStart;
+        SwingUtilities.invokeAndWait(holder[0]::dispose);
+
+        System.out.printf("cold start: frame visible %d ms, dashboard loaded %d ms after JVM start%n",
+                coldVisible, coldLoaded);
+
+        long[] visible = new long[iterations];
+        long[] loaded = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            SwingUtilities.invokeAndWait(() -> holder[0] = new MainAppWindow());
+            visible[i] = System.nanoTime() - start;
+            holder[0].initialLoad.get(30, TimeUnit.SECONDS);
+            loaded[i] = System.nanoTime() - start;
+            SwingUtilities.invokeAndWait(holder[0]::dispose);
+        }
+
+        report("warm frame visible", visible);
+        report("warm dashboard loaded", loaded);
+        System.exit(0);
+    }
+
+    private static void report(String label, long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%s: min %.1f ms, median %.1f ms, max %.1f ms (%d runs)%n", label,
+                sorted[0] / 1e6, sorted[sorted.length / 2] / 1e6, sorted[sorted.length - 1] / 1e6, sorted.length);
+    }
+}
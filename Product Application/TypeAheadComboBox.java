@@ -0,0 +1,85 @@
+import db.DbExecutor;
+
+import javax.swing.*;
+import javax.swing.text.JTextComponent;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * Editable combo box that searches as the user types: after a short pause it asks the
+ * database for the top matches of the typed text and shows them in the popup, instead of
+ * being filled up front with every row. The search runs through a {@link DbExecutor.Scope},
+ * so a newer query cancels one still running. Items are shown by their toString().
+ */
+class TypeAheadComboBox<T> extends JComboBox<T> {
+    private static final int DEBOUNCE_MILLIS = 120;
+    private static final int MAX_MATCHES = 20;
+
+    /** Returns up to {@code limit} items matching the text, best first. */
+    @FunctionalInterface
+    interface Search<T> {
+        List<T> find(Connection conn, String text, int limit) throws SQLException;
+    }
+
+    private final DbExecutor.Scope tasks;
+    private final String operation;
+    private final Search<T> search;
+    private final JTextComponent editor;
+    private boolean updating;
+
+    TypeAheadComboBox(DbExecutor.Scope tasks, String operation, Search<T> search) {
+        this.tasks = tasks;
+        this.operation = operation;
+        this.search = search;
+        setEditable(true);
+        editor = (JTextComponent) getEditor().getEditorComponent();
+        UiTasks.onTextChange(editor, DEBOUNCE_MILLIS, () -> {
+            if (updating) return;
+            // Picking an item writes its text into the editor; that is not a new query
+            int index = getSelectedIndex();
+            if (index >= 0 && getItemAt(index).toString().equals(editor.getText())) return;
+            refresh(editor.getText());
+        });
+        refresh(""); // First page of matches, so the popup is useful before anything is typed
+    }
+
+    /**
+     * The chosen item, or null when the text does not name one. Typing a match's full text
+     * without picking it from the list counts as choosing it.
+     */
+    T getSelectedValue() {
+        int index = getSelectedIndex();
+        if (index >= 0) return getItemAt(index);
+        String text = editor.getText().strip();
+        for (int i = 0; i < getItemCount(); i++) {
+            if (getItemAt(i).toString().equalsIgnoreCase(text)) return getItemAt(i);
+        }
+        return null;
+    }
+
+    private void refresh(String text) {
+        UiTasks.onEdt(tasks.read(operation, conn -> search.find(conn, text, MAX_MATCHES)), this::showMatches);
+    }
+
+    // Swaps in the matches without disturbing what the user has typed so far
+    private void showMatches(List<T> matches) {
+        updating = true;
+        try {
+            String typed = editor.getText();
+            int caret = editor.getCaretPosition();
+            DefaultComboBoxModel<T> model = new DefaultComboBoxModel<>(new Vector<>(matches));
+            model.setSelectedItem(null);
+            setModel(model);
+            editor.setText(typed);
+            editor.setCaretPosition(Math.min(caret, typed.length()));
+            if (isShowing() && editor.hasFocus() && !matches.isEmpty()) {
+                hidePopup(); // Re-open so the popup is resized to the new list
+                showPopup();
+            }
+        } finally {
+            updating = false;
+        }
+    }
+}
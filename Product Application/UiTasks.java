@@ -0,0 +1,102 @@
+import db.DbExecutor;
+import db.ReportingReplica;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.JTextComponent;
+import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+/** Glue between {@link DbExecutor} futures and Swing. */
+final class UiTasks {
+
+    private UiTasks() {}
+
+    /** A read scope whose running reads are cancelled when the window is hidden or disposed. */
+    static DbExecutor.Scope scopeFor(Window window) {
+        DbExecutor.Scope scope = DbExecutor.scope();
+        window.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentHidden(ComponentEvent e) {
+                scope.cancelAll();
+            }
+        });
+        window.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                scope.cancelAll();
+            }
+        });
+        return scope;
+    }
+
+    /**
+     * Hands the result to {@code onSuccess} on the EDT. Failures are logged like the synchronous
+     * loads always were; cancelled reads are dropped silently.
+     */
+    static <T> CompletableFuture<Void> onEdt(CompletableFuture<T> task, Consumer<T> onSuccess) {
+        return onEdt(task, onSuccess, Throwable::printStackTrace);
+    }
+
+    /** Like {@link #onEdt(CompletableFuture, Consumer)}, with failures handed to {@code onFailure} on the EDT. */
+    static <T> CompletableFuture<Void> onEdt(CompletableFuture<T> task, Consumer<T> onSuccess,
+                                            Consumer<Throwable> onFailure) {
+        return task.handleAsync((result, error) -> {
+            if (error == null) {
+                onSuccess.accept(result);
+            } else if (!isCancellation(error)) {
+                onFailure.accept(error);
+            }
+            return null;
+        }, SwingUtilities::invokeLater);
+    }
+
+    /**
+     * Calls {@code action} on the EDT once the field's text has stopped changing for
+     * {@code delayMillis}, so a search runs once per pause in typing rather than per keystroke.
+     */
+    static void onTextChange(JTextComponent field, int delayMillis, Runnable action) {
+        Timer debounce = new Timer(delayMillis, _ -> action.run());
+        debounce.setRepeats(false);
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                // Attribute changes only
+            }
+        });
+    }
+
+    /** "data as of 14:05" for the current reporting replica, to label report results. */
+    static String reportingAsOf() {
+        Instant at = ReportingReplica.refreshedAt();
+        if (at == null) return "data as of now";
+        return "data as of " + LocalTime.ofInstant(at, ZoneId.systemDefault()).format(DateTimeFormatter.ofPattern("HH:mm"));
+    }
+
+    private static boolean isCancellation(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof CancellationException;
+    }
+}
@@ -0,0 +1,99 @@
+package db;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+/**
+ * Where the data lives and which engine holds it. The application uses {@link #configured()},
+ * which is app.db unless the {@value #PROPERTY} system property names another backend:
+ * <ul>
+ *   <li>{@code sqlite:<file>} - a SQLite database file (the default is {@code sqlite:app.db})</li>
+ *   <li>{@code sqlite-memory:<name>} - a SQLite database held in memory, shared by every
+ *       connection in the process, gone when the process exits; for tests and benchmarks</li>
+ *   <li>{@code h2:<file>} - an embedded H2 database; needs the H2 driver on the class path</li>
+ * </ul>
+ * An in-memory database starts from the {@link Seed} named by {@value Seed#PROPERTY}, if any.
+ */
+public record Backend(SqlDialect dialect, String url, boolean inMemory, Seed seed) {
+    public static final String PROPERTY = "app.db";
+
+    public static Backend sqliteFile(String file) {
+        return new Backend(SqlDialect.SQLITE, "jdbc:sqlite:" + file, false, null);
+    }
+
+    /**
+     * An in-memory SQLite database in shared-cache mode, so every connection with the same
+     * name sees the same data. Shared-cache connections lock whole tables and report
+     * conflicts at once as SQLITE_LOCKED instead of waiting out the busy timeout. Read-only
+     * connections read uncommitted, so a reader neither takes table read locks nor fails on a
+     * writer's, at the price of possibly seeing a write that is later rolled back.
+     */
+    public static Backend sqliteMemory(String name) {
+        return new Backend(SqlDialect.SQLITE, "jdbc:sqlite:file:" + name + "?mode=memory&cache=shared", true, null);
+    }
+
+    /** The same in-memory database, filled from the seed when it is created. */
+    public Backend withSeed(Seed startWith) {
+        if (!inMemory) throw new IllegalArgumentException("Only in-memory databases are seeded");
+        return new Backend(dialect, url, true, startWith);
+    }
+
+    public static Backend h2(String file) {
+        // H2 wants an explicit path; LOCK_TIMEOUT is how long a writer waits for a locked row
+        return new Backend(SqlDialect.H2, "jdbc:h2:" + Path.of(file).toAbsolutePath() + ";LOCK_TIMEOUT=5000", false, null);
+    }
+
+    /**
+     * Parses a backend in the {@value #PROPERTY} property syntax.
+     *
+     * @throws IllegalArgumentException if the kind is not one of sqlite, sqlite-memory or h2
+     */
+    public static Backend parse(String spec) {
+        int colon = spec.indexOf(':');
+        String kind = colon < 0 ? spec : spec.substring(0, colon);
+        String location = colon < 0 ? "" : spec.substring(colon + 1);
+        return switch (kind) {
+            case "sqlite" -> sqliteFile(location.isEmpty() ? "app.db" : location);
+            case "sqlite-memory" -> sqliteMemory(location.isEmpty() ? "app" : location);
+            case "h2" -> h2(location.isEmpty() ? "app-h2" : location);
+            default -> throw new IllegalArgumentException(
+                    "Unknown database backend '" + kind + "'; expected sqlite, sqlite-memory or h2");
+        };
+    }
+
+    /** The backend named by the {@value #PROPERTY} system property, or app.db when it is not set. */
+    public static Backend configured() {
+        String spec = System.getProperty(PROPERTY);
+        Backend backend = spec == null || spec.isBlank() ? sqliteFile("app.db") : parse(spec.strip());
+        String seed = System.getProperty(Seed.PROPERTY);
+        return seed == null || seed.isBlank() ? backend : backend.withSeed(Seed.parse(seed.strip()));
+    }
+
+    // Driver properties for a new connection
+    Properties properties(boolean readOnly) {
+        Properties props = new Properties();
+        if (readOnly && dialect == SqlDialect.SQLITE && !inMemory) {
+            props.setProperty("open_mode", "1"); // SQLITE_OPEN_READONLY
+        }
+        return props;
+    }
+
+    // Settings applied once a connection is open
+    void prepare(Connection conn, boolean readOnly) throws SQLException {
+        if (!readOnly) return;
+        if (dialect == SqlDialect.SQLITE) {
+            // open_mode would replace the URI and shared-cache flags an in-memory database needs
+            if (inMemory) {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("PRAGMA query_only = 1");
+                    stmt.execute("PRAGMA read_uncommitted = true"); // Only takes effect in shared-cache mode
+                }
+            }
+        } else {
+            conn.setReadOnly(true);
+        }
+    }
+}
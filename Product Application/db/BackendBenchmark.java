@@ -0,0 +1,217 @@
+package db;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Compares how fast each storage backend takes sales from many writers at once. For every
+ * backend it creates a scratch database, stocks it with products, clients and sellers, then
+ * lets each worker thread run a mix of writes on its own connection for a fixed time: mostly
+ * sales through {@link SaleManager#postSale}, plus payment status changes on its own recent
+ * orders and client settlements, so every write path the counter runs is exercised on every
+ * backend. A write that loses a lock conflict is rolled back and retried; its latency includes
+ * the retries, and the conflicts are counted. Any other error stops the worker and is reported.
+ *
+ * <pre>
+ * java db.BackendBenchmark [--backends sqlite,sqlite-memory,h2] [--threads 8] [--seconds 10] [--products 200] [--clients 1000]
+ * </pre>
+ *
+ * Scratch databases go to a temporary directory and are deleted afterwards; app.db is not
+ * touched. Backends whose driver is not on the class path are reported and skipped.
+ */
+public final class BackendBenchmark {
+    private static final int STOCK_PER_PRODUCT = 1_000_000;
+    private static final int SELLERS = 10;
+
+    private record Stock(List<Integer> productIds, List<Integer> clientIds, List<Integer> sellerIds) {}
+
+    private static final int RECENT_ORDERS = 100;
+
+    private record Result(LatencyHistogram sales, LatencyHistogram payments, long conflicts, long failures) {}
+
+    private BackendBenchmark() {}
+
+    public static void main(String[] args) throws Exception {
+        List<String> kinds = List.of("sqlite", "sqlite-memory", "h2");
+        int threads = 8;
+        int seconds = 10;
+        int products = 200;
+        int clients = 1000;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--backends" -> kinds = List.of(args[++i].split(","));
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--seconds" -> seconds = Integer.parseInt(args[++i]);
+                case "--products" -> products = Integer.parseInt(args[++i]);
+                case "--clients" -> clients = Integer.parseInt(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        Path scratch = Files.createTempDirectory("backend-benchmark");
+        System.out.printf("%d threads, %d s per backend, %d products, %d clients%n%n", threads, seconds, products, clients);
+        System.out.printf("%-14s %8s %8s %9s %9s %9s %9s %9s %9s %11s %9s%n",
+                "Backend", "Sales", "Sales/s", "Mean ms", "p50 ms", "p95 ms", "p99 ms", "Max ms", "Conflicts",
+                "Payments", "Pay p95");
+        try {
+            for (String kind : kinds) {
+                Backend backend = switch (kind) {
+                    case "sqlite" -> Backend.sqliteFile(scratch.resolve("bench.db").toString());
+                    case "sqlite-memory" -> Backend.sqliteMemory("bench");
+                    case "h2" -> Backend.h2(scratch.resolve("bench-h2").toString());
+                    default -> throw new IllegalArgumentException("Unknown backend " + kind);
+                };
+                try {
+                    DatabaseManager.useBackend(backend);
+                    Stock stock = seed(products, clients);
+                    Result result = run(backend.dialect(), stock, threads, Duration.ofSeconds(seconds));
+                    LatencyHistogram h = result.sales();
+                    LatencyHistogram p = result.payments();
+                    System.out.printf("%-14s %8d %8.1f %9.2f %9.2f %9.2f %9.2f %9.2f %9d %11d %9.2f%s%n",
+                            kind, h.count(), h.count() / (double) seconds, h.meanMicros() / 1000.0,
+                            h.percentileMicros(50) / 1000.0, h.percentileMicros(95) / 1000.0,
+                            h.percentileMicros(99) / 1000.0, h.maxMicros() / 1000.0, result.conflicts(),
+                            p.count(), p.percentileMicros(95) / 1000.0,
+                            result.failures() > 0 ? "  (" + result.failures() + " failed)" : "");
+                } catch (SQLException e) {
+                    System.out.printf("%-14s skipped: %s%n", kind, e.getMessage());
+                }
+            }
+            DatabaseManager.useBackend(Backend.configured()); // Releases the in-memory database
+        } finally {
+            deleteTree(scratch);
+        }
+    }
+
+    private static Stock seed(int products, int clients) throws SQLException {
+        List<Integer> productIds = new ArrayList<>();
+        List<Integer> clientIds = new ArrayList<>();
+        List<Integer> sellerIds = new ArrayList<>();
+        try (Connection conn = DatabaseManager.connect("BackendBenchmark.seed")) {
+            try {
+                List<ShipmentManager.NewItem> items = new ArrayList<>();
+                for (int i = 1; i <= products; i++) {
+                    int productId = ProductManager.addProduct(conn, "Product " + i, 100L * (1 + i % 50), 60L * (1 + i % 50));
+                    productIds.add(productId);
+                    items.add(new ShipmentManager.NewItem(productId, STOCK_PER_PRODUCT, 60L * (1 + i % 50)));
+                }
+                ShipmentManager.postShipment(conn, "Benchmark", LocalDate.now(), 0, 0, 0, items);
+                for (int i = 1; i <= clients; i++) {
+                    clientIds.add(ClientManager.addClient(conn, "Client " + i, null));
+                }
+                for (int i = 1; i <= SELLERS; i++) {
+                    sellerIds.add(SellerManager.addSeller(conn, "Seller " + i));
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        return new Stock(productIds, clientIds, sellerIds);
+    }
+
+    private static Result run(SqlDialect dialect, Stock stock, int threads, Duration duration) throws InterruptedException {
+        LatencyHistogram sales = new LatencyHistogram();
+        LatencyHistogram payments = new LatencyHistogram();
+        AtomicLong conflicts = new AtomicLong();
+        AtomicLong failures = new AtomicLong();
+        long deadline = System.nanoTime() + duration.toNanos();
+        // Platform threads: the SQLite driver blocks inside native code, which would pin virtual threads anyway
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            workers.execute(() -> {
+                // The worker's own recent orders, so status changes rarely fight over the same rows
+                List<Integer> recentOrders = new ArrayList<>();
+                try (Connection conn = DatabaseManager.connect("BackendBenchmark.worker")) {
+                    while (System.nanoTime() < deadline) {
+                        ThreadLocalRandom random = ThreadLocalRandom.current();
+                        int roll = random.nextInt(20);
+                        if (roll < 4 && !recentOrders.isEmpty()) {
+                            int orderId = pick(recentOrders, random);
+                            String status = random.nextBoolean() ? "Paid" : "Unpaid";
+                            timed(conn, dialect, payments, conflicts,
+                                    c -> SaleManager.setPaymentStatus(c, orderId, status));
+                        } else if (roll == 4) {
+                            int clientId = pick(stock.clientIds(), random);
+                            timed(conn, dialect, payments, conflicts,
+                                    c -> SaleManager.settleClient(c, clientId, Dates.Range.ALL, "Unpaid", "Paid"));
+                        } else {
+                            if (recentOrders.size() == RECENT_ORDERS) recentOrders.remove(0);
+                            recentOrders.add(postOneSale(conn, dialect, stock, sales, conflicts));
+                        }
+                    }
+                } catch (SQLException e) {
+                    failures.incrementAndGet();
+                    e.printStackTrace();
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(duration.toSeconds() + 60, TimeUnit.SECONDS);
+        return new Result(sales, payments, conflicts.get(), failures.get());
+    }
+
+    private static int postOneSale(Connection conn, SqlDialect dialect, Stock stock, LatencyHistogram latency,
+                                   AtomicLong conflicts) throws SQLException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<SaleManager.NewLine> lines = new ArrayList<>();
+        int lineCount = 1 + random.nextInt(3);
+        for (int i = 0; i < lineCount; i++) {
+            int productId = pick(stock.productIds(), random);
+            lines.add(new SaleManager.NewLine(productId, "Product " + productId, 1 + random.nextInt(3)));
+        }
+        int clientId = pick(stock.clientIds(), random);
+        int sellerId = pick(stock.sellerIds(), random);
+        String status = random.nextBoolean() ? "Paid" : "Unpaid";
+        return timed(conn, dialect, latency, conflicts,
+                c -> SaleManager.postSale(c, clientId, sellerId, LocalDate.now(), status, lines));
+    }
+
+    // Runs one write transaction, retrying lock conflicts, and records its latency including the retries
+    private static <T> T timed(Connection conn, SqlDialect dialect, LatencyHistogram latency, AtomicLong conflicts,
+                               DbExecutor.Work<T> work) throws SQLException {
+        long start = System.nanoTime();
+        while (true) {
+            try {
+                T result = work.run(conn);
+                conn.commit();
+                CostLayers.committed(conn);
+                latency.recordNanos(System.nanoTime() - start);
+                return result;
+            } catch (SQLException e) {
+                CostLayers.rolledBack(conn);
+                conn.rollback();
+                if (!dialect.isLockConflict(e)) throw e;
+                conflicts.incrementAndGet();
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private static int pick(List<Integer> ids, ThreadLocalRandom random) {
+        return ids.get(random.nextInt(ids.size()));
+    }
+
+    private static void deleteTree(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Client queries and write paths shared by the Swing windows and headless callers. */
+public final class ClientManager {
+
+    public record ClientRow(int clientId, String name, String preferences, int numberOfPurchases) {}
+
+    /** What the client list is narrowed to; null fields are not filtered on. */
+    public record ClientFilter(String namePrefix, String preference) {
+        public static final ClientFilter NONE = new ClientFilter(null, null);
+    }
+
+    private ClientManager() {}
+
+    // Sorted the way the NOCASE name index is, so the ORDER BY walks the index instead of sorting
+    public static List<ClientRow> findClients(Connection conn) throws SQLException {
+        List<ClientRow> rows = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT Client_ID, Name, Preferences, NumberOfPurchases FROM Client ORDER BY "
+                     + DatabaseManager.dialect().caseInsensitive("Name") + ", Client_ID")) {
+            while (rs.next()) {
+                rows.add(new ClientRow(
+                        rs.getInt("Client_ID"),
+                        rs.getString("Name"),
+                        rs.getString("Preferences"),
+                        rs.getInt("NumberOfPurchases")));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * One page of the clients matching the filter, in case-insensitive name order, starting
+     * after {@code after} (the last row of the previous page, or null for the first page).
+     * A preference is looked up through its index; otherwise the walk follows the NOCASE name
+     * index, narrowed to the name prefix. Pages seek past the previous one rather than skipping rows.
+     */
+    public static List<ClientRow> findClients(Connection conn, ClientFilter filter, ClientRow after,
+                                              int limit) throws SQLException {
+        SqlDialect dialect = DatabaseManager.dialect();
+        String name = dialect.caseInsensitive("Name");
+        StringBuilder where = new StringBuilder(" WHERE 1 = 1");
+        List<String> params = new ArrayList<>();
+        if (filter.preference() != null) {
+            where.append(" AND Preferences = ?");
+            params.add(filter.preference());
+        }
+        if (filter.namePrefix() != null && !filter.namePrefix().isBlank()) {
+            String prefix = filter.namePrefix().strip();
+            where.append(" AND ").append(name).append(" >= ").append(dialect.caseInsensitive("?"))
+                    .append(" AND ").append(name).append(" < ").append(dialect.caseInsensitive("?"));
+            params.add(prefix);
+            params.add(prefix + Character.MAX_VALUE);
+        }
+        if (after != null) {
+            // The row-value form (name, id) > (?, ?) reads the same but SQLite will not seek the index with it
+            String last = dialect.caseInsensitive("?");
+            where.append(" AND ").append(name).append(" >= ").append(last)
+                    .append(" AND (").append(name).append(" > ").append(last).append(" OR Client_ID > ?)");
+            params.add(after.name());
+            params.add(after.name());
+        }
+
+        List<ClientRow> rows = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT Client_ID, Name, Preferences, NumberOfPurchases FROM Client" + where
+                + " ORDER BY " + name + ", Client_ID LIMIT ?")) {
+            int i = 1;
+            for (String param : params) stmt.setString(i++, param);
+            if (after != null) stmt.setInt(i++, after.clientId());
+            stmt.setInt(i, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(new ClientRow(
+                            rs.getInt("Client_ID"),
+                            rs.getString("Name"),
+                            rs.getString("Preferences"),
+                            rs.getInt("NumberOfPurchases")));
+                }
+            }
+        }
+        return rows;
+    }
+
+    /** @return the new Client_ID */
+    public static int addClient(Connection conn, String name, String preferences) throws SQLException {
+        int clientId;
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO Client (Name, Preferences, NumberOfPurchases) VALUES (?, ?, 0)",
+                Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setString(1, name);
+            stmt.setString(2, preferences);
+            stmt.executeUpdate();
+            try (ResultSet keys = stmt.getGeneratedKeys()) {
+                if (!keys.next()) throw new SQLException("No key returned for new client");
+                clientId = keys.getInt(1);
+            }
+        }
+        try (PreparedStatement stats = conn.prepareStatement("INSERT INTO ClientStats (Client_ID) VALUES (?)")) {
+            stats.setInt(1, clientId);
+            stats.executeUpdate();
+        }
+        return clientId;
+    }
+
+    /** Deletes the client and their purchase aggregates; their past orders keep the Client_ID. */
+    public static void deleteClient(Connection conn, int clientId) throws SQLException {
+        for (String table : List.of("ClientProductStats", "ClientStats", "Client")) {
+            try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM " + table + " WHERE Client_ID = ?")) {
+                stmt.setInt(1, clientId);
+                stmt.executeUpdate();
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-client purchase aggregates kept in ClientStats (orders, units, spend, first and last
+ * purchase) and ClientProductStats (units and spend per product), so the client list shows
+ * them without summing a client's sales on every open. Posting a sale adds to them in the
+ * same transaction; the rarer amendments and reversals recompute the clients they touch.
+ * A client's Preferences follow their most bought product once they have bought anything.
+ */
+public final class ClientStats {
+
+    /** One client's aggregates; money in cents, dates null before the first purchase. */
+    public record Summary(int clientId, int orders, int units, long spend,
+                          LocalDate firstPurchase, LocalDate lastPurchase) {
+
+        /** Average days between orders, or null with fewer than two orders. */
+        public Double daysBetweenOrders() {
+            if (orders < 2 || firstPurchase == null || lastPurchase == null) return null;
+            return (double) (lastPurchase.toEpochDay() - firstPurchase.toEpochDay()) / (orders - 1);
+        }
+    }
+
+    /** A product a client has bought, with their lifetime units and spend on it. */
+    public record TopProduct(int productId, String productName, int units, long spend) {}
+
+    private static final String TOP_PRODUCTS = """
+            SELECT s.Product_ID, p.Name, s.Units, s.Spend
+            FROM ClientProductStats s
+            JOIN Product p ON p.Product_ID = s.Product_ID
+            WHERE s.Client_ID = ?
+            ORDER BY s.Units DESC, s.Spend DESC, s.Product_ID
+            LIMIT ?
+        """;
+
+    // Every client's order totals; shared by recompute and the migration that creates the tables
+    static final String CLIENT_TOTALS = """
+            INSERT INTO ClientStats (Client_ID, Orders, Units, Spend, FirstPurchase, LastPurchase)
+            SELECT c.Client_ID, COUNT(DISTINCT o.Order_ID), COALESCE(SUM(l.Quantity), 0),
+                   COALESCE(SUM(l.TotalRevenue), 0), MIN(o.SaleDate), MAX(o.SaleDate)
+            FROM Client c
+            LEFT JOIN SaleOrder o ON o.Client_ID = c.Client_ID
+            LEFT JOIN SaleLine l ON l.Order_ID = o.Order_ID
+        """;
+
+    static final String PRODUCT_TOTALS = """
+            INSERT INTO ClientProductStats (Client_ID, Product_ID, Units, Spend)
+            SELECT o.Client_ID, l.Product_ID, SUM(l.Quantity), SUM(l.TotalRevenue)
+            FROM SaleOrder o
+            JOIN SaleLine l ON l.Order_ID = o.Order_ID
+            WHERE o.Client_ID IS NOT NULL AND l.Product_ID IS NOT NULL
+        """;
+
+    private ClientStats() {}
+
+    /** Summaries for the given clients; clients without a stats row are left out. */
+    public static Map<Integer, Summary> forClients(Connection conn, Collection<Integer> clientIds) throws SQLException {
+        Map<Integer, Summary> summaries = new HashMap<>();
+        if (clientIds.isEmpty()) return summaries;
+        // Past a few hundred IDs one pass over the table is cheaper than a long IN list
+        boolean all = clientIds.size() > 500;
+        String sql = "SELECT Client_ID, Orders, Units, Spend, FirstPurchase, LastPurchase FROM ClientStats"
+                + (all ? "" : " WHERE Client_ID IN (" + String.join(", ", Collections.nCopies(clientIds.size(), "?")) + ")");
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            if (!all) {
+                int i = 1;
+                for (int id : clientIds) stmt.setInt(i++, id);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Summary summary = new Summary(rs.getInt("Client_ID"), rs.getInt("Orders"), rs.getInt("Units"),
+                            rs.getLong("Spend"), Dates.read(rs, "FirstPurchase"), Dates.read(rs, "LastPurchase"));
+                    summaries.put(summary.clientId(), summary);
+                }
+            }
+        }
+        return summaries;
+    }
+
+    /** The client's most bought products, most units first. */
+    public static List<TopProduct> topProducts(Connection conn, int clientId, int limit) throws SQLException {
+        List<TopProduct> products = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(TOP_PRODUCTS)) {
+            stmt.setInt(1, clientId);
+            stmt.setInt(2, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    products.add(new TopProduct(rs.getInt("Product_ID"), rs.getString("Name"),
+                            rs.getInt("Units"), rs.getLong("Spend")));
+                }
+            }
+        }
+        return products;
+    }
+
+    // Adds one new order to the client's aggregates; runs in the sale's transaction
+    static void recordSale(Connection conn, int clientId, LocalDate saleDate, Map<Integer, Integer> unitsByProduct,
+                           Map<Integer, Long> spendByProduct) throws SQLException {
+        int units = unitsByProduct.values().stream().mapToInt(Integer::intValue).sum();
+        long spend = spendByProduct.values().stream().mapToLong(Long::longValue).sum();
+        try (PreparedStatement update = conn.prepareStatement("""
+                UPDATE ClientStats
+                SET Orders = Orders + 1, Units = Units + ?, Spend = Spend + ?,
+                    FirstPurchase = CASE WHEN FirstPurchase IS NULL OR FirstPurchase > ? THEN ? ELSE FirstPurchase END,
+                    LastPurchase = CASE WHEN LastPurchase IS NULL OR LastPurchase < ? THEN ? ELSE LastPurchase END
+                WHERE Client_ID = ?
+            """)) {
+            update.setInt(1, units);
+            update.setLong(2, spend);
+            Dates.bind(update, 3, saleDate);
+            Dates.bind(update, 4, saleDate);
+            Dates.bind(update, 5, saleDate);
+            Dates.bind(update, 6, saleDate);
+            update.setInt(7, clientId);
+            if (update.executeUpdate() == 0) {
+                // A client created before the stats existed, or by a path that skipped ClientManager
+                try (PreparedStatement insert = conn.prepareStatement("""
+                        INSERT INTO ClientStats (Client_ID, Orders, Units, Spend, FirstPurchase, LastPurchase)
+                        VALUES (?, 1, ?, ?, ?, ?)
+                    """)) {
+                    insert.setInt(1, clientId);
+                    insert.setInt(2, units);
+                    insert.setLong(3, spend);
+                    Dates.bind(insert, 4, saleDate);
+                    Dates.bind(insert, 5, saleDate);
+                    insert.executeUpdate();
+                }
+            }
+        }
+
+        // Update the products the client already has rows for, then insert the rest
+        List<Integer> missing = new ArrayList<>();
+        try (PreparedStatement update = conn.prepareStatement(
+                "UPDATE ClientProductStats SET Units = Units + ?, Spend = Spend + ? WHERE Client_ID = ? AND Product_ID = ?")) {
+            List<Integer> order = new ArrayList<>(unitsByProduct.keySet());
+            for (int productId : order) {
+                update.setInt(1, unitsByProduct.get(productId));
+                update.setLong(2, spendByProduct.getOrDefault(productId, 0L));
+                update.setInt(3, clientId);
+                update.setInt(4, productId);
+                update.addBatch();
+            }
+            int[] counts = update.executeBatch();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) missing.add(order.get(i));
+            }
+        }
+        if (!missing.isEmpty()) {
+            try (PreparedStatement insert = conn.prepareStatement(
+                    "INSERT INTO ClientProductStats (Client_ID, Product_ID, Units, Spend) VALUES (?, ?, ?, ?)")) {
+                for (int productId : missing) {
+                    insert.setInt(1, clientId);
+                    insert.setInt(2, productId);
+                    insert.setInt(3, unitsByProduct.get(productId));
+                    insert.setLong(4, spendByProduct.getOrDefault(productId, 0L));
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        }
+        derivePreference(conn, clientId);
+    }
+
+    // Rebuilds the aggregates of the given clients from their orders, after amendments and reversals
+    static void recompute(Connection conn, Collection<Integer> clientIds) throws SQLException {
+        if (clientIds.isEmpty()) return;
+        String in = "(" + String.join(", ", Collections.nCopies(clientIds.size(), "?")) + ")";
+        try (PreparedStatement deleteStats = conn.prepareStatement("DELETE FROM ClientStats WHERE Client_ID IN " + in);
+             PreparedStatement deleteProducts = conn.prepareStatement("DELETE FROM ClientProductStats WHERE Client_ID IN " + in);
+             PreparedStatement insertStats = conn.prepareStatement(CLIENT_TOTALS + " WHERE c.Client_ID IN " + in + " GROUP BY c.Client_ID");
+             PreparedStatement insertProducts = conn.prepareStatement(PRODUCT_TOTALS + " AND o.Client_ID IN " + in + " GROUP BY o.Client_ID, l.Product_ID")) {
+            for (PreparedStatement stmt : List.of(deleteStats, deleteProducts, insertStats, insertProducts)) {
+                int i = 1;
+                for (int id : clientIds) stmt.setInt(i++, id);
+                stmt.executeUpdate();
+            }
+        }
+        for (int clientId : clientIds) {
+            derivePreference(conn, clientId);
+        }
+    }
+
+    // Points Preferences at the client's most bought product; only writes when it changes, so the
+    // search index trigger does not fire on every sale
+    private static void derivePreference(Connection conn, int clientId) throws SQLException {
+        List<TopProduct> top = topProducts(conn, clientId, 1);
+        if (top.isEmpty()) return;
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "UPDATE Client SET Preferences = ? WHERE Client_ID = ? AND (Preferences IS NULL OR Preferences <> ?)")) {
+            stmt.setString(1, top.get(0).productName());
+            stmt.setInt(2, clientId);
+            stmt.setString(3, top.get(0).productName());
+            stmt.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Recomputes the hand-maintained counters from the rows they summarize and reports the ones
+ * that drifted. Checking runs on a read-only connection in primary-key chunks, each chunk its
+ * own short read transaction, with a pause in between so interactive writers are never held
+ * up. Repairing recomputes each flagged value inside the caller's write transaction.
+ */
+public final class ConsistencyChecker {
+    private static final int CHUNK_SIZE = 200;
+    private static final long PAUSE_MILLIS = 20;
+
+    /**
+     * A derived column and the SQL that recomputes it. Expressions are qualified with the
+     * table name rather than an alias so the same text works in the SELECT and the UPDATE.
+     */
+    public enum Counter {
+        // The ledger includes manual adjustments, so it is the authority rather than shipments minus sales
+        PRODUCT_STOCK("Product stock", "Product", "Product_ID", "Name", "AmountLeft", false, """
+                (SELECT COALESCE(SUM(StockMovement.Quantity), 0) FROM StockMovement
+                 WHERE StockMovement.Product_ID = Product.Product_ID)
+                """),
+        CLIENT_PURCHASES("Client purchases", "Client", "Client_ID", "Name", "NumberOfPurchases", false, """
+                (SELECT COALESCE(SUM(SaleLine.Quantity), 0) FROM SaleOrder
+                 JOIN SaleLine ON SaleLine.Order_ID = SaleOrder.Order_ID
+                 WHERE SaleOrder.Client_ID = Client.Client_ID)
+                """),
+        SELLER_CASH("Seller cash on hand", "Seller", "Seller_ID", "Name", "CashOnHand", true, """
+                (SELECT COALESCE(SUM(SaleLine.TotalRevenue), 0) FROM SaleOrder
+                 JOIN SaleLine ON SaleLine.Order_ID = SaleOrder.Order_ID
+                 WHERE SaleOrder.Seller_ID = Seller.Seller_ID AND SaleOrder.PaymentStatus = 'Paid'
+                   AND SaleOrder.CashSettled = 0)
+                - Seller.CashCollected
+                """),
+        // Labelled by order, since lines have no name of their own
+        SALE_LINE_COST("Sale line cost", "SaleLine", "Line_ID", "Order_ID", "Cost", true, """
+                (SELECT COALESCE(SUM(SaleLineLayer.Cost), 0) FROM SaleLineLayer
+                 WHERE SaleLineLayer.Line_ID = SaleLine.Line_ID)
+                """),
+        // Revenue depends on the selling price at the time, so only the profit side is checkable
+        SHIPMENT_PROFIT("Shipment gross profit", "Shipment", "Shipment_ID", "Deliveryman", "GrossProfit", true, """
+                COALESCE(Shipment.Revenue, 0)
+                - (SELECT COALESCE(SUM(ShipmentItem.Cost), 0) FROM ShipmentItem
+                   WHERE ShipmentItem.Shipment_ID = Shipment.Shipment_ID)
+                - COALESCE(Shipment.DeliveryExpense, 0)
+                - COALESCE(Shipment.EquipmentExpense, 0)
+                - COALESCE(Shipment.EmployeeExpense, 0)
+                """);
+
+        private final String label;
+        private final String table;
+        private final String idColumn;
+        private final String nameColumn;
+        private final String column;
+        private final boolean money;
+        private final String expected;
+
+        Counter(String label, String table, String idColumn, String nameColumn, String column,
+                boolean money, String expected) {
+            this.label = label;
+            this.table = table;
+            this.idColumn = idColumn;
+            this.nameColumn = nameColumn;
+            this.column = column;
+            this.money = money;
+            this.expected = expected;
+        }
+
+        public String label() {
+            return label;
+        }
+
+        /** True when the values are cents rather than unit counts. */
+        public boolean isMoney() {
+            return money;
+        }
+
+        String chunkSql() {
+            return "SELECT " + table + "." + idColumn + " AS Id, " + table + "." + nameColumn + " AS Name, "
+                    + "COALESCE(" + table + "." + column + ", 0) AS Stored, (" + expected + ") AS Expected "
+                    + "FROM " + table + " WHERE " + table + "." + idColumn + " > ? "
+                    + "ORDER BY " + table + "." + idColumn + " LIMIT ?";
+        }
+
+        String repairSql() {
+            return "UPDATE " + table + " SET " + column + " = (" + expected + ") WHERE " + idColumn + " = ?";
+        }
+    }
+
+    /** One drifted value; stored and expected are cents for money counters, units otherwise. */
+    public record Discrepancy(Counter counter, int id, String name, long stored, long expected) {
+        public long difference() {
+            return stored - expected;
+        }
+    }
+
+    private ConsistencyChecker() {}
+
+    /** Walks every counter on a read-only connection and returns the values that differ. */
+    public static List<Discrepancy> check() throws SQLException {
+        List<Discrepancy> found = new ArrayList<>();
+        try (Connection conn = DatabaseManager.connectReadOnly("ConsistencyChecker.check")) {
+            for (Counter counter : Counter.values()) {
+                checkCounter(conn, counter, found);
+            }
+        }
+        return found;
+    }
+
+    /** Runs {@link #check()} on a low-priority daemon thread. */
+    public static CompletableFuture<List<Discrepancy>> checkInBackground() {
+        CompletableFuture<List<Discrepancy>> result = new CompletableFuture<>();
+        Thread worker = new Thread(() -> {
+            try {
+                result.complete(check());
+            } catch (SQLException | RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }, "db-consistency-check");
+        worker.setDaemon(true);
+        worker.setPriority(Thread.MIN_PRIORITY);
+        worker.start();
+        return result;
+    }
+
+    /**
+     * Sets each flagged counter to its value recomputed at repair time, so changes committed
+     * since the check are not overwritten with stale numbers. Runs in the caller's transaction.
+     *
+     * @return the number of rows updated
+     */
+    public static int repair(Connection conn, List<Discrepancy> discrepancies) throws SQLException {
+        int updated = 0;
+        for (Counter counter : Counter.values()) {
+            try (PreparedStatement stmt = conn.prepareStatement(counter.repairSql())) {
+                boolean any = false;
+                for (Discrepancy d : discrepancies) {
+                    if (d.counter() != counter) continue;
+                    stmt.setInt(1, d.id());
+                    stmt.addBatch();
+                    any = true;
+                }
+                if (!any) continue;
+                for (int count : stmt.executeBatch()) {
+                    updated += Math.max(count, 0);
+                }
+            }
+        }
+        return updated;
+    }
+
+    // Keyset pagination on the primary key: each chunk is one index range read, never an OFFSET scan
+    private static void checkCounter(Connection conn, Counter counter, List<Discrepancy> found) throws SQLException {
+        String sql = counter.chunkSql();
+        int lastId = Integer.MIN_VALUE;
+        while (true) {
+            int rows = 0;
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setInt(1, lastId);
+                stmt.setInt(2, CHUNK_SIZE);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        rows++;
+                        lastId = rs.getInt("Id");
+                        long stored = rs.getLong("Stored");
+                        long expected = rs.getLong("Expected");
+                        if (stored != expected) {
+                            found.add(new Discrepancy(counter, lastId, rs.getString("Name"), stored, expected));
+                        }
+                    }
+                }
+            }
+            if (rows < CHUNK_SIZE || !pause()) return;
+        }
+    }
+
+    // Gives writers a window between chunks; false when the thread was interrupted and should stop
+    private static boolean pause() {
+        try {
+            Thread.sleep(PAUSE_MILLIS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
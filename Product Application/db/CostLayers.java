@@ -0,0 +1,540 @@
+package db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * FIFO cost of goods sold. Every shipment item is a cost layer of its units at its purchase
+ * rate; sales take units from a product's oldest open layer first and record which layers they
+ * took in SaleLineLayer, with the total on SaleLine.Cost, so a line's margin is one column away.
+ * Only layers with units left are kept in CostLayer, so it stays small however long the history.
+ *
+ * <p>Each product's open layers are also held in memory, so posting a sale does not read them.
+ * The copy is only a shortcut: every write names the units the layer is expected to hold, and
+ * when one does not match (another process, a rolled back sale) the layers are re-read and the
+ * sale retried from a savepoint. A used-up layer that is opened again (units returned, here or
+ * by another process) changes no layer the copy holds, so a sale from the copy also checks that
+ * no open layer it did not know of sorts before the last one it took from. Returning units to a
+ * layer drops the copy as well, so the next sale reads the layers instead. A sale's queues only become the copy once its
+ * transaction commits: whoever commits calls {@link #committed}, and whoever rolls back, even
+ * to a savepoint, calls {@link #rolledBack}. A layer a sale emptied is gone from its queue, and
+ * no later write would notice the rollback had brought it back.
+ *
+ * <p>Units sold beyond the open layers, such as stock entered by hand in the product window,
+ * are costed at the product's current rate and recorded against item {@value #UNTRACKED}.
+ */
+public final class CostLayers {
+
+    /** Item_ID recorded for units that came from stock no shipment accounts for. */
+    static final int UNTRACKED = 0;
+
+    /** One sale line's units of one product, to be costed. */
+    record LineUnits(int lineId, int productId, int quantity) {}
+
+    private static final class Layer {
+        final int itemId;
+        final long unitCost;
+        int remaining;
+
+        Layer(int itemId, long unitCost, int remaining) {
+            this.itemId = itemId;
+            this.unitCost = unitCost;
+            this.remaining = remaining;
+        }
+
+        Layer copy() {
+            return new Layer(itemId, unitCost, remaining);
+        }
+    }
+
+    private record Take(int lineId, int itemId, int quantity, long cost) {}
+
+    // Units a layer is expected to hold before the sale and will hold after it
+    private record Change(int before, int after) {}
+
+    private static final Map<Integer, ArrayDeque<Layer>> QUEUES = new ConcurrentHashMap<>();
+    // Queues left by sales whose transaction is still open, by connection; a connection that is
+    // dropped without either call takes its entry with it
+    private static final Map<Connection, Map<Integer, ArrayDeque<Layer>>> PENDING =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private CostLayers() {}
+
+    /**
+     * Takes each line's units from its product's oldest layers and records the cost. Lines
+     * are new, so their SaleLineLayer rows are inserted rather than merged. Callers hold the
+     * products' stock rows locked, which keeps two sales of one product from interleaving.
+     *
+     * @return the cost of each line in cents, by Line_ID
+     */
+    static Map<Integer, Long> consume(Connection conn, List<LineUnits> lines) throws SQLException {
+        return consume(conn, lines, false);
+    }
+
+    private static Map<Integer, Long> consume(Connection conn, List<LineUnits> lines, boolean merge) throws SQLException {
+        Map<Integer, Long> costs = new LinkedHashMap<>();
+        if (lines.isEmpty()) return costs;
+        Savepoint savepoint = conn.setSavepoint();
+        for (int attempt = 0; attempt < 2; attempt++) {
+            boolean fresh = attempt > 0;
+            Map<Integer, ArrayDeque<Layer>> working = new HashMap<>();
+            Map<Integer, Change> changes = new LinkedHashMap<>();
+            Map<Integer, TreeSet<Integer>> taken = new HashMap<>();
+            List<Take> takes = new ArrayList<>();
+            boolean complete = true;
+            for (LineUnits line : lines) {
+                ArrayDeque<Layer> queue = working.get(line.productId());
+                if (queue == null) {
+                    queue = copy(queueFor(conn, line.productId(), fresh));
+                    working.put(line.productId(), queue);
+                }
+                int first = takes.size();
+                int left = take(queue, line, takes, changes);
+                for (Take t : takes.subList(first, takes.size())) {
+                    taken.computeIfAbsent(line.productId(), _ -> new TreeSet<>()).add(t.itemId());
+                }
+                if (left > 0 && !fresh) {
+                    complete = false; // The copy may be missing a layer; re-read before selling untracked stock
+                    break;
+                }
+                if (left > 0) {
+                    takes.add(new Take(line.lineId(), UNTRACKED, left, Money.times(rateOf(conn, line.productId()), left)));
+                }
+            }
+            if (complete && (fresh || noneSkipped(conn, taken)) && writeLayers(conn, changes)) {
+                writeTakes(conn, takes, merge);
+                QUEUES.keySet().removeAll(working.keySet()); // Until the commit, only the database is current
+                PENDING.computeIfAbsent(conn, _ -> new HashMap<>()).putAll(working);
+                conn.releaseSavepoint(savepoint);
+                for (Take t : takes) costs.merge(t.lineId(), t.cost(), Long::sum);
+                return costs;
+            }
+            conn.rollback(savepoint);
+            for (LineUnits line : lines) QUEUES.remove(line.productId());
+        }
+        throw new SQLException("Cost layers changed while the sale was being costed");
+    }
+
+    /**
+     * Takes more units for an existing line, when an amendment raises its quantity. The line
+     * keeps one SaleLineLayer row per layer, so units from a layer it already drew on are merged in.
+     *
+     * @return the cost of the added units in cents
+     */
+    static long consumeMore(Connection conn, int lineId, int productId, int quantity) throws SQLException {
+        return consume(conn, List.of(new LineUnits(lineId, productId, quantity)), true)
+                .getOrDefault(lineId, 0L);
+    }
+
+    /**
+     * Gives back units of one line, newest layer first, when an amendment lowers its quantity.
+     *
+     * @return the cost of the returned units in cents
+     */
+    static long giveBack(Connection conn, int lineId, int quantity) throws SQLException {
+        Map<Integer, Integer> returned = new LinkedHashMap<>();
+        long cost = 0;
+        int left = quantity;
+        try (PreparedStatement read = conn.prepareStatement(
+                "SELECT Item_ID, Quantity, Cost FROM SaleLineLayer WHERE Line_ID = ? ORDER BY Item_ID DESC");
+             PreparedStatement update = conn.prepareStatement(
+                "UPDATE SaleLineLayer SET Quantity = Quantity - ?, Cost = Cost - ? WHERE Line_ID = ? AND Item_ID = ?");
+             PreparedStatement delete = conn.prepareStatement(
+                "DELETE FROM SaleLineLayer WHERE Line_ID = ? AND Item_ID = ?")) {
+            read.setInt(1, lineId);
+            try (ResultSet rs = read.executeQuery()) {
+                // Untracked units are the oldest stock, so with DESC they are the last to go back
+                while (left > 0 && rs.next()) {
+                    int itemId = rs.getInt("Item_ID");
+                    int units = rs.getInt("Quantity");
+                    if (units <= 0) continue;
+                    int back = Math.min(units, left);
+                    long rowCost = rs.getLong("Cost");
+                    // Pro rata rather than a truncated unit cost, as an untracked row can hold units
+                    // taken at different rates; the last unit back takes whatever cost is left
+                    long backCost = back == units ? rowCost : Math.multiplyExact(rowCost, back) / units;
+                    if (back == units) {
+                        delete.setInt(1, lineId);
+                        delete.setInt(2, itemId);
+                        delete.addBatch();
+                    } else {
+                        update.setInt(1, back);
+                        update.setLong(2, backCost);
+                        update.setInt(3, lineId);
+                        update.setInt(4, itemId);
+                        update.addBatch();
+                    }
+                    returned.merge(itemId, back, Integer::sum);
+                    cost += backCost;
+                    left -= back;
+                }
+            }
+            update.executeBatch();
+            delete.executeBatch();
+        }
+        try (PreparedStatement line = conn.prepareStatement("UPDATE SaleLine SET Cost = Cost - ? WHERE Line_ID = ?")) {
+            line.setLong(1, cost);
+            line.setInt(2, lineId);
+            line.executeUpdate();
+        }
+        returnToLayers(conn, returned);
+        return cost;
+    }
+
+    /** Returns every unit of the given lines to the layers they came from, before the lines are deleted. */
+    static void restore(Connection conn, Collection<Integer> lineIds) throws SQLException {
+        if (lineIds.isEmpty()) return;
+        String in = "(" + String.join(", ", Collections.nCopies(lineIds.size(), "?")) + ")";
+        Map<Integer, Integer> returned = new TreeMap<>();
+        try (PreparedStatement read = conn.prepareStatement(
+                "SELECT Item_ID, SUM(Quantity) AS Units FROM SaleLineLayer WHERE Line_ID IN " + in + " GROUP BY Item_ID");
+             PreparedStatement delete = conn.prepareStatement("DELETE FROM SaleLineLayer WHERE Line_ID IN " + in)) {
+            int i = 1;
+            for (int id : lineIds) {
+                read.setInt(i, id);
+                delete.setInt(i++, id);
+            }
+            try (ResultSet rs = read.executeQuery()) {
+                while (rs.next()) returned.put(rs.getInt("Item_ID"), rs.getInt("Units"));
+            }
+            delete.executeUpdate();
+        }
+        returnToLayers(conn, returned);
+    }
+
+    /** Opens a layer for each item of the shipment past {@code afterItemId}, i.e. the ones just inserted. */
+    static void receive(Connection conn, int shipmentId, int afterItemId, Collection<Integer> productIds) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("""
+                INSERT INTO CostLayer (Item_ID, Product_ID, Remaining, UnitCost)
+                SELECT Item_ID, Product_ID, Input, Rate FROM ShipmentItem
+                WHERE Shipment_ID = ? AND Item_ID > ? AND Input > 0
+            """)) {
+            stmt.setInt(1, shipmentId);
+            stmt.setInt(2, afterItemId);
+            stmt.executeUpdate();
+        }
+        // New layers go to the back of the queue; dropping it saves tracking whether this commits
+        for (int productId : productIds) QUEUES.remove(productId);
+    }
+
+    /** Closes the open layers of shipments about to be deleted; units already sold keep their cost. */
+    public static void discardShipments(Connection conn, Collection<Integer> shipmentIds) throws SQLException {
+        if (shipmentIds.isEmpty()) return;
+        String in = "(" + String.join(", ", Collections.nCopies(shipmentIds.size(), "?")) + ")";
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "DELETE FROM CostLayer WHERE Item_ID IN (SELECT Item_ID FROM ShipmentItem WHERE Shipment_ID IN " + in + ")")) {
+            int i = 1;
+            for (int id : shipmentIds) stmt.setInt(i++, id);
+            stmt.executeUpdate();
+        }
+        QUEUES.clear();
+    }
+
+    /** Closes the open layers of products about to be deleted. */
+    static void discardProducts(Connection conn, Collection<Integer> productIds) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM CostLayer WHERE Product_ID = ?")) {
+            for (int productId : productIds) {
+                stmt.setInt(1, productId);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+        QUEUES.keySet().removeAll(productIds);
+    }
+
+    /** Keeps the queues of the sales this connection just committed, for the next sales to start from. */
+    public static void committed(Connection conn) {
+        Map<Integer, ArrayDeque<Layer>> queues = PENDING.remove(conn);
+        if (queues != null) QUEUES.putAll(queues);
+    }
+
+    /**
+     * Forgets the queues of this connection's uncommitted sales, after a rollback or a rollback
+     * to a savepoint; its products are read from the database again next time.
+     */
+    public static void rolledBack(Connection conn) {
+        PENDING.remove(conn);
+    }
+
+    /** Drops every in-memory queue, e.g. when the application switches databases. */
+    static void forgetAll() {
+        QUEUES.clear();
+        PENDING.clear();
+    }
+
+    /**
+     * Replays the whole sales history against the shipments in the order both were entered,
+     * filling SaleLineLayer, SaleLine.Cost and the open layers. Used once, by the migration
+     * that introduces cost layers; reads each table once and writes in batches.
+     */
+    static void replayHistory(Connection conn) throws SQLException {
+        Map<Integer, ArrayDeque<Layer>> queues = new HashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT Item_ID, Product_ID, Input, Rate FROM ShipmentItem WHERE Input > 0 AND Product_ID IS NOT NULL ORDER BY Item_ID");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                queues.computeIfAbsent(rs.getInt("Product_ID"), _ -> new ArrayDeque<>())
+                        .add(new Layer(rs.getInt("Item_ID"), rs.getLong("Rate"), rs.getInt("Input")));
+            }
+        }
+        Map<Integer, Long> rates = new HashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT Product_ID, Rate FROM Product");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) rates.put(rs.getInt("Product_ID"), rs.getLong("Rate"));
+        }
+
+        try (PreparedStatement read = conn.prepareStatement(
+                "SELECT Line_ID, Product_ID, Quantity FROM SaleLine WHERE Quantity > 0 AND Product_ID IS NOT NULL ORDER BY Line_ID");
+             PreparedStatement insert = conn.prepareStatement(
+                "INSERT INTO SaleLineLayer (Line_ID, Item_ID, Quantity, Cost) VALUES (?, ?, ?, ?)");
+             ResultSet rs = read.executeQuery()) {
+            int pending = 0;
+            List<Take> takes = new ArrayList<>();
+            while (rs.next()) {
+                LineUnits line = new LineUnits(rs.getInt("Line_ID"), rs.getInt("Product_ID"), rs.getInt("Quantity"));
+                takes.clear();
+                int left = take(queues.computeIfAbsent(line.productId(), _ -> new ArrayDeque<>()), line, takes, new HashMap<>());
+                if (left > 0) {
+                    takes.add(new Take(line.lineId(), UNTRACKED, left,
+                            Money.times(rates.getOrDefault(line.productId(), 0L), left)));
+                }
+                for (Take t : takes) {
+                    bindTake(insert, t);
+                    insert.addBatch();
+                    if (++pending % 1000 == 0) insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement("""
+                UPDATE SaleLine SET Cost = COALESCE(
+                    (SELECT SUM(x.Cost) FROM SaleLineLayer x WHERE x.Line_ID = SaleLine.Line_ID), 0)
+            """)) {
+            stmt.executeUpdate();
+        }
+        try (PreparedStatement insert = conn.prepareStatement(
+                "INSERT INTO CostLayer (Item_ID, Product_ID, Remaining, UnitCost) VALUES (?, ?, ?, ?)")) {
+            for (Map.Entry<Integer, ArrayDeque<Layer>> e : queues.entrySet()) {
+                for (Layer layer : e.getValue()) {
+                    insert.setInt(1, layer.itemId);
+                    insert.setInt(2, e.getKey());
+                    insert.setInt(3, layer.remaining);
+                    insert.setLong(4, layer.unitCost);
+                    insert.addBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+    }
+
+    // Takes the line's units from the front of the queue, noting each layer's before and after;
+    // returns the units the queue could not cover
+    private static int take(ArrayDeque<Layer> queue, LineUnits line, List<Take> takes, Map<Integer, Change> changes) {
+        int left = line.quantity();
+        while (left > 0 && !queue.isEmpty()) {
+            Layer layer = queue.peekFirst();
+            int units = Math.min(layer.remaining, left);
+            Change change = changes.get(layer.itemId);
+            changes.put(layer.itemId, new Change(change == null ? layer.remaining : change.before(), layer.remaining - units));
+            takes.add(new Take(line.lineId(), layer.itemId, units, Money.times(layer.unitCost, units)));
+            layer.remaining -= units;
+            left -= units;
+            if (layer.remaining == 0) queue.pollFirst();
+        }
+        return left;
+    }
+
+    private static ArrayDeque<Layer> queueFor(Connection conn, int productId, boolean fresh) throws SQLException {
+        ArrayDeque<Layer> queue = fresh ? null : QUEUES.get(productId);
+        if (queue != null) return queue;
+        queue = new ArrayDeque<>();
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT Item_ID, Remaining, UnitCost FROM CostLayer WHERE Product_ID = ? ORDER BY Item_ID")) {
+            stmt.setInt(1, productId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    queue.add(new Layer(rs.getInt("Item_ID"), rs.getLong("UnitCost"), rs.getInt("Remaining")));
+                }
+            }
+        }
+        return queue;
+    }
+
+    private static ArrayDeque<Layer> copy(ArrayDeque<Layer> queue) {
+        ArrayDeque<Layer> copy = new ArrayDeque<>(queue.size());
+        for (Layer layer : queue) copy.add(layer.copy());
+        return copy;
+    }
+
+    private static long rateOf(Connection conn, int productId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT Rate FROM Product WHERE Product_ID = ?")) {
+            stmt.setInt(1, productId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong("Rate") : 0;
+            }
+        }
+    }
+
+    // False if a product has an open layer at or before the last one the sale took from that the
+    // sale did not take from, i.e. one reopened since the queue was read
+    private static boolean noneSkipped(Connection conn, Map<Integer, TreeSet<Integer>> taken) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT COUNT(*) FROM CostLayer WHERE Product_ID = ? AND Item_ID <= ?")) {
+            for (Map.Entry<Integer, TreeSet<Integer>> e : taken.entrySet()) {
+                stmt.setInt(1, e.getKey());
+                stmt.setInt(2, e.getValue().last());
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (!rs.next() || rs.getInt(1) != e.getValue().size()) return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // Applies the layer changes, each conditional on the layer still holding what the queue said;
+    // false if any did not, leaving the caller to roll back to its savepoint
+    private static boolean writeLayers(Connection conn, Map<Integer, Change> changes) throws SQLException {
+        if (changes.isEmpty()) return true;
+        List<Integer> updated = new ArrayList<>();
+        List<Integer> emptied = new ArrayList<>();
+        try (PreparedStatement update = conn.prepareStatement(
+                "UPDATE CostLayer SET Remaining = ? WHERE Item_ID = ? AND Remaining = ?");
+             PreparedStatement delete = conn.prepareStatement(
+                "DELETE FROM CostLayer WHERE Item_ID = ? AND Remaining = ?")) {
+            for (Map.Entry<Integer, Change> e : changes.entrySet()) {
+                Change change = e.getValue();
+                if (change.after() == 0) {
+                    delete.setInt(1, e.getKey());
+                    delete.setInt(2, change.before());
+                    delete.addBatch();
+                    emptied.add(e.getKey());
+                } else {
+                    update.setInt(1, change.after());
+                    update.setInt(2, e.getKey());
+                    update.setInt(3, change.before());
+                    update.addBatch();
+                    updated.add(e.getKey());
+                }
+            }
+            return (updated.isEmpty() || allApplied(update.executeBatch()))
+                    && (emptied.isEmpty() || allApplied(delete.executeBatch()));
+        }
+    }
+
+    private static boolean allApplied(int[] counts) {
+        for (int count : counts) {
+            if (count == 0) return false;
+        }
+        return true;
+    }
+
+    private static void writeTakes(Connection conn, List<Take> takes, boolean merge) throws SQLException {
+        List<Take> inserts = takes;
+        if (merge) {
+            inserts = new ArrayList<>();
+            try (PreparedStatement update = conn.prepareStatement(
+                    "UPDATE SaleLineLayer SET Quantity = Quantity + ?, Cost = Cost + ? WHERE Line_ID = ? AND Item_ID = ?")) {
+                for (Take t : takes) {
+                    update.setInt(1, t.quantity());
+                    update.setLong(2, t.cost());
+                    update.setInt(3, t.lineId());
+                    update.setInt(4, t.itemId());
+                    update.addBatch();
+                }
+                int[] counts = update.executeBatch();
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] == 0) inserts.add(takes.get(i));
+                }
+            }
+        }
+        try (PreparedStatement insert = conn.prepareStatement(
+                "INSERT INTO SaleLineLayer (Line_ID, Item_ID, Quantity, Cost) VALUES (?, ?, ?, ?)");
+             PreparedStatement line = conn.prepareStatement(
+                "UPDATE SaleLine SET Cost = Cost + ? WHERE Line_ID = ?")) {
+            for (Take t : inserts) {
+                bindTake(insert, t);
+                insert.addBatch();
+            }
+            Map<Integer, Long> byLine = new LinkedHashMap<>();
+            for (Take t : takes) byLine.merge(t.lineId(), t.cost(), Long::sum);
+            for (Map.Entry<Integer, Long> e : byLine.entrySet()) {
+                line.setLong(1, e.getValue());
+                line.setInt(2, e.getKey());
+                line.addBatch();
+            }
+            if (!inserts.isEmpty()) insert.executeBatch();
+            line.executeBatch();
+        }
+    }
+
+    private static void bindTake(PreparedStatement stmt, Take t) throws SQLException {
+        stmt.setInt(1, t.lineId());
+        stmt.setInt(2, t.itemId());
+        stmt.setInt(3, t.quantity());
+        stmt.setLong(4, t.cost());
+    }
+
+    // Adds units back to their layers, reopening layers that were used up; items since deleted
+    // with their shipment or product, and untracked stock, have nowhere to go back to
+    private static void returnToLayers(Connection conn, Map<Integer, Integer> returned) throws SQLException {
+        List<Integer> itemIds = new ArrayList<>();
+        for (int itemId : returned.keySet()) {
+            if (itemId != UNTRACKED) itemIds.add(itemId);
+        }
+        if (itemIds.isEmpty()) return;
+        List<Integer> reopen = new ArrayList<>();
+        try (PreparedStatement update = conn.prepareStatement(
+                "UPDATE CostLayer SET Remaining = Remaining + ? WHERE Item_ID = ?")) {
+            for (int itemId : itemIds) {
+                update.setInt(1, returned.get(itemId));
+                update.setInt(2, itemId);
+                update.addBatch();
+            }
+            int[] counts = update.executeBatch();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) reopen.add(itemIds.get(i));
+            }
+        }
+        if (!reopen.isEmpty()) {
+            try (PreparedStatement insert = conn.prepareStatement("""
+                    INSERT INTO CostLayer (Item_ID, Product_ID, Remaining, UnitCost)
+                    SELECT si.Item_ID, si.Product_ID, ?, si.Rate FROM ShipmentItem si
+                    JOIN Product p ON p.Product_ID = si.Product_ID
+                    WHERE si.Item_ID = ?
+                """)) {
+                for (int itemId : reopen) {
+                    insert.setInt(1, returned.get(itemId));
+                    insert.setInt(2, itemId);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        }
+        // A reopened or topped-up layer may sort before the queued ones, so re-read next time
+        String in = "(" + String.join(", ", Collections.nCopies(itemIds.size(), "?")) + ")";
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT DISTINCT Product_ID FROM ShipmentItem WHERE Item_ID IN " + in)) {
+            int i = 1;
+            for (int id : itemIds) stmt.setInt(i++, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) QUEUES.remove(rs.getInt("Product_ID"));
+            }
+        }
+    }
+}
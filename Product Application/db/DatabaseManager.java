@@ -2,16 +2,194 @@ package db;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class DatabaseManager {
-    private static final String DB_URL = "jdbc:sqlite:app.db";
+    private static final StackWalker WALKER = StackWalker.getInstance();
+    private static final AtomicLong DATA_VERSION = new AtomicLong();
+    private static volatile Backend backend = Backend.configured();
+    private static volatile boolean migrated;
+    private static Connection keepAlive; // Holds an in-memory database open between connections; guarded by the class
 
+    /** The backend connections currently go to. */
+    public static Backend backend() {
+        return backend;
+    }
+
+    public static SqlDialect dialect() {
+        return backend.dialect();
+    }
+
+    /**
+     * Points every later connection at another backend; its schema is brought up to date on
+     * the first connect. Meant for start-up and for tests and benchmarks, not for switching
+     * while windows hold connections open.
+     */
+    public static synchronized void useBackend(Backend next) throws SQLException {
+        if (keepAlive != null) {
+            keepAlive.close(); // Drops the previous in-memory database
+            keepAlive = null;
+        }
+        backend = next;
+        migrated = false;
+        CostLayers.forgetAll();
+        dataChanged();
+    }
+
+    /** Opens a connection tagged with the calling method (e.g. "SalesWindow.loadSales") for metrics. */
     public static Connection connect() throws SQLException {
-        Connection conn = DriverManager.getConnection(DB_URL);
+        return connect(needsOperationTag() ? callerOperation() : null);
+    }
+
+    /** Opens a connection whose statements are reported to {@link Metrics} under the given operation name. */
+    public static Connection connect(String operation) throws SQLException {
+        ensureMigrated();
+        return open(operation);
+    }
+
+    /**
+     * Opens a connection the driver refuses to write through, in autocommit mode so every
+     * statement is its own short read transaction. Used by background verifiers that must
+     * never hold locks across work or modify data by accident.
+     */
+    public static Connection connectReadOnly(String operation) throws SQLException {
+        ensureMigrated();
+        return openReadOnly(backend, operation);
+    }
+
+    /** A read-only autocommit connection to another database, such as the reporting replica. */
+    static Connection openReadOnly(Backend target, String operation) throws SQLException {
+        Connection conn = open(target, operation, true);
+        conn.setAutoCommit(true);
+        return conn;
+    }
+
+    private static Connection open(String operation) throws SQLException {
+        return open(backend, operation, false);
+    }
+
+    private static Connection open(Backend target, String operation, boolean readOnly) throws SQLException {
+        long start = System.nanoTime();
+        Connection conn;
+        try {
+            conn = DriverManager.getConnection(target.url(), target.properties(readOnly));
+            target.prepare(conn, readOnly);
+        } catch (SQLException e) {
+            Metrics.recordError(operation, Metrics.Kind.CONNECT, null);
+            throw e;
+        }
         conn.setAutoCommit(false); // Disable auto-commit to handle transactions manually
-        conn.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE); // Set isolation level
+        conn.setTransactionIsolation(target.dialect().isolationLevel()); // Set isolation level
         conn.setNetworkTimeout(null, 5000); // Set the timeout to 5 seconds
-        return conn;
+        Metrics.record(operation, Metrics.Kind.CONNECT, null, System.nanoTime() - start, 0);
+        return InstrumentedConnection.wrap(conn, operation);
+    }
+
+    // Applies pending schema migrations once per process, before the first connection is handed out
+    private static void ensureMigrated() throws SQLException {
+        if (migrated) return;
+        synchronized (DatabaseManager.class) {
+            if (migrated) return;
+            boolean created = false;
+            if (backend.inMemory() && keepAlive == null) {
+                keepAlive = DriverManager.getConnection(backend.url()); // The database lives as long as one connection does
+                created = true;
+                if (backend.seed() instanceof Seed.FromSnapshot snapshot) {
+                    Snapshot.restore(keepAlive, snapshot.file()); // Older snapshots are migrated below like any file
+                }
+            }
+            try (Connection conn = open("Schema.migrate")) {
+                Schema.migrate(conn, backend.dialect());
+            }
+            if (created && backend.seed() instanceof Seed.Synthetic synthetic) {
+                try (Connection conn = open("SyntheticData.generate")) {
+                    try {
+                        SyntheticData.generate(conn, synthetic.scale(), synthetic.randomSeed());
+                        conn.commit();
+                        CostLayers.committed(conn);
+                    } catch (SQLException e) {
+                        conn.rollback();
+                        throw e;
+                    }
+                }
+            }
+            migrated = true;
+        }
+    }
+
+    /**
+     * Switches app.db to write-ahead logging so readers keep reading while a writer commits.
+     * The journal mode is stored in the file, so it stays on for later opens as well. Used
+     * by server mode, where many concurrent readers share the database with one writer.
+     * A no-op on backends other than a SQLite file, whose readers never wait on a writer
+     * (H2) or which have no journal file to switch (in-memory).
+     */
+    public static void enableWriteAheadLog() throws SQLException {
+        if (backend.dialect() != SqlDialect.SQLITE || backend.inMemory()) return;
+        try (Connection conn = connect("DatabaseManager.enableWriteAheadLog")) {
+            conn.setAutoCommit(true); // journal_mode cannot change inside a transaction
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("PRAGMA journal_mode=WAL");
+            }
+        }
+    }
+
+    /**
+     * Counter bumped by every commit that wrote something. Windows remember the value they
+     * loaded at and only reload when it has moved on.
+     */
+    public static long dataVersion() {
+        return DATA_VERSION.get();
+    }
+
+    static void dataChanged() {
+        DATA_VERSION.incrementAndGet();
+    }
+
+    /**
+     * Loads the JDBC driver and opens one connection on a background thread so the first
+     * real query does not pay for class loading and file/schema initialization.
+     */
+    public static void warmUp() {
+        Thread warmUp = new Thread(() -> {
+            try (Connection conn = connect("DatabaseManager.warmUp");
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM SchemaVersion")) {
+                rs.next();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }, "db-warm-up");
+        warmUp.setDaemon(true);
+        warmUp.setPriority(Thread.MIN_PRIORITY);
+        warmUp.start();
+    }
+
+    private static boolean needsOperationTag() {
+        return Metrics.isEnabled() || SlowQueryLog.getThresholdMillis() > 0;
+    }
+
+    // Turns the first frame outside this class into "Class.method", folding lambdas into their enclosing method
+    private static String callerOperation() {
+        return WALKER.walk(frames -> frames
+                .filter(f -> !f.getClassName().equals(DatabaseManager.class.getName()))
+                .findFirst()
+                .map(f -> {
+                    String cls = f.getClassName();
+                    cls = cls.substring(cls.lastIndexOf('.') + 1);
+                    int inner = cls.indexOf('$');
+                    if (inner > 0) cls = cls.substring(0, inner);
+                    String method = f.getMethodName();
+                    if (method.startsWith("lambda$")) {
+                        int end = method.indexOf('$', 7);
+                        method = end > 0 ? method.substring(7, end) : method.substring(7);
+                    }
+                    if (method.equals("<init>")) method = "open";
+                    return cls + "." + method;
+                })
+                .orElse("unknown"));
     }
 }
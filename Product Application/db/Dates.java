@@ -0,0 +1,66 @@
+package db;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Calendar dates are stored as INTEGER epoch days (days since 1970-01-01) so they sort
+ * numerically and range predicates can use an index. Text only exists at the UI edge.
+ */
+public final class Dates {
+
+    /** Inclusive range of epoch days used by the date-filtered queries. */
+    public record Range(long fromDay, long toDay) {
+        public static final Range ALL = new Range(Long.MIN_VALUE, Long.MAX_VALUE);
+
+        public static Range of(LocalDate from, LocalDate to) {
+            return new Range(from.toEpochDay(), to.toEpochDay());
+        }
+
+        /** From the first of the current month through today. */
+        public static Range thisMonth() {
+            LocalDate today = LocalDate.now();
+            return of(today.withDayOfMonth(1), today);
+        }
+
+        /** The last {@code days} days, today included. */
+        public static Range lastDays(int days) {
+            LocalDate today = LocalDate.now();
+            return of(today.minusDays(days - 1L), today);
+        }
+
+        public boolean isAll() {
+            return fromDay == Long.MIN_VALUE && toDay == Long.MAX_VALUE;
+        }
+    }
+
+    private Dates() {}
+
+    /**
+     * Parses a date typed by the user as YYYY-MM-DD.
+     *
+     * @throws IllegalArgumentException with a user-facing message when the text is not a valid date
+     */
+    public static LocalDate parse(String text) {
+        try {
+            return LocalDate.parse(text.trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Please enter the date as YYYY-MM-DD (e.g. " + LocalDate.now() + ").", e);
+        }
+    }
+
+    /** Reads an epoch-day column, returning null for SQL NULL. */
+    public static LocalDate read(ResultSet rs, String column) throws SQLException {
+        long day = rs.getLong(column);
+        return rs.wasNull() ? null : LocalDate.ofEpochDay(day);
+    }
+
+    public static void bind(PreparedStatement stmt, int index, LocalDate date) throws SQLException {
+        if (date == null) stmt.setNull(index, Types.INTEGER);
+        else stmt.setLong(index, date.toEpochDay());
+    }
+}
@@ -0,0 +1,164 @@
+package db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs database work off the calling thread. Reads each get a virtual thread and their own
+ * read-only connection, so any number of lookups (dashboard, combo boxes, filters) proceed
+ * side by side and none of them waits on the EDT. Writes go to one platform thread with one
+ * connection and a bounded queue, a {@link WriteQueue}: SQLite takes one writer at a time
+ * anyway, and a single writer turns lock contention into an orderly queue instead of busy
+ * timeouts.
+ *
+ * Results come back as CompletableFutures; UI callers hop back to the EDT themselves.
+ * Cancelling a read future interrupts its statement. Writes cannot be cancelled once queued.
+ */
+public final class DbExecutor {
+    private static final int WRITE_QUEUE_CAPACITY = 64;
+
+    private static final ExecutorService READERS =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("db-read-", 0).factory());
+
+    private static WriteQueue writer; // Started by the first write, and again if its connection failed
+
+    /** Work run against a connection; must not commit, roll back or close it. */
+    @FunctionalInterface
+    public interface Work<T> {
+        T run(Connection conn) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface Opener {
+        Connection open(String operation) throws SQLException;
+    }
+
+    private DbExecutor() {}
+
+    /** Runs the work on a virtual thread with a read-only autocommit connection tagged with the operation. */
+    public static <T> CompletableFuture<T> read(String operation, Work<T> work) {
+        return run(operation, work, DatabaseManager::connectReadOnly);
+    }
+
+    /** Like {@link #read}, against the {@link ReportingReplica} instead of app.db; for long report scans. */
+    public static <T> CompletableFuture<T> report(String operation, Work<T> work) {
+        return run(operation, work, ReportingReplica::connect);
+    }
+
+    private static <T> CompletableFuture<T> run(String operation, Work<T> work, Opener opener) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Interruptible running = new Interruptible();
+        result.whenComplete((_, _) -> {
+            if (result.isCancelled()) running.cancel();
+        });
+        READERS.execute(() -> {
+            if (result.isDone()) return; // Cancelled before it started
+            try {
+                Connection conn = opener.open(operation);
+                try {
+                    if (running.attach(conn)) result.complete(work.run(conn));
+                } finally {
+                    running.detach();
+                    conn.close();
+                }
+            } catch (SQLException | RuntimeException e) {
+                result.completeExceptionally(e); // No-op when cancelled; the interrupt surfaces as an error here
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Queues the work for the writer thread, which runs it in its own savepoint and commits it,
+     * possibly together with other writes queued at the same time. The future fails with what
+     * the work threw, or with {@link WriteQueue.QueueFullException} when the queue is full.
+     */
+    public static <T> CompletableFuture<T> write(Work<T> work) {
+        try {
+            return writer().submit(work);
+        } catch (WriteQueue.QueueFullException | IllegalStateException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static synchronized WriteQueue writer() {
+        if (writer == null || !writer.isOpen()) writer = new WriteQueue("DbExecutor.write", WRITE_QUEUE_CAPACITY);
+        return writer;
+    }
+
+    /** Creates a scope for the reads of one dialog. */
+    public static Scope scope() {
+        return new Scope();
+    }
+
+    /**
+     * The reads started on behalf of one owner, typically a dialog. Starting a read under an
+     * operation name that is still running cancels the older one, so a filter changed twice
+     * never paints the first result over the second; {@link #cancelAll()} cancels everything
+     * still running when the owner goes away.
+     */
+    public static final class Scope {
+        private final Map<String, CompletableFuture<?>> running = new ConcurrentHashMap<>();
+
+        private Scope() {}
+
+        public <T> CompletableFuture<T> read(String operation, Work<T> work) {
+            return track(operation, DbExecutor.read(operation, work));
+        }
+
+        public <T> CompletableFuture<T> report(String operation, Work<T> work) {
+            return track(operation, DbExecutor.report(operation, work));
+        }
+
+        private <T> CompletableFuture<T> track(String operation, CompletableFuture<T> task) {
+            CompletableFuture<?> previous = running.put(operation, task);
+            if (previous != null) previous.cancel(true);
+            task.whenComplete((_, _) -> running.remove(operation, task));
+            return task;
+        }
+
+        /** Cancels the read running under the operation name, if any. */
+        public void cancel(String operation) {
+            CompletableFuture<?> task = running.remove(operation);
+            if (task != null) task.cancel(true);
+        }
+
+        public void cancelAll() {
+            for (CompletableFuture<?> task : running.values()) {
+                task.cancel(true);
+            }
+            running.clear();
+        }
+    }
+
+    // The connection a read is using, so a cancel from another thread can interrupt its statement
+    private static final class Interruptible {
+        private Connection conn;
+        private boolean cancelled;
+
+        synchronized boolean attach(Connection conn) {
+            this.conn = conn;
+            return !cancelled;
+        }
+
+        synchronized void detach() {
+            conn = null;
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            if (conn == null) return;
+            try (Statement stmt = conn.createStatement()) {
+                stmt.cancel(); // sqlite3_interrupt: aborts whatever the connection is running
+            } catch (SQLException e) {
+                // The read finished on its own in the meantime
+            }
+        }
+    }
+}
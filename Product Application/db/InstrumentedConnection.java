@@ -0,0 +1,250 @@
+package db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Dynamic-proxy wrappers that time every statement, result set and transaction on a
+ * connection and report them to {@link Metrics} under the operation that opened it.
+ * Statements over the {@link SlowQueryLog} threshold are also logged with their bound values.
+ */
+final class InstrumentedConnection implements InvocationHandler {
+
+    private final Connection target;
+    private final String operation;
+    private final List<ResultSetHandler> openResults = new ArrayList<>();
+    private long txStart;
+    private boolean wrote;
+    private boolean autoCommit;  // Statements are their own transactions; nothing to account at close
+
+    private InstrumentedConnection(Connection target, String operation) {
+        this.target = target;
+        this.operation = operation;
+    }
+
+    static Connection wrap(Connection target, String operation) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new InstrumentedConnection(target, operation));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "prepareStatement" -> {
+                return wrapStatement((Statement) call(target, method, args), (String) args[0]);
+            }
+            case "createStatement" -> {
+                return wrapStatement((Statement) call(target, method, args), null);
+            }
+            case "setAutoCommit" -> {
+                autoCommit = (Boolean) args[0];
+                return call(target, method, args);
+            }
+            case "commit" -> {
+                Object result = call(target, method, args);
+                endTransaction(Metrics.Kind.COMMIT);
+                if (wrote) DatabaseManager.dataChanged();
+                wrote = false;
+                return result;
+            }
+            case "rollback" -> {
+                // Rolling back to a savepoint leaves the enclosing transaction open
+                if (args != null && args.length > 0) return call(target, method, args);
+                Object result = call(target, method, args);
+                endTransaction(Metrics.Kind.ROLLBACK);
+                wrote = false;
+                return result;
+            }
+            case "close" -> {
+                for (ResultSetHandler rs : new ArrayList<>(openResults)) {
+                    rs.finish();
+                }
+                // Closing with work still pending discards it, so account for it as a rollback
+                endTransaction(Metrics.Kind.ROLLBACK);
+                return call(target, method, args);
+            }
+            default -> {
+                return call(target, method, args);
+            }
+        }
+    }
+
+    private static Object call(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void beginWork() {
+        if (txStart == 0 && !autoCommit) txStart = System.nanoTime();
+    }
+
+    private void endTransaction(Metrics.Kind kind) {
+        if (txStart != 0) {
+            Metrics.record(operation, kind, null, System.nanoTime() - txStart, 0);
+            txStart = 0;
+        }
+    }
+
+    private Statement wrapStatement(Statement statement, String sql) {
+        Class<?> type = statement instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+        return (Statement) Proxy.newProxyInstance(
+                Statement.class.getClassLoader(),
+                new Class<?>[]{type},
+                new StatementHandler(statement, sql));
+    }
+
+    private final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        private final String rawSql;
+        private final String sql;
+        private final List<Object> params = new ArrayList<>();
+        private String batchSql;
+
+        StatementHandler(Statement target, String rawSql) {
+            this.target = target;
+            this.rawSql = rawSql;
+            this.sql = Metrics.normalize(rawSql);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (!name.startsWith("execute")) {
+                if (name.equals("addBatch") && args != null && args.length == 1) {
+                    batchSql = (String) args[0];
+                } else if (name.equals("clearParameters")) {
+                    params.clear();
+                } else if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                    bind(index, name.equals("setNull") ? null : args[1]);
+                }
+                return call(target, method, args);
+            }
+
+            String raw = args != null && args.length > 0 && args[0] instanceof String s ? s : rawSql;
+            if (name.equals("executeBatch") && raw == null) raw = batchSql;
+            String text = raw == rawSql ? sql : Metrics.normalize(raw);
+            Metrics.Kind kind = switch (name) {
+                case "executeQuery" -> Metrics.Kind.QUERY;
+                case "executeBatch", "executeLargeBatch" -> Metrics.Kind.BATCH;
+                default -> Metrics.Kind.UPDATE;
+            };
+
+            beginWork();
+            if (kind != Metrics.Kind.QUERY) wrote = true;
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                Metrics.recordError(operation, kind, text);
+                throw e.getCause();
+            }
+            long elapsed = System.nanoTime() - start;
+            if (autoCommit && kind != Metrics.Kind.QUERY) DatabaseManager.dataChanged();
+
+            if (result instanceof ResultSet rs) {
+                ResultSetHandler handler = new ResultSetHandler(rs, raw, text, List.copyOf(params), elapsed);
+                openResults.add(handler);
+                return Proxy.newProxyInstance(
+                        ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class}, handler);
+            }
+            long rows = rowsOf(result);
+            Metrics.record(operation, kind, text, elapsed, rows);
+            if (SlowQueryLog.isSlow(elapsed) && raw != null) {
+                SlowQueryLog.record(InstrumentedConnection.this.target, operation, raw, params, elapsed, rows);
+            }
+            return result;
+        }
+
+        private void bind(int index, Object value) {
+            while (params.size() < index) params.add(null);
+            params.set(index - 1, value);
+        }
+
+        private long rowsOf(Object result) {
+            if (result instanceof Integer n) return Math.max(n, 0);
+            if (result instanceof Long n) return Math.max(n, 0);
+            if (result instanceof int[] counts) {
+                long total = 0;
+                for (int c : counts) total += Math.max(c, 0);
+                return total;
+            }
+            if (result instanceof long[] counts) {
+                long total = 0;
+                for (long c : counts) total += Math.max(c, 0);
+                return total;
+            }
+            return 0;
+        }
+    }
+
+    /** Accumulates execute time plus time spent stepping rows; reports once when exhausted or closed. */
+    private final class ResultSetHandler implements InvocationHandler {
+        private final ResultSet target;
+        private final String rawSql;
+        private final String sql;
+        private final List<Object> params;
+        private long nanos;
+        private long rows;
+        private boolean finished;
+
+        ResultSetHandler(ResultSet target, String rawSql, String sql, List<Object> params, long executeNanos) {
+            this.target = target;
+            this.rawSql = rawSql;
+            this.sql = sql;
+            this.params = params;
+            this.nanos = executeNanos;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "next" -> {
+                    long start = System.nanoTime();
+                    boolean more;
+                    try {
+                        more = (Boolean) method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        Metrics.recordError(operation, Metrics.Kind.QUERY, sql);
+                        throw e.getCause();
+                    }
+                    nanos += System.nanoTime() - start;
+                    if (more) rows++;
+                    else finish();
+                    return more;
+                }
+                case "close" -> {
+                    finish();
+                    return call(target, method, args);
+                }
+                default -> {
+                    return call(target, method, args);
+                }
+            }
+        }
+
+        void finish() {
+            if (finished) return;
+            finished = true;
+            openResults.remove(this);
+            Metrics.record(operation, Metrics.Kind.QUERY, sql, nanos, rows);
+            if (SlowQueryLog.isSlow(nanos) && rawSql != null) {
+                SlowQueryLog.record(InstrumentedConnection.this.target, operation, rawSql, params, nanos, rows);
+            }
+        }
+
+    }
+}
@@ -0,0 +1,99 @@
+package db;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide registry of database timings. Every connection handed out by
+ * {@link DatabaseManager} reports into it, keyed by the calling operation (e.g. "loadSales"),
+ * the kind of work and the normalized SQL text.
+ */
+public final class Metrics {
+
+    public enum Kind { CONNECT, QUERY, UPDATE, BATCH, COMMIT, ROLLBACK, STARTUP }
+
+    public record Key(String operation, Kind kind, String sql) {}
+
+    public static final class Entry {
+        private final Key key;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+
+        private Entry(Key key) {
+            this.key = key;
+        }
+
+        public Key key() { return key; }
+        public LatencyHistogram latency() { return latency; }
+        public long rows() { return rows.sum(); }
+        public long errors() { return errors.sum(); }
+    }
+
+    private static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("bms.metrics"));
+    private static final ConcurrentHashMap<Key, Entry> ENTRIES = new ConcurrentHashMap<>();
+
+    private Metrics() {}
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    public static void record(String operation, Kind kind, String sql, long nanos, long rows) {
+        if (!ENABLED) return;
+        Entry entry = entry(operation, kind, sql);
+        entry.latency.recordNanos(nanos);
+        if (rows > 0) entry.rows.add(rows);
+    }
+
+    public static void recordError(String operation, Kind kind, String sql) {
+        if (!ENABLED) return;
+        entry(operation, kind, sql).errors.increment();
+    }
+
+    /** Entries sorted by total time spent, slowest first. */
+    public static List<Entry> entries() {
+        List<Entry> list = new ArrayList<>(ENTRIES.values());
+        list.sort(Comparator.comparingLong((Entry e) -> e.latency.totalMicros()).reversed());
+        return list;
+    }
+
+    public static void reset() {
+        ENTRIES.clear();
+    }
+
+    /** Writes a plain-text report of every entry to the given file. */
+    public static void dump(Path file) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            out.println("# Database metrics dumped " + LocalDateTime.now());
+            out.println("operation\tkind\tcount\trows\terrors\tmean_us\tp50_us\tp95_us\tp99_us\tmax_us\tsql");
+            for (Entry e : entries()) {
+                LatencyHistogram h = e.latency;
+                out.printf("%s\t%s\t%d\t%d\t%d\t%.1f\t%d\t%d\t%d\t%d\t%s%n",
+                        e.key.operation(), e.key.kind(), h.count(), e.rows(), e.errors(), h.meanMicros(),
+                        h.percentileMicros(50), h.percentileMicros(95), h.percentileMicros(99), h.maxMicros(),
+                        e.key.sql() == null ? "" : e.key.sql());
+            }
+        }
+    }
+
+    /** Collapses whitespace so the same statement written as a text block always maps to one key. */
+    static String normalize(String sql) {
+        if (sql == null) return null;
+        String flat = sql.strip().replaceAll("\\s+", " ");
+        return flat.length() > 160 ? flat.substring(0, 157) + "..." : flat;
+    }
+
+    private static Entry entry(String operation, Kind kind, String sql) {
+        return ENTRIES.computeIfAbsent(new Key(operation, kind, sql), Entry::new);
+    }
+}
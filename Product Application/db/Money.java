@@ -0,0 +1,106 @@
+package db;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Exact amount of money stored as a whole number of cents. Database columns hold the same
+ * cents as INTEGER, so sums and balances never drift the way repeated REAL additions do.
+ *
+ * Hot paths (sale and shipment totals) work on the raw {@code long} cents through the static
+ * helpers and only wrap the result in a {@code Money} for display.
+ */
+public final class Money implements Comparable<Money> {
+    public static final Money ZERO = new Money(0);
+
+    private final long cents;
+    private String text;  // Formatted lazily and cached; tables render the same value many times
+
+    private Money(long cents) {
+        this.cents = cents;
+    }
+
+    public static Money ofCents(long cents) {
+        return cents == 0 ? ZERO : new Money(cents);
+    }
+
+    /** Parses user input such as "12", "12.5", "$1,234.56"; rounds half-up to whole cents. */
+    public static Money parse(String text) {
+        return ofCents(parseCents(text));
+    }
+
+    public static long parseCents(String text) {
+        String cleaned = text.trim().replace("$", "").replace(",", "");
+        if (cleaned.isEmpty()) throw new NumberFormatException("Empty amount");
+        try {
+            return new BigDecimal(cleaned).setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount out of range: " + text);
+        }
+    }
+
+    /** Converts a legacy floating-point amount, rounding to the nearest cent. */
+    public static long centsOf(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    public static long times(long unitCents, long quantity) {
+        return Math.multiplyExact(unitCents, quantity);
+    }
+
+    /** Formats cents as "-1234.56" without allocating intermediate objects beyond the result. */
+    public static String format(long cents) {
+        StringBuilder sb = new StringBuilder(16);
+        if (cents < 0) {
+            sb.append('-');
+            cents = -cents;
+        }
+        long units = cents / 100;
+        int fraction = (int) (cents % 100);
+        sb.append(units).append('.');
+        if (fraction < 10) sb.append('0');
+        return sb.append(fraction).toString();
+    }
+
+    public long cents() {
+        return cents;
+    }
+
+    public Money plus(Money other) {
+        return ofCents(Math.addExact(cents, other.cents));
+    }
+
+    public Money minus(Money other) {
+        return ofCents(Math.subtractExact(cents, other.cents));
+    }
+
+    public Money times(long quantity) {
+        return ofCents(times(cents, quantity));
+    }
+
+    public boolean isPositive() {
+        return cents > 0;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(cents, other.cents);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Money m && m.cents == cents;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(cents);
+    }
+
+    @Override
+    public String toString() {
+        String s = text;
+        if (s == null) text = s = format(cents);
+        return s;
+    }
+}
@@ -0,0 +1,352 @@
+package db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Per-product sales velocity and reorder points. Daily units sold are smoothed exponentially:
+ * each product keeps a smoothed mean and variance of units per day plus the units of the day
+ * still open, and a sale adds to that day or, on a later day, folds the closed days in. So a
+ * sale costs one batched UPDATE and nothing ever rescans the sales history.
+ *
+ * <p>The reorder point covers the expected demand over the restocking lead time plus safety
+ * stock for a 95% service level: mean * lead + 1.65 * sqrt(variance * lead). The lead time
+ * defaults to {@value #DEFAULT_LEAD_DAYS} days and is set with {@code -Dapp.reorder.leadDays}.
+ *
+ * <p>A background job folds in the days without sales once a day and publishes a snapshot of
+ * every forecast whenever data changed, so windows highlight low stock without querying.
+ * Reversed and amended sales are not taken back out; the smoothing forgets them within weeks.
+ */
+public final class ProductDemand {
+    public static final String LEAD_DAYS_PROPERTY = "app.reorder.leadDays";
+    public static final Duration DEFAULT_INTERVAL = Duration.ofSeconds(30);
+    static final int DEFAULT_LEAD_DAYS = 7;
+    private static final double ALPHA = 0.15;          // Weight of the newest day; about two weeks of memory
+    private static final double SERVICE_Z = 1.65;      // One-sided 95% service level
+    private static final int MAX_IDLE_DAYS = 365;      // Past a year without sales the mean is as good as zero
+
+    /** One product's forecast against its current stock. */
+    public record Forecast(int productId, String productName, int amountLeft, double unitsPerDay, int reorderPoint) {
+
+        /** Stock at or below the reorder point, for a product that sells at all. */
+        public boolean isLow() {
+            return reorderPoint > 0 && amountLeft <= reorderPoint;
+        }
+
+        /** Days the stock lasts at the forecast rate, or null when nothing is selling. */
+        public Double daysOfCover() {
+            return unitsPerDay > 0 ? amountLeft / unitsPerDay : null;
+        }
+    }
+
+    /** The forecasts as of the job's last run, and the low-stock ones with the least cover first. */
+    public record Snapshot(Map<Integer, Forecast> byProduct, List<Forecast> lowStock) {
+        static final Snapshot EMPTY = new Snapshot(Map.of(), List.of());
+    }
+
+    // Smoothing state of one product; mutable while a fold is computed
+    private static final class State {
+        double mean;
+        double variance;
+        long bucketDay;
+        int bucketUnits;
+
+        State(double mean, double variance, long bucketDay, int bucketUnits) {
+            this.mean = mean;
+            this.variance = variance;
+            this.bucketDay = bucketDay;
+            this.bucketUnits = bucketUnits;
+        }
+
+        // Closes the open day and every idle day up to the given one, which becomes the open day
+        void advanceTo(long day) {
+            if (day <= bucketDay) return;
+            fold(bucketUnits);
+            long idle = Math.min(day - bucketDay - 1, MAX_IDLE_DAYS);
+            for (long i = 0; i < idle; i++) fold(0);
+            bucketDay = day;
+            bucketUnits = 0;
+        }
+
+        private void fold(double units) {
+            double diff = units - mean;
+            mean += ALPHA * diff;
+            variance = (1 - ALPHA) * (variance + ALPHA * diff * diff);
+        }
+
+        int reorderPoint(int leadDays) {
+            return (int) Math.ceil(mean * leadDays + SERVICE_Z * Math.sqrt(variance * leadDays));
+        }
+    }
+
+    private static volatile Snapshot latest = Snapshot.EMPTY;
+    private static final List<Consumer<Snapshot>> LISTENERS = new CopyOnWriteArrayList<>();
+
+    private ProductDemand() {}
+
+    static int leadDays() {
+        return Math.max(1, Integer.getInteger(LEAD_DAYS_PROPERTY, DEFAULT_LEAD_DAYS));
+    }
+
+    /** The forecasts published by the job's last run; empty until it has run once. */
+    public static Snapshot latest() {
+        return latest;
+    }
+
+    /** Calls the listener on the job's thread with each new snapshot. */
+    public static void addListener(Consumer<Snapshot> listener) {
+        LISTENERS.add(listener);
+    }
+
+    public static void removeListener(Consumer<Snapshot> listener) {
+        LISTENERS.remove(listener);
+    }
+
+    // Adds a new sale's units to each product's open day; runs in the sale's transaction after its
+    // stock updates, so the product rows are already locked. Sales dated on or before the open day
+    // join it; a later day first folds the closed days in
+    static void recordSale(Connection conn, LocalDate saleDate, Map<Integer, Integer> unitsByProduct) throws SQLException {
+        if (saleDate == null || unitsByProduct.isEmpty()) return;
+        long day = saleDate.toEpochDay();
+        List<Integer> order = new ArrayList<>(unitsByProduct.keySet());
+        List<Integer> others = new ArrayList<>();
+        try (PreparedStatement update = conn.prepareStatement(
+                "UPDATE ProductDemand SET BucketUnits = BucketUnits + ? WHERE Product_ID = ? AND BucketDay >= ?")) {
+            for (int productId : order) {
+                update.setInt(1, unitsByProduct.get(productId));
+                update.setInt(2, productId);
+                update.setLong(3, day);
+                update.addBatch();
+            }
+            int[] counts = update.executeBatch();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) others.add(order.get(i));
+            }
+        }
+        if (others.isEmpty()) return;
+
+        // The first sale of a new day for these products, or their first sale ever
+        Map<Integer, State> states = load(conn, others);
+        int leadDays = leadDays();
+        try (PreparedStatement update = conn.prepareStatement("""
+                UPDATE ProductDemand SET Mean = ?, Variance = ?, BucketDay = ?, BucketUnits = ?, ReorderPoint = ?
+                WHERE Product_ID = ?
+            """);
+             PreparedStatement insert = conn.prepareStatement("""
+                INSERT INTO ProductDemand (Product_ID, Mean, Variance, BucketDay, BucketUnits, ReorderPoint)
+                VALUES (?, 0, 0, ?, ?, 0)
+            """)) {
+            boolean updates = false, inserts = false;
+            for (int productId : others) {
+                int units = unitsByProduct.get(productId);
+                State state = states.get(productId);
+                if (state == null) {
+                    insert.setInt(1, productId);
+                    insert.setLong(2, day);
+                    insert.setInt(3, units);
+                    insert.addBatch();
+                    inserts = true;
+                    continue;
+                }
+                state.advanceTo(day);
+                state.bucketUnits += units;
+                bindState(update, state, leadDays, productId);
+                update.addBatch();
+                updates = true;
+            }
+            if (updates) update.executeBatch();
+            if (inserts) insert.executeBatch();
+        }
+    }
+
+    /**
+     * Folds the days without sales into every product whose open day is before today, so idle
+     * products decay and their reorder points follow. Each row is only written if it still holds
+     * what was read, so a sale folding the same row concurrently wins and the row is skipped.
+     *
+     * @return the number of products rolled forward
+     */
+    public static int rollForward(Connection conn, LocalDate today) throws SQLException {
+        long day = today.toEpochDay();
+        List<Integer> ids = new ArrayList<>();
+        List<State> states = new ArrayList<>();
+        try (PreparedStatement read = conn.prepareStatement(
+                "SELECT Product_ID, Mean, Variance, BucketDay, BucketUnits FROM ProductDemand WHERE BucketDay < ?")) {
+            read.setLong(1, day);
+            try (ResultSet rs = read.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getInt("Product_ID"));
+                    states.add(stateOf(rs));
+                }
+            }
+        }
+        if (ids.isEmpty()) return 0;
+        int leadDays = leadDays();
+        int rolled = 0;
+        try (PreparedStatement update = conn.prepareStatement("""
+                UPDATE ProductDemand SET Mean = ?, Variance = ?, BucketDay = ?, BucketUnits = ?, ReorderPoint = ?
+                WHERE Product_ID = ? AND BucketDay = ? AND BucketUnits = ?
+            """)) {
+            for (int i = 0; i < ids.size(); i++) {
+                State state = states.get(i);
+                long readDay = state.bucketDay;
+                int readUnits = state.bucketUnits;
+                state.advanceTo(day);
+                bindState(update, state, leadDays, ids.get(i));
+                update.setLong(7, readDay);
+                update.setInt(8, readUnits);
+                update.addBatch();
+            }
+            for (int count : update.executeBatch()) rolled += count > 0 ? 1 : 0;
+        }
+        return rolled;
+    }
+
+    /** Every product with a forecast, with its current stock. */
+    public static Snapshot load(Connection conn) throws SQLException {
+        Map<Integer, Forecast> byProduct = new HashMap<>();
+        List<Forecast> low = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement("""
+                SELECT p.Product_ID, p.Name, p.AmountLeft, d.Mean, d.ReorderPoint
+                FROM ProductDemand d
+                JOIN Product p ON p.Product_ID = d.Product_ID
+            """); ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                Forecast forecast = new Forecast(rs.getInt("Product_ID"), rs.getString("Name"),
+                        rs.getInt("AmountLeft"), rs.getDouble("Mean"), rs.getInt("ReorderPoint"));
+                byProduct.put(forecast.productId(), forecast);
+                if (forecast.isLow()) low.add(forecast);
+            }
+        }
+        low.sort((a, b) -> Double.compare(coverOrZero(a), coverOrZero(b)));
+        return new Snapshot(Collections.unmodifiableMap(byProduct), Collections.unmodifiableList(low));
+    }
+
+    /**
+     * Runs the forecasting job now and then every interval: once per day it rolls the idle days
+     * forward, and whenever something was committed since its last run it publishes a new snapshot.
+     */
+    public static void startSchedule(Duration interval) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread worker = new Thread(task, "db-demand-forecast");
+            worker.setDaemon(true);
+            worker.setPriority(Thread.MIN_PRIORITY);
+            return worker;
+        });
+        long[] seen = {-1, Long.MIN_VALUE}; // Data version and day of the last run; only touched by the job thread
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                long today = LocalDate.now().toEpochDay();
+                if (today != seen[1]) {
+                    try (Connection conn = DatabaseManager.connect("ProductDemand.rollForward")) {
+                        try {
+                            rollForward(conn, LocalDate.ofEpochDay(today));
+                            conn.commit();
+                        } catch (SQLException e) {
+                            conn.rollback();
+                            throw e;
+                        }
+                    }
+                    seen[1] = today;
+                }
+                long version = DatabaseManager.dataVersion();
+                if (version == seen[0]) return;
+                Snapshot snapshot;
+                try (Connection conn = DatabaseManager.connectReadOnly("ProductDemand.load")) {
+                    snapshot = load(conn);
+                }
+                seen[0] = version;
+                latest = snapshot;
+                for (Consumer<Snapshot> listener : LISTENERS) listener.accept(snapshot);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    // Smooths each product's daily sales so far in one pass over the grouped history; used by the
+    // migration that introduces the table. The last day with sales stays open
+    static void seedFromHistory(Connection conn) throws SQLException {
+        int leadDays = leadDays();
+        try (PreparedStatement read = conn.prepareStatement("""
+                SELECT l.Product_ID, o.SaleDate, SUM(l.Quantity) AS Units
+                FROM SaleLine l
+                JOIN SaleOrder o ON o.Order_ID = l.Order_ID
+                WHERE o.SaleDate IS NOT NULL AND l.Product_ID IS NOT NULL
+                GROUP BY l.Product_ID, o.SaleDate
+                ORDER BY l.Product_ID, o.SaleDate
+            """);
+             PreparedStatement insert = conn.prepareStatement("""
+                INSERT INTO ProductDemand (Mean, Variance, BucketDay, BucketUnits, ReorderPoint, Product_ID)
+                VALUES (?, ?, ?, ?, ?, ?)
+            """);
+             ResultSet rs = read.executeQuery()) {
+            int productId = 0;
+            State state = null;
+            while (rs.next()) {
+                if (state == null || rs.getInt("Product_ID") != productId) {
+                    if (state != null) {
+                        bindState(insert, state, leadDays, productId);
+                        insert.addBatch();
+                    }
+                    productId = rs.getInt("Product_ID");
+                    state = new State(0, 0, rs.getLong("SaleDate"), 0);
+                }
+                state.advanceTo(rs.getLong("SaleDate"));
+                state.bucketUnits += rs.getInt("Units");
+            }
+            if (state != null) {
+                bindState(insert, state, leadDays, productId);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+    }
+
+    private static Map<Integer, State> load(Connection conn, List<Integer> productIds) throws SQLException {
+        Map<Integer, State> states = new HashMap<>();
+        String in = String.join(", ", Collections.nCopies(productIds.size(), "?"));
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT Product_ID, Mean, Variance, BucketDay, BucketUnits FROM ProductDemand WHERE Product_ID IN (" + in + ")")) {
+            int i = 1;
+            for (int id : productIds) stmt.setInt(i++, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) states.put(rs.getInt("Product_ID"), stateOf(rs));
+            }
+        }
+        return states;
+    }
+
+    private static State stateOf(ResultSet rs) throws SQLException {
+        return new State(rs.getDouble("Mean"), rs.getDouble("Variance"), rs.getLong("BucketDay"), rs.getInt("BucketUnits"));
+    }
+
+    // Binds Mean, Variance, BucketDay, BucketUnits, ReorderPoint and Product_ID as parameters 1 to 6
+    private static void bindState(PreparedStatement stmt, State state, int leadDays, int productId) throws SQLException {
+        stmt.setDouble(1, state.mean);
+        stmt.setDouble(2, state.variance);
+        stmt.setLong(3, state.bucketDay);
+        stmt.setInt(4, state.bucketUnits);
+        stmt.setInt(5, state.reorderPoint(leadDays));
+        stmt.setInt(6, productId);
+    }
+
+    private static double coverOrZero(Forecast forecast) {
+        Double cover = forecast.daysOfCover();
+        return cover == null ? 0 : cover;
+    }
+}
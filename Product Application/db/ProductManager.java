@@ -0,0 +1,148 @@
+package db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Product queries and write paths shared by the Swing windows and headless callers. */
+public final class ProductManager {
+
+    /** One product with its current stock; price and rate in cents. */
+    public record ProductRow(int productId, String name, int amountLeft, long price, long rate) {}
+
+    /**
+     * What the product list is narrowed to; null fields are not filtered on. Stock bounds are
+     * units and price bounds cents, both inclusive.
+     */
+    public record ProductFilter(String namePrefix, Integer minStock, Integer maxStock, Long minPrice, Long maxPrice) {
+        public static final ProductFilter NONE = new ProductFilter(null, null, null, null, null);
+    }
+
+    private ProductManager() {}
+
+    public static List<ProductRow> findProducts(Connection conn) throws SQLException {
+        List<ProductRow> rows = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT Product_ID, Name, AmountLeft, Price, Rate FROM Product ORDER BY Product_ID")) {
+            while (rs.next()) {
+                rows.add(new ProductRow(
+                        rs.getInt("Product_ID"),
+                        rs.getString("Name"),
+                        rs.getInt("AmountLeft"),
+                        rs.getLong("Price"),
+                        rs.getLong("Rate")));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * One page of the products matching the filter, in case-insensitive name order, starting
+     * after {@code after} (the last row of the previous page, or null for the first page).
+     * The walk follows the NOCASE name index, narrowed to the name prefix when there is one,
+     * and seeks past the previous page instead of skipping rows, so every page costs the same.
+     * Stock and price bounds are checked on the rows the walk visits; they are not indexed,
+     * since AmountLeft changes on every sale.
+     */
+    public static List<ProductRow> findProducts(Connection conn, ProductFilter filter, ProductRow after,
+                                                int limit) throws SQLException {
+        SqlDialect dialect = DatabaseManager.dialect();
+        String name = dialect.caseInsensitive("Name");
+        StringBuilder where = new StringBuilder(" WHERE 1 = 1");
+        List<Object> params = new ArrayList<>();
+        if (filter.namePrefix() != null && !filter.namePrefix().isBlank()) {
+            String prefix = filter.namePrefix().strip();
+            where.append(" AND ").append(name).append(" >= ").append(dialect.caseInsensitive("?"))
+                    .append(" AND ").append(name).append(" < ").append(dialect.caseInsensitive("?"));
+            params.add(prefix);
+            params.add(prefix + Character.MAX_VALUE);
+        }
+        if (after != null) {
+            // The row-value form (name, id) > (?, ?) reads the same but SQLite will not seek the index with it
+            String last = dialect.caseInsensitive("?");
+            where.append(" AND ").append(name).append(" >= ").append(last)
+                    .append(" AND (").append(name).append(" > ").append(last).append(" OR Product_ID > ?)");
+            params.add(after.name());
+            params.add(after.name());
+            params.add(after.productId());
+        }
+        range(where, params, "AmountLeft", filter.minStock(), filter.maxStock());
+        range(where, params, "Price", filter.minPrice(), filter.maxPrice());
+
+        List<ProductRow> rows = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT Product_ID, Name, AmountLeft, Price, Rate FROM Product" + where
+                + " ORDER BY " + name + ", Product_ID LIMIT ?")) {
+            int i = 1;
+            for (Object param : params) stmt.setObject(i++, param);
+            stmt.setInt(i, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(new ProductRow(
+                            rs.getInt("Product_ID"),
+                            rs.getString("Name"),
+                            rs.getInt("AmountLeft"),
+                            rs.getLong("Price"),
+                            rs.getLong("Rate")));
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Adds a product with no stock; stock only arrives through shipments.
+     *
+     * @return the new Product_ID
+     */
+    public static int addProduct(Connection conn, String name, long price, long rate) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO Product(Name, AmountLeft, Price, Rate) VALUES (?, 0, ?, ?)",
+                Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setString(1, name);
+            stmt.setLong(2, price);
+            stmt.setLong(3, rate);
+            stmt.executeUpdate();
+            try (ResultSet keys = stmt.getGeneratedKeys()) {
+                if (!keys.next()) throw new SQLException("No key returned for new product");
+                return keys.getInt(1);
+            }
+        }
+    }
+
+    /**
+     * Deletes the products with the rows that only describe them: the stock ledger and its
+     * snapshots, open cost layers, the demand forecast and per-client purchase totals. Runs in
+     * the caller's transaction. Sale lines and shipment items keep the Product_ID, as past
+     * orders keep a deleted client's; reversing or amending those sales later leaves no new
+     * ledger rows or cost layers behind for it.
+     */
+    public static void deleteProducts(Connection conn, List<Integer> productIds) throws SQLException {
+        if (productIds.isEmpty()) return;
+        CostLayers.discardProducts(conn, productIds);
+        for (String table : List.of("StockMovement", "StockSnapshot", "ProductDemand", "ClientProductStats", "Product")) {
+            try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM " + table + " WHERE Product_ID = ?")) {
+                for (int productId : productIds) {
+                    stmt.setInt(1, productId);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+        }
+    }
+
+    private static void range(StringBuilder where, List<Object> params, String column, Object min, Object max) {
+        if (min != null) {
+            where.append(" AND ").append(column).append(" >= ?");
+            params.add(min);
+        }
+        if (max != null) {
+            where.append(" AND ").append(column).append(" <= ?");
+            params.add(max);
+        }
+    }
+}
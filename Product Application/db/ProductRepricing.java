@@ -0,0 +1,119 @@
+package db;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bulk price and rate changes. An {@link Adjustment} is previewed against the products of a
+ * filter without touching the database; the caller may then edit single rows of the preview,
+ * and {@link #apply} writes every changed row as one batched UPDATE in the caller's
+ * transaction. Each UPDATE only matches while the product still has the price and rate the
+ * preview was computed from, so a product edited in the meantime fails the whole batch
+ * instead of being silently overwritten.
+ */
+public final class ProductRepricing {
+
+    public enum Target { PRICE, RATE, BOTH }
+
+    /**
+     * A change to apply: a percentage (basis points, 1250 = +12.5%) or a fixed amount of cents,
+     * added to the price, the rate or both. Results are rounded half-up to the cent and never
+     * go below zero.
+     */
+    public record Adjustment(Target target, boolean percent, long amount) {
+
+        /** Reads "12.5" as a percentage or "-1.50" as an amount, in the user's terms. */
+        public static Adjustment parse(Target target, boolean percent, String text) {
+            return new Adjustment(target, percent, percent ? basisPoints(text) : Money.parseCents(text));
+        }
+
+        long applyTo(long cents) {
+            long result = percent
+                    ? Math.floorDiv(2 * Math.multiplyExact(cents, 10_000 + amount) + 10_000, 20_000)
+                    : Math.addExact(cents, amount);
+            return Math.max(0, result);
+        }
+
+        private static long basisPoints(String text) {
+            String cleaned = text.trim().replace("%", "");
+            if (cleaned.isEmpty()) throw new NumberFormatException("Empty percentage");
+            try {
+                return new BigDecimal(cleaned).setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact();
+            } catch (ArithmeticException e) {
+                throw new NumberFormatException("Percentage out of range: " + text);
+            }
+        }
+    }
+
+    /** One product's price and rate before and after; money in cents. */
+    public record Change(int productId, String name, long oldPrice, long newPrice, long oldRate, long newRate) {
+
+        public boolean isChanged() {
+            return newPrice != oldPrice || newRate != oldRate;
+        }
+
+        public Change withNewPrice(long price) {
+            return new Change(productId, name, oldPrice, price, oldRate, newRate);
+        }
+
+        public Change withNewRate(long rate) {
+            return new Change(productId, name, oldPrice, newPrice, oldRate, rate);
+        }
+    }
+
+    private ProductRepricing() {}
+
+    /** Every product matching the filter, in name order, with the adjustment applied. */
+    public static List<Change> preview(Connection conn, ProductManager.ProductFilter filter,
+                                       Adjustment adjustment) throws SQLException {
+        return preview(ProductManager.findProducts(conn, filter, null, Integer.MAX_VALUE), adjustment);
+    }
+
+    /** The rows with the adjustment applied, or unchanged when {@code adjustment} is null. */
+    public static List<Change> preview(List<ProductManager.ProductRow> products, Adjustment adjustment) {
+        List<Change> changes = new ArrayList<>(products.size());
+        for (ProductManager.ProductRow product : products) {
+            long price = product.price();
+            long rate = product.rate();
+            if (adjustment != null && adjustment.target() != Target.RATE) price = adjustment.applyTo(price);
+            if (adjustment != null && adjustment.target() != Target.PRICE) rate = adjustment.applyTo(rate);
+            changes.add(new Change(product.productId(), product.name(), product.price(), price, product.rate(), rate));
+        }
+        return changes;
+    }
+
+    /**
+     * Writes the changed rows in one batch; runs in the caller's transaction, which must be
+     * rolled back when this throws.
+     *
+     * @return the number of products updated
+     * @throws SQLException when a product's price or rate no longer matches the preview, or it was deleted
+     */
+    public static int apply(Connection conn, List<Change> changes) throws SQLException {
+        List<Change> changed = changes.stream().filter(Change::isChanged).toList();
+        if (changed.isEmpty()) return 0;
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "UPDATE Product SET Price = ?, Rate = ? WHERE Product_ID = ? AND Price = ? AND Rate = ?")) {
+            for (Change change : changed) {
+                stmt.setLong(1, change.newPrice());
+                stmt.setLong(2, change.newRate());
+                stmt.setInt(3, change.productId());
+                stmt.setLong(4, change.oldPrice());
+                stmt.setLong(5, change.oldRate());
+                stmt.addBatch();
+            }
+            int[] counts = stmt.executeBatch();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) {
+                    throw new SQLException("Product " + changed.get(i).name() + " was changed or deleted since the preview");
+                }
+            }
+        }
+        return changed.size();
+    }
+}
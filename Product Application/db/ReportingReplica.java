@@ -0,0 +1,85 @@
+package db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A read-only copy of app.db for reports and exports. Long scans over sales history run
+ * against reporting.db instead, so they never hold a read lock on the file the sales and
+ * shipment windows write to. The copy is made with SQLite's online backup API, which copies
+ * pages in steps under short read locks, while the application keeps writing.
+ *
+ * The copy is refreshed on a schedule and skipped when nothing was committed since the
+ * last one. The first report of a session always takes a fresh copy, so a replica left
+ * over from an older schema version is never read.
+ *
+ * Backends that cannot be copied this way (H2) have no replica: reports read the live
+ * database, where multi-version reads do not hold up writers in the first place.
+ */
+public final class ReportingReplica {
+    public static final String FILE = "reporting.db";
+    public static final Duration DEFAULT_INTERVAL = Duration.ofMinutes(5);
+
+    private static final Backend REPLICA = Backend.sqliteFile(FILE);
+    private static final Object LOCK = new Object();
+    private static long copiedVersion = -1; // Guarded by LOCK
+    private static volatile Instant refreshedAt;
+
+    private ReportingReplica() {}
+
+    /**
+     * Copies app.db over the replica unless nothing was committed since the last copy.
+     *
+     * @return true if a copy was made
+     */
+    public static boolean refresh() throws SQLException {
+        synchronized (LOCK) {
+            // Read first: a commit that lands during the copy makes the next refresh copy again
+            long version = DatabaseManager.dataVersion();
+            if (!DatabaseManager.dialect().hasFileCopy()) return false;
+            if (version == copiedVersion && refreshedAt != null) return false;
+            try (Connection conn = DatabaseManager.connect("ReportingReplica.refresh");
+                 Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("backup to " + FILE); // sqlite-jdbc's front end to sqlite3_backup
+            } // Closed without a commit: the backup changed nothing in app.db
+            copiedVersion = version;
+            refreshedAt = Instant.now();
+            return true;
+        }
+    }
+
+    /** When the replica was last copied in this session, or null before the first copy. */
+    public static Instant refreshedAt() {
+        return refreshedAt;
+    }
+
+    /** A read-only autocommit connection to the replica, copying it first if this session has not yet. */
+    public static Connection connect(String operation) throws SQLException {
+        if (!DatabaseManager.dialect().hasFileCopy()) return DatabaseManager.connectReadOnly(operation);
+        if (refreshedAt == null) refresh();
+        return DatabaseManager.openReadOnly(REPLICA, operation);
+    }
+
+    /** Refreshes the replica every {@code interval} on a low-priority daemon thread. */
+    public static void startSchedule(Duration interval) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread worker = new Thread(task, "db-reporting-replica");
+            worker.setDaemon(true);
+            worker.setPriority(Thread.MIN_PRIORITY);
+            return worker;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                refresh();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+}
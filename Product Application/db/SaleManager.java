@@ -0,0 +1,612 @@
+package db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Sale queries and write paths shared by the Swing windows and headless callers. A sale is a
+ * SaleOrder header (client, seller, date, payment status) with one SaleLine per product.
+ * Write methods run inside the caller's transaction; the caller commits or rolls back.
+ */
+public final class SaleManager {
+
+    /** One order in the sales list, with its lines summarized; money in cents. */
+    public record OrderRow(int orderId, String clientName, String sellerName, LocalDate saleDate,
+                           String paymentStatus, int lineCount, int quantity, long total) {}
+
+    /** One line of an order, loaded when the order is expanded; money in cents, cost at FIFO layers. */
+    public record LineRow(int lineId, String productName, int quantity, long unitPrice, long totalRevenue, long cost) {
+
+        public long margin() {
+            return totalRevenue - cost;
+        }
+    }
+
+    /** A product and quantity requested for a new sale. */
+    public record NewLine(int productId, String productName, int quantity) {}
+
+    /** What a reversal undid: orders removed, units returned to stock and paid revenue taken back in cents. */
+    public record Reversal(int orders, int units, long refunded) {}
+
+    /** Raised when a sale asks for more units than are in stock; the transaction must be rolled back. */
+    public static class InsufficientStockException extends SQLException {
+        private final String productName;
+
+        public InsufficientStockException(String productName) {
+            super("Not enough stock for " + productName);
+            this.productName = productName;
+        }
+
+        public String getProductName() {
+            return productName;
+        }
+    }
+
+    private SaleManager() {}
+
+    /** Orders dated within the range, oldest first; the SaleDate index serves both the filter and the order. */
+    public static List<OrderRow> findOrders(Connection conn, Dates.Range range) throws SQLException {
+        StringBuilder sql = new StringBuilder("""
+            SELECT o.Order_ID,
+                   c.Name AS ClientName,
+                   se.Name AS SellerName,
+                   o.SaleDate,
+                   o.PaymentStatus,
+                   COUNT(l.Line_ID) AS LineCount,
+                   COALESCE(SUM(l.Quantity), 0) AS Quantity,
+                   COALESCE(SUM(l.TotalRevenue), 0) AS Total
+            FROM SaleOrder o
+            JOIN Client c ON o.Client_ID = c.Client_ID
+            JOIN Seller se ON o.Seller_ID = se.Seller_ID
+            LEFT JOIN SaleLine l ON l.Order_ID = o.Order_ID
+        """);
+        if (!range.isAll()) {
+            sql.append(" WHERE o.SaleDate BETWEEN ? AND ?");
+        }
+        // Grouping in index order lets the date range stream straight off idx_saleorder_date without a sort
+        sql.append(" GROUP BY o.SaleDate, o.Order_ID ORDER BY o.SaleDate, o.Order_ID");
+
+        List<OrderRow> rows = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            if (!range.isAll()) {
+                stmt.setLong(1, range.fromDay());
+                stmt.setLong(2, range.toDay());
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(new OrderRow(
+                            rs.getInt("Order_ID"),
+                            rs.getString("ClientName"),
+                            rs.getString("SellerName"),
+                            Dates.read(rs, "SaleDate"),
+                            rs.getString("PaymentStatus"),
+                            rs.getInt("LineCount"),
+                            rs.getInt("Quantity"),
+                            rs.getLong("Total")));
+                }
+            }
+        }
+        return rows;
+    }
+
+    public static List<LineRow> findLines(Connection conn, int orderId) throws SQLException {
+        List<LineRow> lines = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement("""
+                SELECT l.Line_ID, p.Name AS ProductName, l.Quantity, l.UnitPrice, l.TotalRevenue, l.Cost
+                FROM SaleLine l
+                JOIN Product p ON l.Product_ID = p.Product_ID
+                WHERE l.Order_ID = ?
+                ORDER BY l.Line_ID
+            """)) {
+            stmt.setInt(1, orderId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    lines.add(new LineRow(
+                            rs.getInt("Line_ID"),
+                            rs.getString("ProductName"),
+                            rs.getInt("Quantity"),
+                            rs.getLong("UnitPrice"),
+                            rs.getLong("TotalRevenue"),
+                            rs.getLong("Cost")));
+                }
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Records a sale as one header insert plus a batched line insert, takes the units out of
+     * stock and its FIFO cost layers, bumps the client's purchase count and, for paid sales,
+     * the seller's cash.
+     *
+     * @return the new Order_ID
+     * @throws InsufficientStockException if any product does not have enough units left
+     */
+    public static int postSale(Connection conn, int clientId, int sellerId, LocalDate saleDate,
+                               String paymentStatus, List<NewLine> lines) throws SQLException {
+        // Requested units per product, so a product listed twice is checked against its combined quantity.
+        // Kept in ID order so concurrent sales lock product rows in the same order on row-locking backends.
+        Map<Integer, Integer> unitsByProduct = new TreeMap<>();
+        Map<Integer, String> namesByProduct = new LinkedHashMap<>();
+        int totalQuantity = 0;
+        for (NewLine line : lines) {
+            unitsByProduct.merge(line.productId(), line.quantity(), Integer::sum);
+            namesByProduct.putIfAbsent(line.productId(), line.productName());
+            totalQuantity += line.quantity();
+        }
+
+        Map<Integer, Long> prices = loadPrices(conn, unitsByProduct.keySet().stream().toList());
+
+        // Conditional decrement: a row only changes when enough stock is left, even under concurrent posting
+        try (PreparedStatement take = conn.prepareStatement(
+                "UPDATE Product SET AmountLeft = AmountLeft - ? WHERE Product_ID = ? AND AmountLeft >= ?")) {
+            for (Map.Entry<Integer, Integer> e : unitsByProduct.entrySet()) {
+                take.setInt(1, e.getValue());
+                take.setInt(2, e.getKey());
+                take.setInt(3, e.getValue());
+                take.addBatch();
+            }
+            int[] counts = take.executeBatch();
+            int i = 0;
+            for (Integer productId : unitsByProduct.keySet()) {
+                if (counts[i++] == 0) throw new InsufficientStockException(namesByProduct.get(productId));
+            }
+        }
+
+        int orderId;
+        try (PreparedStatement ins = conn.prepareStatement(
+                "INSERT INTO SaleOrder(Client_ID, Seller_ID, SaleDate, PaymentStatus) VALUES (?, ?, ?, ?)",
+                Statement.RETURN_GENERATED_KEYS)) {
+            ins.setInt(1, clientId);
+            ins.setInt(2, sellerId);
+            Dates.bind(ins, 3, saleDate);
+            ins.setString(4, paymentStatus);
+            ins.executeUpdate();
+            try (ResultSet keys = ins.getGeneratedKeys()) {
+                if (!keys.next()) throw new SQLException("No key returned for new sale order");
+                orderId = keys.getInt(1);
+            }
+        }
+
+        long orderTotal = 0;
+        Map<Integer, Long> spendByProduct = new TreeMap<>();
+        try (PreparedStatement ins = conn.prepareStatement(
+                "INSERT INTO SaleLine(Order_ID, Product_ID, Quantity, UnitPrice, TotalRevenue) VALUES (?, ?, ?, ?, ?)")) {
+            for (NewLine line : lines) {
+                long unitPrice = prices.getOrDefault(line.productId(), 0L);
+                long revenue = Money.times(unitPrice, line.quantity());
+                orderTotal += revenue;
+                spendByProduct.merge(line.productId(), revenue, Long::sum);
+                ins.setInt(1, orderId);
+                ins.setInt(2, line.productId());
+                ins.setInt(3, line.quantity());
+                ins.setLong(4, unitPrice);
+                ins.setLong(5, revenue);
+                ins.addBatch();
+            }
+            ins.executeBatch();
+        }
+
+        // Line IDs are read back because batched inserts do not report generated keys on every driver
+        List<CostLayers.LineUnits> costed = new ArrayList<>();
+        try (PreparedStatement read = conn.prepareStatement(
+                "SELECT Line_ID, Product_ID, Quantity FROM SaleLine WHERE Order_ID = ? ORDER BY Line_ID")) {
+            read.setInt(1, orderId);
+            try (ResultSet rs = read.executeQuery()) {
+                while (rs.next()) {
+                    costed.add(new CostLayers.LineUnits(rs.getInt("Line_ID"), rs.getInt("Product_ID"), rs.getInt("Quantity")));
+                }
+            }
+        }
+        CostLayers.consume(conn, costed);
+
+        List<StockLedger.Movement> movements = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> e : unitsByProduct.entrySet()) {
+            movements.add(new StockLedger.Movement(e.getKey(), saleDate, -e.getValue(), StockLedger.Reason.SALE, orderId));
+        }
+        StockLedger.recordAll(conn, movements);
+
+        // Update client's number of purchases
+        try (PreparedStatement updateClient = conn.prepareStatement(
+                "UPDATE Client SET NumberOfPurchases = NumberOfPurchases + ? WHERE Client_ID = ?")) {
+            updateClient.setInt(1, totalQuantity);
+            updateClient.setInt(2, clientId);
+            updateClient.executeUpdate();
+        }
+        ClientStats.recordSale(conn, clientId, saleDate, unitsByProduct, spendByProduct);
+        ProductDemand.recordSale(conn, saleDate, unitsByProduct);
+
+        // Update cash if paid
+        if ("Paid".equals(paymentStatus)) {
+            try (PreparedStatement upc = conn.prepareStatement(
+                    "UPDATE Seller SET CashOnHand = CashOnHand + ? WHERE Seller_ID = ?")) {
+                upc.setLong(1, orderTotal);
+                upc.setInt(2, sellerId);
+                upc.executeUpdate();
+            }
+        }
+        return orderId;
+    }
+
+    /**
+     * Sets one order's payment status and moves its total in or out of the seller's cash.
+     *
+     * @return false if the order does not exist or already had that status
+     */
+    public static boolean setPaymentStatus(Connection conn, int orderId, String newStatus) throws SQLException {
+        return setPaymentStatus(conn, List.of(orderId), newStatus) == 1;
+    }
+
+    /**
+     * Sets the payment status of every listed order with one set-based UPDATE, moving the
+     * affected revenue in or out of each seller's cash with one grouped delta per seller.
+     *
+     * @return the number of orders whose status changed
+     */
+    public static int setPaymentStatus(Connection conn, List<Integer> orderIds, String newStatus) throws SQLException {
+        if (orderIds.isEmpty()) return 0;
+        String placeholders = String.join(", ", Collections.nCopies(orderIds.size(), "?"));
+        return applyPaymentStatus(conn, "SaleOrder.Order_ID IN (" + placeholders + ")", List.copyOf(orderIds), newStatus);
+    }
+
+    /**
+     * Month-end settlement: sets the status of all of a client's orders in the range that
+     * currently have {@code fromStatus}, e.g. every unpaid sale of one client to "Paid".
+     *
+     * @return the number of orders whose status changed
+     */
+    public static int settleClient(Connection conn, int clientId, Dates.Range range,
+                                   String fromStatus, String newStatus) throws SQLException {
+        List<Object> params = new ArrayList<>(List.of(clientId, fromStatus));
+        String where = "SaleOrder.Client_ID = ? AND SaleOrder.PaymentStatus = ?";
+        if (!range.isAll()) {
+            where += " AND SaleOrder.SaleDate BETWEEN ? AND ?";
+            params.add(range.fromDay());
+            params.add(range.toDay());
+        }
+        return applyPaymentStatus(conn, where, params, newStatus);
+    }
+
+    // Shared by the list and client paths; "where" filters SaleOrder by its unaliased table name
+    private static int applyPaymentStatus(Connection conn, String where, List<Object> params,
+                                          String newStatus) throws SQLException {
+        // Orders becoming Paid add their revenue; orders leaving Paid take it back.
+        // Orders a cash reset settled change status without moving cash
+        boolean toPaid = "Paid".equals(newStatus);
+        SqlDialect dialect = DatabaseManager.dialect();
+        String moving = toPaid ? dialect.distinctFrom("SaleOrder.PaymentStatus", "'Paid'") : "SaleOrder.PaymentStatus = 'Paid'";
+
+        Map<Integer, Long> deltaBySeller = new LinkedHashMap<>();
+        try (PreparedStatement sel = conn.prepareStatement(
+                "SELECT SaleOrder.Seller_ID, SUM(l.TotalRevenue) AS Revenue " +
+                "FROM SaleOrder JOIN SaleLine l ON l.Order_ID = SaleOrder.Order_ID " +
+                "WHERE " + where + " AND " + moving + " AND SaleOrder.CashSettled = 0 GROUP BY SaleOrder.Seller_ID")) {
+            bindAll(sel, params);
+            try (ResultSet rs = sel.executeQuery()) {
+                while (rs.next()) {
+                    long revenue = rs.getLong("Revenue");
+                    deltaBySeller.put(rs.getInt("Seller_ID"), toPaid ? revenue : -revenue);
+                }
+            }
+        }
+
+        int changed;
+        try (PreparedStatement upd = conn.prepareStatement(
+                "UPDATE SaleOrder SET PaymentStatus = ? WHERE " + where + " AND "
+                        + dialect.distinctFrom("SaleOrder.PaymentStatus", "?"))) {
+            upd.setString(1, newStatus);
+            for (int i = 0; i < params.size(); i++) {
+                upd.setObject(i + 2, params.get(i));
+            }
+            upd.setString(params.size() + 2, newStatus);
+            changed = upd.executeUpdate();
+        }
+
+        if (!deltaBySeller.isEmpty()) {
+            try (PreparedStatement adj = conn.prepareStatement(
+                    "UPDATE Seller SET CashOnHand = CashOnHand + ? WHERE Seller_ID = ?")) {
+                for (Map.Entry<Integer, Long> e : deltaBySeller.entrySet()) {
+                    adj.setLong(1, e.getValue());
+                    adj.setInt(2, e.getKey());
+                    adj.addBatch();
+                }
+                adj.executeBatch();
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Amends one line's quantity together with its order's seller and date, applying only the
+     * differences: stock moves by the quantity delta, the line's revenue is re-priced at its
+     * recorded unit price, its cost takes units from or gives them back to the FIFO layers,
+     * the client's purchase count follows the quantity, and for paid
+     * orders not yet settled by a cash reset the cash moves between sellers or by the revenue delta.
+     *
+     * @throws InsufficientStockException if the quantity grows beyond the units left
+     */
+    public static void amendLine(Connection conn, int lineId, int newQuantity, int newSellerId,
+                                 LocalDate newDate) throws SQLException {
+        if (newQuantity <= 0) throw new SQLException("Quantity must be positive");
+
+        int orderId, productId, clientId, oldSellerId, oldQuantity;
+        long unitPrice, oldOrderTotal;
+        String productName, paymentStatus;
+        boolean cashSettled;
+        LocalDate oldDate;
+        try (PreparedStatement read = conn.prepareStatement("""
+                SELECT l.Order_ID, l.Product_ID, l.Quantity, l.UnitPrice,
+                       o.Client_ID, o.Seller_ID, o.PaymentStatus, o.CashSettled, o.SaleDate, p.Name AS ProductName,
+                       (SELECT SUM(x.UnitPrice * x.Quantity) FROM SaleLine x WHERE x.Order_ID = l.Order_ID) AS OrderTotal
+                FROM SaleLine l
+                JOIN SaleOrder o ON l.Order_ID = o.Order_ID
+                JOIN Product p ON l.Product_ID = p.Product_ID
+                WHERE l.Line_ID = ?
+            """)) {
+            read.setInt(1, lineId);
+            try (ResultSet rs = read.executeQuery()) {
+                if (!rs.next()) throw new SQLException("Sale line " + lineId + " not found");
+                orderId = rs.getInt("Order_ID");
+                productId = rs.getInt("Product_ID");
+                oldQuantity = rs.getInt("Quantity");
+                unitPrice = rs.getLong("UnitPrice");
+                clientId = rs.getInt("Client_ID");
+                oldSellerId = rs.getInt("Seller_ID");
+                paymentStatus = rs.getString("PaymentStatus");
+                cashSettled = rs.getInt("CashSettled") != 0;
+                productName = rs.getString("ProductName");
+                oldOrderTotal = rs.getLong("OrderTotal");
+                oldDate = Objects.requireNonNullElse(Dates.read(rs, "SaleDate"), newDate);
+            }
+        }
+
+        int quantityDelta = newQuantity - oldQuantity;
+        // From the unit price rather than the stored TotalRevenue, so the cash moves by what the
+        // customer pays for the changed units whatever happened to the stored column
+        long newRevenue = Money.times(unitPrice, newQuantity);
+        long revenueDelta = newRevenue - Money.times(unitPrice, oldQuantity);
+
+        if (quantityDelta > 0) {
+            try (PreparedStatement take = conn.prepareStatement(
+                    "UPDATE Product SET AmountLeft = AmountLeft - ? WHERE Product_ID = ? AND AmountLeft >= ?")) {
+                take.setInt(1, quantityDelta);
+                take.setInt(2, productId);
+                take.setInt(3, quantityDelta);
+                if (take.executeUpdate() == 0) throw new InsufficientStockException(productName);
+            }
+        } else if (quantityDelta < 0) {
+            try (PreparedStatement restore = conn.prepareStatement(
+                    "UPDATE Product SET AmountLeft = AmountLeft + ? WHERE Product_ID = ?")) {
+                restore.setInt(1, -quantityDelta);
+                restore.setInt(2, productId);
+                restore.executeUpdate();
+            }
+        }
+
+        if (quantityDelta > 0) {
+            CostLayers.consumeMore(conn, lineId, productId, quantityDelta);
+        } else if (quantityDelta < 0) {
+            CostLayers.giveBack(conn, lineId, -quantityDelta);
+        }
+
+        if (quantityDelta != 0) {
+            try (PreparedStatement line = conn.prepareStatement(
+                    "UPDATE SaleLine SET Quantity = ?, TotalRevenue = ? WHERE Line_ID = ?")) {
+                line.setInt(1, newQuantity);
+                line.setLong(2, newRevenue);
+                line.setInt(3, lineId);
+                line.executeUpdate();
+            }
+            try (PreparedStatement client = conn.prepareStatement(
+                    "UPDATE Client SET NumberOfPurchases = "
+                    + DatabaseManager.dialect().greatest("NumberOfPurchases + ?", "0") + " WHERE Client_ID = ?")) {
+                client.setInt(1, quantityDelta);
+                client.setInt(2, clientId);
+                client.executeUpdate();
+            }
+        }
+
+        recordAmendment(conn, orderId, lineId, productId, oldQuantity, newQuantity, oldDate, newDate);
+
+        try (PreparedStatement header = conn.prepareStatement(
+                "UPDATE SaleOrder SET SaleDate = ?, Seller_ID = ? WHERE Order_ID = ?")) {
+            Dates.bind(header, 1, newDate);
+            header.setInt(2, newSellerId);
+            header.setInt(3, orderId);
+            header.executeUpdate();
+        }
+        if (quantityDelta != 0 || !oldDate.equals(newDate)) {
+            ClientStats.recompute(conn, List.of(clientId));
+        }
+
+        // Paid orders: the old seller gives back the old total and the new seller takes the new one,
+        // which collapses to a single revenue delta when the seller is unchanged
+        if ("Paid".equals(paymentStatus) && !cashSettled && (revenueDelta != 0 || newSellerId != oldSellerId)) {
+            try (PreparedStatement cash = conn.prepareStatement(
+                    "UPDATE Seller SET CashOnHand = CashOnHand + ? WHERE Seller_ID = ?")) {
+                if (newSellerId == oldSellerId) {
+                    cash.setLong(1, revenueDelta);
+                    cash.setInt(2, oldSellerId);
+                    cash.addBatch();
+                } else {
+                    cash.setLong(1, -oldOrderTotal);
+                    cash.setInt(2, oldSellerId);
+                    cash.addBatch();
+                    cash.setLong(1, oldOrderTotal + revenueDelta);
+                    cash.setInt(2, newSellerId);
+                    cash.addBatch();
+                }
+                cash.executeBatch();
+            }
+        }
+    }
+
+    /**
+     * Deletes the given orders and undoes their effects: units go back to stock, paid revenue
+     * not yet settled by a cash reset leaves the seller's cash and the client's purchase count drops (never below zero).
+     * All orders are read once, the compensations are summed per product, seller and client,
+     * and each kind of change is applied as one batch.
+     */
+    public static Reversal reverseOrders(Connection conn, List<Integer> orderIds) throws SQLException {
+        if (orderIds.isEmpty()) return new Reversal(0, 0, 0);
+        String placeholders = String.join(", ", Collections.nCopies(orderIds.size(), "?"));
+
+        Map<Integer, Integer> unitsByProduct = new LinkedHashMap<>();
+        Map<Integer, Long> cashBySeller = new LinkedHashMap<>();
+        Map<Integer, Integer> unitsByClient = new LinkedHashMap<>();
+        Set<Integer> clientIds = new TreeSet<>(); // Includes clients of orders without lines, for the stats
+        List<Integer> lineIds = new ArrayList<>();
+        List<StockLedger.Movement> movements = new ArrayList<>();
+        int units = 0;
+        long refunded = 0;
+
+        // Single read of every header and line involved
+        try (PreparedStatement read = conn.prepareStatement(
+                "SELECT o.Order_ID, o.Client_ID, o.Seller_ID, o.PaymentStatus, o.CashSettled, o.SaleDate, " +
+                "l.Line_ID, l.Product_ID, l.Quantity, l.TotalRevenue " +
+                "FROM SaleOrder o LEFT JOIN SaleLine l ON l.Order_ID = o.Order_ID " +
+                "WHERE o.Order_ID IN (" + placeholders + ")")) {
+            bindIds(read, orderIds);
+            try (ResultSet rs = read.executeQuery()) {
+                while (rs.next()) {
+                    clientIds.add(rs.getInt("Client_ID"));
+                    rs.getInt("Line_ID");
+                    if (rs.wasNull()) continue; // An order with no lines
+                    lineIds.add(rs.getInt("Line_ID"));
+                    int quantity = rs.getInt("Quantity");
+                    long revenue = rs.getLong("TotalRevenue");
+                    unitsByProduct.merge(rs.getInt("Product_ID"), quantity, Integer::sum);
+                    unitsByClient.merge(rs.getInt("Client_ID"), quantity, Integer::sum);
+                    // Dated like the sale it undoes, so stock history reads as if the sale never happened
+                    LocalDate saleDate = Objects.requireNonNullElseGet(Dates.read(rs, "SaleDate"), LocalDate::now);
+                    movements.add(new StockLedger.Movement(rs.getInt("Product_ID"), saleDate, quantity,
+                            StockLedger.Reason.SALE_REVERSAL, rs.getInt("Order_ID")));
+                    if ("Paid".equals(rs.getString("PaymentStatus")) && rs.getInt("CashSettled") == 0) {
+                        cashBySeller.merge(rs.getInt("Seller_ID"), revenue, Long::sum);
+                        refunded += revenue;
+                    }
+                    units += quantity;
+                }
+            }
+        }
+
+        try (PreparedStatement restore = conn.prepareStatement(
+                "UPDATE Product SET AmountLeft = AmountLeft + ? WHERE Product_ID = ?")) {
+            for (Map.Entry<Integer, Integer> e : unitsByProduct.entrySet()) {
+                restore.setInt(1, e.getValue());
+                restore.setInt(2, e.getKey());
+                restore.addBatch();
+            }
+            restore.executeBatch();
+        }
+        StockLedger.recordAll(conn, movements);
+        CostLayers.restore(conn, lineIds);
+
+        if (!cashBySeller.isEmpty()) {
+            try (PreparedStatement cash = conn.prepareStatement(
+                    "UPDATE Seller SET CashOnHand = CashOnHand - ? WHERE Seller_ID = ?")) {
+                for (Map.Entry<Integer, Long> e : cashBySeller.entrySet()) {
+                    cash.setLong(1, e.getValue());
+                    cash.setInt(2, e.getKey());
+                    cash.addBatch();
+                }
+                cash.executeBatch();
+            }
+        }
+
+        try (PreparedStatement clients = conn.prepareStatement(
+                "UPDATE Client SET NumberOfPurchases = "
+                + DatabaseManager.dialect().greatest("NumberOfPurchases - ?", "0") + " WHERE Client_ID = ?")) {
+            for (Map.Entry<Integer, Integer> e : unitsByClient.entrySet()) {
+                clients.setInt(1, e.getValue());
+                clients.setInt(2, e.getKey());
+                clients.addBatch();
+            }
+            clients.executeBatch();
+        }
+
+        int orders;
+        try (PreparedStatement deleteLines = conn.prepareStatement(
+                    "DELETE FROM SaleLine WHERE Order_ID IN (" + placeholders + ")");
+             PreparedStatement deleteOrders = conn.prepareStatement(
+                    "DELETE FROM SaleOrder WHERE Order_ID IN (" + placeholders + ")")) {
+            bindIds(deleteLines, orderIds);
+            deleteLines.executeUpdate();
+            bindIds(deleteOrders, orderIds);
+            orders = deleteOrders.executeUpdate();
+        }
+        ClientStats.recompute(conn, clientIds);
+        return new Reversal(orders, units, refunded);
+    }
+
+    // Ledger entries for an amendment. Moving the order to another day moves all of its lines
+    // (taken back on the old day, sold again on the new one); otherwise only the quantity change
+    private static void recordAmendment(Connection conn, int orderId, int lineId, int productId,
+                                        int oldQuantity, int newQuantity, LocalDate oldDate,
+                                        LocalDate newDate) throws SQLException {
+        List<StockLedger.Movement> movements = new ArrayList<>();
+        if (oldDate.equals(newDate)) {
+            movements.add(new StockLedger.Movement(productId, newDate, oldQuantity - newQuantity,
+                    StockLedger.Reason.SALE_AMENDMENT, orderId));
+        } else {
+            try (PreparedStatement lines = conn.prepareStatement(
+                    "SELECT Line_ID, Product_ID, Quantity FROM SaleLine WHERE Order_ID = ?")) {
+                lines.setInt(1, orderId);
+                try (ResultSet rs = lines.executeQuery()) {
+                    while (rs.next()) {
+                        int quantity = rs.getInt("Quantity");
+                        int after = rs.getInt("Line_ID") == lineId ? newQuantity : quantity;
+                        int before = rs.getInt("Line_ID") == lineId ? oldQuantity : quantity;
+                        movements.add(new StockLedger.Movement(rs.getInt("Product_ID"), oldDate, before,
+                                StockLedger.Reason.SALE_AMENDMENT, orderId));
+                        movements.add(new StockLedger.Movement(rs.getInt("Product_ID"), newDate, -after,
+                                StockLedger.Reason.SALE_AMENDMENT, orderId));
+                    }
+                }
+            }
+        }
+        StockLedger.recordAll(conn, movements);
+    }
+
+    // Current selling price (cents) of each product, fetched in one query
+    static Map<Integer, Long> loadPrices(Connection conn, List<Integer> productIds) throws SQLException {
+        if (productIds.isEmpty()) return Collections.emptyMap();
+        String placeholders = String.join(", ", Collections.nCopies(productIds.size(), "?"));
+        Map<Integer, Long> prices = new LinkedHashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT Product_ID, Price FROM Product WHERE Product_ID IN (" + placeholders + ")")) {
+            bindIds(stmt, productIds);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    prices.put(rs.getInt("Product_ID"), rs.getLong("Price"));
+                }
+            }
+        }
+        return prices;
+    }
+
+    private static void bindIds(PreparedStatement stmt, List<Integer> ids) throws SQLException {
+        for (int i = 0; i < ids.size(); i++) {
+            stmt.setInt(i + 1, ids.get(i));
+        }
+    }
+
+    private static void bindAll(PreparedStatement stmt, List<Object> params) throws SQLException {
+        for (int i = 0; i < params.size(); i++) {
+            stmt.setObject(i + 1, params.get(i));
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package db;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/** Sales exports. Meant to run on a {@link ReportingReplica} connection. */
+public final class SalesReport {
+
+    private SalesReport() {}
+
+    /**
+     * Writes the orders in the range as CSV, one row per order, with a header row. Money is
+     * written as plain decimals ("1234.56") so spreadsheets read it as numbers.
+     *
+     * @return the number of orders written
+     */
+    public static int writeOrdersCsv(Connection conn, Dates.Range range, Writer out) throws SQLException, IOException {
+        out.write("Order ID,Date,Client,Seller,Items,Quantity,Total,Payment Status\r\n");
+        int rows = 0;
+        for (SaleManager.OrderRow order : SaleManager.findOrders(conn, range)) {
+            out.write(String.join(",",
+                    String.valueOf(order.orderId()),
+                    order.saleDate() == null ? "" : order.saleDate().toString(),
+                    csv(order.clientName()),
+                    csv(order.sellerName()),
+                    String.valueOf(order.lineCount()),
+                    String.valueOf(order.quantity()),
+                    Money.format(order.total()),
+                    csv(order.paymentStatus())));
+            out.write("\r\n");
+            rows++;
+        }
+        return rows;
+    }
+
+    // RFC 4180: quote fields containing a separator, quote or line break, doubling inner quotes
+    private static String csv(String value) {
+        if (value == null) return "";
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,695 @@
+package db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Versioned schema migrations. The applied version lives in the SchemaVersion table; every
+ * migration above it runs once, in order, each in its own transaction, the first time the
+ * application connects to a database file.
+ *
+ * Versions 1 to {@value #H2_BASELINE_VERSION} reshape SQLite files written by older releases
+ * and use SQLite-only SQL. An H2 database never held the old shapes, so it starts from
+ * {@link #createH2Baseline}, the same tables as they stand at that version; migrations after
+ * it must run on both dialects.
+ */
+public final class Schema {
+
+    private interface Step {
+        void apply(Connection conn) throws SQLException;
+    }
+
+    private record Migration(int version, String description, Step step) {}
+
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "baseline tables", Schema::createBaseline),
+            new Migration(2, "money columns as integer cents", Schema::moneyAsCents),
+            new Migration(3, "dates as epoch days with range indexes", Schema::datesAsEpochDays),
+            new Migration(4, "sale orders with line items", Schema::saleOrders),
+            new Migration(5, "product indexes for counter verification", Schema::productIndexes),
+            new Migration(6, "stock movement ledger with snapshots", Schema::stockLedger),
+            new Migration(7, "client and product search index", Schema::searchIndex),
+            new Migration(8, "per-client purchase aggregates", Schema::clientStats),
+            new Migration(9, "shipment item price snapshots and expense allocation", Schema::shipmentItemCosts),
+            new Migration(10, "FIFO cost layers", Schema::costLayers),
+            new Migration(11, "smoothed product demand and reorder points", Schema::productDemand),
+            new Migration(12, "client preference index for list filters", Schema::clientPreferenceIndex),
+            new Migration(13, "cash reset baselines per seller", Schema::cashResetBaselines),
+            new Migration(14, "sale orders settled by a cash reset", Schema::cashSettledOrders)
+    );
+
+    private static final int H2_BASELINE_VERSION = 7;
+
+    private Schema() {}
+
+    public static int latestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version();
+    }
+
+    /** Brings the database up to {@link #latestVersion()}; a no-op when it is already current. */
+    public static void migrate(Connection conn, SqlDialect dialect) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS SchemaVersion (Version INTEGER NOT NULL)");
+        }
+        int current = currentVersion(conn);
+        if (dialect != SqlDialect.SQLITE && current < H2_BASELINE_VERSION) {
+            apply(conn, new Migration(H2_BASELINE_VERSION, "baseline tables", Schema::createH2Baseline));
+            current = H2_BASELINE_VERSION;
+        }
+        for (Migration migration : MIGRATIONS) {
+            if (migration.version() <= current) continue;
+            apply(conn, migration);
+        }
+        conn.commit();
+    }
+
+    private static void apply(Connection conn, Migration migration) throws SQLException {
+        try {
+            migration.step().apply(conn);
+            try (PreparedStatement stmt = conn.prepareStatement("UPDATE SchemaVersion SET Version = ?")) {
+                stmt.setInt(1, migration.version());
+                stmt.executeUpdate();
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw new SQLException("Schema migration " + migration.version() + " ("
+                    + migration.description() + ") failed", e);
+        }
+    }
+
+    private static int currentVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT Version FROM SchemaVersion")) {
+            if (rs.next()) return rs.getInt(1);
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("INSERT INTO SchemaVersion (Version) VALUES (0)");
+        }
+        return 0;
+    }
+
+    // Version 1: the tables as the application has always used them, for databases created from scratch
+    private static void createBaseline(Connection conn) throws SQLException {
+        execute(conn, """
+            CREATE TABLE IF NOT EXISTS Client (
+                Client_ID INTEGER PRIMARY KEY AUTOINCREMENT,
+                Name TEXT NOT NULL,
+                Preferences TEXT,
+                NumberOfPurchases INTEGER
+            )
+        """, """
+            CREATE TABLE IF NOT EXISTS Product (
+                Product_ID INTEGER PRIMARY KEY AUTOINCREMENT,
+                Name TEXT NOT NULL,
+                AmountLeft INTEGER,
+                Rate DOUBLE NOT NULL DEFAULT 0,
+                Price REAL
+            )
+        """, """
+            CREATE TABLE IF NOT EXISTS Seller (
+                Seller_ID INTEGER PRIMARY KEY AUTOINCREMENT,
+                Name TEXT NOT NULL,
+                CashOnHand REAL DEFAULT 0
+            )
+        """, """
+            CREATE TABLE IF NOT EXISTS Sale (
+                Sale_ID INTEGER PRIMARY KEY AUTOINCREMENT,
+                Client_ID INTEGER,
+                Product_ID INTEGER,
+                Seller_ID INTEGER,
+                Quantity INTEGER,
+                SaleDate TEXT,
+                PaymentStatus TEXT,
+                TotalRevenue REAL,
+                FOREIGN KEY (Client_ID) REFERENCES Client(Client_ID),
+                FOREIGN KEY (Product_ID) REFERENCES Product(Product_ID),
+                FOREIGN KEY (Seller_ID) REFERENCES Seller(Seller_ID)
+            )
+        """, """
+            CREATE TABLE IF NOT EXISTS Shipment (
+                Shipment_ID INTEGER PRIMARY KEY AUTOINCREMENT,
+                Deliveryman TEXT,
+                DeliveryDate TEXT,
+                GrossProfit REAL DEFAULT 0,
+                Revenue REAL DEFAULT 0,
+                DeliveryExpense REAL DEFAULT 0,
+                EquipmentExpense REAL DEFAULT 0,
+                EmployeeExpense REAL DEFAULT 0
+            )
+        """, """
+            CREATE TABLE IF NOT EXISTS ShipmentItem (
+                Item_ID INTEGER PRIMARY KEY AUTOINCREMENT,
+                Shipment_ID INTEGER,
+                Product_ID INTEGER,
+                Input INTEGER,
+                Rate REAL,
+                Cost REAL,
+                FOREIGN KEY (Shipment_ID) REFERENCES Shipment(Shipment_ID),
+                FOREIGN KEY (Product_ID) REFERENCES Product(Product_ID)
+            )
+        """);
+    }
+
+    // Version 2: every REAL money column becomes INTEGER cents so sums stay exact
+    private static void moneyAsCents(Connection conn) throws SQLException {
+        rebuildTable(conn, "Product", """
+            CREATE TABLE %s (
+                Product_ID INTEGER PRIMARY KEY AUTOINCREMENT,
+                Name TEXT NOT NULL,
+                AmountLeft INTEGER,
+                Rate INTEGER NOT NULL DEFAULT 0,
+                Price INTEGER NOT NULL DEFAULT 0
+            )
+        """, "Product_ID, Name, AmountLeft, Rate, Price",
+                "Product_ID, Name, AmountLeft, " + cents("Rate") + ", " + cents("Price"));
+
+        rebuildTable(conn, "Seller", """
+            CREATE TABLE %s (
+                Seller_ID INTEGER PRIMARY KEY AUTOINCREMENT,
+                Name TEXT NOT NULL,
+                CashOnHand INTEGER NOT NULL DEFAULT 0
+            )
+        """, "Seller_ID, Name, CashOnHand",
+                "Seller_ID, Name, " + cents("CashOnHand"));
+
+        rebuildTable(conn, "Sale", """
+            CREATE TABLE %s (
+                Sale_ID INTEGER PRIMARY KEY AUTOINCREMENT,
+                Client_ID INTEGER,
+                Product_ID INTEGER,
+                Seller_ID INTEGER,
+                Quantity INTEGER,
+                SaleDate TEXT,
+                PaymentStatus TEXT,
+                TotalRevenue INTEGER NOT NULL DEFAULT 0,
+                FOREIGN KEY (Client_ID) REFERENCES Client(Client_ID),
+                FOREIGN KEY (Product_ID) REFERENCES Product(Product_ID),
+                FOREIGN KEY (Seller_ID) REFERENCES Seller(Seller_ID)
+            )
+        """, "Sale_ID, Client_ID, Product_ID, Seller_ID, Quantity, SaleDate, PaymentStatus, TotalRevenue",
+                "Sale_ID, Client_ID, Product_ID, Seller_ID, Quantity, SaleDate, PaymentStatus, " + cents("TotalRevenue"));
+
+        rebuildTable(conn, "Shipment", """
+            CREATE TABLE %s (
+                Shipment_ID INTEGER PRIMARY KEY AUTOINCREMENT,
+                Deliveryman TEXT,
+                DeliveryDate TEXT,
+                GrossProfit INTEGER NOT NULL DEFAULT 0,
+                Revenue INTEGER NOT NULL DEFAULT 0,
+                DeliveryExpense INTEGER NOT NULL DEFAULT 0,
+                EquipmentExpense INTEGER NOT NULL DEFAULT 0,
+                EmployeeExpense INTEGER NOT NULL DEFAULT 0
+            )
+        """, "Shipment_ID, Deliveryman, DeliveryDate, GrossProfit, Revenue, DeliveryExpense, EquipmentExpense, EmployeeExpense",
+                "Shipment_ID, Deliveryman, DeliveryDate, " + cents("GrossProfit") + ", " + cents("Revenue") + ", "
+                        + cents("DeliveryExpense") + ", " + cents("EquipmentExpense") + ", " + cents("EmployeeExpense"));
+
+        rebuildTable(conn, "ShipmentItem", """
+            CREATE TABLE %s (
+                Item_ID INTEGER PRIMARY KEY AUTOINCREMENT,
+                Shipment_ID INTEGER,
+                Product_ID INTEGER,
+                Input INTEGER,
+                Rate INTEGER NOT NULL DEFAULT 0,
+                Cost INTEGER NOT NULL DEFAULT 0,
+                FOREIGN KEY (Shipment_ID) REFERENCES Shipment(Shipment_ID),
+                FOREIGN KEY (Product_ID) REFERENCES Product(Product_ID)
+            )
+        """, "Item_ID, Shipment_ID, Product_ID, Input, Rate, Cost",
+                "Item_ID, Shipment_ID, Product_ID, Input, " + cents("Rate") + ", " + cents("Cost"));
+    }
+
+    // Version 3: SaleDate and DeliveryDate become INTEGER epoch days; unparseable text becomes NULL
+    private static void datesAsEpochDays(Connection conn) throws SQLException {
+        rebuildTable(conn, "Sale", """
+            CREATE TABLE %s (
+                Sale_ID INTEGER PRIMARY KEY AUTOINCREMENT,
+                Client_ID INTEGER,
+                Product_ID INTEGER,
+                Seller_ID INTEGER,
+                Quantity INTEGER,
+                SaleDate INTEGER,
+                PaymentStatus TEXT,
+                TotalRevenue INTEGER NOT NULL DEFAULT 0,
+                FOREIGN KEY (Client_ID) REFERENCES Client(Client_ID),
+                FOREIGN KEY (Product_ID) REFERENCES Product(Product_ID),
+                FOREIGN KEY (Seller_ID) REFERENCES Seller(Seller_ID)
+            )
+        """, "Sale_ID, Client_ID, Product_ID, Seller_ID, Quantity, SaleDate, PaymentStatus, TotalRevenue",
+                "Sale_ID, Client_ID, Product_ID, Seller_ID, Quantity, " + epochDay("SaleDate") + ", PaymentStatus, TotalRevenue");
+
+        rebuildTable(conn, "Shipment", """
+            CREATE TABLE %s (
+                Shipment_ID INTEGER PRIMARY KEY AUTOINCREMENT,
+                Deliveryman TEXT,
+                DeliveryDate INTEGER,
+                GrossProfit INTEGER NOT NULL DEFAULT 0,
+                Revenue INTEGER NOT NULL DEFAULT 0,
+                DeliveryExpense INTEGER NOT NULL DEFAULT 0,
+                EquipmentExpense INTEGER NOT NULL DEFAULT 0,
+                EmployeeExpense INTEGER NOT NULL DEFAULT 0
+            )
+        """, "Shipment_ID, Deliveryman, DeliveryDate, GrossProfit, Revenue, DeliveryExpense, EquipmentExpense, EmployeeExpense",
+                "Shipment_ID, Deliveryman, " + epochDay("DeliveryDate") + ", GrossProfit, Revenue, DeliveryExpense, EquipmentExpense, EmployeeExpense");
+
+        execute(conn,
+                "CREATE INDEX IF NOT EXISTS idx_sale_date ON Sale(SaleDate)",
+                "CREATE INDEX IF NOT EXISTS idx_shipment_date ON Shipment(DeliveryDate)");
+    }
+
+    // Version 4: each legacy Sale row becomes a one-line SaleOrder keeping its ID; Sale is dropped
+    private static void saleOrders(Connection conn) throws SQLException {
+        execute(conn, """
+            CREATE TABLE SaleOrder (
+                Order_ID INTEGER PRIMARY KEY AUTOINCREMENT,
+                Client_ID INTEGER,
+                Seller_ID INTEGER,
+                SaleDate INTEGER,
+                PaymentStatus TEXT,
+                FOREIGN KEY (Client_ID) REFERENCES Client(Client_ID),
+                FOREIGN KEY (Seller_ID) REFERENCES Seller(Seller_ID)
+            )
+        """, """
+            CREATE TABLE SaleLine (
+                Line_ID INTEGER PRIMARY KEY AUTOINCREMENT,
+                Order_ID INTEGER NOT NULL,
+                Product_ID INTEGER,
+                Quantity INTEGER NOT NULL,
+                UnitPrice INTEGER NOT NULL DEFAULT 0,
+                TotalRevenue INTEGER NOT NULL DEFAULT 0,
+                FOREIGN KEY (Order_ID) REFERENCES SaleOrder(Order_ID),
+                FOREIGN KEY (Product_ID) REFERENCES Product(Product_ID)
+            )
+        """, """
+            INSERT INTO SaleOrder (Order_ID, Client_ID, Seller_ID, SaleDate, PaymentStatus)
+            SELECT Sale_ID, Client_ID, Seller_ID, SaleDate, PaymentStatus FROM Sale
+        """, """
+            INSERT INTO SaleLine (Line_ID, Order_ID, Product_ID, Quantity, UnitPrice, TotalRevenue)
+            SELECT Sale_ID, Sale_ID, Product_ID, COALESCE(Quantity, 0),
+                   CASE WHEN Quantity > 0 THEN TotalRevenue / Quantity ELSE 0 END,
+                   TotalRevenue
+            FROM Sale
+        """);
+        // Continue numbering after the highest Sale_ID ever issued
+        carrySequence(conn, "Sale", "SaleOrder");
+        carrySequence(conn, "Sale", "SaleLine");
+        execute(conn, "DROP TABLE Sale",
+                "CREATE INDEX IF NOT EXISTS idx_saleorder_date ON SaleOrder(SaleDate)",
+                "CREATE INDEX IF NOT EXISTS idx_saleorder_client ON SaleOrder(Client_ID)",
+                "CREATE INDEX IF NOT EXISTS idx_saleorder_seller ON SaleOrder(Seller_ID)",
+                "CREATE INDEX IF NOT EXISTS idx_saleline_order ON SaleLine(Order_ID)");
+    }
+
+    // julianday() understands YYYY-MM-DD (with optional time) and yields NULL for anything else
+    private static String epochDay(String column) {
+        return "CAST(julianday(date(" + column + ")) - 2440587.5 AS INTEGER)";
+    }
+
+    private static String cents(String column) {
+        return "CAST(ROUND(COALESCE(" + column + ", 0) * 100) AS INTEGER)";
+    }
+
+    // Version 5: covering indexes so per-product stock can be recomputed without scanning the line tables
+    private static void productIndexes(Connection conn) throws SQLException {
+        execute(conn,
+                "CREATE INDEX IF NOT EXISTS idx_saleline_product ON SaleLine(Product_ID, Quantity)",
+                "CREATE INDEX IF NOT EXISTS idx_shipmentitem_product ON ShipmentItem(Product_ID, Input)",
+                "CREATE INDEX IF NOT EXISTS idx_shipmentitem_shipment ON ShipmentItem(Shipment_ID)");
+    }
+
+    // Version 6: append-only stock ledger seeded from shipment and sale history, plus an opening
+    // balance per product so the ledger sums to the current AmountLeft
+    private static void stockLedger(Connection conn) throws SQLException {
+        String today = epochDay("date('now', 'localtime')");
+        execute(conn, """
+            CREATE TABLE StockMovement (
+                Movement_ID INTEGER PRIMARY KEY AUTOINCREMENT,
+                Product_ID INTEGER NOT NULL,
+                MovementDate INTEGER NOT NULL,
+                Quantity INTEGER NOT NULL,
+                Reason TEXT NOT NULL,
+                Reference INTEGER,
+                FOREIGN KEY (Product_ID) REFERENCES Product(Product_ID)
+            )
+        """, """
+            CREATE TABLE StockSnapshot (
+                Product_ID INTEGER NOT NULL,
+                SnapshotDate INTEGER NOT NULL,
+                Quantity INTEGER NOT NULL,
+                PRIMARY KEY (Product_ID, SnapshotDate)
+            ) WITHOUT ROWID
+        """,
+                "CREATE INDEX IF NOT EXISTS idx_stockmovement_product_date ON StockMovement(Product_ID, MovementDate, Quantity)",
+                """
+            INSERT INTO StockMovement (Product_ID, MovementDate, Quantity, Reason, Reference)
+            SELECT i.Product_ID, COALESCE(s.DeliveryDate, %1$s), i.Input, 'SHIPMENT', i.Shipment_ID
+            FROM ShipmentItem i
+            JOIN Shipment s ON i.Shipment_ID = s.Shipment_ID
+            WHERE i.Product_ID IS NOT NULL AND COALESCE(i.Input, 0) <> 0
+        """.formatted(today), """
+            INSERT INTO StockMovement (Product_ID, MovementDate, Quantity, Reason, Reference)
+            SELECT l.Product_ID, COALESCE(o.SaleDate, %1$s), -l.Quantity, 'SALE', o.Order_ID
+            FROM SaleLine l
+            JOIN SaleOrder o ON l.Order_ID = o.Order_ID
+            WHERE l.Product_ID IS NOT NULL AND l.Quantity <> 0
+        """.formatted(today), """
+            INSERT INTO StockMovement (Product_ID, MovementDate, Quantity, Reason, Reference)
+            SELECT p.Product_ID,
+                   COALESCE((SELECT MIN(m.MovementDate) FROM StockMovement m WHERE m.Product_ID = p.Product_ID), %1$s),
+                   COALESCE(p.AmountLeft, 0)
+                       - COALESCE((SELECT SUM(m.Quantity) FROM StockMovement m WHERE m.Product_ID = p.Product_ID), 0),
+                   'OPENING', NULL
+            FROM Product p
+            WHERE COALESCE(p.AmountLeft, 0)
+                      <> COALESCE((SELECT SUM(m.Quantity) FROM StockMovement m WHERE m.Product_ID = p.Product_ID), 0)
+        """.formatted(today));
+    }
+
+    // Version 7: FTS5 word-prefix indexes over client and product names, kept in step with their
+    // tables by triggers, plus case-insensitive name indexes for starts-with lookups
+    private static void searchIndex(Connection conn) throws SQLException {
+        String tokenizer = "tokenize = 'unicode61 remove_diacritics 2', prefix = '1 2 3'";
+        execute(conn,
+                "CREATE INDEX IF NOT EXISTS idx_client_name_nocase ON Client(Name COLLATE NOCASE)",
+                "CREATE INDEX IF NOT EXISTS idx_product_name_nocase ON Product(Name COLLATE NOCASE)",
+                "CREATE VIRTUAL TABLE ClientSearch USING fts5(Name, Preferences, content = 'Client', "
+                        + "content_rowid = 'Client_ID', " + tokenizer + ")",
+                "CREATE VIRTUAL TABLE ProductSearch USING fts5(Name, content = 'Product', "
+                        + "content_rowid = 'Product_ID', " + tokenizer + ")",
+                """
+            CREATE TRIGGER client_search_insert AFTER INSERT ON Client BEGIN
+                INSERT INTO ClientSearch (rowid, Name, Preferences) VALUES (new.Client_ID, new.Name, new.Preferences);
+            END
+        """, """
+            CREATE TRIGGER client_search_delete AFTER DELETE ON Client BEGIN
+                INSERT INTO ClientSearch (ClientSearch, rowid, Name, Preferences)
+                VALUES ('delete', old.Client_ID, old.Name, old.Preferences);
+            END
+        """, """
+            CREATE TRIGGER client_search_update AFTER UPDATE OF Name, Preferences ON Client BEGIN
+                INSERT INTO ClientSearch (ClientSearch, rowid, Name, Preferences)
+                VALUES ('delete', old.Client_ID, old.Name, old.Preferences);
+                INSERT INTO ClientSearch (rowid, Name, Preferences) VALUES (new.Client_ID, new.Name, new.Preferences);
+            END
+        """, """
+            CREATE TRIGGER product_search_insert AFTER INSERT ON Product BEGIN
+                INSERT INTO ProductSearch (rowid, Name) VALUES (new.Product_ID, new.Name);
+            END
+        """, """
+            CREATE TRIGGER product_search_delete AFTER DELETE ON Product BEGIN
+                INSERT INTO ProductSearch (ProductSearch, rowid, Name) VALUES ('delete', old.Product_ID, old.Name);
+            END
+        """, """
+            CREATE TRIGGER product_search_update AFTER UPDATE OF Name ON Product BEGIN
+                INSERT INTO ProductSearch (ProductSearch, rowid, Name) VALUES ('delete', old.Product_ID, old.Name);
+                INSERT INTO ProductSearch (rowid, Name) VALUES (new.Product_ID, new.Name);
+            END
+        """,
+                "INSERT INTO ClientSearch (ClientSearch) VALUES ('rebuild')",
+                "INSERT INTO ProductSearch (ProductSearch) VALUES ('rebuild')");
+    }
+
+    // Version 8: per-client and per-client-product purchase totals, seeded from the sales so far.
+    // NumberOfPurchases could be edited by hand until now, so it is reset to the units actually sold
+    private static void clientStats(Connection conn) throws SQLException {
+        execute(conn, """
+            CREATE TABLE ClientStats (
+                Client_ID INTEGER NOT NULL PRIMARY KEY,
+                Orders INTEGER NOT NULL DEFAULT 0,
+                Units INTEGER NOT NULL DEFAULT 0,
+                Spend BIGINT NOT NULL DEFAULT 0,
+                FirstPurchase BIGINT,
+                LastPurchase BIGINT,
+                FOREIGN KEY (Client_ID) REFERENCES Client(Client_ID)
+            )
+        """, """
+            CREATE TABLE ClientProductStats (
+                Client_ID INTEGER NOT NULL,
+                Product_ID INTEGER NOT NULL,
+                Units INTEGER NOT NULL DEFAULT 0,
+                Spend BIGINT NOT NULL DEFAULT 0,
+                PRIMARY KEY (Client_ID, Product_ID),
+                FOREIGN KEY (Client_ID) REFERENCES Client(Client_ID),
+                FOREIGN KEY (Product_ID) REFERENCES Product(Product_ID)
+            )
+        """,
+                ClientStats.CLIENT_TOTALS + " GROUP BY c.Client_ID",
+                ClientStats.PRODUCT_TOTALS + " GROUP BY o.Client_ID, l.Product_ID",
+                """
+            UPDATE Client SET NumberOfPurchases =
+                (SELECT s.Units FROM ClientStats s WHERE s.Client_ID = Client.Client_ID)
+        """, """
+            UPDATE Client SET Preferences =
+                (SELECT p.Name FROM ClientProductStats s JOIN Product p ON p.Product_ID = s.Product_ID
+                 WHERE s.Client_ID = Client.Client_ID
+                 ORDER BY s.Units DESC, s.Spend DESC, s.Product_ID LIMIT 1)
+            WHERE EXISTS (SELECT 1 FROM ClientProductStats s WHERE s.Client_ID = Client.Client_ID)
+        """);
+    }
+
+    // Version 9: each shipment item keeps the selling price it was received at and its share of the
+    // shipment expenses. Older items take today's price, the closest record there is; their shipments'
+    // totals stay as recorded until the shipment is next edited
+    private static void shipmentItemCosts(Connection conn) throws SQLException {
+        execute(conn,
+                "ALTER TABLE ShipmentItem ADD COLUMN SalePrice BIGINT NOT NULL DEFAULT 0",
+                "ALTER TABLE ShipmentItem ADD COLUMN AllocatedExpense BIGINT NOT NULL DEFAULT 0",
+                """
+            UPDATE ShipmentItem SET SalePrice =
+                COALESCE((SELECT p.Price FROM Product p WHERE p.Product_ID = ShipmentItem.Product_ID), 0)
+        """);
+        ShipmentProfit.allocateAll(conn);
+    }
+
+    // Version 10: open FIFO cost layers per product and the layers each sale line drew on, seeded by
+    // replaying the sales so far against the shipments in the order both were entered
+    private static void costLayers(Connection conn) throws SQLException {
+        execute(conn,
+                "ALTER TABLE SaleLine ADD COLUMN Cost BIGINT NOT NULL DEFAULT 0",
+                """
+            CREATE TABLE CostLayer (
+                Item_ID INTEGER NOT NULL PRIMARY KEY,
+                Product_ID INTEGER NOT NULL,
+                Remaining INTEGER NOT NULL,
+                UnitCost BIGINT NOT NULL,
+                FOREIGN KEY (Product_ID) REFERENCES Product(Product_ID)
+            )
+        """, """
+            CREATE TABLE SaleLineLayer (
+                Line_ID INTEGER NOT NULL,
+                Item_ID INTEGER NOT NULL,
+                Quantity INTEGER NOT NULL,
+                Cost BIGINT NOT NULL,
+                PRIMARY KEY (Line_ID, Item_ID)
+            )
+        """,
+                "CREATE INDEX idx_costlayer_product ON CostLayer(Product_ID, Item_ID)");
+        CostLayers.replayHistory(conn);
+    }
+
+    // Version 11: exponentially smoothed daily demand per product with its reorder point, seeded by
+    // smoothing the daily sales so far
+    private static void productDemand(Connection conn) throws SQLException {
+        execute(conn, """
+            CREATE TABLE ProductDemand (
+                Product_ID INTEGER NOT NULL PRIMARY KEY,
+                Mean DOUBLE PRECISION NOT NULL DEFAULT 0,
+                Variance DOUBLE PRECISION NOT NULL DEFAULT 0,
+                BucketDay BIGINT NOT NULL,
+                BucketUnits INTEGER NOT NULL DEFAULT 0,
+                ReorderPoint INTEGER NOT NULL DEFAULT 0,
+                FOREIGN KEY (Product_ID) REFERENCES Product(Product_ID)
+            )
+        """);
+        ProductDemand.seedFromHistory(conn);
+    }
+
+    // Version 12: lets the client list filter by preferred product without scanning every client
+    private static void clientPreferenceIndex(Connection conn) throws SQLException {
+        execute(conn, "CREATE INDEX idx_client_preferences ON Client(Preferences)");
+    }
+
+    // Version 13: Reset Cash used to zero SaleLine.TotalRevenue to restart the "total cash paid"
+    // counter. Each seller now remembers the paid total and the cash collected at the last reset
+    // instead; zeroed lines get their revenue back, counted into those baselines so the dashboard
+    // shows what it showed before, and the client aggregates are rebuilt from the restored revenue
+    private static void cashResetBaselines(Connection conn) throws SQLException {
+        execute(conn,
+                "ALTER TABLE Seller ADD COLUMN PaidAtReset BIGINT NOT NULL DEFAULT 0",
+                "ALTER TABLE Seller ADD COLUMN CashCollected BIGINT NOT NULL DEFAULT 0",
+                """
+            UPDATE Seller SET
+                PaidAtReset = (SELECT COALESCE(SUM(l.UnitPrice * l.Quantity), 0) FROM SaleOrder o
+                               JOIN SaleLine l ON l.Order_ID = o.Order_ID
+                               WHERE o.Seller_ID = Seller.Seller_ID AND o.PaymentStatus IN ('Paid', 'Unpaid')
+                                 AND l.TotalRevenue = 0 AND l.Quantity > 0),
+                CashCollected = (SELECT COALESCE(SUM(l.UnitPrice * l.Quantity), 0) FROM SaleOrder o
+                                 JOIN SaleLine l ON l.Order_ID = o.Order_ID
+                                 WHERE o.Seller_ID = Seller.Seller_ID AND o.PaymentStatus = 'Paid'
+                                   AND l.TotalRevenue = 0 AND l.Quantity > 0)
+        """,
+                "UPDATE SaleLine SET TotalRevenue = UnitPrice * Quantity WHERE TotalRevenue = 0 AND Quantity > 0",
+                "DELETE FROM ClientStats",
+                "DELETE FROM ClientProductStats",
+                ClientStats.CLIENT_TOTALS + " GROUP BY c.Client_ID",
+                ClientStats.PRODUCT_TOTALS + " GROUP BY o.Client_ID, l.Product_ID");
+    }
+
+    // Version 14: a reset marks the orders it covered, so later status changes, amendments and
+    // deletions of those orders leave the seller's cash alone, as they did when the reset zeroed
+    // their revenue. Which orders an earlier reset covered is not recorded anywhere, so those
+    // databases keep their version 13 baselines until the next Reset Cash clears them
+    private static void cashSettledOrders(Connection conn) throws SQLException {
+        execute(conn, "ALTER TABLE SaleOrder ADD COLUMN CashSettled INTEGER NOT NULL DEFAULT 0");
+    }
+
+    // H2 at version 7: the tables above in their final shape, without the FTS5 search tables
+    private static void createH2Baseline(Connection conn) throws SQLException {
+        execute(conn, """
+            CREATE TABLE Client (
+                Client_ID INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+                Name VARCHAR NOT NULL,
+                Preferences VARCHAR,
+                NumberOfPurchases INTEGER
+            )
+        """, """
+            CREATE TABLE Product (
+                Product_ID INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+                Name VARCHAR NOT NULL,
+                AmountLeft INTEGER,
+                Rate BIGINT NOT NULL DEFAULT 0,
+                Price BIGINT NOT NULL DEFAULT 0
+            )
+        """, """
+            CREATE TABLE Seller (
+                Seller_ID INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+                Name VARCHAR NOT NULL,
+                CashOnHand BIGINT NOT NULL DEFAULT 0
+            )
+        """, """
+            CREATE TABLE SaleOrder (
+                Order_ID INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+                Client_ID INTEGER,
+                Seller_ID INTEGER,
+                SaleDate BIGINT,
+                PaymentStatus VARCHAR,
+                FOREIGN KEY (Client_ID) REFERENCES Client(Client_ID),
+                FOREIGN KEY (Seller_ID) REFERENCES Seller(Seller_ID)
+            )
+        """, """
+            CREATE TABLE SaleLine (
+                Line_ID INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+                Order_ID INTEGER NOT NULL,
+                Product_ID INTEGER,
+                Quantity INTEGER NOT NULL,
+                UnitPrice BIGINT NOT NULL DEFAULT 0,
+                TotalRevenue BIGINT NOT NULL DEFAULT 0,
+                FOREIGN KEY (Order_ID) REFERENCES SaleOrder(Order_ID),
+                FOREIGN KEY (Product_ID) REFERENCES Product(Product_ID)
+            )
+        """, """
+            CREATE TABLE Shipment (
+                Shipment_ID INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+                Deliveryman VARCHAR,
+                DeliveryDate BIGINT,
+                GrossProfit BIGINT NOT NULL DEFAULT 0,
+                Revenue BIGINT NOT NULL DEFAULT 0,
+                DeliveryExpense BIGINT NOT NULL DEFAULT 0,
+                EquipmentExpense BIGINT NOT NULL DEFAULT 0,
+                EmployeeExpense BIGINT NOT NULL DEFAULT 0
+            )
+        """, """
+            CREATE TABLE ShipmentItem (
+                Item_ID INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+                Shipment_ID INTEGER,
+                Product_ID INTEGER,
+                Input INTEGER,
+                Rate BIGINT NOT NULL DEFAULT 0,
+                Cost BIGINT NOT NULL DEFAULT 0,
+                FOREIGN KEY (Shipment_ID) REFERENCES Shipment(Shipment_ID),
+                FOREIGN KEY (Product_ID) REFERENCES Product(Product_ID)
+            )
+        """, """
+            CREATE TABLE StockMovement (
+                Movement_ID INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+                Product_ID INTEGER NOT NULL,
+                MovementDate BIGINT NOT NULL,
+                Quantity INTEGER NOT NULL,
+                Reason VARCHAR NOT NULL,
+                Reference INTEGER,
+                FOREIGN KEY (Product_ID) REFERENCES Product(Product_ID)
+            )
+        """, """
+            CREATE TABLE StockSnapshot (
+                Product_ID INTEGER NOT NULL,
+                SnapshotDate BIGINT NOT NULL,
+                Quantity INTEGER NOT NULL,
+                PRIMARY KEY (Product_ID, SnapshotDate)
+            )
+        """,
+                "CREATE INDEX idx_saleorder_date ON SaleOrder(SaleDate)",
+                "CREATE INDEX idx_saleorder_client ON SaleOrder(Client_ID)",
+                "CREATE INDEX idx_saleorder_seller ON SaleOrder(Seller_ID)",
+                "CREATE INDEX idx_saleline_order ON SaleLine(Order_ID)",
+                "CREATE INDEX idx_shipment_date ON Shipment(DeliveryDate)",
+                "CREATE INDEX idx_saleline_product ON SaleLine(Product_ID, Quantity)",
+                "CREATE INDEX idx_shipmentitem_product ON ShipmentItem(Product_ID, Input)",
+                "CREATE INDEX idx_shipmentitem_shipment ON ShipmentItem(Shipment_ID)",
+                "CREATE INDEX idx_stockmovement_product_date ON StockMovement(Product_ID, MovementDate, Quantity)",
+                "CREATE INDEX idx_client_name ON Client(Name)",
+                "CREATE INDEX idx_product_name ON Product(Name)");
+    }
+
+    /**
+     * SQLite cannot change a column's type in place, so the table is copied into a new one
+     * created from {@code createSql} (with %s for its name), swapped in under the old name,
+     * and its AUTOINCREMENT counter carried over so deleted IDs are never reused.
+     */
+    private static void rebuildTable(Connection conn, String table, String createSql,
+                                     String columns, String selectExpr) throws SQLException {
+        String temp = table + "_new";
+        execute(conn,
+                String.format(createSql, temp),
+                "INSERT INTO " + temp + " (" + columns + ") SELECT " + selectExpr + " FROM " + table);
+        carrySequence(conn, table, temp);
+        execute(conn,
+                "DROP TABLE " + table,
+                "ALTER TABLE " + temp + " RENAME TO " + table);
+    }
+
+    // Raises target's AUTOINCREMENT counter to source's, creating the counter row if needed
+    private static void carrySequence(Connection conn, String source, String target) throws SQLException {
+        try (PreparedStatement update = conn.prepareStatement("""
+                UPDATE sqlite_sequence
+                SET seq = (SELECT seq FROM sqlite_sequence WHERE name = ?)
+                WHERE name = ? AND seq < (SELECT seq FROM sqlite_sequence WHERE name = ?)
+            """);
+             PreparedStatement insert = conn.prepareStatement("""
+                INSERT INTO sqlite_sequence (name, seq)
+                SELECT ?, seq FROM sqlite_sequence
+                WHERE name = ? AND NOT EXISTS (SELECT 1 FROM sqlite_sequence WHERE name = ?)
+            """)) {
+            update.setString(1, source);
+            update.setString(2, target);
+            update.setString(3, source);
+            update.executeUpdate();
+            insert.setString(1, target);
+            insert.setString(2, source);
+            insert.setString(3, target);
+            insert.executeUpdate();
+        }
+    }
+
+    private static void execute(Connection conn, String... statements) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            for (String sql : statements) {
+                stmt.executeUpdate(sql);
+            }
+        }
+    }
+}
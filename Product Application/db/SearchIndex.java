@@ -0,0 +1,152 @@
+package db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+
+/**
+ * Type-ahead search over clients (name and preferences) and products (name). The FTS5 tables
+ * behind it are kept current by triggers on Client and Product, so every write path keeps
+ * the index right without calling into this class.
+ *
+ * A search returns the top {@code limit} matches in two cheap steps: names that start with
+ * the typed text, in name order, from the case-insensitive name index; then, to fill the
+ * rest, rows where every typed word starts some word of the name (or preferences), from the
+ * FTS5 prefix index. Neither step sorts the full match set, so the cost is set by
+ * {@code limit} rather than by how many rows match a one-letter query.
+ *
+ * On a backend without FTS5 (H2) the second step is a LIKE scan for rows containing every
+ * typed word, in ID order; it still stops at {@code limit} but reads more rows to get there.
+ */
+public final class SearchIndex {
+
+    @FunctionalInterface
+    private interface RowReader<T> {
+        T read(ResultSet rs) throws SQLException;
+    }
+
+    private record Source<T>(String table, String index, String idColumn, List<String> textColumns,
+                             String columns, RowReader<T> reader, ToIntFunction<T> id) {}
+
+    private static final Source<ClientManager.ClientRow> CLIENTS = new Source<>(
+            "Client", "ClientSearch", "Client_ID", List.of("Name", "Preferences"),
+            "Client.Client_ID, Client.Name, Client.Preferences, Client.NumberOfPurchases",
+            rs -> new ClientManager.ClientRow(rs.getInt("Client_ID"), rs.getString("Name"),
+                    rs.getString("Preferences"), rs.getInt("NumberOfPurchases")),
+            ClientManager.ClientRow::clientId);
+
+    private static final Source<ProductManager.ProductRow> PRODUCTS = new Source<>(
+            "Product", "ProductSearch", "Product_ID", List.of("Name"),
+            "Product.Product_ID, Product.Name, Product.AmountLeft, Product.Price, Product.Rate",
+            rs -> new ProductManager.ProductRow(rs.getInt("Product_ID"), rs.getString("Name"),
+                    rs.getInt("AmountLeft"), rs.getLong("Price"), rs.getLong("Rate")),
+            ProductManager.ProductRow::productId);
+
+    private SearchIndex() {}
+
+    /** Clients whose name starts with the text first, then clients with a word match in name or preferences. */
+    public static List<ClientManager.ClientRow> clients(Connection conn, String text, int limit) throws SQLException {
+        return search(conn, CLIENTS, text, limit);
+    }
+
+    /** Products whose name starts with the text first, then products with a word match in the name. */
+    public static List<ProductManager.ProductRow> products(Connection conn, String text, int limit) throws SQLException {
+        return search(conn, PRODUCTS, text, limit);
+    }
+
+    /**
+     * Turns typed text into an FTS5 query in which every word must match as a prefix, e.g.
+     * {@code jo sm} becomes {@code "jo"* "sm"*}. Words are quoted, so FTS5 operators and
+     * punctuation in the input are taken literally. Returns null when there are no words.
+     */
+    static String matchQuery(String text) {
+        StringBuilder query = new StringBuilder();
+        for (String word : text.split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) continue;
+            if (!query.isEmpty()) query.append(' ');
+            query.append('"').append(word).append("\"*");
+        }
+        return query.isEmpty() ? null : query.toString();
+    }
+
+    private static <T> List<T> search(Connection conn, Source<T> source, String text, int limit) throws SQLException {
+        SqlDialect dialect = DatabaseManager.dialect();
+        String prefix = text.strip();
+        List<T> found = new ArrayList<>(limit);
+        Set<Integer> seen = new HashSet<>();
+
+        // Starts-with: a range scan on the NOCASE name index, already in name order
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT " + source.columns() + " FROM " + source.table()
+                + " WHERE " + dialect.caseInsensitive("Name") + " >= " + dialect.caseInsensitive("?")
+                + " AND " + dialect.caseInsensitive("Name") + " < " + dialect.caseInsensitive("?")
+                + " ORDER BY " + dialect.caseInsensitive("Name") + " LIMIT ?")) {
+            stmt.setString(1, prefix);
+            stmt.setString(2, prefix + Character.MAX_VALUE);
+            stmt.setInt(3, limit);
+            read(stmt, source, found, seen, limit);
+        }
+
+        String match = matchQuery(prefix);
+        if (found.size() >= limit || match == null) return found;
+        if (!dialect.hasFullTextIndex()) {
+            containsWords(conn, dialect, source, prefix, found, seen, limit);
+            return found;
+        }
+
+        // Word prefixes anywhere: FTS5 yields matches in rowid order and stops at the LIMIT
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT " + source.columns() + " FROM " + source.index()
+                + " JOIN " + source.table() + " ON " + source.table() + "." + source.idColumn()
+                + " = " + source.index() + ".rowid"
+                + " WHERE " + source.index() + " MATCH ? LIMIT ?")) {
+            stmt.setString(1, match);
+            stmt.setInt(2, limit + found.size()); // Rows already found by name come back again
+            read(stmt, source, found, seen, limit);
+        }
+        return found;
+    }
+
+    // Rows where every word appears in one of the text columns, in ID order
+    private static <T> void containsWords(Connection conn, SqlDialect dialect, Source<T> source, String text,
+                                          List<T> found, Set<Integer> seen, int limit) throws SQLException {
+        List<String> patterns = new ArrayList<>();
+        StringBuilder where = new StringBuilder();
+        for (String word : text.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) continue;
+            where.append(where.isEmpty() ? " WHERE (" : " AND (");
+            for (int i = 0; i < source.textColumns().size(); i++) {
+                if (i > 0) where.append(" OR ");
+                where.append(dialect.caseInsensitive(source.textColumns().get(i))).append(" LIKE ?");
+                patterns.add("%" + word + "%");
+            }
+            where.append(')');
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT " + source.columns() + " FROM " + source.table() + where
+                + " ORDER BY " + source.idColumn() + " LIMIT ?")) {
+            int i = 1;
+            for (String pattern : patterns) {
+                stmt.setString(i++, pattern);
+            }
+            stmt.setInt(i, limit + found.size());
+            read(stmt, source, found, seen, limit);
+        }
+    }
+
+    private static <T> void read(PreparedStatement stmt, Source<T> source, List<T> found, Set<Integer> seen,
+                                 int limit) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next() && found.size() < limit) {
+                T row = source.reader().read(rs);
+                if (seen.add(source.id().applyAsInt(row))) found.add(row);
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package db;
+
+import java.nio.file.Path;
+
+/**
+ * What a new in-memory database starts with. Set with the {@value #PROPERTY} system property
+ * next to {@code -Dapp.db=sqlite-memory:<name>}:
+ * <ul>
+ *   <li>{@code snapshot:<file>} - a copy of a snapshot written by {@link Snapshot}</li>
+ *   <li>{@code synthetic[:sellers=10,products=500,clients=2000,sales=20000,shipments=200,seed=1]} -
+ *       data made up by {@link SyntheticData}; omitted counts keep their defaults</li>
+ * </ul>
+ * Without it the database starts empty apart from the schema.
+ */
+public sealed interface Seed {
+    String PROPERTY = "app.db.seed";
+
+    record FromSnapshot(Path file) implements Seed {}
+
+    record Synthetic(SyntheticData.Scale scale, long randomSeed) implements Seed {}
+
+    /**
+     * Parses a seed in the {@value #PROPERTY} property syntax.
+     *
+     * @throws IllegalArgumentException if it is neither a snapshot nor synthetic data
+     */
+    static Seed parse(String spec) {
+        int colon = spec.indexOf(':');
+        String kind = colon < 0 ? spec : spec.substring(0, colon);
+        String rest = colon < 0 ? "" : spec.substring(colon + 1);
+        return switch (kind) {
+            case "snapshot" -> {
+                if (rest.isEmpty()) throw new IllegalArgumentException("snapshot: needs a file name");
+                yield new FromSnapshot(Path.of(rest));
+            }
+            case "synthetic" -> SyntheticData.parse(rest);
+            default -> throw new IllegalArgumentException(
+                    "Unknown database seed '" + kind + "'; expected snapshot or synthetic");
+        };
+    }
+}
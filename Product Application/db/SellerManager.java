@@ -0,0 +1,85 @@
+package db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Seller-level reads and writes shared by the dashboard and headless callers. */
+public final class SellerManager {
+
+    /** One seller's cash position as shown on the main window, in cents. */
+    public record SellerCash(String name, long cashOnHand, long totalPaid) {}
+
+    public record SellerRow(int sellerId, String name) {}
+
+    private SellerManager() {}
+
+    public static List<SellerRow> findSellers(Connection conn) throws SQLException {
+        List<SellerRow> sellers = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT Seller_ID, Name FROM Seller ORDER BY Seller_ID")) {
+            while (rs.next()) {
+                sellers.add(new SellerRow(rs.getInt("Seller_ID"), rs.getString("Name")));
+            }
+        }
+        return sellers;
+    }
+
+    /** @return the new Seller_ID */
+    public static int addSeller(Connection conn, String name) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO Seller (Name, CashOnHand) VALUES (?, 0)", Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setString(1, name);
+            stmt.executeUpdate();
+            try (ResultSet keys = stmt.getGeneratedKeys()) {
+                if (!keys.next()) throw new SQLException("No key returned for new seller");
+                return keys.getInt(1);
+            }
+        }
+    }
+
+    /**
+     * Loads every seller's cash on hand and total cash paid in a single grouped query,
+     * instead of two lookups per seller. The totals are exact integer sums of cents over the
+     * orders the last {@link #resetCash} did not settle.
+     */
+    public static List<SellerCash> loadCashSummary(Connection conn) throws SQLException {
+        String sql = """
+            SELECT se.Name,
+                   se.CashOnHand,
+                   COALESCE(SUM(CASE WHEN o.PaymentStatus IN ('Paid', 'Unpaid') AND o.CashSettled = 0
+                                     THEN l.TotalRevenue END), 0)
+                       - se.PaidAtReset AS TotalPaid
+            FROM Seller se
+            LEFT JOIN SaleOrder o ON o.Seller_ID = se.Seller_ID
+            LEFT JOIN SaleLine l ON l.Order_ID = o.Order_ID
+            GROUP BY se.Seller_ID, se.Name, se.CashOnHand, se.PaidAtReset
+            ORDER BY se.Seller_ID
+        """;
+        List<SellerCash> sellers = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                sellers.add(new SellerCash(rs.getString("Name"), rs.getLong("CashOnHand"), rs.getLong("TotalPaid")));
+            }
+        }
+        return sellers;
+    }
+
+    /**
+     * Starts every seller's cash on hand and total cash paid again from zero. Every existing
+     * order is marked CashSettled, so later status changes, amendments and deletions of those
+     * orders no longer move cash, while the sales keep their revenue for client totals and
+     * reports. The baselines left by resets made before orders were marked are cleared.
+     */
+    public static void resetCash(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("UPDATE SaleOrder SET CashSettled = 1 WHERE CashSettled = 0");
+            stmt.executeUpdate("UPDATE Seller SET CashOnHand = 0, CashCollected = 0, PaidAtReset = 0");
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/** Shipment queries and write paths shared by the Swing windows and headless callers. */
+public final class ShipmentManager {
+
+    /** One row of the shipments list; money in cents. */
+    public record ShipmentRow(int shipmentId, String deliveryman, LocalDate deliveryDate,
+                              long grossProfit, long revenue) {}
+
+    public enum DateOrder { NONE, NEWEST_FIRST, OLDEST_FIRST }
+
+    /** One product line of a new shipment; rate is the purchase cost per unit in cents. */
+    public record NewItem(int productId, int quantity, long rate) {}
+
+    private ShipmentManager() {}
+
+    /**
+     * Shipments delivered within the range, optionally only those containing the named product.
+     * The product filter is an EXISTS probe instead of a join, so no DISTINCT pass is needed and
+     * the DeliveryDate index drives both the range and the ordering.
+     */
+    public static List<ShipmentRow> findShipments(Connection conn, Dates.Range range, String productName,
+                                                  DateOrder order) throws SQLException {
+        StringBuilder sql = new StringBuilder("""
+            SELECT s.Shipment_ID, s.Deliveryman, s.DeliveryDate, s.GrossProfit, s.Revenue
+            FROM Shipment s
+            WHERE 1 = 1
+        """);
+        if (!range.isAll()) {
+            sql.append(" AND s.DeliveryDate BETWEEN ? AND ?");
+        }
+        if (productName != null) {
+            sql.append("""
+                 AND EXISTS (
+                    SELECT 1 FROM ShipmentItem si
+                    JOIN Product p ON si.Product_ID = p.Product_ID
+                    WHERE si.Shipment_ID = s.Shipment_ID AND p.Name = ?
+                )
+            """);
+        }
+        switch (order) {
+            case NEWEST_FIRST -> sql.append(" ORDER BY s.DeliveryDate DESC, s.Shipment_ID DESC");
+            case OLDEST_FIRST -> sql.append(" ORDER BY s.DeliveryDate ASC, s.Shipment_ID ASC");
+            case NONE -> sql.append(" ORDER BY s.Shipment_ID");
+        }
+
+        List<ShipmentRow> rows = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            int index = 1;
+            if (!range.isAll()) {
+                stmt.setLong(index++, range.fromDay());
+                stmt.setLong(index++, range.toDay());
+            }
+            if (productName != null) {
+                stmt.setString(index, productName);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(new ShipmentRow(
+                            rs.getInt("Shipment_ID"),
+                            rs.getString("Deliveryman"),
+                            Dates.read(rs, "DeliveryDate"),
+                            rs.getLong("GrossProfit"),
+                            rs.getLong("Revenue")));
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Records a delivery: the shipment header with its final revenue and gross profit, one
+     * ShipmentItem per line with its selling price snapshot and share of the expenses, the stock
+     * increase with its ledger movements, and a FIFO cost layer per item. Selling prices come
+     * from one IN query, margins and the expense split from one pass over the lines, and items
+     * and stock updates go out as batches, so the statement count does not grow with the number
+     * of lines. Runs in the caller's transaction.
+     *
+     * @return the new Shipment_ID
+     */
+    public static int postShipment(Connection conn, String deliveryman, LocalDate deliveryDate,
+                                   long deliveryExpense, long equipmentExpense, long employeeExpense,
+                                   List<NewItem> items) throws SQLException {
+        Map<Integer, Long> prices = loadSalePrices(conn, items);
+        ShipmentProfit.Breakdown breakdown = ShipmentProfit.compute(
+                deliveryExpense + equipmentExpense + employeeExpense, lines(items, prices));
+
+        int shipmentId;
+        try (PreparedStatement ins = conn.prepareStatement(
+                "INSERT INTO Shipment(Deliveryman, DeliveryDate, DeliveryExpense, EquipmentExpense, EmployeeExpense, GrossProfit, Revenue) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                Statement.RETURN_GENERATED_KEYS)) {
+            ins.setString(1, deliveryman);
+            Dates.bind(ins, 2, deliveryDate);
+            ins.setLong(3, deliveryExpense);
+            ins.setLong(4, equipmentExpense);
+            ins.setLong(5, employeeExpense);
+            ins.setLong(6, breakdown.grossProfit());
+            ins.setLong(7, breakdown.revenue());
+            ins.executeUpdate();
+            try (ResultSet keys = ins.getGeneratedKeys()) {
+                if (!keys.next()) throw new SQLException("No key returned for new shipment");
+                shipmentId = keys.getInt(1);
+            }
+        }
+
+        insertItems(conn, shipmentId, 0, deliveryDate, items, prices, breakdown.allocated());
+        return shipmentId;
+    }
+
+    /**
+     * Edits a delivered shipment: its deliveryman, date and expenses, plus any items added to it.
+     * Added items take stock and ledger movements like new deliveries; a changed date moves the
+     * ledger movements of the items already received. The expense split, revenue and gross
+     * profit are then recomputed from the stored items. Runs in the caller's transaction.
+     */
+    public static void updateShipment(Connection conn, int shipmentId, String deliveryman, LocalDate deliveryDate,
+                                      long deliveryExpense, long equipmentExpense, long employeeExpense,
+                                      List<NewItem> addedItems) throws SQLException {
+        LocalDate oldDate;
+        try (PreparedStatement read = conn.prepareStatement("SELECT DeliveryDate FROM Shipment WHERE Shipment_ID = ?")) {
+            read.setInt(1, shipmentId);
+            try (ResultSet rs = read.executeQuery()) {
+                if (!rs.next()) throw new SQLException("Shipment " + shipmentId + " not found");
+                oldDate = Dates.read(rs, "DeliveryDate");
+            }
+        }
+
+        try (PreparedStatement update = conn.prepareStatement("""
+                UPDATE Shipment
+                SET Deliveryman = ?, DeliveryDate = ?, DeliveryExpense = ?, EquipmentExpense = ?, EmployeeExpense = ?
+                WHERE Shipment_ID = ?
+            """)) {
+            update.setString(1, deliveryman);
+            Dates.bind(update, 2, deliveryDate);
+            update.setLong(3, deliveryExpense);
+            update.setLong(4, equipmentExpense);
+            update.setLong(5, employeeExpense);
+            update.setInt(6, shipmentId);
+            update.executeUpdate();
+        }
+
+        // Undated legacy shipments have no ledger movements to move
+        if (oldDate != null && !oldDate.equals(deliveryDate)) {
+            List<StockLedger.Movement> movements = new ArrayList<>();
+            for (ShipmentProfit.ItemCost item : ShipmentProfit.items(conn, shipmentId)) {
+                movements.add(new StockLedger.Movement(item.productId(), oldDate, -item.quantity(),
+                        StockLedger.Reason.SHIPMENT, shipmentId));
+                movements.add(new StockLedger.Movement(item.productId(), deliveryDate, item.quantity(),
+                        StockLedger.Reason.SHIPMENT, shipmentId));
+            }
+            StockLedger.recordAll(conn, movements);
+        }
+
+        if (!addedItems.isEmpty()) {
+            int lastItemId;
+            try (PreparedStatement read = conn.prepareStatement(
+                    "SELECT COALESCE(MAX(Item_ID), 0) FROM ShipmentItem WHERE Shipment_ID = ?")) {
+                read.setInt(1, shipmentId);
+                try (ResultSet rs = read.executeQuery()) {
+                    lastItemId = rs.next() ? rs.getInt(1) : 0;
+                }
+            }
+            // Shares are placeholders here; the recompute below spreads the expenses over all items
+            insertItems(conn, shipmentId, lastItemId, deliveryDate, addedItems, loadSalePrices(conn, addedItems),
+                    new long[addedItems.size()]);
+        }
+        ShipmentProfit.recompute(conn, shipmentId);
+    }
+
+    private static Map<Integer, Long> loadSalePrices(Connection conn, List<NewItem> items) throws SQLException {
+        Map<Integer, Long> prices = SaleManager.loadPrices(conn,
+                items.stream().map(NewItem::productId).distinct().toList());
+        for (NewItem item : items) {
+            if (!prices.containsKey(item.productId())) throw new SQLException("No product with ID " + item.productId());
+        }
+        return prices;
+    }
+
+    private static List<ShipmentProfit.Line> lines(List<NewItem> items, Map<Integer, Long> prices) {
+        List<ShipmentProfit.Line> lines = new ArrayList<>();
+        for (NewItem item : items) {
+            lines.add(new ShipmentProfit.Line(item.quantity(), Money.times(item.rate(), item.quantity()),
+                    prices.get(item.productId())));
+        }
+        return lines;
+    }
+
+    // Inserts the items with their stock, ledger movements and cost layers; lastItemId is the
+    // shipment's highest Item_ID before, so only the new items open layers
+    private static void insertItems(Connection conn, int shipmentId, int lastItemId, LocalDate deliveryDate,
+                                    List<NewItem> items, Map<Integer, Long> prices, long[] allocated) throws SQLException {
+        List<StockLedger.Movement> movements = new ArrayList<>();
+        try (PreparedStatement insertItem = conn.prepareStatement(
+                "INSERT INTO ShipmentItem(Shipment_ID, Product_ID, Input, Rate, Cost, SalePrice, AllocatedExpense) VALUES (?, ?, ?, ?, ?, ?, ?)");
+             PreparedStatement addStock = conn.prepareStatement(
+                "UPDATE Product SET AmountLeft = AmountLeft + ? WHERE Product_ID = ?")) {
+            for (int i = 0; i < items.size(); i++) {
+                NewItem item = items.get(i);
+                insertItem.setInt(1, shipmentId);
+                insertItem.setInt(2, item.productId());
+                insertItem.setInt(3, item.quantity());
+                insertItem.setLong(4, item.rate());
+                insertItem.setLong(5, Money.times(item.rate(), item.quantity()));
+                insertItem.setLong(6, prices.get(item.productId()));
+                insertItem.setLong(7, allocated[i]);
+                insertItem.addBatch();
+
+                addStock.setInt(1, item.quantity());
+                addStock.setInt(2, item.productId());
+                addStock.addBatch();
+
+                movements.add(new StockLedger.Movement(item.productId(), deliveryDate, item.quantity(),
+                        StockLedger.Reason.SHIPMENT, shipmentId));
+            }
+            insertItem.executeBatch();
+            addStock.executeBatch();
+        }
+        StockLedger.recordAll(conn, movements);
+        CostLayers.receive(conn, shipmentId, lastItemId, items.stream().map(NewItem::productId).distinct().toList());
+    }
+}
@@ -0,0 +1,198 @@
+package db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shipment margins and landed costs. A shipment's delivery, equipment and employee expenses
+ * are spread over its items in proportion to their purchase cost, so each item carries its
+ * share in ShipmentItem.AllocatedExpense and its landed cost is Cost plus that share. Revenue
+ * uses the selling price snapshot taken when the item was received (ShipmentItem.SalePrice),
+ * so recomputing after an edit is one pass over the items and never looks up current prices.
+ * Allocations are in whole cents and always add up to the shipment's expenses exactly.
+ */
+public final class ShipmentProfit {
+
+    /** One item as the engine sees it: units, total purchase cost and unit selling price in cents. */
+    public record Line(int quantity, long cost, long salePrice) {}
+
+    /** The result of one pass: each line's expense share, plus the shipment's revenue and gross profit. */
+    public record Breakdown(long[] allocated, long revenue, long grossProfit) {}
+
+    /** One received item with its share of the expenses; money in cents. */
+    public record ItemCost(int itemId, int productId, String productName, int quantity, long rate,
+                           long cost, long salePrice, long allocatedExpense) {
+
+        /** Purchase cost plus the item's share of the shipment expenses. */
+        public long landedCost() {
+            return cost + allocatedExpense;
+        }
+
+        /** Landed cost per unit, rounded to the nearest cent. */
+        public long landedUnitCost() {
+            if (quantity <= 0) return landedCost();
+            return Math.floorDiv(2 * landedCost() + quantity, 2L * quantity);
+        }
+
+        /** What the item sells for at its price snapshot, less its landed cost. */
+        public long margin() {
+            return Money.times(salePrice, quantity) - landedCost();
+        }
+    }
+
+    private static final String ITEMS = """
+            SELECT i.Item_ID, i.Product_ID, p.Name, i.Input, i.Rate, i.Cost, i.SalePrice, i.AllocatedExpense
+            FROM ShipmentItem i
+            LEFT JOIN Product p ON p.Product_ID = i.Product_ID
+            WHERE i.Shipment_ID = ?
+            ORDER BY i.Item_ID
+        """;
+
+    private ShipmentProfit() {}
+
+    /**
+     * Allocates the expenses over the lines by purchase cost, or by units when nothing was paid
+     * for, and totals revenue and gross profit in the same pass. Gross profit is revenue less
+     * purchase cost less all expenses, so it does not depend on how the expenses were split.
+     */
+    public static Breakdown compute(long expenses, List<Line> lines) {
+        long[] weights = new long[lines.size()];
+        long totalCost = 0;
+        long revenue = 0;
+        for (int i = 0; i < weights.length; i++) {
+            Line line = lines.get(i);
+            weights[i] = line.cost();
+            totalCost += line.cost();
+            revenue += Money.times(line.salePrice(), line.quantity());
+        }
+        if (totalCost <= 0) {
+            for (int i = 0; i < weights.length; i++) weights[i] = Math.max(0, lines.get(i).quantity());
+        }
+        return new Breakdown(allocate(expenses, weights), revenue, revenue - totalCost - expenses);
+    }
+
+    /**
+     * Splits an amount of cents in proportion to the weights with the largest-remainder method:
+     * each share is rounded down and the cents left over go to the largest remainders, earliest
+     * first on ties. Negative weights count as zero; with no positive weight nothing is allocated.
+     */
+    public static long[] allocate(long amount, long[] weights) {
+        long[] shares = new long[weights.length];
+        long total = 0;
+        for (long weight : weights) total += Math.max(0, weight);
+        if (total == 0 || amount == 0) return shares;
+
+        long[] remainders = new long[weights.length];
+        long given = 0;
+        for (int i = 0; i < weights.length; i++) {
+            long product = Math.multiplyExact(amount, Math.max(0, weights[i]));
+            shares[i] = Math.floorDiv(product, total);
+            remainders[i] = Math.floorMod(product, total);
+            given += shares[i];
+        }
+        // At most weights.length - 1 cents are left, so a pick of the largest remainder per cent is enough
+        for (long left = amount - given; left > 0; left--) {
+            int best = -1;
+            for (int i = 0; i < weights.length; i++) {
+                if (weights[i] > 0 && (best < 0 || remainders[i] > remainders[best])) best = i;
+            }
+            shares[best]++;
+            remainders[best] = -1;
+        }
+        return shares;
+    }
+
+    /** The shipment's items with their landed costs, in the order they were received. */
+    public static List<ItemCost> items(Connection conn, int shipmentId) throws SQLException {
+        List<ItemCost> items = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(ITEMS)) {
+            stmt.setInt(1, shipmentId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    items.add(new ItemCost(rs.getInt("Item_ID"), rs.getInt("Product_ID"), rs.getString("Name"),
+                            rs.getInt("Input"), rs.getLong("Rate"), rs.getLong("Cost"),
+                            rs.getLong("SalePrice"), rs.getLong("AllocatedExpense")));
+                }
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Re-allocates the shipment's expenses and refreshes its Revenue and GrossProfit from the
+     * stored items after an edit. Only items whose share changed are written, and the header only
+     * when a total changed. Runs in the caller's transaction.
+     */
+    public static void recompute(Connection conn, int shipmentId) throws SQLException {
+        long expenses, oldRevenue, oldGrossProfit;
+        try (PreparedStatement stmt = conn.prepareStatement("""
+                SELECT DeliveryExpense + EquipmentExpense + EmployeeExpense AS Expenses, Revenue, GrossProfit
+                FROM Shipment WHERE Shipment_ID = ?
+            """)) {
+            stmt.setInt(1, shipmentId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) throw new SQLException("Shipment " + shipmentId + " not found");
+                expenses = rs.getLong("Expenses");
+                oldRevenue = rs.getLong("Revenue");
+                oldGrossProfit = rs.getLong("GrossProfit");
+            }
+        }
+
+        List<ItemCost> items = items(conn, shipmentId);
+        Breakdown breakdown = compute(expenses, items.stream()
+                .map(item -> new Line(item.quantity(), item.cost(), item.salePrice())).toList());
+        writeAllocations(conn, items, breakdown.allocated());
+
+        if (breakdown.revenue() != oldRevenue || breakdown.grossProfit() != oldGrossProfit) {
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "UPDATE Shipment SET Revenue = ?, GrossProfit = ? WHERE Shipment_ID = ?")) {
+                stmt.setLong(1, breakdown.revenue());
+                stmt.setLong(2, breakdown.grossProfit());
+                stmt.setInt(3, shipmentId);
+                stmt.executeUpdate();
+            }
+        }
+    }
+
+    // Allocates every shipment's expenses without touching its recorded totals; used by the migration
+    // that adds the allocation column, where old totals were priced at the time and should stay so
+    static void allocateAll(Connection conn) throws SQLException {
+        List<Integer> shipmentIds = new ArrayList<>();
+        List<Long> expenses = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement("""
+                SELECT Shipment_ID, DeliveryExpense + EquipmentExpense + EmployeeExpense AS Expenses
+                FROM Shipment
+                WHERE DeliveryExpense + EquipmentExpense + EmployeeExpense <> 0
+            """); ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                shipmentIds.add(rs.getInt("Shipment_ID"));
+                expenses.add(rs.getLong("Expenses"));
+            }
+        }
+        for (int i = 0; i < shipmentIds.size(); i++) {
+            List<ItemCost> items = items(conn, shipmentIds.get(i));
+            Breakdown breakdown = compute(expenses.get(i), items.stream()
+                    .map(item -> new Line(item.quantity(), item.cost(), item.salePrice())).toList());
+            writeAllocations(conn, items, breakdown.allocated());
+        }
+    }
+
+    private static void writeAllocations(Connection conn, List<ItemCost> items, long[] allocated) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "UPDATE ShipmentItem SET AllocatedExpense = ? WHERE Item_ID = ?")) {
+            boolean changed = false;
+            for (int i = 0; i < items.size(); i++) {
+                if (items.get(i).allocatedExpense() == allocated[i]) continue;
+                stmt.setLong(1, allocated[i]);
+                stmt.setInt(2, items.get(i).itemId());
+                stmt.addBatch();
+                changed = true;
+            }
+            if (changed) stmt.executeBatch();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package db;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records statements slower than a configurable threshold to a rotating log file, together
+ * with their bound parameters and SQLite's EXPLAIN QUERY PLAN output. Plan steps that scan a
+ * whole table without an index are flagged so field logs point straight at the missing index.
+ *
+ * Configured with -Dbms.slowQueryMs (default 200, 0 disables) and -Dbms.slowQueryLog
+ * (default slow-query.log); the file rotates at 1 MB keeping five old generations.
+ */
+public final class SlowQueryLog {
+    private static final long MAX_FILE_BYTES = 1024 * 1024;
+    private static final int MAX_GENERATIONS = 5;
+    private static final Path LOG_FILE = Path.of(System.getProperty("bms.slowQueryLog", "slow-query.log"));
+
+    private static volatile long thresholdNanos =
+            TimeUnit.MILLISECONDS.toNanos(Long.getLong("bms.slowQueryMs", 200));
+
+    private SlowQueryLog() {}
+
+    public static long getThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+    }
+
+    /** Sets the threshold in milliseconds; 0 turns the log off. */
+    public static void setThresholdMillis(long millis) {
+        thresholdNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, millis));
+    }
+
+    public static Path logFile() {
+        return LOG_FILE;
+    }
+
+    static boolean isSlow(long nanos) {
+        long threshold = thresholdNanos;
+        return threshold > 0 && nanos >= threshold;
+    }
+
+    /**
+     * Logs one slow statement. The plan is captured on the connection that ran it so that
+     * it reflects the same schema, indexes and bound values.
+     */
+    static void record(Connection conn, String operation, String sql, List<Object> params, long nanos, long rows) {
+        StringBuilder entry = new StringBuilder();
+        entry.append(LocalDateTime.now())
+                .append(" operation=").append(operation)
+                .append(" duration=").append(String.format("%.1fms", nanos / 1_000_000.0))
+                .append(" rows=").append(rows)
+                .append(System.lineSeparator());
+        entry.append("  SQL: ").append(Metrics.normalize(sql)).append(System.lineSeparator());
+        if (!params.isEmpty()) {
+            entry.append("  Params: ").append(formatParams(params)).append(System.lineSeparator());
+        }
+        entry.append("  Plan:").append(System.lineSeparator());
+        for (String step : explain(conn, sql, params)) {
+            entry.append("    ").append(step).append(System.lineSeparator());
+        }
+        write(entry.toString());
+    }
+
+    private static List<String> explain(Connection conn, String sql, List<Object> params) {
+        List<String> steps = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement("EXPLAIN QUERY PLAN " + sql)) {
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String detail = rs.getString("detail");
+                    steps.add(isFullScan(detail) ? detail + "   <-- FULL TABLE SCAN" : detail);
+                }
+            }
+        } catch (SQLException e) {
+            steps.add("(plan unavailable: " + e.getMessage() + ")");
+        }
+        return steps;
+    }
+
+    // "SCAN Sale" walks the whole table; "SCAN Sale USING INDEX ..." and SEARCH steps do not
+    static boolean isFullScan(String detail) {
+        return detail != null && detail.startsWith("SCAN ") && !detail.contains(" USING ")
+                && !detail.contains("CONSTANT ROW");
+    }
+
+    private static String formatParams(List<Object> params) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < params.size(); i++) {
+            if (i > 0) sb.append(", ");
+            Object value = params.get(i);
+            sb.append(i + 1).append('=');
+            if (value instanceof String s) {
+                sb.append('\'').append(s.length() > 60 ? s.substring(0, 57) + "..." : s).append('\'');
+            } else {
+                sb.append(value);
+            }
+        }
+        return sb.append(']').toString();
+    }
+
+    private static synchronized void write(String entry) {
+        try {
+            if (Files.exists(LOG_FILE) && Files.size(LOG_FILE) > MAX_FILE_BYTES) {
+                rotate();
+            }
+            try (Writer out = Files.newBufferedWriter(LOG_FILE, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                out.write(entry);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void rotate() throws IOException {
+        for (int i = MAX_GENERATIONS - 1; i >= 1; i--) {
+            Path older = generation(i);
+            if (Files.exists(older)) {
+                Files.move(older, generation(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(LOG_FILE, generation(1), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static Path generation(int n) {
+        return LOG_FILE.resolveSibling(LOG_FILE.getFileName() + "." + n);
+    }
+}
@@ -0,0 +1,73 @@
+package db;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Compact database files for seeding in-memory test and benchmark databases. A snapshot is
+ * written with VACUUM INTO, so it holds no free pages or journal and loads with one page copy.
+ *
+ * <pre>
+ * java db.Snapshot bench.db                                   (copies app.db)
+ * java db.Snapshot bench.db products=2000,sales=100000,seed=3 (synthetic data at that scale)
+ * </pre>
+ *
+ * Load one with {@code -Dapp.db=sqlite-memory:bench -Dapp.db.seed=snapshot:bench.db}.
+ */
+public final class Snapshot {
+
+    private Snapshot() {}
+
+    public static void main(String[] args) throws SQLException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: java db.Snapshot <file> [synthetic scale, e.g. products=500,sales=20000]");
+            System.exit(2);
+        }
+        Path file = Path.of(args[0]);
+        if (args.length == 2) {
+            long start = System.nanoTime();
+            DatabaseManager.useBackend(Backend.sqliteMemory("snapshot").withSeed(SyntheticData.parse(args[1])));
+            // The first connection creates and seeds the in-memory database
+            try (Connection conn = DatabaseManager.connectReadOnly("Snapshot.generate");
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM SaleOrder")) {
+                rs.next();
+                System.out.printf("Generated %d sales in %.1f s%n", rs.getLong(1), (System.nanoTime() - start) / 1e9);
+            }
+        }
+        save(file);
+        System.out.printf("Wrote %s%n", file.toAbsolutePath());
+    }
+
+    /** Writes the current database to a new compact file, replacing the file if it exists. SQLite only. */
+    public static void save(Path file) throws SQLException {
+        if (DatabaseManager.dialect() != SqlDialect.SQLITE) {
+            throw new SQLException("Snapshots are SQLite files; the current backend is " + DatabaseManager.dialect());
+        }
+        try {
+            Files.deleteIfExists(file); // VACUUM INTO refuses to overwrite
+        } catch (IOException e) {
+            throw new SQLException("Cannot replace " + file, e);
+        }
+        try (Connection conn = DatabaseManager.connect("Snapshot.save")) {
+            conn.setAutoCommit(true); // VACUUM cannot run inside a transaction
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("VACUUM INTO '" + file.toAbsolutePath().toString().replace("'", "''") + "'");
+            }
+        }
+    }
+
+    // Copies a snapshot over a fresh in-memory database through the connection keeping it alive
+    static void restore(Connection conn, Path file) throws SQLException {
+        if (!Files.isReadable(file)) throw new SQLException("Snapshot " + file.toAbsolutePath() + " not found");
+        try (Statement stmt = conn.createStatement()) {
+            // sqlite-jdbc's front end to sqlite3_backup; quotes allow spaces in the path
+            stmt.executeUpdate("restore from \"" + file.toAbsolutePath() + "\"");
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * The SQL that differs between the engines {@link DatabaseManager} can run on. Queries are
+ * written in the subset both understand; the few constructs that have no common spelling
+ * are built through here, and features only one engine has are switched on by a flag.
+ */
+public enum SqlDialect {
+    /** SQLite: one writer at a time, serializable transactions, FTS5 and the online backup API. */
+    SQLITE {
+        @Override
+        public String upsert(String table, String keyColumns, String columns, String select) {
+            return "INSERT OR REPLACE INTO " + table + " (" + columns + ") " + select;
+        }
+
+        @Override
+        public String caseInsensitive(String expression) {
+            return expression + " COLLATE NOCASE";
+        }
+
+        @Override
+        public String greatest(String a, String b) {
+            return "MAX(" + a + ", " + b + ")";
+        }
+
+        @Override
+        public String distinctFrom(String a, String b) {
+            return a + " IS NOT " + b;
+        }
+
+        @Override
+        public boolean isLockConflict(SQLException e) {
+            int primary = e.getErrorCode() & 0xff; // Extended codes carry the primary code in the low byte
+            return primary == 5 || primary == 6;   // SQLITE_BUSY, SQLITE_LOCKED (shared-cache table locks)
+        }
+    },
+
+    /**
+     * H2 on its MVStore engine: multi-version reads and row-level write locks, so writers to
+     * different products proceed side by side. No full-text prefix index and no file copy
+     * for a reporting replica; its readers never block writers, so none is needed.
+     */
+    H2 {
+        @Override
+        public int isolationLevel() {
+            // The stock decrement is conditional on the locked row, so it needs no serializable snapshot
+            return Connection.TRANSACTION_READ_COMMITTED;
+        }
+
+        @Override
+        public String upsert(String table, String keyColumns, String columns, String select) {
+            return "MERGE INTO " + table + " (" + columns + ") KEY (" + keyColumns + ") " + select;
+        }
+
+        @Override
+        public String caseInsensitive(String expression) {
+            return "LOWER(" + expression + ")";
+        }
+
+        @Override
+        public String greatest(String a, String b) {
+            return "GREATEST(" + a + ", " + b + ")";
+        }
+
+        @Override
+        public String distinctFrom(String a, String b) {
+            return a + " IS DISTINCT FROM " + b;
+        }
+
+        @Override
+        public boolean isLockConflict(SQLException e) {
+            int code = e.getErrorCode();
+            return code == 50200 || code == 40001 || code == 90131; // Lock timeout, deadlock, concurrent update
+        }
+
+        @Override
+        public boolean hasFullTextIndex() {
+            return false;
+        }
+
+        @Override
+        public boolean hasFileCopy() {
+            return false;
+        }
+    };
+
+    public int isolationLevel() {
+        return Connection.TRANSACTION_SERIALIZABLE;
+    }
+
+    /** Inserts the rows of {@code select}, replacing any existing row with the same key. */
+    public abstract String upsert(String table, String keyColumns, String columns, String select);
+
+    /** The expression in a form that compares and sorts ignoring case. */
+    public abstract String caseInsensitive(String expression);
+
+    /** The larger of two values (SQLite spells it as a two-argument MAX). */
+    public abstract String greatest(String a, String b);
+
+    /** True when the values differ, counting NULL as a value (SQLite spells it as IS NOT). */
+    public abstract String distinctFrom(String a, String b);
+
+    /** True when the statement failed only because another transaction held a lock; retrying may succeed. */
+    public abstract boolean isLockConflict(SQLException e);
+
+    /** Whether the ClientSearch and ProductSearch FTS5 tables exist. */
+    public boolean hasFullTextIndex() {
+        return true;
+    }
+
+    /** Whether the database can be copied online into a file for {@link ReportingReplica}. */
+    public boolean hasFileCopy() {
+        return true;
+    }
+}
@@ -0,0 +1,166 @@
+package db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only history of stock changes. Product.AmountLeft stays the current level for fast
+ * reads and conditional decrements; every change to it also appends a StockMovement in the
+ * same transaction, so stock on any past date can be answered from the ledger.
+ *
+ * Point-in-time queries start from the latest StockSnapshot on or before the date and add the
+ * short tail of movements after it. A movement dated before existing snapshots (a backdated
+ * sale, or a reversal of one) deletes the snapshots it would make wrong; {@link #compact}
+ * writes them again later.
+ */
+public final class StockLedger {
+
+    // Day of the product's latest snapshot on or before the day bound to its parameter
+    private static final String LAST_SNAPSHOT_DAY = """
+            COALESCE((SELECT MAX(s.SnapshotDate) FROM StockSnapshot s
+                      WHERE s.Product_ID = p.Product_ID AND s.SnapshotDate <= ?), -2147483648)""";
+
+    // Latest snapshot on or before the day plus the movements between it and the day; three date parameters
+    private static final String STOCK_EXPRESSION = """
+            (COALESCE((SELECT s.Quantity FROM StockSnapshot s
+                       WHERE s.Product_ID = p.Product_ID AND s.SnapshotDate <= ?
+                       ORDER BY s.SnapshotDate DESC LIMIT 1), 0)
+             + COALESCE((SELECT SUM(m.Quantity) FROM StockMovement m
+                          WHERE m.Product_ID = p.Product_ID
+                            AND m.MovementDate <= ?
+                            AND m.MovementDate >""" + " " + LAST_SNAPSHOT_DAY + "), 0))";
+
+    private static final String STOCK_AS_OF = "SELECT p.Product_ID, p.Name, " + STOCK_EXPRESSION + " AS Quantity";
+
+    public enum Reason { OPENING, SHIPMENT, SALE, SALE_REVERSAL, SALE_AMENDMENT, ADJUSTMENT }
+
+    /** One stock change; positive quantities add stock, negative ones remove it. */
+    public record Movement(int productId, LocalDate date, int quantity, Reason reason, Integer reference) {}
+
+    /** A product's stock level at the end of the requested day. */
+    public record StockLevel(int productId, String productName, long quantity) {}
+
+    private StockLedger() {}
+
+    public static void record(Connection conn, Movement movement) throws SQLException {
+        recordAll(conn, List.of(movement));
+    }
+
+    /**
+     * Appends the movements as one batch and drops snapshots dated on or after any of them.
+     * Movements of deleted products, e.g. from reversing an older sale of one, are skipped.
+     */
+    public static void recordAll(Connection conn, List<Movement> movements) throws SQLException {
+        if (movements.isEmpty()) return;
+        try (PreparedStatement ins = conn.prepareStatement("""
+                INSERT INTO StockMovement(Product_ID, MovementDate, Quantity, Reason, Reference)
+                SELECT Product_ID, ?, ?, ?, ? FROM Product WHERE Product_ID = ?
+            """);
+             PreparedStatement invalidate = conn.prepareStatement(
+                "DELETE FROM StockSnapshot WHERE Product_ID = ? AND SnapshotDate >= ?")) {
+            for (Movement m : movements) {
+                if (m.quantity() == 0) continue;
+                ins.setLong(1, m.date().toEpochDay());
+                ins.setInt(2, m.quantity());
+                ins.setString(3, m.reason().name());
+                if (m.reference() == null) ins.setNull(4, Types.INTEGER);
+                else ins.setInt(4, m.reference());
+                ins.setInt(5, m.productId());
+                ins.addBatch();
+
+                invalidate.setInt(1, m.productId());
+                invalidate.setLong(2, m.date().toEpochDay());
+                invalidate.addBatch();
+            }
+            ins.executeBatch();
+            invalidate.executeBatch();
+        }
+    }
+
+    /** Stock of one product at the end of the given day: one snapshot lookup plus the movements after it. */
+    public static long stockAsOf(Connection conn, int productId, LocalDate date) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(STOCK_AS_OF + " FROM Product p WHERE p.Product_ID = ?")) {
+            bindDate(stmt, date);
+            stmt.setInt(4, productId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong("Quantity") : 0;
+            }
+        }
+    }
+
+    /** Every product's stock at the end of the given day, by name. */
+    public static List<StockLevel> stockAsOf(Connection conn, LocalDate date) throws SQLException {
+        List<StockLevel> levels = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(STOCK_AS_OF + " FROM Product p ORDER BY p.Name")) {
+            bindDate(stmt, date);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    levels.add(new StockLevel(rs.getInt("Product_ID"), rs.getString("Name"), rs.getLong("Quantity")));
+                }
+            }
+        }
+        return levels;
+    }
+
+    /**
+     * Writes a snapshot at {@code asOf} for every product that has movements since its latest
+     * snapshot, so later point-in-time queries only replay what comes after it. Idempotent;
+     * runs in the caller's transaction.
+     *
+     * @return the number of snapshots written
+     */
+    public static int compact(Connection conn, LocalDate asOf) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                DatabaseManager.dialect().upsert("StockSnapshot", "Product_ID, SnapshotDate",
+                        "Product_ID, SnapshotDate, Quantity",
+                        "SELECT p.Product_ID, ?, " + STOCK_EXPRESSION + " FROM Product p "
+                        + "WHERE EXISTS (SELECT 1 FROM StockMovement m WHERE m.Product_ID = p.Product_ID "
+                        + "AND m.MovementDate <= ? AND m.MovementDate > " + LAST_SNAPSHOT_DAY + ")"))) {
+            long day = asOf.toEpochDay();
+            stmt.setLong(1, day);
+            stmt.setLong(2, day);
+            stmt.setLong(3, day);
+            stmt.setLong(4, day);
+            stmt.setLong(5, day);
+            stmt.setLong(6, day);
+            return stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Snapshots every product as of the end of last month on a low-priority daemon thread.
+     * Run once per start-up; a month's worth of tail is the most any stock query replays.
+     */
+    public static void compactInBackground() {
+        Thread worker = new Thread(() -> {
+            LocalDate endOfLastMonth = LocalDate.now().withDayOfMonth(1).minusDays(1);
+            try (Connection conn = DatabaseManager.connect("StockLedger.compact")) {
+                try {
+                    compact(conn, endOfLastMonth);
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }, "db-stock-compaction");
+        worker.setDaemon(true);
+        worker.setPriority(Thread.MIN_PRIORITY);
+        worker.start();
+    }
+
+    private static void bindDate(PreparedStatement stmt, LocalDate date) throws SQLException {
+        long day = date.toEpochDay();
+        stmt.setLong(1, day);
+        stmt.setLong(2, day);
+        stmt.setLong(3, day);
+    }
+}
@@ -0,0 +1,188 @@
+package db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Made-up but plausible business data for tests and benchmarks: sellers, products, clients,
+ * and a year of shipments and sales written through the same manager methods the windows
+ * use, so counters, cash and the stock ledger all agree. The same scale and random seed give
+ * the same rows every time; dates are laid out over the year up to today.
+ */
+public final class SyntheticData {
+    private static final int DAYS = 365;
+    private static final String[] ADJECTIVES = {
+            "Red", "Large", "Compact", "Classic", "Organic", "Deluxe", "Mini", "Steel", "Wooden", "Smart",
+            "Fresh", "Premium", "Basic", "Green", "Travel", "Heavy", "Light", "Golden", "Silver", "Eco"};
+    private static final String[] NOUNS = {
+            "Chair", "Lamp", "Kettle", "Backpack", "Notebook", "Blender", "Mug", "Jacket", "Shelf", "Speaker",
+            "Pillow", "Toaster", "Bottle", "Helmet", "Candle", "Blanket", "Clock", "Tray", "Basket", "Mirror"};
+    private static final String[] FIRST_NAMES = {
+            "Anna", "Oleh", "Maria", "Ivan", "Sofia", "Taras", "Olena", "Andrii", "Iryna", "Dmytro",
+            "Kateryna", "Petro", "Yulia", "Mykola", "Nadia", "Serhii", "Oksana", "Bohdan", "Larysa", "Vasyl"};
+    private static final String[] LAST_NAMES = {
+            "Kovalenko", "Bondarenko", "Tkachenko", "Shevchenko", "Kravchenko", "Melnyk", "Boyko", "Lysenko",
+            "Marchenko", "Rudenko", "Savchenko", "Petrenko", "Klymenko", "Pavlenko", "Moroz", "Polishchuk"};
+    private static final String[] PREFERENCES = {"Electronics", "Clothing", "Books", "Home", "Sports", "Toys"};
+
+    /** How many of each thing to generate. */
+    public record Scale(int sellers, int products, int clients, int sales, int shipments) {
+        public static final Scale DEFAULT = new Scale(10, 500, 2_000, 20_000, 200);
+
+        public Scale {
+            if (sellers < 1 || products < 1 || clients < 1 || sales < 0 || shipments < 1) {
+                throw new IllegalArgumentException("Synthetic data needs at least one seller, product, client and shipment");
+            }
+        }
+    }
+
+    // A shipment or sale planned for a day of the year; product indexes and units side by side
+    private record Event(int day, boolean shipment, int[] products, int[] quantities) {}
+
+    private SyntheticData() {}
+
+    // "sellers=10,products=500,seed=7" into a synthetic seed; omitted counts keep the defaults
+    static Seed.Synthetic parse(String spec) {
+        Scale d = Scale.DEFAULT;
+        int sellers = d.sellers(), products = d.products(), clients = d.clients(), sales = d.sales(), shipments = d.shipments();
+        long randomSeed = 1;
+        for (String pair : spec.split(",")) {
+            if (pair.isBlank()) continue;
+            int eq = pair.indexOf('=');
+            if (eq <= 0) throw new IllegalArgumentException("Expected name=value in '" + pair + "'");
+            String value = pair.substring(eq + 1).strip();
+            switch (pair.substring(0, eq).strip()) {
+                case "sellers" -> sellers = Integer.parseInt(value);
+                case "products" -> products = Integer.parseInt(value);
+                case "clients" -> clients = Integer.parseInt(value);
+                case "sales" -> sales = Integer.parseInt(value);
+                case "shipments" -> shipments = Integer.parseInt(value);
+                case "seed" -> randomSeed = Long.parseLong(value);
+                default -> throw new IllegalArgumentException("Unknown synthetic data setting '" + pair + "'");
+            }
+        }
+        return new Seed.Synthetic(new Scale(sellers, products, clients, sales, shipments), randomSeed);
+    }
+
+    /**
+     * Fills an empty database in the caller's transaction. Shipments and sales are planned over
+     * the year first; the opening shipment on the first day then stocks each product with the
+     * most its planned sales ever run ahead of its planned deliveries, plus headroom, so no sale
+     * runs out of stock and every product ends the year with units left to sell.
+     */
+    public static void generate(Connection conn, Scale scale, long randomSeed) throws SQLException {
+        Random random = new Random(randomSeed);
+        LocalDate firstDay = LocalDate.now().minusDays(DAYS - 1);
+
+        List<Integer> sellerIds = new ArrayList<>();
+        for (int i = 1; i <= scale.sellers(); i++) {
+            sellerIds.add(SellerManager.addSeller(conn, FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " (seller " + i + ")"));
+        }
+
+        int[] productIds = new int[scale.products()];
+        long[] rates = new long[scale.products()];
+        for (int i = 0; i < productIds.length; i++) {
+            long price = 100L * (1 + random.nextInt(200)) - 1; // 0.99 to 199.99
+            rates[i] = price * (50 + random.nextInt(30)) / 100;
+            String name = ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " " + NOUNS[random.nextInt(NOUNS.length)] + " " + (i + 1);
+            productIds[i] = ProductManager.addProduct(conn, name, price, rates[i]);
+        }
+
+        List<Integer> clientIds = new ArrayList<>();
+        for (int i = 0; i < scale.clients(); i++) {
+            String name = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+            clientIds.add(ClientManager.addClient(conn, name, PREFERENCES[random.nextInt(PREFERENCES.length)]));
+        }
+
+        // Sales take up to 3 lines of up to 4 units; shipments bring back about what the sales take out
+        int unitsPerShipment = (int) Math.min(Integer.MAX_VALUE / 2, 1L + scale.sales() * 5L / scale.shipments());
+        List<Event> events = new ArrayList<>();
+        for (int i = 1; i < scale.shipments(); i++) {
+            events.add(planShipment(random, productIds.length, unitsPerShipment));
+        }
+        for (int i = 0; i < scale.sales(); i++) {
+            events.add(planSale(random, productIds.length));
+        }
+        events.sort((a, b) -> Integer.compare(a.day(), b.day()));
+
+        // Each product's deepest shortfall over the year is what the opening stock must cover
+        long[] balance = new long[productIds.length];
+        long[] shortfall = new long[productIds.length];
+        long[] sold = new long[productIds.length];
+        for (Event event : events) {
+            for (int k = 0; k < event.products().length; k++) {
+                int i = event.products()[k];
+                int quantity = event.quantities()[k];
+                balance[i] += event.shipment() ? quantity : -quantity;
+                if (!event.shipment()) sold[i] += quantity;
+                shortfall[i] = Math.max(shortfall[i], -balance[i]);
+            }
+        }
+        List<ShipmentManager.NewItem> opening = new ArrayList<>();
+        for (int i = 0; i < productIds.length; i++) {
+            long headroom = 20 + random.nextInt(20) + sold[i] / 10;
+            int quantity = (int) Math.min(Integer.MAX_VALUE / 2, shortfall[i] + headroom);
+            opening.add(new ShipmentManager.NewItem(productIds[i], quantity, rates[i]));
+        }
+        ShipmentManager.postShipment(conn, "Opening stock", firstDay, 0, 0, 0, opening);
+
+        for (Event event : events) {
+            LocalDate day = firstDay.plusDays(event.day());
+            if (event.shipment()) {
+                postShipment(conn, random, day, event, productIds, rates);
+            } else {
+                postSale(conn, random, day, event, productIds, clientIds, sellerIds);
+            }
+        }
+    }
+
+    private static Event planShipment(Random random, int products, int units) {
+        int itemCount = Math.min(products, 1 + random.nextInt(10));
+        int first = random.nextInt(products);
+        int[] indexes = new int[itemCount];
+        int[] quantities = new int[itemCount];
+        for (int k = 0; k < itemCount; k++) {
+            indexes[k] = (first + k) % products;
+            quantities[k] = Math.max(1, units / itemCount);
+        }
+        return new Event(random.nextInt(DAYS), true, indexes, quantities);
+    }
+
+    private static Event planSale(Random random, int products) {
+        int lineCount = 1 + random.nextInt(3);
+        int[] indexes = new int[lineCount];
+        int[] quantities = new int[lineCount];
+        for (int k = 0; k < lineCount; k++) {
+            indexes[k] = random.nextInt(products);
+            quantities[k] = 1 + random.nextInt(4);
+        }
+        return new Event(random.nextInt(DAYS), false, indexes, quantities);
+    }
+
+    private static void postShipment(Connection conn, Random random, LocalDate day, Event event,
+                                     int[] productIds, long[] rates) throws SQLException {
+        List<ShipmentManager.NewItem> items = new ArrayList<>();
+        for (int k = 0; k < event.products().length; k++) {
+            int i = event.products()[k];
+            items.add(new ShipmentManager.NewItem(productIds[i], event.quantities()[k], rates[i]));
+        }
+        ShipmentManager.postShipment(conn, "Driver " + (1 + random.nextInt(5)), day,
+                100L * random.nextInt(50), 100L * random.nextInt(20), 100L * random.nextInt(80), items);
+    }
+
+    private static void postSale(Connection conn, Random random, LocalDate day, Event event, int[] productIds,
+                                 List<Integer> clientIds, List<Integer> sellerIds) throws SQLException {
+        List<SaleManager.NewLine> lines = new ArrayList<>();
+        for (int k = 0; k < event.products().length; k++) {
+            int productId = productIds[event.products()[k]];
+            lines.add(new SaleManager.NewLine(productId, "Product " + productId, event.quantities()[k]));
+        }
+        SaleManager.postSale(conn, clientIds.get(random.nextInt(clientIds.size())),
+                sellerIds.get(random.nextInt(sellerIds.size())), day,
+                random.nextInt(10) < 7 ? "Paid" : "Unpaid", lines);
+    }
+}
@@ -0,0 +1,299 @@
+package db;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a busy day in-process: worker threads run the same database work as the sale
+ * form (SalesWindow.addSale), the payment toggle (updateSalePaymentStatus), shipment
+ * receiving (ShipmentWindow.addShipment) and the dashboard refresh (the cash labels on the
+ * main window), each on its own connection and transaction as the windows do, in a chosen
+ * mix. Failures are not retried, as in the windows; a failure caused by another
+ * transaction's lock (SQLITE_BUSY or SQLITE_LOCKED) is counted as lock contention, and a
+ * sale the form would turn away for lack of stock as a rejection; neither counts as a
+ * completed operation or adds to the latencies.
+ *
+ * With {@code --rate} the operations are started on a fixed schedule (open loop) and each
+ * latency is measured from when the operation was due, so time spent queued behind a slow
+ * database is counted. Without it every worker starts its next operation as soon as the
+ * last one finishes (closed loop).
+ *
+ * <pre>
+ * java [-Dapp.db=... -Dapp.db.seed=...] db.WorkloadGenerator [--threads 8] [--seconds 30] [--warmup 5]
+ *      [--rate 0] [--mix sale=40,payment=15,shipment=5,dashboard=40]
+ * </pre>
+ *
+ * Without -Dapp.db it runs against a temporary SQLite file in write-ahead-log mode, filled with
+ * {@link SyntheticData.Scale#DEFAULT} synthetic data and deleted on exit, so writers wait out
+ * each other's locks and readers never wait, as in server mode. The in-memory backend locks
+ * whole tables and fails writers at once instead of letting them wait, so it shows far more
+ * contention than a real day. Pointed at a file, every sale and shipment it posts is
+ * committed there.
+ */
+public final class WorkloadGenerator {
+
+    enum Operation { SALE, PAYMENT, SHIPMENT, DASHBOARD }
+
+    // Per-operation counters; reset at the end of the warm-up
+    private static final class Stats {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final AtomicLong lockConflicts = new AtomicLong();
+        final AtomicLong outOfStock = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+
+        void reset() {
+            latency.reset();
+            lockConflicts.set(0);
+            outOfStock.set(0);
+            errors.set(0);
+        }
+    }
+
+    private final SqlDialect dialect;
+    private final Operation[] wheel; // 100 slots filled in proportion to the mix
+    private final List<Integer> productIds;
+    private final List<Integer> clientIds;
+    private final List<Integer> sellerIds;
+    private final List<Integer> orderIds = Collections.synchronizedList(new ArrayList<>()); // Only grows
+    private final Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+    private final AtomicLong lastError = new AtomicLong();
+
+    private WorkloadGenerator(Map<Operation, Integer> mix) throws SQLException {
+        this.dialect = DatabaseManager.dialect();
+        int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+        if (total <= 0) throw new IllegalArgumentException("The mix must give at least one operation a positive share");
+        List<Operation> slots = new ArrayList<>();
+        for (Map.Entry<Operation, Integer> e : mix.entrySet()) {
+            for (int i = 0; i < Math.round(100.0 * e.getValue() / total); i++) slots.add(e.getKey());
+        }
+        this.wheel = slots.toArray(Operation[]::new);
+        for (Operation op : Operation.values()) stats.put(op, new Stats());
+
+        try (Connection conn = DatabaseManager.connectReadOnly("WorkloadGenerator.load")) {
+            productIds = ProductManager.findProducts(conn).stream().map(ProductManager.ProductRow::productId).toList();
+            clientIds = ClientManager.findClients(conn).stream().map(ClientManager.ClientRow::clientId).toList();
+            sellerIds = SellerManager.findSellers(conn).stream().map(SellerManager.SellerRow::sellerId).toList();
+            for (SaleManager.OrderRow order : SaleManager.findOrders(conn, Dates.Range.lastDays(30))) {
+                orderIds.add(order.orderId());
+            }
+        }
+        if (productIds.isEmpty() || clientIds.isEmpty() || sellerIds.isEmpty()) {
+            throw new IllegalStateException("The database needs at least one product, client and seller");
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = 8;
+        int seconds = 30;
+        int warmup = 5;
+        double rate = 0;
+        String mixSpec = "sale=40,payment=15,shipment=5,dashboard=40";
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--seconds" -> seconds = Integer.parseInt(args[++i]);
+                case "--warmup" -> warmup = Integer.parseInt(args[++i]);
+                case "--rate" -> rate = Double.parseDouble(args[++i]);
+                case "--mix" -> mixSpec = args[++i];
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        long setup = System.nanoTime();
+        if (System.getProperty(Backend.PROPERTY) == null) useTemporaryDatabase();
+        WorkloadGenerator generator = new WorkloadGenerator(parseMix(mixSpec));
+        System.out.printf("%s, ready in %.1f s: %d products, %d clients, %d sellers%n",
+                DatabaseManager.backend().url(), (System.nanoTime() - setup) / 1e9,
+                generator.productIds.size(), generator.clientIds.size(), generator.sellerIds.size());
+        System.out.printf("%d threads, %s, mix %s, %d s warm-up + %d s measured%n", threads,
+                rate > 0 ? rate + " ops/s" : "closed loop", mixSpec, warmup, seconds);
+
+        generator.run(threads, rate, Duration.ofSeconds(warmup), Duration.ofSeconds(seconds));
+        generator.report(seconds);
+        System.exit(0);
+    }
+
+    // A fresh WAL-mode file of synthetic data, removed when the run ends
+    private static void useTemporaryDatabase() throws Exception {
+        Path file = Files.createTempFile("workload", ".db");
+        for (String suffix : new String[]{"", "-wal", "-shm"}) {
+            Path.of(file + suffix).toFile().deleteOnExit();
+        }
+        DatabaseManager.useBackend(Backend.sqliteFile(file.toString()));
+        DatabaseManager.enableWriteAheadLog();
+        try (Connection conn = DatabaseManager.connect("SyntheticData.generate")) {
+            try {
+                SyntheticData.generate(conn, SyntheticData.Scale.DEFAULT, 1);
+                conn.commit();
+                CostLayers.committed(conn);
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    static Map<Operation, Integer> parseMix(String spec) {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (String pair : spec.split(",")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) throw new IllegalArgumentException("Expected operation=share in '" + pair + "'");
+            Operation op = Operation.valueOf(pair.substring(0, eq).strip().toUpperCase());
+            mix.put(op, Integer.parseInt(pair.substring(eq + 1).strip()));
+        }
+        return mix;
+    }
+
+    private void run(int threads, double rate, Duration warmup, Duration measured) throws InterruptedException {
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long deadline = measureFrom + measured.toNanos();
+        Thread resetter = Thread.ofPlatform().daemon().start(() -> {
+            LockSupport.parkNanos(measureFrom - System.nanoTime());
+            stats.values().forEach(Stats::reset);
+        });
+
+        // Platform threads: the SQLite driver blocks in native code, which would pin virtual threads anyway
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        if (rate > 0) {
+            long interval = (long) (1e9 / rate);
+            for (long due = start; due < deadline; due += interval) {
+                LockSupport.parkNanos(due - System.nanoTime());
+                long scheduled = due;
+                workers.execute(() -> runOne(scheduled));
+            }
+        } else {
+            for (int t = 0; t < threads; t++) {
+                workers.execute(() -> {
+                    while (System.nanoTime() < deadline) runOne(System.nanoTime());
+                });
+            }
+        }
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.MINUTES); // Drains what an overloaded open loop queued up
+        resetter.join();
+    }
+
+    private void runOne(long scheduled) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Operation op = wheel[random.nextInt(wheel.length)];
+        Stats s = stats.get(op);
+        try {
+            switch (op) {
+                case SALE -> postSale(random);
+                case PAYMENT -> togglePayment(random);
+                case SHIPMENT -> receiveShipment(random);
+                case DASHBOARD -> refreshDashboard();
+            }
+            s.latency.recordNanos(System.nanoTime() - scheduled);
+        } catch (SaleManager.InsufficientStockException e) {
+            s.outOfStock.incrementAndGet(); // The sale form rejects these too; not a database failure
+        } catch (SQLException e) {
+            if (dialect.isLockConflict(e)) {
+                s.lockConflicts.incrementAndGet();
+            } else {
+                s.errors.incrementAndGet();
+                // Print the first error of each run; the rest only count
+                if (lastError.getAndIncrement() == 0) e.printStackTrace();
+            }
+        }
+    }
+
+    // SalesWindow.addSale: one to three products, committed as one sale
+    private void postSale(ThreadLocalRandom random) throws SQLException {
+        List<SaleManager.NewLine> lines = new ArrayList<>();
+        int lineCount = 1 + random.nextInt(3);
+        for (int i = 0; i < lineCount; i++) {
+            int productId = pick(productIds, random);
+            lines.add(new SaleManager.NewLine(productId, "Product " + productId, 1 + random.nextInt(3)));
+        }
+        int orderId = write("WorkloadGenerator.postSale", conn -> SaleManager.postSale(conn,
+                pick(clientIds, random), pick(sellerIds, random), LocalDate.now(),
+                random.nextInt(10) < 7 ? "Paid" : "Unpaid", lines));
+        orderIds.add(orderId);
+    }
+
+    // SalesWindow.updateSalePaymentStatus on one recent order
+    private void togglePayment(ThreadLocalRandom random) throws SQLException {
+        if (orderIds.isEmpty()) return;
+        int orderId = pick(orderIds, random);
+        String status = random.nextBoolean() ? "Paid" : "Unpaid";
+        write("WorkloadGenerator.togglePayment", conn -> SaleManager.setPaymentStatus(conn, orderId, status));
+    }
+
+    // ShipmentWindow.addShipment: a delivery restocking one to five products
+    private void receiveShipment(ThreadLocalRandom random) throws SQLException {
+        List<ShipmentManager.NewItem> items = new ArrayList<>();
+        int itemCount = 1 + random.nextInt(5);
+        for (int i = 0; i < itemCount; i++) {
+            items.add(new ShipmentManager.NewItem(pick(productIds, random), 20 + random.nextInt(80), 100 + random.nextInt(900)));
+        }
+        write("WorkloadGenerator.receiveShipment", conn -> ShipmentManager.postShipment(conn,
+                "Workload", LocalDate.now(), 500, 0, 0, items));
+    }
+
+    // MainAppWindow.refreshCashLabels
+    private void refreshDashboard() throws SQLException {
+        try (Connection conn = DatabaseManager.connectReadOnly("WorkloadGenerator.refreshDashboard")) {
+            SellerManager.loadCashSummary(conn);
+        }
+    }
+
+    private static <T> T write(String operation, DbExecutor.Work<T> work) throws SQLException {
+        try (Connection conn = DatabaseManager.connect(operation)) {
+            try {
+                T result = work.run(conn);
+                conn.commit();
+                CostLayers.committed(conn);
+                return result;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private static int pick(List<Integer> ids, ThreadLocalRandom random) {
+        return ids.get(random.nextInt(ids.size()));
+    }
+
+    // Done and the latencies cover completed operations only; Locked, NoStock and Errors are the rest
+    private void report(int seconds) {
+        System.out.printf("%n%-10s %8s %8s %9s %9s %9s %9s %9s %8s %8s %8s%n", "Operation", "Done", "Ops/s",
+                "Mean ms", "p50 ms", "p95 ms", "p99 ms", "Max ms", "Locked", "NoStock", "Errors");
+        long total = 0;
+        long conflicts = 0;
+        long rejected = 0;
+        long errors = 0;
+        for (Map.Entry<Operation, Stats> e : stats.entrySet()) {
+            Stats s = e.getValue();
+            LatencyHistogram h = s.latency;
+            total += h.count();
+            conflicts += s.lockConflicts.get();
+            rejected += s.outOfStock.get();
+            errors += s.errors.get();
+            System.out.printf("%-10s %8d %8.1f %9.2f %9.2f %9.2f %9.2f %9.2f %8d %8d %8d%n",
+                    e.getKey().name().toLowerCase(), h.count(), h.count() / (double) seconds,
+                    h.meanMicros() / 1000.0, h.percentileMicros(50) / 1000.0, h.percentileMicros(95) / 1000.0,
+                    h.percentileMicros(99) / 1000.0, h.maxMicros() / 1000.0,
+                    s.lockConflicts.get(), s.outOfStock.get(), s.errors.get());
+        }
+        System.out.printf("%nCompleted %d operations in %d s (%.1f ops/s); %d lost to lock contention, "
+                        + "%d sales rejected for stock, %d other errors%n",
+                total, seconds, total / (double) seconds, conflicts, rejected, errors);
+    }
+}
@@ -0,0 +1,157 @@
+package db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single writer in front of SQLite. SQLite allows one writer at a time, so instead of letting
+ * request threads race for the write lock and time out, every write is queued and run by one
+ * platform thread on one long-lived connection.
+ *
+ * Tasks that are waiting when the writer becomes free are committed together (group commit):
+ * each runs inside its own SAVEPOINT, so a failing task is rolled back alone, and one COMMIT
+ * then makes the whole group durable. A task's future completes only after that commit.
+ * The queue is bounded; when it is full {@link #submit} fails fast so callers can shed load.
+ * Server mode runs one for its request threads and {@link DbExecutor#write} one for the
+ * windows; the writer also tells {@link CostLayers} which sales committed.
+ */
+public final class WriteQueue implements AutoCloseable {
+    private static final int MAX_GROUP = 64;
+
+    /** Thrown by {@link #submit} when the queue is at capacity. */
+    public static final class QueueFullException extends RuntimeException {
+        QueueFullException() {
+            super("Write queue is full");
+        }
+    }
+
+    private record Pending<T>(DbExecutor.Work<T> task, CompletableFuture<T> future) {}
+
+    private record Done<T>(CompletableFuture<T> future, T result) {
+        void complete() {
+            future.complete(result);
+        }
+    }
+
+    private final String operation;
+    private final BlockingQueue<Pending<?>> queue;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    /** Starts the writer thread; its connection is tagged with {@code operation} in {@link Metrics}. */
+    public WriteQueue(String operation, int capacity) {
+        this.operation = operation;
+        queue = new ArrayBlockingQueue<>(capacity);
+        writer = new Thread(this::drain, "db-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues the work; the future completes once the group it ran in has committed, or fails
+     * with what the work threw.
+     *
+     * @throws QueueFullException when the queue is at capacity
+     */
+    public <T> CompletableFuture<T> submit(DbExecutor.Work<T> task) {
+        if (!running) throw new IllegalStateException("Write queue is closed");
+        CompletableFuture<T> future = new CompletableFuture<>();
+        if (!queue.offer(new Pending<>(task, future))) throw new QueueFullException();
+        return future;
+    }
+
+    /** False once the writer has stopped, after {@link #close} or when its connection failed. */
+    public boolean isOpen() {
+        return running;
+    }
+
+    public int pending() {
+        return queue.size();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        writer.interrupt();
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+        try (Connection conn = DatabaseManager.connect(operation)) {
+            List<Pending<?>> group = new ArrayList<>(MAX_GROUP);
+            while (running || !queue.isEmpty()) {
+                Pending<?> first = running ? queue.poll(1, TimeUnit.SECONDS) : queue.poll();
+                if (first == null) continue;
+                group.add(first);
+                queue.drainTo(group, MAX_GROUP - 1);
+                runGroup(conn, group);
+                group.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            running = false;
+            Pending<?> left;
+            while ((left = queue.poll()) != null) {
+                left.future().completeExceptionally(new IllegalStateException("Write queue is closed"));
+            }
+        }
+    }
+
+    private void runGroup(Connection conn, List<Pending<?>> group) {
+        List<Done<?>> succeeded = new ArrayList<>(group.size());
+        for (Pending<?> pending : group) {
+            Done<?> done = runOne(conn, pending);
+            if (done != null) succeeded.add(done);
+        }
+        try {
+            conn.commit();
+            CostLayers.committed(conn);
+            succeeded.forEach(Done::complete);
+        } catch (SQLException e) {
+            CostLayers.rolledBack(conn);
+            try {
+                conn.rollback();
+            } catch (SQLException rollbackEx) {
+                e.addSuppressed(rollbackEx);
+            }
+            succeeded.forEach(done -> done.future().completeExceptionally(e));
+        }
+    }
+
+    // Runs one task inside a savepoint; a failure completes its future and undoes only its own writes
+    private static <T> Done<T> runOne(Connection conn, Pending<T> pending) {
+        Savepoint savepoint = null;
+        try {
+            savepoint = conn.setSavepoint();
+            T result = pending.task().run(conn);
+            conn.releaseSavepoint(savepoint);
+            return new Done<>(pending.future(), result);
+        } catch (SQLException | RuntimeException e) {
+            CostLayers.rolledBack(conn); // Earlier tasks' queues go too; they are only a cache
+            if (savepoint != null) {
+                try {
+                    conn.rollback(savepoint);
+                    conn.releaseSavepoint(savepoint);
+                } catch (SQLException rollbackEx) {
+                    e.addSuppressed(rollbackEx);
+                }
+            }
+            pending.future().completeExceptionally(e);
+            return null;
+        }
+    }
+}
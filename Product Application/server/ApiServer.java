@@ -0,0 +1,347 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import db.ClientManager;
+import db.DatabaseManager;
+import db.Dates;
+import db.DbExecutor;
+import db.ProductManager;
+import db.SaleManager;
+import db.SellerManager;
+import db.ShipmentManager;
+import db.StockLedger;
+import db.WriteQueue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Headless mode: the sale, shipment, product and client operations over HTTP/JSON on
+ * localhost, for scripting and load testing without the Swing windows. Started with
+ * {@code MainAppWindow --server [--port N] [--queue N]}.
+ *
+ * Every request runs on its own virtual thread. Reads open their own read-only connection
+ * and run concurrently (the database is switched to WAL so they never wait for the writer);
+ * writes go through the {@link WriteQueue}, which serializes and group-commits them. All
+ * money in requests and responses is integer cents, and dates are YYYY-MM-DD.
+ *
+ * <pre>
+ * GET    /api/products | /api/clients | /api/sellers
+ * GET    /api/sales?from=&amp;to=            (defaults to this month)
+ * GET    /api/sales/{id}/lines
+ * GET    /api/shipments?from=&amp;to=&amp;product=
+ * GET    /api/stock?date=                  (stock of every product at the end of the day)
+ * POST   /api/sales           {clientId, sellerId, date, paymentStatus, lines: [{productId, quantity}]}
+ * POST   /api/sales/{id}/status {paymentStatus}
+ * DELETE /api/sales/{id}
+ * POST   /api/shipments       {deliveryman, date, deliveryExpense, equipmentExpense, employeeExpense,
+ *                               items: [{productId, quantity, rate}]}
+ * POST   /api/clients         {name, preferences}
+ * POST   /api/products        {name, price, rate}
+ * </pre>
+ */
+public final class ApiServer {
+    static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    private record Response(int status, Object body) {}
+
+    private static final class NotFoundException extends RuntimeException {
+        NotFoundException(String message) {
+            super(message);
+        }
+    }
+
+    private final HttpServer http;
+    private final ExecutorService executor;
+    private final WriteQueue writes;
+
+    private ApiServer(HttpServer http, ExecutorService executor, WriteQueue writes) {
+        this.http = http;
+        this.executor = executor;
+        this.writes = writes;
+    }
+
+    public static void main(String[] args) throws IOException, SQLException {
+        int port = DEFAULT_PORT;
+        int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port" -> port = Integer.parseInt(args[++i]);
+                case "--queue" -> queueCapacity = Integer.parseInt(args[++i]);
+                default -> { } // --server and anything meant for the desktop app
+            }
+        }
+        StockLedger.compactInBackground();
+        ApiServer server = start(port, queueCapacity);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop, "api-shutdown"));
+        System.out.println("Listening on http://localhost:" + port + "/api");
+    }
+
+    /** Switches the database to WAL and starts serving on the loopback interface. */
+    public static ApiServer start(int port, int queueCapacity) throws IOException, SQLException {
+        DatabaseManager.enableWriteAheadLog();
+        HttpServer http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        ApiServer server = new ApiServer(http, executor, new WriteQueue("ApiServer.write", queueCapacity));
+        http.createContext("/api/", server::handle);
+        http.setExecutor(executor);
+        http.start();
+        return server;
+    }
+
+    /** Stops accepting requests, lets in-flight ones finish for up to two seconds and drains the write queue. */
+    public void stop() {
+        http.stop(2);
+        executor.shutdown();
+        writes.close();
+    }
+
+    private void handle(HttpExchange exchange) {
+        try {
+            Response response;
+            try {
+                response = route(exchange);
+            } catch (SaleManager.InsufficientStockException e) {
+                response = error(409, "Not enough stock for " + e.getProductName());
+            } catch (WriteQueue.QueueFullException e) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                response = error(503, e.getMessage());
+            } catch (NotFoundException e) {
+                response = error(404, e.getMessage());
+            } catch (IllegalArgumentException e) {
+                response = error(400, e.getMessage());
+            } catch (SQLException | RuntimeException e) {
+                e.printStackTrace();
+                response = error(500, "Database error: " + e.getMessage());
+            }
+            send(exchange, response);
+        } catch (IOException e) {
+            e.printStackTrace(); // Client went away mid-response
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // Numeric path segments become {id}, so each route is one switch label
+    private Response route(HttpExchange exchange) throws IOException, SQLException {
+        String[] segments = exchange.getRequestURI().getPath().substring("/api/".length()).split("/");
+        StringBuilder shape = new StringBuilder(exchange.getRequestMethod()).append(' ');
+        int id = 0;
+        for (int i = 0; i < segments.length; i++) {
+            if (i > 0) shape.append('/');
+            if (!segments[i].isEmpty() && segments[i].chars().allMatch(Character::isDigit)) {
+                id = Integer.parseInt(segments[i]);
+                shape.append("{id}");
+            } else {
+                shape.append(segments[i]);
+            }
+        }
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+
+        return switch (shape.toString()) {
+            case "GET products" -> read(ProductManager::findProducts);
+            case "GET clients" -> read(ClientManager::findClients);
+            case "GET sellers" -> read(SellerManager::findSellers);
+            case "GET sales" -> {
+                Dates.Range range = rangeOf(query, Dates.Range.thisMonth());
+                yield read(conn -> SaleManager.findOrders(conn, range));
+            }
+            case "GET sales/{id}/lines" -> {
+                int orderId = id;
+                yield read(conn -> SaleManager.findLines(conn, orderId));
+            }
+            case "GET shipments" -> {
+                Dates.Range range = rangeOf(query, Dates.Range.ALL);
+                String product = query.get("product");
+                yield read(conn -> ShipmentManager.findShipments(conn, range, product,
+                        ShipmentManager.DateOrder.NEWEST_FIRST));
+            }
+            case "GET stock" -> {
+                LocalDate date = query.containsKey("date") ? Dates.parse(query.get("date")) : LocalDate.now();
+                yield read(conn -> StockLedger.stockAsOf(conn, date));
+            }
+            case "POST sales" -> postSale(Json.parseObject(body(exchange)));
+            case "POST sales/{id}/status" -> {
+                int orderId = id;
+                String status = paymentStatus(Json.parseObject(body(exchange)));
+                boolean changed = write(conn -> SaleManager.setPaymentStatus(conn, orderId, status));
+                yield new Response(200, Map.of("changed", changed));
+            }
+            case "DELETE sales/{id}" -> {
+                int orderId = id;
+                SaleManager.Reversal reversal = write(conn -> SaleManager.reverseOrders(conn, List.of(orderId)));
+                if (reversal.orders() == 0) throw new NotFoundException("No sale with ID " + orderId);
+                yield new Response(200, reversal);
+            }
+            case "POST shipments" -> postShipment(Json.parseObject(body(exchange)));
+            case "POST clients" -> {
+                Map<String, Object> json = Json.parseObject(body(exchange));
+                String name = text(json, "name");
+                String preferences = text(json, "preferences");
+                int clientId = write(conn -> ClientManager.addClient(conn, name, preferences));
+                yield new Response(201, Map.of("clientId", clientId));
+            }
+            case "POST products" -> {
+                Map<String, Object> json = Json.parseObject(body(exchange));
+                String name = text(json, "name");
+                long price = number(json, "price");
+                long rate = number(json, "rate");
+                int productId = write(conn -> ProductManager.addProduct(conn, name, price, rate));
+                yield new Response(201, Map.of("productId", productId));
+            }
+            default -> throw new NotFoundException("No route for " + exchange.getRequestMethod() + " "
+                    + exchange.getRequestURI().getPath());
+        };
+    }
+
+    private Response postSale(Map<String, Object> json) throws SQLException {
+        int clientId = (int) number(json, "clientId");
+        int sellerId = (int) number(json, "sellerId");
+        LocalDate date = json.containsKey("date") ? Dates.parse(text(json, "date")) : LocalDate.now();
+        String status = paymentStatus(json);
+        List<SaleManager.NewLine> lines = new ArrayList<>();
+        for (Map<String, Object> line : objects(json, "lines")) {
+            int productId = (int) number(line, "productId");
+            lines.add(new SaleManager.NewLine(productId, "product " + productId, positive(line, "quantity")));
+        }
+        if (lines.isEmpty()) throw new IllegalArgumentException("A sale needs at least one line");
+        int orderId = write(conn -> SaleManager.postSale(conn, clientId, sellerId, date, status, lines));
+        return new Response(201, Map.of("orderId", orderId));
+    }
+
+    private Response postShipment(Map<String, Object> json) throws SQLException {
+        String deliveryman = text(json, "deliveryman");
+        LocalDate date = json.containsKey("date") ? Dates.parse(text(json, "date")) : LocalDate.now();
+        long deliveryExpense = optionalNumber(json, "deliveryExpense");
+        long equipmentExpense = optionalNumber(json, "equipmentExpense");
+        long employeeExpense = optionalNumber(json, "employeeExpense");
+        List<ShipmentManager.NewItem> items = new ArrayList<>();
+        for (Map<String, Object> item : objects(json, "items")) {
+            items.add(new ShipmentManager.NewItem((int) number(item, "productId"),
+                    positive(item, "quantity"), number(item, "rate")));
+        }
+        if (items.isEmpty()) throw new IllegalArgumentException("A shipment needs at least one item");
+        int shipmentId = write(conn -> ShipmentManager.postShipment(conn, deliveryman, date,
+                deliveryExpense, equipmentExpense, employeeExpense, items));
+        return new Response(201, Map.of("shipmentId", shipmentId));
+    }
+
+    @FunctionalInterface
+    private interface Read {
+        Object run(Connection conn) throws SQLException;
+    }
+
+    private static Response read(Read query) throws SQLException {
+        try (Connection conn = DatabaseManager.connectReadOnly("ApiServer.read")) {
+            return new Response(200, query.run(conn));
+        }
+    }
+
+    // Waits on the calling virtual thread until the write's group has committed
+    private <T> T write(DbExecutor.Work<T> task) throws SQLException {
+        try {
+            return writes.submit(task).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof SQLException sql) throw sql;
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            throw e;
+        }
+    }
+
+    private static Dates.Range rangeOf(Map<String, String> query, Dates.Range fallback) {
+        if (!query.containsKey("from") && !query.containsKey("to")) return fallback;
+        LocalDate from = query.containsKey("from") ? Dates.parse(query.get("from")) : LocalDate.MIN;
+        LocalDate to = query.containsKey("to") ? Dates.parse(query.get("to")) : LocalDate.MAX;
+        return Dates.Range.of(from, to);
+    }
+
+    private static String paymentStatus(Map<String, Object> json) {
+        String status = text(json, "paymentStatus");
+        if (!status.equals("Paid") && !status.equals("Unpaid")) {
+            throw new IllegalArgumentException("paymentStatus must be \"Paid\" or \"Unpaid\"");
+        }
+        return status;
+    }
+
+    private static String text(Map<String, Object> json, String field) {
+        if (!(json.get(field) instanceof String value) || value.isBlank()) {
+            throw new IllegalArgumentException("Missing text field '" + field + "'");
+        }
+        return value.trim();
+    }
+
+    private static long number(Map<String, Object> json, String field) {
+        if (!(json.get(field) instanceof Long value)) {
+            throw new IllegalArgumentException("Missing whole-number field '" + field + "'");
+        }
+        return value;
+    }
+
+    private static long optionalNumber(Map<String, Object> json, String field) {
+        return json.containsKey(field) ? number(json, field) : 0;
+    }
+
+    private static int positive(Map<String, Object> json, String field) {
+        long value = number(json, field);
+        if (value <= 0 || value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("'" + field + "' must be a positive number");
+        }
+        return (int) value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> objects(Map<String, Object> json, String field) {
+        if (!(json.get(field) instanceof List<?> list) || !list.stream().allMatch(Map.class::isInstance)) {
+            throw new IllegalArgumentException("Field '" + field + "' must be an array of objects");
+        }
+        return (List<Map<String, Object>>) list;
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) return params;
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0 || eq == pair.length() - 1) continue;
+            params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static String body(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static Response error(int status, String message) {
+        return new Response(status, Map.of("error", message == null ? "" : message));
+    }
+
+    private static void send(HttpExchange exchange, Response response) throws IOException {
+        byte[] bytes = Json.write(response.body()).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(response.status(), bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
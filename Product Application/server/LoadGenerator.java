@@ -0,0 +1,203 @@
+package server;
+
+import db.LatencyHistogram;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop load generator for {@link ApiServer}: each simulated client is a virtual thread
+ * that sends a request, waits for the answer and immediately sends the next one. The mix is
+ * product, sales and stock reads plus sale and shipment posts, with shipments restocking what
+ * the sales take out. Prints per-endpoint latency percentiles and status counts at the end.
+ *
+ * <pre>
+ * java server.LoadGenerator [--url http://localhost:8080/api] [--clients 32] [--seconds 30] [--writes 20]
+ * </pre>
+ *
+ * Run it against a copy of app.db: every sale and shipment it posts is committed.
+ */
+public final class LoadGenerator {
+
+    private record Endpoint(String name, LatencyHistogram latency, Map<Integer, AtomicLong> statuses) {
+        Endpoint(String name) {
+            this(name, new LatencyHistogram(), new ConcurrentHashMap<>());
+        }
+
+        void record(long nanos, int status) {
+            latency.recordNanos(nanos);
+            statuses.computeIfAbsent(status, _ -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    private final HttpClient http;
+    private final String baseUrl;
+    private final int writePercent;
+    private final List<Long> productIds;
+    private final List<Long> clientIds;
+    private final List<Long> sellerIds;
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    private LoadGenerator(HttpClient http, String baseUrl, int writePercent) throws IOException, InterruptedException {
+        this.http = http;
+        this.baseUrl = baseUrl;
+        this.writePercent = writePercent;
+        this.productIds = ids("products", "productId");
+        this.clientIds = ids("clients", "clientId");
+        this.sellerIds = ids("sellers", "sellerId");
+        if (productIds.isEmpty() || clientIds.isEmpty() || sellerIds.isEmpty()) {
+            throw new IllegalStateException("The database needs at least one product, client and seller");
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String url = "http://localhost:" + ApiServer.DEFAULT_PORT + "/api";
+        int clients = 32;
+        int seconds = 30;
+        int writePercent = 20;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--url" -> url = args[++i];
+                case "--clients" -> clients = Integer.parseInt(args[++i]);
+                case "--seconds" -> seconds = Integer.parseInt(args[++i]);
+                case "--writes" -> writePercent = Integer.parseInt(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient http = HttpClient.newBuilder()
+                    .executor(threads)
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .build();
+            LoadGenerator generator = new LoadGenerator(http, url, writePercent);
+            System.out.printf("%d clients, %d s, %d%% writes against %s%n", clients, seconds, writePercent, url);
+
+            long deadline = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+            long start = System.nanoTime();
+            for (int c = 0; c < clients; c++) {
+                threads.submit(() -> generator.runClient(deadline));
+            }
+            threads.shutdown();
+            while (!threads.awaitTermination(1, TimeUnit.SECONDS)) {
+                // Clients stop on their own at the deadline
+            }
+            generator.report(System.nanoTime() - start);
+        }
+    }
+
+    private void runClient(long deadline) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < deadline) {
+            try {
+                if (random.nextInt(100) < writePercent) {
+                    if (random.nextInt(10) < 7) postSale(random);
+                    else postShipment(random);
+                } else {
+                    switch (random.nextInt(4)) {
+                        case 0 -> call("GET products", "GET", "/products", null);
+                        case 1 -> call("GET sales", "GET", "/sales", null);
+                        case 2 -> call("GET stock", "GET", "/stock?date=" + LocalDate.now().minusDays(random.nextInt(90)), null);
+                        default -> call("GET clients", "GET", "/clients", null);
+                    }
+                }
+            } catch (IOException e) {
+                endpoint("transport errors").record(0, -1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void postSale(ThreadLocalRandom random) throws IOException, InterruptedException {
+        StringBuilder lines = new StringBuilder();
+        int lineCount = 1 + random.nextInt(3);
+        for (int i = 0; i < lineCount; i++) {
+            if (i > 0) lines.append(',');
+            lines.append(Json.write(Map.of("productId", pick(productIds, random), "quantity", 1 + random.nextInt(3))));
+        }
+        String body = "{\"clientId\":" + pick(clientIds, random)
+                + ",\"sellerId\":" + pick(sellerIds, random)
+                + ",\"paymentStatus\":\"" + (random.nextBoolean() ? "Paid" : "Unpaid") + "\""
+                + ",\"lines\":[" + lines + "]}";
+        call("POST sales", "POST", "/sales", body);
+    }
+
+    private void postShipment(ThreadLocalRandom random) throws IOException, InterruptedException {
+        StringBuilder items = new StringBuilder();
+        int itemCount = 1 + random.nextInt(5);
+        for (int i = 0; i < itemCount; i++) {
+            if (i > 0) items.append(',');
+            items.append(Json.write(Map.of("productId", pick(productIds, random),
+                    "quantity", 10 + random.nextInt(40), "rate", 100 + random.nextInt(900))));
+        }
+        String body = "{\"deliveryman\":\"Load test\",\"deliveryExpense\":500,\"items\":[" + items + "]}";
+        call("POST shipments", "POST", "/shipments", body);
+    }
+
+    private HttpResponse<String> call(String name, String method, String path, String body)
+            throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30));
+        if (body == null) request.method(method, HttpRequest.BodyPublishers.noBody());
+        else request.header("Content-Type", "application/json").method(method, HttpRequest.BodyPublishers.ofString(body));
+
+        long start = System.nanoTime();
+        HttpResponse<String> response = http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        endpoint(name).record(System.nanoTime() - start, response.statusCode());
+        return response;
+    }
+
+    private Endpoint endpoint(String name) {
+        return endpoints.computeIfAbsent(name, Endpoint::new);
+    }
+
+    private List<Long> ids(String resource, String idField) throws IOException, InterruptedException {
+        HttpResponse<String> response = call("GET " + resource, "GET", "/" + resource, null);
+        if (response.statusCode() != 200) {
+            throw new IOException("GET /" + resource + " answered " + response.statusCode() + ": " + response.body());
+        }
+        List<Long> ids = new ArrayList<>();
+        if (Json.parse(response.body()) instanceof List<?> rows) {
+            for (Object row : rows) {
+                if (row instanceof Map<?, ?> map && map.get(idField) instanceof Long id) ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    private static long pick(List<Long> ids, ThreadLocalRandom random) {
+        return ids.get(random.nextInt(ids.size()));
+    }
+
+    private void report(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        long total = 0;
+        System.out.printf("%n%-18s %8s %8s %9s %9s %9s %9s %9s  %s%n",
+                "Endpoint", "Count", "Req/s", "Mean ms", "p50 ms", "p95 ms", "p99 ms", "Max ms", "Statuses");
+        for (Endpoint e : endpoints.values().stream().sorted((a, b) -> a.name().compareTo(b.name())).toList()) {
+            LatencyHistogram h = e.latency();
+            total += h.count();
+            System.out.printf("%-18s %8d %8.1f %9.2f %9.2f %9.2f %9.2f %9.2f  %s%n",
+                    e.name(), h.count(), h.count() / seconds, h.meanMicros() / 1000.0,
+                    h.percentileMicros(50) / 1000.0, h.percentileMicros(95) / 1000.0,
+                    h.percentileMicros(99) / 1000.0, h.maxMicros() / 1000.0, e.statuses());
+        }
+        System.out.printf("%nTotal %d requests in %.1f s (%.1f req/s)%n", total, seconds, total / seconds);
+    }
+}